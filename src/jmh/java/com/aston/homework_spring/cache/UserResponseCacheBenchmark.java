@@ -0,0 +1,82 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.config.JacksonConfig;
+import com.aston.homework_spring.mapper.UserMapper;
+import com.aston.homework_spring.mapper.UserMapperImpl_;
+import com.aston.homework_spring.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Процессорное время на тело ответа GET /users/{id} без учета загрузки пользователя из хранилища:
+// - cached - попадание в UserResponseCache, готовые байты JSON;
+// - mapped - обычный путь: MapStruct (сущность -> User.Out) и сериализация Jackson.
+// UserMapperImpl_ - сгенерированная MapStruct реализация без декоратора TimedUserMapper.
+// Для сравнения выделения памяти: -Djmh.args="UserResponseCacheBenchmark -f 1 -wi 3 -i 5 -prof gc"
+// Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="UserResponseCacheBenchmark -f 1 -wi 3 -i 5"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class UserResponseCacheBenchmark {
+
+    private static final int USERS = 1024;
+
+    User[] users;
+    UserMapper userMapper;
+    ObjectMapper objectMapper;
+    UserResponseCache cache;
+    int next;
+
+    @Setup
+    public void setUp() {
+        users = new User[USERS];
+        LocalDateTime createdAt = LocalDateTime.of(2025, 12, 15, 14, 6, 44);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setId((long) i + 1);
+            user.setName("testName" + (i + 1));
+            user.setEmail("test" + (i + 1) + "@gmail.com");
+            user.setAge(18 + i % 48);
+            user.setCreated_at(createdAt.plusMinutes(i));
+            users[i] = user;
+        }
+        userMapper = new UserMapperImpl_();
+        objectMapper = Jackson2ObjectMapperBuilder.json().modules(new JacksonConfig().javaTimeModule()).build();
+        // ttl больше времени замера: после прогрева каждый запрос - попадание
+        cache = new UserResponseCache(objectMapper, new SimpleMeterRegistry(), 64 << 20, 1024, Duration.ofHours(1));
+        for (User user : users) {
+            cache.get(user.getId(), () -> userMapper.toDTO(user));
+        }
+    }
+
+
+    @Benchmark
+    public byte[] cached() {
+        User user = nextUser();
+        return cache.get(user.getId(), () -> userMapper.toDTO(user)).json();
+    }
+
+
+    @Benchmark
+    public byte[] mapped() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userMapper.toDTO(nextUser()));
+    }
+
+
+    private User nextUser() {
+        return users[next++ & (USERS - 1)];
+    }
+
+}
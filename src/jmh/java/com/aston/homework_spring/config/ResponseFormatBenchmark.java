@@ -0,0 +1,79 @@
+package com.aston.homework_spring.config;
+
+import com.aston.homework_spring.model.User;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Кодирование и декодирование страницы пользователей (GET /users/get-all-by-offset-limit) в форматах ответа:
+// - json - список объектов User.Out;
+// - smile, cbor - тот же список в двоичных форматах Jackson;
+// - columnar - User.Columns в JSON (кодирование включает перекладку списка в колонки).
+// ObjectMapper собираются как в JacksonConfig, с тем же модулем даты и времени.
+// Размер тела для каждого формата и размера страницы выводится при подготовке: строка "payload: ...".
+// Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="ResponseFormatBenchmark -f 1 -wi 3 -i 5"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ResponseFormatBenchmark {
+
+    private static final TypeReference<List<User.Out>> USERS = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor", "columnar"})
+    String format;
+
+    @Param({"10", "100"})
+    int pageSize;
+
+    List<User.Out> users;
+    ObjectMapper objectMapper;
+    byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        users = new ArrayList<>(pageSize);
+        LocalDateTime createdAt = LocalDateTime.of(2025, 12, 15, 14, 6, 44);
+        for (int i = 1; i <= pageSize; i++) {
+            users.add(new User.Out((long) i, "testName" + i, "test" + i + "@gmail.com", createdAt.plusMinutes(i),
+                    18 + i % 48));
+        }
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "smile" -> Jackson2ObjectMapperBuilder.smile();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+            default -> Jackson2ObjectMapperBuilder.json();
+        };
+        objectMapper = builder.modules(new JacksonConfig().javaTimeModule()).build();
+        body = encode();
+        System.out.printf("payload: format=%s pageSize=%d bytes=%d%n", format, pageSize, body.length);
+    }
+
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return objectMapper.writeValueAsBytes("columnar".equals(format) ? User.Columns.of(users) : users);
+    }
+
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return "columnar".equals(format)
+                ? objectMapper.readValue(body, User.Columns.class)
+                : objectMapper.readValue(body, USERS);
+    }
+
+}
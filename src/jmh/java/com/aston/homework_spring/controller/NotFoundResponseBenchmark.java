@@ -0,0 +1,74 @@
+package com.aston.homework_spring.controller;
+
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Ответ 404 на запрос несуществующего пользователя, от броска исключения до тела ответа:
+// - domainException - EntityNotFoundException без стека и готовое тело ErrorCode через GlobalExceptionHandler
+//   (со счетчиком и ограничителем лога по умолчанию: после первых сообщений лог пропускается);
+// - runtimeException - прежний путь: RuntimeException со стеком, текст сообщения собирается на каждый
+//   запрос и кодируется в тело (без записи в лог, которая раньше выполнялась на каждый запрос).
+// Исключение бросается с глубины depth кадров: в Spring MVC между контроллером и сервисом их около сотни.
+// Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="NotFoundResponseBenchmark -f 1 -wi 3 -i 5"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class NotFoundResponseBenchmark {
+
+    @Param({"16", "128"})
+    int depth;
+
+    GlobalExceptionHandler handler;
+    long id;
+
+    @Setup
+    public void setUp() {
+        handler = new GlobalExceptionHandler(new SimpleMeterRegistry(), 10, Duration.ofMinutes(1));
+    }
+
+
+    @Benchmark
+    public ResponseEntity<byte[]> domainException() {
+        try {
+            return find(++id, depth, true);
+        } catch (EntityNotFoundException e) {
+            return handler.handleDomainException(e);
+        }
+    }
+
+
+    @Benchmark
+    public ResponseEntity<byte[]> runtimeException() {
+        try {
+            return find(++id, depth, false);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+
+    // Поиск, который не находит пользователя на глубине frames вызовов
+    private static ResponseEntity<byte[]> find(long id, int frames, boolean stackless) {
+        if (frames > 0) {
+            return find(id, frames - 1, stackless);
+        }
+        throw stackless
+                ? new EntityNotFoundException(id)
+                : new RuntimeException("User with id = " + id + " not found");
+    }
+
+}
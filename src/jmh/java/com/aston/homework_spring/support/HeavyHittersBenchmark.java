@@ -0,0 +1,73 @@
+package com.aston.homework_spring.support;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость HeavyHitters.record при параметрах UserAccessTracker по умолчанию (top-k 100, скетч 4 x 8192):
+// - skewed - ключи по закону Ципфа, большинство обращений попадает в кандидатов;
+// - uniform - почти каждый ключ новый, обращения постоянно проходят через вытеснение.
+// Ключи упаковываются заранее, чтобы измерялся только record. Запуск: mvn -Pjmh test-compile exec:exec
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class HeavyHittersBenchmark {
+
+    private static final int KEYS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Hitters {
+
+        HeavyHitters<Object> hitters;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            hitters = new HeavyHitters<>(100, 4, 8192);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Stream {
+
+        @Param({"skewed", "uniform"})
+        String distribution;
+
+        Object[] ids;
+        int next;
+
+        @Setup
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom();
+            ids = new Object[KEYS];
+            for (int i = 0; i < KEYS; i++) {
+                ids[i] = "skewed".equals(distribution) ? zipf(random, 1_000_000) : random.nextLong(1, 100_000_000);
+            }
+        }
+
+        Object nextId() {
+            return ids[next++ & (KEYS - 1)];
+        }
+
+        // Приближение распределения Ципфа с показателем 1: ранг k выпадает с вероятностью ~ 1/k
+        private static Long zipf(SplittableRandom random, long n) {
+            return (long) Math.floor(Math.exp(random.nextDouble() * Math.log(n)));
+        }
+    }
+
+
+    @Benchmark
+    public void record(Hitters hitters, Stream stream) {
+        hitters.hitters.record(stream.nextId());
+    }
+
+}
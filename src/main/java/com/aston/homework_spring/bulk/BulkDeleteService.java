@@ -0,0 +1,171 @@
+package com.aston.homework_spring.bulk;
+
+import com.aston.homework_spring.bulkhead.Workload;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserDeletedView;
+import com.aston.homework_spring.repository.UserRepository;
+import com.aston.homework_spring.service.UserChanged;
+import com.aston.homework_spring.service.UserStatisticsService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+public class BulkDeleteService {
+
+    // Массовое мягкое удаление по списку идентификаторов или по фильтру. Операция выполняется в фоне порциями
+    // по chunk-size строк: каждая порция - один UPDATE в собственной короткой транзакции, поэтому блокировки
+    // держатся только на время порции, а WAL пишется равномерно. Между порциями делается пауза.
+    // Статистика пользователей обновляется так же, как при одиночном удалении, а после фиксации каждой порции
+    // публикуется UserChanged с удаленными пользователями.
+    // Операции выполняются по одной в порядке запуска; прогресс и отмена - через BulkJobs. Остановка приложения
+    // прерывает операцию после текущей порции, и она завершается в состоянии CANCELLED.
+
+    private static final String TYPE = "delete";
+    private static final LocalDateTime NO_CREATED_BEFORE = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private final UserRepository userRepository;
+    private final UserStatisticsService statistics;
+    private final ApplicationEventPublisher events;
+    private final BulkJobs jobs;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration pauseBetweenChunks;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("users-bulk-delete").daemon().factory());
+
+    public BulkDeleteService(UserRepository userRepository,
+                             UserStatisticsService statistics,
+                             ApplicationEventPublisher events,
+                             BulkJobs jobs,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${users.bulk.delete.chunk-size:500}") int chunkSize,
+                             @Value("${users.bulk.delete.pause-between-chunks:PT0.05S}") Duration pauseBetweenChunks) {
+        this.userRepository = userRepository;
+        this.statistics = statistics;
+        this.events = events;
+        this.jobs = jobs;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.chunkSize = chunkSize;
+        this.pauseBetweenChunks = pauseBetweenChunks;
+    }
+
+
+    public BulkJob start(User.BulkDelete request) {
+        BulkJob job = jobs.register(TYPE);
+        executor.execute(() -> Workload.BATCH.run(() -> run(job, request)));
+        return job;
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    private void run(BulkJob job, User.BulkDelete request) {
+        if (job.isCancelRequested()) {
+            return;
+        }
+        try {
+            if (request.getIds() != null && !request.getIds().isEmpty()) {
+                deleteByIds(job, new ArrayList<>(new LinkedHashSet<>(request.getIds())));
+            } else {
+                deleteByFilter(job, request);
+            }
+            job.complete();
+        } catch (RuntimeException e) {
+            log.error("Bulk delete {} failed", job.getId(), e);
+            job.fail(e);
+        }
+        log.info("Bulk delete {} finished: {}", job.getId(), job.toDTO());
+    }
+
+
+    private void deleteByIds(BulkJob job, List<Long> ids) {
+        job.start((long) ids.size());
+        for (int from = 0; from < ids.size() && !job.isCancelRequested(); from += chunkSize) {
+            Long[] chunk = ids.subList(from, Math.min(from + chunkSize, ids.size())).toArray(Long[]::new);
+            List<UserDeletedView> deleted = deleteChunk(() -> userRepository.softDeleteByIds(chunk));
+            job.chunkCompleted(chunk.length, deleted.size());
+            if (!pause()) {
+                job.cancel();
+                return;
+            }
+        }
+    }
+
+
+    private void deleteByFilter(BulkJob job, User.BulkDelete request) {
+        int minAge = request.getMinAge() != null ? request.getMinAge() : 0;
+        int maxAge = request.getMaxAge() != null ? request.getMaxAge() : Integer.MAX_VALUE;
+        boolean byCreated = request.getCreated_before() != null;
+        LocalDateTime createdBefore = byCreated ? request.getCreated_before() : NO_CREATED_BEFORE;
+
+        job.start(userRepository.countByBulkFilter(minAge, maxAge, byCreated, createdBefore));
+        long afterId = 0;
+        while (!job.isCancelRequested()) {
+            long lastId = afterId;
+            List<UserDeletedView> deleted = deleteChunk(() -> userRepository.softDeleteChunkByFilter(
+                    minAge, maxAge, byCreated, createdBefore, lastId, chunkSize));
+            if (deleted.isEmpty()) {
+                return;
+            }
+            job.chunkCompleted(deleted.size(), deleted.size());
+            for (UserDeletedView user : deleted) {
+                afterId = Math.max(afterId, user.getId());
+            }
+            if (!pause()) {
+                job.cancel();
+                return;
+            }
+        }
+    }
+
+
+    private List<UserDeletedView> deleteChunk(Supplier<List<UserDeletedView>> statement) {
+        List<UserDeletedView> deleted = transactionTemplate.execute(status -> {
+            List<UserDeletedView> rows = statement.get();
+            rows.forEach(row -> statistics.recordDeleted(row.getAge(), row.getCreated_at()));
+            return rows;
+        });
+        if (deleted == null) {
+            return List.of();
+        }
+        if (!deleted.isEmpty()) {
+            events.publishEvent(UserChanged.of(deleted.stream().map(UserDeletedView::getId).toList()));
+        }
+        return deleted;
+    }
+
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseBetweenChunks);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.aston.homework_spring.bulk;
+
+import com.aston.homework_spring.model.User;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BulkJob {
+
+    // Состояние одной фоновой массовой операции. Изменяется потоком операции, читается запросами статуса,
+    // поэтому все поля атомарные или volatile. Отмена - флаг, который операция проверяет между порциями:
+    // текущая порция всегда завершается (фиксируется) целиком.
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, CANCELLED, FAILED;
+
+        boolean isFinished() {
+            return this == COMPLETED || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    private final String id;
+    private final String type;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong affected = new AtomicLong();
+    private final AtomicInteger chunks = new AtomicInteger();
+    private volatile State state = State.QUEUED;
+    private volatile Long total;
+    private volatile long processedAtStart;
+    private volatile long startNanos;
+    private volatile long finishNanos;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+
+    BulkJob(String id, String type) {
+        this.id = id;
+        this.type = type;
+    }
+
+
+    public String getId() {
+        return id;
+    }
+
+
+    public State getState() {
+        return state;
+    }
+
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+
+    public void start(Long total) {
+        resume(total, 0, 0, 0);
+    }
+
+
+    // Продолжение операции, прерванной остановкой приложения: счетчики восстанавливаются по сохраненной отметке,
+    // а скорость и оценка оставшегося времени считаются только по строкам, обработанным после продолжения
+    public void resume(Long total, long processedRows, long affectedRows, int completedChunks) {
+        this.processed.set(processedRows);
+        this.affected.set(affectedRows);
+        this.chunks.set(completedChunks);
+        this.processedAtStart = processedRows;
+        this.total = total;
+        this.startNanos = System.nanoTime();
+        this.startedAt = LocalDateTime.now();
+        this.state = State.RUNNING;
+    }
+
+
+    public void chunkCompleted(long processedRows, long affectedRows) {
+        processed.addAndGet(processedRows);
+        affected.addAndGet(affectedRows);
+        chunks.incrementAndGet();
+    }
+
+
+    public void complete() {
+        finish(cancelRequested ? State.CANCELLED : State.COMPLETED);
+    }
+
+
+    public void fail(Throwable e) {
+        this.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        finish(State.FAILED);
+    }
+
+
+    // Запрос отмены; задача в очереди отменяется сразу, выполняющаяся - после текущей порции
+    public void cancel() {
+        cancelRequested = true;
+        if (state == State.QUEUED) {
+            finish(State.CANCELLED);
+        }
+    }
+
+
+    public User.BulkJob toDTO() {
+        long done = processed.get();
+        Double rate = null;
+        Long eta = null;
+        if (startedAt != null) {
+            long endNanos = state.isFinished() ? finishNanos : System.nanoTime();
+            double seconds = (endNanos - startNanos) / 1_000_000_000.0;
+            long doneSinceStart = done - processedAtStart;
+            if (seconds > 0 && doneSinceStart > 0) {
+                rate = doneSinceStart / seconds;
+                if (state == State.RUNNING && total != null) {
+                    eta = (long) Math.ceil(Math.max(0, total - done) / rate);
+                }
+            }
+        }
+        return User.BulkJob.builder()
+                .id(id)
+                .type(type)
+                .state(state.name())
+                .total(total)
+                .processed(done)
+                .affected(affected.get())
+                .chunks(chunks.get())
+                .rows_per_second(rate)
+                .eta_seconds(eta)
+                .started_at(startedAt)
+                .finished_at(finishedAt)
+                .error(error)
+                .build();
+    }
+
+
+    boolean isFinished() {
+        return state.isFinished();
+    }
+
+
+    private void finish(State finalState) {
+        this.finishNanos = System.nanoTime();
+        this.finishedAt = LocalDateTime.now();
+        this.state = finalState;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.aston.homework_spring.bulk;
+
+import com.aston.homework_spring.exception.BulkJobNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Component
+public class BulkJobs {
+
+    // Реестр фоновых массовых операций в памяти экземпляра. Хранятся все незавершенные операции и не больше
+    // retained завершенных (самые старые удаляются при регистрации новых).
+
+    private final Map<String, BulkJob> jobs = new LinkedHashMap<>();
+    private final int retained;
+
+    public BulkJobs(@Value("${users.bulk.retained-jobs:100}") int retained) {
+        this.retained = retained;
+    }
+
+
+    public BulkJob register(String type) {
+        return register(UUID.randomUUID().toString(), type);
+    }
+
+
+    public synchronized BulkJob register(String id, String type) {
+        BulkJob job = new BulkJob(id, type);
+        jobs.put(id, job);
+        long finished = jobs.values().stream().filter(BulkJob::isFinished).count();
+        for (Iterator<BulkJob> it = jobs.values().iterator(); finished > retained && it.hasNext(); ) {
+            if (it.next().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+        return job;
+    }
+
+
+    public synchronized List<BulkJob> all() {
+        return new ArrayList<>(jobs.values());
+    }
+
+
+    public synchronized BulkJob get(String id) {
+        BulkJob job = jobs.get(id);
+        if (job == null) {
+            throw new BulkJobNotFoundException(id);
+        }
+        return job;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.aston.homework_spring.bulk;
+
+import com.aston.homework_spring.model.User;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+class BulkUpdateJobStore {
+
+    // Сохраненное состояние массовых изменений (таблица user_bulk_jobs). Диапазон идентификаторов [first_id, max_id]
+    // фиксируется при запуске: пользователи, созданные позже, операцией не затрагиваются. last_id - последний
+    // идентификатор обработанной порции, checkpoint вызывается в транзакции порции.
+
+    record Row(String id, User.BulkUpdate request, long firstId, long lastId, long maxId,
+               long processed, long affected, int chunks) {
+    }
+
+    private static final String COLUMNS = "id, operation, age_delta, min_age, max_age, created_before, " +
+            "first_id, last_id, max_id, processed, affected, chunks";
+
+    private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> {
+        Timestamp createdBefore = rs.getTimestamp("created_before");
+        User.BulkUpdate request = User.BulkUpdate.builder()
+                .operation(User.BulkUpdate.Operation.valueOf(rs.getString("operation")))
+                .ageDelta(rs.getObject("age_delta", Integer.class))
+                .minAge(rs.getObject("min_age", Integer.class))
+                .maxAge(rs.getObject("max_age", Integer.class))
+                .created_before(createdBefore != null ? createdBefore.toLocalDateTime() : null)
+                .build();
+        return new Row(rs.getString("id"), request, rs.getLong("first_id"), rs.getLong("last_id"),
+                rs.getLong("max_id"), rs.getLong("processed"), rs.getLong("affected"), rs.getInt("chunks"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    BulkUpdateJobStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+
+    Row create(String id, User.BulkUpdate request) {
+        return jdbcTemplate.queryForObject(
+                "insert into user_bulk_jobs (id, operation, age_delta, min_age, max_age, created_before, state, " +
+                        "first_id, last_id, max_id, created_at, updated_at) " +
+                        "select ?, ?, ?, ?, ?, ?, 'QUEUED', coalesce(min(u.id), 1), coalesce(min(u.id), 1) - 1, " +
+                        "coalesce(max(u.id), 0), now(), now() from users u " +
+                        "returning " + COLUMNS,
+                ROW_MAPPER, id, request.getOperation().name(), request.getAgeDelta(), request.getMinAge(),
+                request.getMaxAge(), request.getCreated_before());
+    }
+
+
+    void checkpoint(String id, long lastId, long processedRows, long affectedRows) {
+        jdbcTemplate.update("update user_bulk_jobs set state = 'RUNNING', last_id = ?, processed = processed + ?, " +
+                        "affected = affected + ?, chunks = chunks + 1, updated_at = now() where id = ?",
+                lastId, processedRows, affectedRows, id);
+    }
+
+
+    void finish(String id, BulkJob.State state, String error) {
+        jdbcTemplate.update("update user_bulk_jobs set state = ?, error = ?, updated_at = now() where id = ?",
+                state.name(), error, id);
+    }
+
+
+    // Операции, не завершенные до остановки приложения, в порядке запуска
+    List<Row> unfinished() {
+        return jdbcTemplate.query("select " + COLUMNS + " from user_bulk_jobs " +
+                "where state in ('QUEUED', 'RUNNING') order by created_at", ROW_MAPPER);
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.aston.homework_spring.bulk;
+
+import com.aston.homework_spring.bulkhead.Workload;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserAgeView;
+import com.aston.homework_spring.repository.UserRepository;
+import com.aston.homework_spring.service.UserChanged;
+import com.aston.homework_spring.service.UserStatisticsService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+public class BulkUpdateService implements ApplicationRunner {
+
+    // Массовые изменения пользователей одним UPDATE на порцию (set-based), без чтения строк в приложение.
+    // Порция - диапазон идентификаторов шириной chunk-size, поэтому каждый UPDATE идет по первичному ключу и не
+    // зависит от того, сколько строк уже изменено. Между порциями делается пауза.
+    // После фиксации каждой порции публикуется UserChanged с измененными пользователями.
+    // Порция и отметка прогресса в user_bulk_jobs фиксируются одной транзакцией: после перезапуска приложения
+    // незавершенные операции продолжаются с порции, следующей за последней зафиксированной, и ни одна порция
+    // не применяется дважды (это важно для неидемпотентного SHIFT_AGE). Остановка приложения прерывает операцию
+    // после текущей порции, ее состояние в таблице остается RUNNING.
+    // Продолжение рассчитано на один экземпляр приложения: несколько экземпляров продолжат одну операцию
+    // одновременно.
+
+    private static final String TYPE = "update";
+    private static final LocalDateTime NO_CREATED_BEFORE = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private final UserRepository userRepository;
+    private final UserStatisticsService statistics;
+    private final ApplicationEventPublisher events;
+    private final BulkJobs jobs;
+    private final BulkUpdateJobStore store;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration pauseBetweenChunks;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("users-bulk-update").daemon().factory());
+
+    public BulkUpdateService(UserRepository userRepository,
+                             UserStatisticsService statistics,
+                             ApplicationEventPublisher events,
+                             BulkJobs jobs,
+                             BulkUpdateJobStore store,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${users.bulk.update.chunk-size:1000}") int chunkSize,
+                             @Value("${users.bulk.update.pause-between-chunks:PT0.05S}") Duration pauseBetweenChunks) {
+        this.userRepository = userRepository;
+        this.statistics = statistics;
+        this.events = events;
+        this.jobs = jobs;
+        this.store = store;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.chunkSize = chunkSize;
+        this.pauseBetweenChunks = pauseBetweenChunks;
+    }
+
+
+    public BulkJob start(User.BulkUpdate request) {
+        BulkJob job = jobs.register(TYPE);
+        BulkUpdateJobStore.Row row = store.create(job.getId(), request);
+        executor.execute(() -> Workload.BATCH.run(() -> run(job, row)));
+        return job;
+    }
+
+
+    // Продолжение операций, прерванных остановкой приложения
+    @Override
+    public void run(ApplicationArguments args) {
+        for (BulkUpdateJobStore.Row row : store.unfinished()) {
+            BulkJob job = jobs.register(row.id(), TYPE);
+            log.info("Resuming bulk update {} after id {} ({} of {} ids processed)",
+                    row.id(), row.lastId(), row.processed(), total(row));
+            executor.execute(() -> Workload.BATCH.run(() -> run(job, row)));
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    private void run(BulkJob job, BulkUpdateJobStore.Row row) {
+        if (job.isCancelRequested()) {
+            store.finish(job.getId(), BulkJob.State.CANCELLED, null);
+            return;
+        }
+        try {
+            job.resume(total(row), row.processed(), row.affected(), row.chunks());
+            long lastId = row.lastId();
+            while (lastId < row.maxId() && !job.isCancelRequested()) {
+                long fromId = lastId + 1;
+                long toId = Math.min(row.maxId(), lastId + chunkSize);
+                List<UserAgeView> changed = updateChunk(job, row.request(), fromId, toId);
+                job.chunkCompleted(toId - fromId + 1, changed.size());
+                lastId = toId;
+                if (!pause()) {
+                    log.info("Bulk update {} interrupted after id {}, it will be resumed on start", job.getId(), lastId);
+                    return;
+                }
+            }
+            job.complete();
+            store.finish(job.getId(), job.getState(), null);
+        } catch (RuntimeException e) {
+            if (executor.isShutdown()) {
+                log.warn("Bulk update {} interrupted by shutdown, it will be resumed on start", job.getId(), e);
+                return;
+            }
+            log.error("Bulk update {} failed", job.getId(), e);
+            job.fail(e);
+            store.finish(job.getId(), BulkJob.State.FAILED, job.toDTO().getError());
+        }
+        log.info("Bulk update {} finished: {}", job.getId(), job.toDTO());
+    }
+
+
+    private List<UserAgeView> updateChunk(BulkJob job, User.BulkUpdate request, long fromId, long toId) {
+        int minAge = request.getMinAge() != null ? request.getMinAge() : 0;
+        int maxAge = request.getMaxAge() != null ? request.getMaxAge() : Integer.MAX_VALUE;
+        boolean byCreated = request.getCreated_before() != null;
+        LocalDateTime createdBefore = byCreated ? request.getCreated_before() : NO_CREATED_BEFORE;
+
+        List<UserAgeView> changed = transactionTemplate.execute(status -> {
+            List<UserAgeView> rows = switch (request.getOperation()) {
+                case NORMALIZE_EMAIL -> userRepository.normalizeEmails(
+                        fromId, toId, minAge, maxAge, byCreated, createdBefore);
+                case SHIFT_AGE -> {
+                    int delta = request.getAgeDelta();
+                    List<UserAgeView> shifted = userRepository.shiftAges(
+                            delta, fromId, toId, minAge, maxAge, byCreated, createdBefore);
+                    shifted.forEach(user -> statistics.recordAgeChanged(user.getAge() - delta, user.getAge()));
+                    yield shifted;
+                }
+            };
+            store.checkpoint(job.getId(), toId, toId - fromId + 1, rows.size());
+            return rows;
+        });
+        if (changed == null) {
+            return List.of();
+        }
+        if (!changed.isEmpty()) {
+            events.publishEvent(UserChanged.of(changed.stream().map(UserAgeView::getId).toList()));
+        }
+        return changed;
+    }
+
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseBetweenChunks);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    private static long total(BulkUpdateJobStore.Row row) {
+        return Math.max(0, row.maxId() - row.firstId() + 1);
+    }
+
+}
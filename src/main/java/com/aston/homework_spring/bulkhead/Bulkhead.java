@@ -0,0 +1,67 @@
+package com.aston.homework_spring.bulkhead;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Bulkhead {
+
+    // Ограничение одновременных операций одного класса нагрузки: не больше maxConcurrent выполняются,
+    // не больше maxQueued ждут освобождения места и не дольше maxWait. Остальным сразу отказывается, поэтому
+    // перегруженный класс не накапливает ожидающие потоки.
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public Bulkhead(int maxConcurrent, int maxQueued, Duration maxWait) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+
+    public void release() {
+        permits.release();
+    }
+
+
+    public int active() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+
+    public int queued() {
+        return queued.get();
+    }
+
+
+    // Доля занятых мест: 1 означает, что новые операции ждут в очереди
+    public double saturation() {
+        return maxConcurrent == 0 ? 1 : (double) active() / maxConcurrent;
+    }
+
+}
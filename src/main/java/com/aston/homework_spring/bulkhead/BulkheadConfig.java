@@ -0,0 +1,45 @@
+package com.aston.homework_spring.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "users.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(BulkheadProperties.class)
+public class BulkheadConfig {
+
+    // Пределы классов нагрузки (Workload): HTTP-запросы ограничивает BulkheadInterceptor (BulkheadWebConfig),
+    // соединения - PartitionedDataSource, которым оборачивается источник данных spring.datasource
+
+    @Bean
+    public Bulkheads bulkheads(BulkheadProperties properties, MeterRegistry meterRegistry,
+                               @Value("${server.tomcat.threads.max:200}") int serverThreads) {
+        return new Bulkheads(properties, serverThreads, meterRegistry);
+    }
+
+
+    // Статический метод: постпроцессор создается раньше остальных бинов конфигурации.
+    // Ограничители запрашиваются при первом соединении потока с классом нагрузки, а не при создании пула.
+    @Bean
+    public static BeanPostProcessor partitionedDataSourcePostProcessor(ObjectProvider<Bulkheads> bulkheads) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof PartitionedDataSource)
+                        && beanName.equals("dataSource")) {
+                    return new PartitionedDataSource(dataSource, bulkheads);
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.aston.homework_spring.bulkhead;
+
+import com.aston.homework_spring.exception.WorkloadSaturatedException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+    // Запрос занимает место своего класса нагрузки до вызова метода контроллера и освобождает его после отправки
+    // ответа. Если места нет и очередь класса заполнена (или ожидание превысило max-wait), запрос отклоняется
+    // ответом 503 через GlobalExceptionHandler. На время запроса класс нагрузки записывается в поток, по нему
+    // PartitionedDataSource выбирает часть пула соединений.
+
+    private static final String ATTRIBUTE = BulkheadInterceptor.class.getName() + ".workload";
+
+    private final Bulkheads bulkheads;
+
+    public BulkheadInterceptor(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Workload workload = classify(request, handlerMethod);
+        if (!bulkheads.tryAcquireRequest(workload)) {
+            throw new WorkloadSaturatedException(workload.name());
+        }
+        request.setAttribute(ATTRIBUTE, workload);
+        Workload.set(workload);
+        return true;
+    }
+
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(ATTRIBUTE) instanceof Workload workload) {
+            request.removeAttribute(ATTRIBUTE);
+            Workload.restore(null);
+            bulkheads.releaseRequest(workload);
+        }
+    }
+
+
+    static Workload classify(HttpServletRequest request, HandlerMethod handler) {
+        WorkloadClass workloadClass = handler.getMethodAnnotation(WorkloadClass.class);
+        if (workloadClass != null) {
+            return workloadClass.value();
+        }
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) ? Workload.INTERACTIVE : Workload.WRITE;
+    }
+
+}
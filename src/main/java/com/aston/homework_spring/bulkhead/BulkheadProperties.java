@@ -0,0 +1,20 @@
+package com.aston.homework_spring.bulkhead;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "users.bulkhead")
+public record BulkheadProperties(Map<Workload, Limits> workloads, Duration connectionTimeout,
+                                 Integer reservedThreads) {
+
+    // Пределы классов нагрузки. Класс без настроек не ограничивается. maxConnections - часть пула соединений
+    // spring.datasource, 0 - без ограничения (весь пул). Соединения ждут освобождения части не дольше
+    // connectionTimeout. reservedThreads - потоки Tomcat, которые не может занять ни один класс нагрузки
+    // (запросы вне классов: проверки готовности, actuator).
+
+    public record Limits(int maxConcurrent, int maxQueued, Duration maxWait, int maxConnections) {
+    }
+
+}
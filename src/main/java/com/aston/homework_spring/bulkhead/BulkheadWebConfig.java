@@ -0,0 +1,26 @@
+package com.aston.homework_spring.bulkhead;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "users.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+public class BulkheadWebConfig implements WebMvcConfigurer {
+
+    private final Bulkheads bulkheads;
+
+    public BulkheadWebConfig(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new BulkheadInterceptor(bulkheads)).addPathPatterns("/users/**");
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.aston.homework_spring.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class Bulkheads {
+
+    // Ограничители классов нагрузки: для HTTP-запросов и для соединений с базой данных.
+    // Метрики по каждому классу (тег workload):
+    // - users.bulkhead.active, queued, saturation, rejected, wait - HTTP-запросы;
+    // - users.db.partition.active, pending, timeouts - соединения.
+    // Ожидающий места HTTP-запрос занимает поток Tomcat так же, как выполняющийся. Поэтому сумма max-concurrent
+    // и max-queued всех классов не может превышать server.tomcat.threads.max за вычетом reserved-threads:
+    // иначе очереди классов забирают все потоки, и запросы начинают ждать в очереди Tomcat, а не получать 503.
+    // Такие настройки отклоняются при запуске.
+
+    private final Map<Workload, Bulkhead> requests = new EnumMap<>(Workload.class);
+    private final Map<Workload, Bulkhead> connections = new EnumMap<>(Workload.class);
+    private final Map<Workload, Counter> rejected = new EnumMap<>(Workload.class);
+    private final Map<Workload, Timer> waits = new EnumMap<>(Workload.class);
+    private final Map<Workload, Counter> connectionTimeouts = new EnumMap<>(Workload.class);
+    private final Duration connectionTimeout;
+
+    public Bulkheads(BulkheadProperties properties, int serverThreads, MeterRegistry meterRegistry) {
+        this.connectionTimeout = properties.connectionTimeout() != null
+                ? properties.connectionTimeout()
+                : Duration.ofSeconds(30);
+        Map<Workload, BulkheadProperties.Limits> limits = properties.workloads() != null
+                ? properties.workloads()
+                : Map.of();
+        checkThreadBudget(limits, serverThreads,
+                properties.reservedThreads() != null ? properties.reservedThreads() : 10);
+
+        for (Workload workload : Workload.values()) {
+            BulkheadProperties.Limits workloadLimits = limits.get(workload);
+            if (workloadLimits == null) {
+                continue;
+            }
+            String tag = workload.name().toLowerCase();
+
+            Bulkhead bulkhead = new Bulkhead(workloadLimits.maxConcurrent(), workloadLimits.maxQueued(),
+                    workloadLimits.maxWait() != null ? workloadLimits.maxWait() : Duration.ZERO);
+            requests.put(workload, bulkhead);
+            Gauge.builder("users.bulkhead.active", bulkhead, Bulkhead::active)
+                    .description("Количество выполняющихся HTTP-запросов класса нагрузки")
+                    .tag("workload", tag)
+                    .register(meterRegistry);
+            Gauge.builder("users.bulkhead.queued", bulkhead, Bulkhead::queued)
+                    .description("Количество HTTP-запросов класса нагрузки, ожидающих места")
+                    .tag("workload", tag)
+                    .register(meterRegistry);
+            Gauge.builder("users.bulkhead.saturation", bulkhead, Bulkhead::saturation)
+                    .description("Доля занятых мест класса нагрузки (0..1)")
+                    .tag("workload", tag)
+                    .register(meterRegistry);
+            rejected.put(workload, Counter.builder("users.bulkhead.rejected")
+                    .description("Количество HTTP-запросов, отклоненных из-за перегрузки класса нагрузки")
+                    .tag("workload", tag)
+                    .register(meterRegistry));
+            waits.put(workload, Timer.builder("users.bulkhead.wait")
+                    .description("Время ожидания места для HTTP-запроса класса нагрузки")
+                    .tag("workload", tag)
+                    .register(meterRegistry));
+
+            if (workloadLimits.maxConnections() > 0) {
+                Bulkhead partition = new Bulkhead(workloadLimits.maxConnections(), Integer.MAX_VALUE,
+                        connectionTimeout);
+                connections.put(workload, partition);
+                Gauge.builder("users.db.partition.active", partition, Bulkhead::active)
+                        .description("Количество соединений, занятых классом нагрузки")
+                        .tag("workload", tag)
+                        .register(meterRegistry);
+                Gauge.builder("users.db.partition.pending", partition, Bulkhead::queued)
+                        .description("Количество потоков класса нагрузки, ожидающих соединения")
+                        .tag("workload", tag)
+                        .register(meterRegistry);
+                connectionTimeouts.put(workload, Counter.builder("users.db.partition.timeouts")
+                        .description("Количество отказов в соединении по истечении времени ожидания части пула")
+                        .tag("workload", tag)
+                        .register(meterRegistry));
+            }
+        }
+    }
+
+
+    // false - класс нагрузки перегружен, запрос нужно отклонить
+    public boolean tryAcquireRequest(Workload workload) {
+        Bulkhead bulkhead = requests.get(workload);
+        if (bulkhead == null) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean acquired = bulkhead.tryAcquire();
+        waits.get(workload).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejected.get(workload).increment();
+        }
+        return acquired;
+    }
+
+
+    public void releaseRequest(Workload workload) {
+        Bulkhead bulkhead = requests.get(workload);
+        if (bulkhead != null) {
+            bulkhead.release();
+        }
+    }
+
+
+    // Часть пула класса нагрузки; null - класс не ограничен
+    Bulkhead connections(Workload workload) {
+        return workload != null ? connections.get(workload) : null;
+    }
+
+
+    void connectionTimedOut(Workload workload) {
+        connectionTimeouts.get(workload).increment();
+    }
+
+
+    Duration connectionTimeout() {
+        return connectionTimeout;
+    }
+
+
+    private static void checkThreadBudget(Map<Workload, BulkheadProperties.Limits> limits, int serverThreads,
+                                          int reservedThreads) {
+        long requested = 0;
+        for (BulkheadProperties.Limits workloadLimits : limits.values()) {
+            requested += (long) workloadLimits.maxConcurrent() + workloadLimits.maxQueued();
+        }
+        int available = serverThreads - reservedThreads;
+        if (requested > available) {
+            throw new IllegalStateException("Bulkhead places and queues need " + requested + " request threads, " +
+                    "but only " + available + " of server.tomcat.threads.max=" + serverThreads + " are available " +
+                    "(users.bulkhead.reserved-threads=" + reservedThreads + ")");
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.aston.homework_spring.bulkhead;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PartitionedDataSource extends DelegatingDataSource {
+
+    // Разделение общего пула соединений между классами нагрузки. Поток класса с ограниченной частью пула получает
+    // соединение, только когда в его части есть место; место освобождается при закрытии соединения (возврате
+    // в пул). Так пакетные операции и сканирование не могут занять весь пул: суммарный размер их частей меньше
+    // размера пула, и оставшиеся соединения всегда доступны интерактивным запросам.
+    // Потоки без класса нагрузки (запуск приложения, миграции) используют пул без ограничений.
+
+    private final ObjectProvider<Bulkheads> bulkheads;
+
+    public PartitionedDataSource(DataSource target, ObjectProvider<Bulkheads> bulkheads) {
+        super(target);
+        this.bulkheads = bulkheads;
+    }
+
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return partitioned(() -> super.getConnection());
+    }
+
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return partitioned(() -> super.getConnection(username, password));
+    }
+
+
+    private Connection partitioned(ConnectionSupplier supplier) throws SQLException {
+        Workload workload = Workload.current();
+        if (workload == null) {
+            return supplier.get();
+        }
+        Bulkheads current = bulkheads.getObject();
+        Bulkhead partition = current.connections(workload);
+        if (partition == null) {
+            return supplier.get();
+        }
+        if (!partition.tryAcquire()) {
+            current.connectionTimedOut(workload);
+            throw new SQLTransientConnectionException("Connection partition " + workload + " is exhausted, " +
+                    "no connection available within " + current.connectionTimeout());
+        }
+        try {
+            return releasingOnClose(supplier.get(), partition);
+        } catch (SQLException | RuntimeException e) {
+            partition.release();
+            throw e;
+        }
+    }
+
+
+    private static Connection releasingOnClose(Connection target, Bulkhead partition) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getTargetConnection" -> target;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Partitioned connection [" + target + "]";
+                    case "close" -> {
+                        try {
+                            target.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                partition.release();
+                            }
+                        }
+                        yield null;
+                    }
+                    default -> {
+                        try {
+                            yield method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.aston.homework_spring.bulkhead;
+
+import java.util.function.Supplier;
+
+public enum Workload {
+
+    // Классы нагрузки. У каждого класса свой предел одновременных HTTP-запросов с ограниченной очередью
+    // (BulkheadInterceptor) и своя часть пула соединений (PartitionedDataSource), поэтому медленное постраничное
+    // чтение или сканирование таблицы не занимает потоки и соединения, нужные для чтения одного пользователя.
+
+    // Чтение отдельных пользователей: GET /users/{id}, пакетный поиск, статистика
+    INTERACTIVE,
+    // Создание, изменение и удаление, запуск массовых операций
+    WRITE,
+    // Постраничное чтение и поиск, фоновые массовые операции и задачи по расписанию
+    BATCH,
+    // Сканирование всей таблицы (UserScanner)
+    EXPORT;
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+
+    // Класс нагрузки текущего потока; null - поток не относится ни к одному классу (запуск приложения, миграции)
+    public static Workload current() {
+        return CURRENT.get();
+    }
+
+
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+
+    public <T> T call(Supplier<T> task) {
+        Workload previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+
+    static void set(Workload workload) {
+        CURRENT.set(workload);
+    }
+
+
+    static void restore(Workload previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+}
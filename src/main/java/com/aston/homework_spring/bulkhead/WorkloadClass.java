@@ -0,0 +1,15 @@
+package com.aston.homework_spring.bulkhead;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Класс нагрузки метода контроллера. Без аннотации GET и HEAD относятся к INTERACTIVE, остальные методы - к WRITE.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WorkloadClass {
+
+    Workload value();
+
+}
@@ -0,0 +1,182 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.service.UserChanged;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@Slf4j
+@ConditionalOnExpression("(${users.l2-cache.enabled:false} or ${users.change-listener.enabled:false}) " +
+        "and '${users.backend:jpa}' == 'jpa'")
+public class UserChangeListener implements SmartLifecycle {
+
+    // Изменения пользователей, зафиксированные другими экземплярами приложения, для кэшей этого экземпляра.
+    // - Триггеры tr_users_notify_* на уровне оператора отправляют одно pg_notify('users_changed', 'id,id,...')
+    //   на каждый оператор, изменивший строки users ('*' - слишком много строк). Одинаковые уведомления одной
+    //   транзакции PostgreSQL объединяет и доставляет только после фиксации, поэтому экземпляры узнают о любом
+    //   зафиксированном изменении: через JPA, нативными запросами, массовыми операциями и на другом экземпляре.
+    // - Триггеры создаются выключенными и включаются при подключении слушателя: без слушателя запись пользователя
+    //   не стоит уведомления.
+    // - Отдельный поток держит собственное соединение (вне пула) с LISTEN users_changed и по каждому уведомлению
+    //   публикует UserChanged. На событие подписаны UserResponseCache, UserListCache, кэш второго уровня
+    //   (UserSecondLevelCache) и читающая модель.
+    // - Пока соединения нет, уведомления теряются, поэтому после каждого подключения публикуется UserChanged
+    //   для всех пользователей.
+    // Уведомления о собственных изменениях экземпляра тоже приходят и повторно инвалидируют уже удаленные записи.
+
+    public static final String CHANNEL = "users_changed";
+
+    private static final String ENABLE_TRIGGERS = "alter table users enable trigger tr_users_notify_insert, " +
+            "enable trigger tr_users_notify_update, enable trigger tr_users_notify_delete";
+
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ApplicationEventPublisher events;
+    private final Duration reconnectDelay;
+    private final Counter notifications;
+    private final Counter reconnects;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread listener;
+
+    public UserChangeListener(DataSourceProperties dataSourceProperties,
+                              ApplicationEventPublisher events,
+                              MeterRegistry meterRegistry,
+                              @Value("${users.change-listener.reconnect-delay:PT5S}") Duration reconnectDelay) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.events = events;
+        this.reconnectDelay = reconnectDelay;
+        this.notifications = Counter.builder("users.change_listener.notifications")
+                .description("Полученные уведомления об изменениях пользователей")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("users.change_listener.reconnects")
+                .description("Повторные подключения слушателя уведомлений об изменениях пользователей")
+                .register(meterRegistry);
+        Gauge.builder("users.change_listener.connected", this, instance -> instance.connected ? 1 : 0)
+                .description("Слушатель уведомлений об изменениях пользователей подключен (1) или нет (0)")
+                .register(meterRegistry);
+    }
+
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        listener = Thread.ofPlatform().name("users-change-listener").daemon().start(this::listen);
+    }
+
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            try {
+                listener.join(POLL_TIMEOUT_MILLIS * 4L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                    // ALTER TABLE ждет завершения транзакций, которые уже пишут в users: они зафиксированы до
+                    // события ниже, а все более поздние изменения дают уведомление
+                    statement.execute(ENABLE_TRIGGERS);
+                }
+                // Изменения, зафиксированные до LISTEN, уведомлений не дадут
+                events.publishEvent(UserChanged.everyone());
+                connected = true;
+                log.info("Listening for user changes on channel {}", CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] received = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (received != null) {
+                        for (PGNotification notification : received) {
+                            onNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("User change listener disconnected, reconnecting in {}: {}", reconnectDelay,
+                            e.getMessage());
+                    reconnects.increment();
+                }
+            } finally {
+                connected = false;
+            }
+            if (running && !pause()) {
+                return;
+            }
+        }
+    }
+
+
+    private void onNotification(String payload) {
+        notifications.increment();
+        if ("*".equals(payload)) {
+            events.publishEvent(UserChanged.everyone());
+            return;
+        }
+        List<Long> ids = new ArrayList<>();
+        try {
+            for (String id : payload.split(",")) {
+                ids.add(Long.parseLong(id));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Unexpected payload on channel {}: {}", CHANNEL, payload);
+            events.publishEvent(UserChanged.everyone());
+            return;
+        }
+        events.publishEvent(UserChanged.of(ids));
+    }
+
+
+    private boolean pause() {
+        try {
+            Thread.sleep(reconnectDelay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserChanged;
+import com.aston.homework_spring.support.StaleWhileRevalidateCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+@Component
+public class UserListCache {
+
+    // Кэш первых страниц getAll (по offset и limit) и результата getAllCount с обновлением в фоне
+    // (StaleWhileRevalidateCache). Страницы дальше max-rows строк не кэшируются: их запрашивают редко.
+    // Любое изменение пользователей (UserChanged) удаляет все записи, поэтому клиент видит свои изменения сразу.
+    // Изменения других экземпляров видны по уведомлению PostgreSQL, если слушатель включен, иначе не позже чем
+    // через fresh-for.
+    // При fresh-for = 0 кэш отключен.
+
+    private record Page(int offset, int limit) {
+    }
+
+    private final boolean enabled;
+    private final int maxRows;
+    private final StaleWhileRevalidateCache<Page, List<User.Out>> pages;
+    private final StaleWhileRevalidateCache<Boolean, Integer> count;
+
+    public UserListCache(MeterRegistry meterRegistry,
+                         @Value("${users.list-cache.fresh-for:PT1S}") Duration freshFor,
+                         @Value("${users.list-cache.max-stale:PT5M}") Duration maxStale,
+                         @Value("${users.list-cache.max-rows:500}") int maxRows,
+                         @Value("${users.list-cache.max-entries:256}") int maxEntries) {
+        this.enabled = !freshFor.isZero() && !freshFor.isNegative();
+        this.maxRows = maxRows;
+        this.pages = new StaleWhileRevalidateCache<>("getAll", freshFor, maxStale, maxEntries, meterRegistry);
+        this.count = new StaleWhileRevalidateCache<>("getAllCount", freshFor, maxStale, 1, meterRegistry);
+    }
+
+
+    public List<User.Out> getAll(int offset, int limit, Supplier<List<User.Out>> loader) {
+        if (!enabled || offset < 0 || limit < 0 || (long) offset + limit > maxRows) {
+            return loader.get();
+        }
+        return pages.get(new Page(offset, limit), loader);
+    }
+
+
+    public int getAllCount(Supplier<Integer> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return count.get(Boolean.TRUE, loader);
+    }
+
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChanged event) {
+        invalidate();
+    }
+
+
+    public void invalidate() {
+        pages.invalidateAll();
+        count.invalidateAll();
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserChanged;
+import com.aston.homework_spring.timing.RequestTiming;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+public class UserResponseCache {
+
+    // Кэш готовых тел ответа GET /users/{id}: JSON в UTF-8 и, для больших тел, его gzip-вариант.
+    // При попадании контроллер отдает байты как есть, без MapStruct, создания User.Out и сериализации Jackson.
+    //
+    // Номер инвалидации. Для каждого идентификатора есть счетчик инвалидаций (в массиве счетчиков, общих для
+    // идентификаторов с одинаковым остатком от деления); это не версия строки в базе данных. Изменение
+    // пользователя (UserChanged) увеличивает счетчик и удаляет запись. Читающий запрос запоминает счетчик до
+    // загрузки и сохраняет тело только с ним; запись с устаревшим счетчиком считается промахом. Поэтому ответ,
+    // загруженный до изменения, не попадает в кэш после него.
+    //
+    // UserChanged приходит об изменениях через этот экземпляр, массовых операциях и, при включенном слушателе
+    // уведомлений PostgreSQL, об изменениях на других экземплярах. Изменение, о котором событие не пришло
+    // (слушатель выключен или переподключается, правка в обход приложения), видно не позже чем через ttl:
+    // запись старше ttl считается промахом.
+    //
+    // Размер кэша ограничен суммарным объемом тел (max-bytes). При превышении удаляются произвольные записи.
+    // Попадания передаются слушателю (onHit), чтобы счетчики обращений учитывали и запросы, не дошедшие до сервиса.
+
+    public record Body(byte[] json, byte[] gzip) {
+    }
+
+    private record Entry(long version, long loadedAt, Body body) {
+
+        // Приблизительный объем записи с учетом заголовков объектов
+        int size() {
+            return body.json().length + (body.gzip() == null ? 0 : body.gzip().length) + 96;
+        }
+    }
+
+    private static final int STRIPES = 4096;
+
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final int gzipMinSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Counter hits;
+    private final Counter misses;
+    private volatile LongConsumer hitListener = id -> { };
+
+    @Autowired
+    public UserResponseCache(ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${users.response-cache.max-bytes:67108864}") long maxBytes,
+                             @Value("${users.response-cache.gzip-min-size:1024}") int gzipMinSize,
+                             @Value("${users.response-cache.ttl:PT5S}") Duration ttl) {
+        this(objectMapper, meterRegistry, maxBytes, gzipMinSize, ttl, System::nanoTime);
+    }
+
+    UserResponseCache(ObjectMapper objectMapper, MeterRegistry meterRegistry, long maxBytes, int gzipMinSize,
+                      Duration ttl, LongSupplier clock) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+        this.gzipMinSize = gzipMinSize;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.hits = Counter.builder("users.response_cache.requests")
+                .description("Запросы к кэшу готовых ответов")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("users.response_cache.requests")
+                .description("Запросы к кэшу готовых ответов")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("users.response_cache.bytes", totalBytes, AtomicLong::get)
+                .description("Суммарный объем тел ответов в кэше")
+                .register(meterRegistry);
+    }
+
+
+    public Body get(long id, Supplier<User.Out> loader) {
+        long version = versions.get(stripe(id));
+        long now = clock.getAsLong();
+        Entry entry = entries.get(id);
+        if (entry != null && entry.version() == version && now - entry.loadedAt() < ttlNanos) {
+            hits.increment();
+            hitListener.accept(id);
+            return entry.body();
+        }
+        misses.increment();
+        User.Out user = loader.get();
+        Body body = RequestTiming.time(RequestTiming.Phase.SERIALIZATION, () -> encode(user));
+        store(id, version, now, body);
+        return body;
+    }
+
+
+    public void onHit(LongConsumer listener) {
+        this.hitListener = listener;
+    }
+
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChanged event) {
+        if (event.all()) {
+            invalidateAll();
+        } else {
+            event.ids().forEach(this::invalidate);
+        }
+    }
+
+
+    public void invalidate(long id) {
+        versions.incrementAndGet(stripe(id));
+        remove(id);
+    }
+
+
+    public void invalidateAll() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            versions.incrementAndGet(stripe);
+        }
+        entries.keySet().forEach(this::remove);
+    }
+
+
+    // Ответ можно взять из кэша, если клиент принимает JSON (в том числе */* или без заголовка Accept).
+    // Запросы компактных форматов (Smile, CBOR) обрабатываются обычным путем через конвертеры сообщений.
+    public static boolean acceptsJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(mediaTypes);
+            return !mediaTypes.isEmpty() && mediaTypes.getFirst().includes(MediaType.APPLICATION_JSON);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+
+    // Время записи - момент до загрузки: ttl отсчитывается от чтения строки, а не от сохранения тела
+    private void store(long id, long version, long loadedAt, Body body) {
+        Entry entry = new Entry(version, loadedAt, body);
+        if (entry.size() > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(id, entry);
+        totalBytes.addAndGet(entry.size() - (previous == null ? 0 : previous.size()));
+        // Пользователь изменился, пока тело загружалось: сохраненная запись уже устарела
+        if (versions.get(stripe(id)) != version && entries.remove(id, entry)) {
+            totalBytes.addAndGet(-entry.size());
+        }
+        evict();
+    }
+
+
+    private void evict() {
+        Iterator<Long> ids = entries.keySet().iterator();
+        while (totalBytes.get() > maxBytes && ids.hasNext()) {
+            remove(ids.next());
+        }
+    }
+
+
+    private void remove(long id) {
+        Entry removed = entries.remove(id);
+        if (removed != null) {
+            totalBytes.addAndGet(-removed.size());
+        }
+    }
+
+
+    private Body encode(User.Out user) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(user);
+            return new Body(json, json.length >= gzipMinSize ? gzip(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("User " + user.getId() + " cannot be serialized", e);
+        }
+    }
+
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+
+    private static int stripe(long id) {
+        return (int) Math.floorMod(id, (long) STRIPES);
+    }
+
+}
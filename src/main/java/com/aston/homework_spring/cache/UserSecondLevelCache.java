@@ -0,0 +1,89 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserChanged;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+
+@Component
+@ConditionalOnExpression("${users.l2-cache.enabled:false} and '${users.backend:jpa}' == 'jpa'")
+public class UserSecondLevelCache {
+
+    // Согласованность кэша второго уровня Hibernate (сущность User, регион users) и кэша запросов getAll
+    // и getAllCount между экземплярами приложения. Кэш подписан на UserChanged: событие приходит после записи через
+    // этот экземпляр и массовых операций, а об изменениях на других экземплярах - от UserChangeListener (при
+    // включенном кэше второго уровня слушатель работает всегда). UserChanged для всех пользователей, например
+    // после переподключения слушателя, очищает кэш целиком.
+    // Инвалидация не просто удаляет запись, а оставляет на ее месте снятую блокировку READ_WRITE (SoftLock) с
+    // отметкой времени. Загрузка, начатая до этой отметки (например, прочитавшая строку до фиксации изменения на
+    // другом экземпляре), не может положить в кэш прежнюю версию. Так же отметка времени пространства users
+    // делает недействительными результаты кэша запросов, загруженные раньше нее.
+    // До получения уведомления (задержка доставки и разбора, под нагрузкой не ограничена) другой экземпляр может
+    // читать прежнюю версию. Время жизни записей (application.conf) ограничивает устаревание, если уведомление
+    // потерялось.
+
+    private static final String[] QUERY_SPACES = {"users"};
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final Cache cache;
+    private final EntityPersister persister;
+    private final EntityDataAccess entityAccess;
+    private final TimestampsCache timestamps;
+    private final Counter invalidations;
+
+    public UserSecondLevelCache(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.cache = sessionFactory.getCache();
+        this.persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(User.class);
+        this.entityAccess = persister.getCacheAccessStrategy();
+        this.timestamps = sessionFactory.getCache().getTimestampsCache();
+        this.invalidations = Counter.builder("users.l2_cache.invalidations")
+                .description("Пользователи, удаленные из кэша второго уровня после изменения")
+                .register(meterRegistry);
+    }
+
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChanged event) {
+        if (event.all()) {
+            evictAll();
+        } else {
+            invalidate(event.ids());
+        }
+    }
+
+
+    // Блокировка и ее снятие на каждый ключ оставляют в регионе отметку, отклоняющую более ранние загрузки
+    public void invalidate(Collection<Long> ids) {
+        try (Session session = sessionFactory.openSession()) {
+            SharedSessionContractImplementor contract = (SharedSessionContractImplementor) session;
+            for (Long id : ids) {
+                Object key = entityAccess.generateCacheKey(id, persister, sessionFactory, null);
+                SoftLock lock = entityAccess.lockItem(contract, key, null);
+                entityAccess.unlockItem(contract, key, lock);
+            }
+            timestamps.invalidate(QUERY_SPACES, contract);
+        }
+        invalidations.increment(ids.size());
+    }
+
+
+    public void evictAll() {
+        cache.evictAllRegions();
+    }
+
+}
@@ -1,21 +1,67 @@
 package com.aston.homework_spring.controller;
 
-import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.exception.DomainException;
+import com.aston.homework_spring.exception.DuplicateEmailException;
+import com.aston.homework_spring.exception.ErrorCode;
+import com.aston.homework_spring.support.LogRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @RestControllerAdvice
 @Slf4j
+@Profile("!reactive")
 public class GlobalExceptionHandler {
 
+    // Ожидаемые ошибки (DomainException и ошибки валидации) возникают при обычной работе, например когда
+    // перебирают несуществующие идентификаторы. Поэтому они:
+    // - отдаются заранее собранным телом ответа (ErrorCode.getBody());
+    // - считаются метрикой users.errors{code};
+    // - пишутся в лог с уровнем WARN и не чаще users.errors.log.permits раз за users.errors.log.interval
+    //   для каждого кода, с указанием количества пропущенных сообщений.
+    // Непредвиденные исключения по-прежнему пишутся в лог полностью.
+
+    private static final String VALIDATION = "VALIDATION_FAILED";
+    private static final String EMAIL_CONSTRAINT = "uk_users_email";
+    // Деталь ошибки PostgreSQL о нарушении уникальности: Key (email)=(abc@gmail.com) already exists.
+    private static final Pattern DUPLICATE_KEY = Pattern.compile("Key \\(email\\)=\\((.+?)\\) already exists");
+
+    private final Map<ErrorCode, Counter> counters = new EnumMap<>(ErrorCode.class);
+    private final Map<ErrorCode, LogRateLimiter> limiters = new EnumMap<>(ErrorCode.class);
+    private final Counter validationCounter;
+    private final LogRateLimiter validationLimiter;
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry,
+                                  @Value("${users.errors.log.permits:10}") int logPermits,
+                                  @Value("${users.errors.log.interval:PT1M}") Duration logInterval) {
+        for (ErrorCode code : ErrorCode.values()) {
+            counters.put(code, errorCounter(meterRegistry, code.name()));
+            limiters.put(code, new LogRateLimiter(logPermits, logInterval));
+        }
+        this.validationCounter = errorCounter(meterRegistry, VALIDATION);
+        this.validationLimiter = new LogRateLimiter(logPermits, logInterval);
+    }
+
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationExceptions(MethodArgumentNotValidException ex) {
@@ -23,17 +69,57 @@ public class GlobalExceptionHandler {
         ex.getBindingResult().getAllErrors().forEach((error) -> {
             String fieldName = ((FieldError) error).getField();
             String errorMessage = error.getDefaultMessage();
-            log.error("Invalid user field name: {}, errorMessage: {}", fieldName, errorMessage);
             errors.put(fieldName, errorMessage);
         });
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
+        return validationFailed("Invalid user fields", errors);
+    }
+
+
+    // Неизвестное значение параметра запроса (например, ?onDuplicateEmail=FOO или ?offset=abc) - ошибка клиента,
+    // а не сервера: отдается 400 с именем параметра, как и ошибки валидации полей
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<Map<String, String>> handleTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        Class<?> requiredType = ex.getRequiredType();
+        String expected = requiredType == null ? "" : requiredType.isEnum()
+                ? " (expected one of " + Arrays.toString(requiredType.getEnumConstants()) + ")"
+                : " (expected " + requiredType.getSimpleName() + ")";
+        return validationFailed("Invalid request parameters",
+                Map.of(ex.getName(), "Invalid value '" + ex.getValue() + "'" + expected));
+    }
+
+
+    @ExceptionHandler(MissingServletRequestParameterException.class)
+    public ResponseEntity<Map<String, String>> handleMissingParameterException(
+            MissingServletRequestParameterException ex) {
+        return validationFailed("Invalid request parameters",
+                Map.of(ex.getParameterName(), "Required parameter is missing"));
+    }
+
+
+    @ExceptionHandler(DomainException.class)
+    public ResponseEntity<byte[]> handleDomainException(DomainException ex) {
+        ErrorCode code = ex.getCode();
+        counters.get(code).increment();
+        long suppressed = limiters.get(code).acquire();
+        if (suppressed != LogRateLimiter.DENIED) {
+            // Текст сообщения собирается только здесь, для тех ошибок, которые попадают в лог
+            log.warn("{}: {} ({} similar messages suppressed)", code, ex.getMessage(), suppressed);
+        }
+        return ResponseEntity.status(code.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(code.getBody());
     }
 
 
-    @ExceptionHandler(EntityNotFoundException.class)
-    public ResponseEntity<String> handleEntityNotFoundException(EntityNotFoundException ex) {
-        log.error("Incorrect identifier entered for the entity search: {}", ex.getMessage());
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    // Занятый email обычно обнаруживается до записи (DuplicateEmailException). Нарушение uk_users_email остается
+    // возможным только при гонке двух одновременных запросов и отдается тем же ответом 409.
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<?> handleDataIntegrityViolationException(DataIntegrityViolationException ex) {
+        if (ex.getMessage() != null && ex.getMessage().contains(EMAIL_CONSTRAINT)) {
+            Matcher matcher = DUPLICATE_KEY.matcher(ex.getMessage());
+            return handleDomainException(new DuplicateEmailException(matcher.find() ? matcher.group(1) : null));
+        }
+        return handleException(ex);
     }
 
 
@@ -43,4 +129,22 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>("Internal Server Error", HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+
+    private ResponseEntity<Map<String, String>> validationFailed(String message, Map<String, String> errors) {
+        validationCounter.increment();
+        long suppressed = validationLimiter.acquire();
+        if (suppressed != LogRateLimiter.DENIED) {
+            log.warn("{}: {} ({} similar messages suppressed)", message, errors, suppressed);
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
+    }
+
+
+    private static Counter errorCounter(MeterRegistry meterRegistry, String code) {
+        return Counter.builder("users.errors")
+                .description("Количество ожидаемых ошибок, отданных клиентам")
+                .tag("code", code)
+                .register(meterRegistry);
+    }
+
 }
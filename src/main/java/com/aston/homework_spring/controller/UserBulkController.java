@@ -0,0 +1,141 @@
+package com.aston.homework_spring.controller;
+
+import com.aston.homework_spring.bulk.BulkDeleteService;
+import com.aston.homework_spring.bulk.BulkJob;
+import com.aston.homework_spring.bulk.BulkJobs;
+import com.aston.homework_spring.bulk.BulkUpdateService;
+import com.aston.homework_spring.model.User;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@AllArgsConstructor
+@Slf4j
+@RequestMapping("/users")
+@Profile("!reactive")
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+@Tag(name = "Массовые операции", description = "Фоновые операции над множеством пользователей")
+public class UserBulkController {
+
+    private final BulkDeleteService bulkDeleteService;
+    private final BulkUpdateService bulkUpdateService;
+    private final BulkJobs bulkJobs;
+
+
+    @Operation(
+            summary = "Массовое удаление пользователей по списку идентификаторов или по фильтру",
+            description = "Удаление выполняется в фоне порциями в коротких транзакциях. Ответ содержит состояние " +
+                    "операции, дальнейший прогресс - GET /users/jobs/{jobId}",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Либо ids, либо фильтр: minAge, maxAge (включительно) и/или created_before",
+                    required = true,
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = User.BulkDelete.class),
+                            examples = @ExampleObject(value =
+                                    "{\"minAge\": 60, \"created_before\": \"01-01-2020 00:00:00\"}"))
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Операция запущена", content =
+                    { @Content(mediaType = "application/json", schema = @Schema(implementation = User.BulkJob.class)) }),
+            @ApiResponse(responseCode = "400", description = "Не указаны условия удаления или указаны и ids, и фильтр",
+                    content = @Content)
+    })
+    @PostMapping("/bulk-delete")
+    public ResponseEntity<User.BulkJob> bulkDelete(@Valid @RequestBody User.BulkDelete dto) {
+        BulkJob job = bulkDeleteService.start(dto);
+        log.info("Bulk delete {} started: {}", job.getId(), dto);
+        return ResponseEntity.accepted().location(URI.create("/users/jobs/" + job.getId())).body(job.toDTO());
+    }
+
+
+    @Operation(
+            summary = "Массовое изменение пользователей: нормализация email или изменение возраста",
+            description = "Изменение выполняется в фоне порциями по диапазонам идентификаторов. Прогресс каждой " +
+                    "порции сохраняется, после перезапуска приложения операция продолжается со следующей порции. " +
+                    "Дальнейший прогресс - GET /users/jobs/{jobId}",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Операция (NORMALIZE_EMAIL или SHIFT_AGE с ageDelta) и необязательный фильтр: " +
+                            "minAge, maxAge (включительно) и/или created_before",
+                    required = true,
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = User.BulkUpdate.class),
+                            examples = @ExampleObject(value =
+                                    "{\"operation\": \"SHIFT_AGE\", \"ageDelta\": 1, \"maxAge\": 40}"))
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Операция запущена", content =
+                    { @Content(mediaType = "application/json", schema = @Schema(implementation = User.BulkJob.class)) }),
+            @ApiResponse(responseCode = "400", description = "Не указана операция или ageDelta для SHIFT_AGE",
+                    content = @Content)
+    })
+    @PostMapping("/bulk-update")
+    public ResponseEntity<User.BulkJob> bulkUpdate(@Valid @RequestBody User.BulkUpdate dto) {
+        BulkJob job = bulkUpdateService.start(dto);
+        log.info("Bulk update {} started: {}", job.getId(), dto);
+        return ResponseEntity.accepted().location(URI.create("/users/jobs/" + job.getId())).body(job.toDTO());
+    }
+
+
+    @Operation(summary = "Массовые операции этого экземпляра приложения: выполняющиеся и последние завершенные")
+    @ApiResponse(responseCode = "200", description = "Список операций в порядке запуска", content =
+            { @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = User.BulkJob.class))) })
+    @GetMapping("/jobs")
+    public ResponseEntity<List<User.BulkJob>> jobs() {
+        return new ResponseEntity<>(bulkJobs.all().stream().map(BulkJob::toDTO).toList(), HttpStatus.OK);
+    }
+
+
+    @Operation(summary = "Состояние массовой операции: прогресс, скорость и оценка оставшегося времени")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Состояние операции", content =
+                    { @Content(mediaType = "application/json", schema = @Schema(implementation = User.BulkJob.class)) }),
+            @ApiResponse(responseCode = "404", description = "Операция не найдена", content = @Content)
+    })
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<User.BulkJob> job(
+            @Parameter(description = "Идентификатор операции") @PathVariable String jobId
+    ) {
+        return new ResponseEntity<>(bulkJobs.get(jobId).toDTO(), HttpStatus.OK);
+    }
+
+
+    @Operation(summary = "Отмена массовой операции",
+            description = "Выполняющаяся операция останавливается после текущей порции, уже обработанные порции " +
+                    "не откатываются")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Отмена запрошена", content =
+                    { @Content(mediaType = "application/json", schema = @Schema(implementation = User.BulkJob.class)) }),
+            @ApiResponse(responseCode = "404", description = "Операция не найдена", content = @Content)
+    })
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<User.BulkJob> cancel(
+            @Parameter(description = "Идентификатор операции") @PathVariable String jobId
+    ) {
+        BulkJob job = bulkJobs.get(jobId);
+        job.cancel();
+        log.info("Bulk job {} cancellation requested", jobId);
+        return new ResponseEntity<>(job.toDTO(), HttpStatus.OK);
+    }
+
+}
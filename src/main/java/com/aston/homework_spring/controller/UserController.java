@@ -1,7 +1,12 @@
 package com.aston.homework_spring.controller;
 
+import com.aston.homework_spring.bulkhead.Workload;
+import com.aston.homework_spring.bulkhead.WorkloadClass;
+import com.aston.homework_spring.cache.UserResponseCache;
 import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.DuplicateEmailStrategy;
 import com.aston.homework_spring.service.UserService;
+import com.aston.homework_spring.service.UserStatisticsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -14,20 +19,31 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @AllArgsConstructor
 @Slf4j
 @RequestMapping("/users")
+@Profile("!reactive")
 @Tag(name = "Пользователи", description = "API для работы с пользователями")
 public class UserController {
 
+    public static final String COLUMNAR_JSON_VALUE = "application/vnd.users.columnar+json";
+
     private final UserService userService;
+    private final UserStatisticsService userStatisticsService;
+    private final UserResponseCache userResponseCache;
 
 
     @Operation(
@@ -46,14 +62,22 @@ public class UserController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Пользователь успешно создан", content =
                     { @Content(mediaType = "application/json", schema = @Schema(implementation = User.Out.class)) }),
+            @ApiResponse(responseCode = "200", description = "Email уже занят: возвращен (RETURN_EXISTING, IDEMPOTENT) " +
+                    "или обновлен (UPSERT) существующий пользователь", content =
+                    { @Content(mediaType = "application/json", schema = @Schema(implementation = User.Out.class)) }),
             @ApiResponse(responseCode = "400", description = "Введены некорректные данные", content = @Content),
-            @ApiResponse(responseCode = "500", description = "Пользователь с таким email уже существует либо возникла" +
-                    " иная ошибка сервера", content = @Content)
+            @ApiResponse(responseCode = "409", description = "Пользователь с таким email уже существует",
+                    content = @Content)
     })
     @PostMapping
-    public ResponseEntity<User.Out> create(@Valid @RequestBody User.In dto) {
+    public ResponseEntity<User.Out> create(
+            @Valid @RequestBody User.In dto,
+            @Parameter(description = "Поведение, если email уже занят: REJECT, RETURN_EXISTING, UPSERT или IDEMPOTENT")
+            @RequestParam(name = "onDuplicateEmail", defaultValue = "${users.create.on-duplicate-email:REJECT}")
+            DuplicateEmailStrategy onDuplicateEmail) {
+        UserService.Creation creation = userService.create(dto, onDuplicateEmail);
         log.info("User created successfully: {}", dto);
-        return new ResponseEntity<>(userService.create(dto), HttpStatus.CREATED);
+        return new ResponseEntity<>(creation.user(), creation.created() ? HttpStatus.CREATED : HttpStatus.OK);
     }
 
 
@@ -65,23 +89,77 @@ public class UserController {
                     "не найден", content = @Content)
     })
     @GetMapping("/{id}")
-    public ResponseEntity<User.Out> find(
+    public ResponseEntity<?> find(
             @Parameter(description = "Уникальный идентификатор отыскиваемого пользователя")
-            @PathVariable Long id
+            @PathVariable Long id,
+            @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false)
+            String acceptEncoding
     ) {
         log.info("User with id = {} found successfully", id);
-        return new ResponseEntity<>(userService.find(id), HttpStatus.OK);
+        if (!UserResponseCache.acceptsJson(accept)) {
+            return new ResponseEntity<>(userService.find(id), HttpStatus.OK);
+        }
+        // JSON отдается готовыми байтами из кэша, без повторной сериализации
+        UserResponseCache.Body body = userResponseCache.get(id, () -> userService.find(id));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (body.gzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.json());
+    }
+
+
+    @Operation(summary = "Пакетный поиск пользователей по списку идентификаторов",
+            description = "Все пользователи загружаются одним запросом к базе данных. Найденные пользователи " +
+                    "возвращаются в порядке запроса, отсутствующие идентификаторы перечисляются в поле missing")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Результат поиска", content =
+                    { @Content(mediaType = "application/json", schema = @Schema(implementation = User.Lookup.class)) }),
+            @ApiResponse(responseCode = "400", description = "Превышено максимальное количество идентификаторов",
+                    content = @Content)
+    })
+    @GetMapping(params = "ids")
+    public ResponseEntity<User.Lookup> findAll(
+            @Parameter(description = "Идентификаторы отыскиваемых пользователей через запятую")
+            @RequestParam List<Long> ids
+    ) {
+        return new ResponseEntity<>(userService.findAll(ids), HttpStatus.OK);
+    }
+
+
+    @Operation(
+            summary = "Пакетный поиск пользователей по списку идентификаторов, переданному в теле запроса",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Массив идентификаторов отыскиваемых пользователей",
+                    required = true,
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "[5, 1, 20]"))
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Результат поиска", content =
+                    { @Content(mediaType = "application/json", schema = @Schema(implementation = User.Lookup.class)) }),
+            @ApiResponse(responseCode = "400", description = "Превышено максимальное количество идентификаторов",
+                    content = @Content)
+    })
+    @PostMapping("/lookup")
+    @WorkloadClass(Workload.INTERACTIVE)
+    public ResponseEntity<User.Lookup> lookup(@RequestBody List<Long> ids) {
+        return new ResponseEntity<>(userService.findAll(ids), HttpStatus.OK);
     }
 
 
     @Operation(
             summary = "Обновление данных пользователя",
+            description = "Частичное обновление в семантике JSON Merge Patch: изменяются только переданные поля",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
-                    description = "Схема для обновления данных пользователя",
+                    description = "Схема для обновления данных пользователя. Отсутствующие поля не изменяются",
                     required = true,
-                    content = @Content(schema = @Schema(implementation = User.In.class),
-                            examples = @ExampleObject(value =
-                                    "{\"name\": \"Ivanov Ivan\", \"email\": \"abc@gmail.com\", \"age\": 30}"))
+                    content = @Content(schema = @Schema(implementation = User.Patch.class),
+                            examples = @ExampleObject(value = "{\"age\": 31}"))
             )
     )
     @ApiResponses(value = {
@@ -90,13 +168,13 @@ public class UserController {
             @ApiResponse(responseCode = "400", description = "Введены некорректные данные", content = @Content),
             @ApiResponse(responseCode = "404", description = "Пользователь с введенным идентификатором в базе данных" +
                     " не найден", content = @Content),
-            @ApiResponse(responseCode = "500", description = "Пользователь с таким email уже существует либо возникла" +
-                    " иная ошибка сервера", content = @Content)
+            @ApiResponse(responseCode = "409", description = "Пользователь с таким email уже существует",
+                    content = @Content)
     })
-    @PatchMapping("/{id}")
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
     public ResponseEntity<User.Out> update(
             @Parameter(description = "Уникальный идентификатор обновляемого пользователя") @PathVariable Long id,
-            @Valid @RequestBody User.In dto
+            @Valid @RequestBody User.Patch dto
     ) {
         log.info("User with id = {} updated successfully: {}", id, dto);
         return new ResponseEntity<>(userService.update(id, dto), HttpStatus.OK);
@@ -128,6 +206,7 @@ public class UserController {
                     array = @ArraySchema(schema = @Schema(implementation = User.Out.class)))
             })
     @GetMapping("/get-all-by-offset-limit")
+    @WorkloadClass(Workload.BATCH)
     @ResponseStatus(HttpStatus.OK)
     public Collection<User.Out> getAll(
             @Parameter(description = "Количество пропущенных пользователей начиная с первого", required = true)
@@ -140,14 +219,52 @@ public class UserController {
     }
 
 
+    @Operation(summary = "Поиск пользователей с пропуском определенного количества и в заданном количестве " +
+            "в колоночном формате (параллельные массивы по каждому полю)")
+    @ApiResponse(responseCode = "200", description = "Список найденных пользователей", content =
+            { @Content(mediaType = COLUMNAR_JSON_VALUE, schema = @Schema(implementation = User.Columns.class)) })
+    @GetMapping(value = "/get-all-by-offset-limit", produces = COLUMNAR_JSON_VALUE)
+    @WorkloadClass(Workload.BATCH)
+    @ResponseStatus(HttpStatus.OK)
+    public User.Columns getAllColumnar(
+            @Parameter(description = "Количество пропущенных пользователей начиная с первого", required = true)
+            @RequestParam int offset,
+
+            @Parameter(description = "Количество отыскиваемых пользователей", required = true)
+            @RequestParam int limit
+    ) {
+        return User.Columns.of(userService.getAll(offset, limit));
+    }
+
+
     @Operation(summary = "Получение общего количества пользователей")
     @ApiResponse(responseCode = "200", description = "Общее количество пользователей в базе данных", content =
             { @Content(mediaType = "application/json", schema = @Schema(implementation = int.class)) }
     )
     @GetMapping("/get-all-count")
+    @WorkloadClass(Workload.BATCH)
     @ResponseStatus(HttpStatus.OK)
     public int getAllCount() {
         return userService.getAllCount();
     }
 
+
+    @Operation(summary = "Получение статистики пользователей",
+            description = "Количество пользователей по возрастным группам и количество регистраций по дням. " +
+                    "Значения поддерживаются в памяти и периодически сверяются с базой данных")
+    @ApiResponse(responseCode = "200", description = "Статистика пользователей", content =
+            { @Content(mediaType = "application/json", schema = @Schema(implementation = User.Statistics.class)) }
+    )
+    @GetMapping("/statistics")
+    @ResponseStatus(HttpStatus.OK)
+    public User.Statistics getStatistics(
+            @Parameter(description = "Первый день периода регистраций (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+
+            @Parameter(description = "Последний день периода регистраций (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return userStatisticsService.getStatistics(from, to);
+    }
+
 }
@@ -0,0 +1,86 @@
+package com.aston.homework_spring.controller;
+
+import com.aston.homework_spring.exception.ReadModelNotReadyException;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.readmodel.UserColumns;
+import com.aston.homework_spring.readmodel.UserReadModel;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/users")
+@Profile("!reactive")
+@ConditionalOnExpression("${users.read-model.enabled:false} and '${users.backend:jpa}' == 'jpa'")
+@Tag(name = "Фильтры", description = "Фильтрация и сортировка пользователей по читающей модели в памяти")
+public class UserFilterController {
+
+    private final UserReadModel readModel;
+    private final int maxLimit;
+
+    public UserFilterController(UserReadModel readModel, @Value("${users.search.max-limit:100}") int maxLimit) {
+        this.readModel = readModel;
+        this.maxLimit = maxLimit;
+    }
+
+
+    @Operation(summary = "Пользователи по диапазону возраста и даты создания с сортировкой",
+            description = "Запрос выполняется по читающей модели без обращения к базе данных. Изменения других " +
+                    "экземпляров приложения видны с задержкой (метрика users.read_model.lag)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Страница найденных пользователей", content =
+                    { @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = User.Out.class))) }),
+            @ApiResponse(responseCode = "503", description = "Читающая модель еще загружается", content = @Content)
+    })
+    @GetMapping("/filter")
+    @ResponseStatus(HttpStatus.OK)
+    public List<User.Out> filter(
+            @Parameter(description = "Минимальный возраст (включительно)")
+            @RequestParam(required = false) Integer minAge,
+
+            @Parameter(description = "Максимальный возраст (включительно)")
+            @RequestParam(required = false) Integer maxAge,
+
+            @Parameter(description = "Созданы не раньше (yyyy-MM-ddTHH:mm:ss)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime createdFrom,
+
+            @Parameter(description = "Созданы раньше (yyyy-MM-ddTHH:mm:ss)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime createdTo,
+
+            @Parameter(description = "Поле сортировки: ID, AGE или CREATED_AT")
+            @RequestParam(defaultValue = "ID") UserColumns.Sort sort,
+
+            @Parameter(description = "Сортировка по убыванию")
+            @RequestParam(defaultValue = "false") boolean descending,
+
+            @Parameter(description = "Количество пропущенных результатов")
+            @RequestParam(defaultValue = "0") int offset,
+
+            @Parameter(description = "Количество результатов")
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        if (!readModel.isReady()) {
+            throw new ReadModelNotReadyException();
+        }
+        return readModel.query(new UserColumns.Filter(minAge, maxAge, createdFrom, createdTo), sort, descending,
+                Math.max(offset, 0), Math.min(Math.max(limit, 0), maxLimit));
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.aston.homework_spring.controller;
+
+import com.aston.homework_spring.bulkhead.Workload;
+import com.aston.homework_spring.bulkhead.WorkloadClass;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserSearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/users")
+@Profile("!reactive")
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+@Tag(name = "Пользователи", description = "API для работы с пользователями")
+public class UserSearchController {
+
+    // Поиск по имени выполняется в основной базе данных, поэтому доступен только с хранилищем jpa (UserSearchService)
+
+    private final UserSearchService userSearchService;
+
+    public UserSearchController(UserSearchService userSearchService) {
+        this.userSearchService = userSearchService;
+    }
+
+
+    @Operation(summary = "Поиск пользователей по имени",
+            description = "Находит имена по словам с учетом русской морфологии, по части слова и с опечатками. " +
+                    "Результаты отсортированы по релевантности")
+    @ApiResponse(responseCode = "200", description = "Список найденных пользователей", content =
+            { @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = User.Out.class)))
+            })
+    @GetMapping("/search")
+    @WorkloadClass(Workload.BATCH)
+    @ResponseStatus(HttpStatus.OK)
+    public List<User.Out> search(
+            @Parameter(description = "Имя, фамилия или их часть", required = true)
+            @RequestParam String q,
+
+            @Parameter(description = "Количество пропущенных результатов")
+            @RequestParam(defaultValue = "0") int offset,
+
+            @Parameter(description = "Количество результатов")
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return userSearchService.search(q, offset, limit);
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.aston.homework_spring.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class BulkJobNotFoundException extends DomainException {
+
+    private final String id;
+
+    public BulkJobNotFoundException(String id) {
+        super(ErrorCode.JOB_NOT_FOUND);
+        this.id = id;
+    }
+
+
+    public String getId() {
+        return id;
+    }
+
+
+    @Override
+    public String getMessage() {
+        return "Job with id = " + id + " not found";
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.aston.homework_spring.exception;
+
+public abstract class DomainException extends RuntimeException {
+
+    // Базовый класс ожидаемых ошибок (пользователь не найден, email занят, превышен лимит запроса).
+    // Такие исключения создаются на каждый неудачный запрос, поэтому стек вызовов не заполняется, а текст
+    // сообщения собирается только при обращении к getMessage() - обычно лишь при записи в лог.
+
+    private final ErrorCode code;
+
+    protected DomainException(ErrorCode code) {
+        super(null, null, false, false);
+        this.code = code;
+    }
+
+
+    public ErrorCode getCode() {
+        return code;
+    }
+
+
+    @Override
+    public abstract String getMessage();
+
+}
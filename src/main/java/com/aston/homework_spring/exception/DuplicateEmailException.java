@@ -0,0 +1,28 @@
+package com.aston.homework_spring.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class DuplicateEmailException extends DomainException {
+
+    private final String email;
+
+    public DuplicateEmailException(String email) {
+        super(ErrorCode.EMAIL_ALREADY_EXISTS);
+        this.email = email;
+    }
+
+
+    public String getEmail() {
+        return email;
+    }
+
+
+    // Адрес может быть неизвестен, если занятый email обнаружен только по нарушению ограничения в базе данных
+    @Override
+    public String getMessage() {
+        return email != null ? "User with email = " + email + " already exists" : "User with this email already exists";
+    }
+
+}
@@ -4,10 +4,24 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.NOT_FOUND)
-public class EntityNotFoundException extends RuntimeException {
+public class EntityNotFoundException extends DomainException {
 
-    public EntityNotFoundException(String message) {
-        super(message);
+    private final long id;
+
+    public EntityNotFoundException(long id) {
+        super(ErrorCode.USER_NOT_FOUND);
+        this.id = id;
+    }
+
+
+    public long getId() {
+        return id;
+    }
+
+
+    @Override
+    public String getMessage() {
+        return "User with id = " + id + " not found";
     }
 
 }
@@ -0,0 +1,39 @@
+package com.aston.homework_spring.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+
+public enum ErrorCode {
+
+    // Ожидаемые ошибки предметной области. Тело ответа для каждой ошибки собирается один раз при загрузке класса
+    // и отдается клиенту как готовый массив байтов, без сериализации на каждый запрос.
+
+    USER_NOT_FOUND(HttpStatus.NOT_FOUND, "User not found"),
+    EMAIL_ALREADY_EXISTS(HttpStatus.CONFLICT, "User with this email already exists"),
+    LOOKUP_LIMIT_EXCEEDED(HttpStatus.BAD_REQUEST, "Too many ids requested"),
+    JOB_NOT_FOUND(HttpStatus.NOT_FOUND, "Job not found"),
+    WORKLOAD_SATURATED(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent requests of this kind, retry later"),
+    READ_MODEL_NOT_READY(HttpStatus.SERVICE_UNAVAILABLE, "Read model is loading, retry later");
+
+    private final HttpStatus status;
+    private final byte[] body;
+
+    ErrorCode(HttpStatus status, String message) {
+        this.status = status;
+        this.body = ("{\"status\":" + status.value() + ",\"code\":\"" + name() + "\",\"message\":\"" + message + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+
+    // Возвращается общий массив: вызывающий код не должен его изменять
+    public byte[] getBody() {
+        return body;
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.aston.homework_spring.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class LookupLimitExceededException extends DomainException {
+
+    private final int requested;
+    private final int maximum;
+
+    public LookupLimitExceededException(int requested, int maximum) {
+        super(ErrorCode.LOOKUP_LIMIT_EXCEEDED);
+        this.requested = requested;
+        this.maximum = maximum;
+    }
+
+
+    @Override
+    public String getMessage() {
+        return "Too many ids requested: " + requested + ", maximum is " + maximum;
+    }
+
+}
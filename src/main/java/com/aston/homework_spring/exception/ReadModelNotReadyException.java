@@ -0,0 +1,19 @@
+package com.aston.homework_spring.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ReadModelNotReadyException extends DomainException {
+
+    public ReadModelNotReadyException() {
+        super(ErrorCode.READ_MODEL_NOT_READY);
+    }
+
+
+    @Override
+    public String getMessage() {
+        return "Read model is not loaded yet";
+    }
+
+}
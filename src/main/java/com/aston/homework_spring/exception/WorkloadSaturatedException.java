@@ -0,0 +1,22 @@
+package com.aston.homework_spring.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class WorkloadSaturatedException extends DomainException {
+
+    private final String workload;
+
+    public WorkloadSaturatedException(String workload) {
+        super(ErrorCode.WORKLOAD_SATURATED);
+        this.workload = workload;
+    }
+
+
+    @Override
+    public String getMessage() {
+        return "Workload " + workload + " is saturated";
+    }
+
+}
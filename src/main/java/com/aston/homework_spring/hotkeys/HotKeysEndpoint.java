@@ -0,0 +1,32 @@
+package com.aston.homework_spring.hotkeys;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@Endpoint(id = "hotkeys")
+@ConditionalOnProperty(name = "users.hotkeys.enabled", havingValue = "true", matchIfMissing = true)
+public class HotKeysEndpoint {
+
+    // GET /actuator/hotkeys?limit=N - самые частые ключи обращений по видам (см. UserAccessTracker)
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final UserAccessTracker tracker;
+
+    public HotKeysEndpoint(UserAccessTracker tracker) {
+        this.tracker = tracker;
+    }
+
+
+    @ReadOperation
+    public Map<UserAccessTracker.Keyspace, UserAccessTracker.Report> hotKeys(@Nullable Integer limit) {
+        return tracker.report(limit == null ? DEFAULT_LIMIT : limit);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.aston.homework_spring.hotkeys;
+
+import com.aston.homework_spring.support.HeavyHitters;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "users.hotkeys.enabled", havingValue = "true", matchIfMissing = true)
+public class UserAccessTracker {
+
+    // Самые частые ключи обращений к пользователям для выбора размеров кэшей:
+    // - FIND - идентификаторы в GET /users/{id};
+    // - GET_ALL - страницы (offset, limit) в GET /users/get-all-by-offset-limit;
+    // - EMAIL - адреса, которые проверяются на занятость при создании и изменении пользователей.
+    // Для каждого вида ключей частоты оцениваются CountMinSketch, а top-k ключей хранится в HeavyHitters.
+    // Учет обращения - несколько атомарных инкрементов и поиск в ConcurrentHashMap без блокировок.
+    // Раз в decay-interval счетчики уменьшаются вдвое, поэтому отчет отражает недавнюю нагрузку.
+    // В отличие от HotUserTracker (снимок для прогрева на десятки тысяч идентификаторов), здесь хранится только
+    // небольшой top-k, зато для всех видов ключей и в памяти фиксированного размера.
+
+    public enum Keyspace {
+        FIND, GET_ALL, EMAIL
+    }
+
+    public record Page(int offset, int limit) {
+
+        // Страница однозначно упаковывается в 64 бита, поэтому у разных страниц нет общих ячеек скетча
+        long hash64() {
+            return ((long) offset << 32) | (limit & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public String toString() {
+            return "offset=" + offset + ",limit=" + limit;
+        }
+    }
+
+    public record HotKey(String key, long count, double share) {
+    }
+
+    public record Report(long total, List<HotKey> keys) {
+    }
+
+    private final Map<Keyspace, HeavyHitters<Object>> hitters = new EnumMap<>(Keyspace.class);
+
+    public UserAccessTracker(MeterRegistry meterRegistry,
+                             @Value("${users.hotkeys.top-k:100}") int topK,
+                             @Value("${users.hotkeys.sketch-depth:4}") int depth,
+                             @Value("${users.hotkeys.sketch-width:8192}") int width) {
+        for (Keyspace keyspace : Keyspace.values()) {
+            HeavyHitters<Object> keyspaceHitters = new HeavyHitters<>(topK, depth, width, UserAccessTracker::hash64);
+            hitters.put(keyspace, keyspaceHitters);
+            Gauge.builder("users.hotkeys.top_share", keyspaceHitters, UserAccessTracker::topShare)
+                    .description("Доля обращений, приходящаяся на top-k самых частых ключей")
+                    .tag("keyspace", keyspace.name())
+                    .register(meterRegistry);
+        }
+    }
+
+
+    public void recordFind(long id) {
+        hitters.get(Keyspace.FIND).record(id);
+    }
+
+
+    public void recordPage(int offset, int limit) {
+        hitters.get(Keyspace.GET_ALL).record(new Page(offset, limit));
+    }
+
+
+    public void recordEmail(String email) {
+        hitters.get(Keyspace.EMAIL).record(email);
+    }
+
+
+    public Map<Keyspace, Report> report(int limit) {
+        Map<Keyspace, Report> report = new LinkedHashMap<>();
+        hitters.forEach((keyspace, keyspaceHitters) -> report.put(keyspace, report(keyspace, keyspaceHitters, limit)));
+        return report;
+    }
+
+
+    @Scheduled(initialDelayString = "${users.hotkeys.decay-interval:PT1M}",
+            fixedDelayString = "${users.hotkeys.decay-interval:PT1M}")
+    public void decay() {
+        hitters.values().forEach(HeavyHitters::decay);
+    }
+
+
+    private static Report report(Keyspace keyspace, HeavyHitters<Object> keyspaceHitters, int limit) {
+        long total = keyspaceHitters.total();
+        List<HotKey> keys = keyspaceHitters.top(limit).stream()
+                .map(entry -> new HotKey(
+                        keyspace == Keyspace.EMAIL ? maskEmail((String) entry.key()) : String.valueOf(entry.key()),
+                        entry.count(),
+                        total == 0 ? 0 : Math.min(1.0, (double) entry.count() / total)))
+                .toList();
+        return new Report(total, keys);
+    }
+
+
+    private static double topShare(HeavyHitters<Object> keyspaceHitters) {
+        long total = keyspaceHitters.total();
+        if (total == 0) {
+            return 0;
+        }
+        long top = keyspaceHitters.top(Integer.MAX_VALUE).stream().mapToLong(HeavyHitters.Entry::count).sum();
+        return Math.min(1.0, (double) top / total);
+    }
+
+
+    private static long hash64(Object key) {
+        return key instanceof Page page ? page.hash64() : HeavyHitters.hash64(key);
+    }
+
+
+    // Адреса в отчете маскируются: для выбора размеров кэша достаточно частоты, а не самого адреса
+    static String maskEmail(String email) {
+        int at = email.indexOf('@');
+        if (at <= 1) {
+            return "***" + (at < 0 ? "" : email.substring(at));
+        }
+        return email.charAt(0) + "***" + email.substring(at);
+    }
+
+}
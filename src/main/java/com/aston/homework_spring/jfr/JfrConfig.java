@@ -0,0 +1,25 @@
+package com.aston.homework_spring.jfr;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "users.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class JfrConfig {
+
+    // Источники событий JFR, которые подключаются к инфраструктуре Spring: события UserOperationEvent
+    // записывает CombiningUserService
+
+    // Статический метод: постпроцессор создается раньше остальных бинов конфигурации
+    @Bean
+    public static RepositoryQueryEvents repositoryQueryEvents() {
+        return new RepositoryQueryEvents();
+    }
+
+    @Bean
+    public TransactionEvents transactionEvents() {
+        return new TransactionEvents();
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.aston.homework_spring.jfr;
+
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@WebEndpoint(id = "jfr")
+@ConditionalOnProperty(name = "users.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class JfrEndpoint {
+
+    // GET /actuator/jfr - таблицы задержек по операциям, запросам и транзакциям (JfrEventSummary).
+    // Запись JFR по запросу - отдельный эндпоинт JfrRecordingEndpoint, выключенный по умолчанию.
+
+    private final JfrEventSummary summary;
+
+    public JfrEndpoint(JfrEventSummary summary) {
+        this.summary = summary;
+    }
+
+
+    @ReadOperation
+    public Map<JfrEventSummary.Kind, Map<String, LatencyWindow.Latency>> summary() {
+        return summary.summary();
+    }
+
+}
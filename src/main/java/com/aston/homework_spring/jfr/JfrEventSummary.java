@@ -0,0 +1,83 @@
+package com.aston.homework_spring.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@ConditionalOnProperty(name = "users.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class JfrEventSummary {
+
+    // Таблицы задержек по собственным событиям JFR без внешних инструментов: поток событий (RecordingStream)
+    // читается в фоновом потоке JFR, длительности раскладываются по ключам вида "find" (операции UserService),
+    // "UserRepository.findById" (запросы) и "UserServiceImpl.update" (транзакции).
+    // Поток событий также включает их запись, поэтому события записываются, пока работает приложение.
+    // JFR передает события порциями примерно раз в секунду, поэтому сводка отстает на это время.
+
+    public enum Kind {
+        OPERATIONS, QUERIES, TRANSACTIONS
+    }
+
+    private final Map<Kind, Map<String, LatencyWindow>> windows = new ConcurrentHashMap<>();
+    private final Duration window;
+    private final int samples;
+    private final RecordingStream stream;
+
+    public JfrEventSummary(@Value("${users.jfr.summary.window:PT5M}") Duration window,
+                           @Value("${users.jfr.summary.samples:2048}") int samples) {
+        this.window = window;
+        this.samples = samples;
+        this.stream = new RecordingStream();
+        stream.enable(UserOperationEvent.class);
+        stream.enable(UserQueryEvent.class);
+        stream.enable(UserTransactionEvent.class);
+        stream.setMaxAge(window);
+        stream.onEvent(UserOperationEvent.NAME, event ->
+                add(Kind.OPERATIONS, event.getString("operation"), event));
+        stream.onEvent(UserQueryEvent.NAME, event ->
+                add(Kind.QUERIES, event.getString("repository") + "." + event.getString("method"), event));
+        stream.onEvent(UserTransactionEvent.NAME, event ->
+                add(Kind.TRANSACTIONS, String.valueOf(event.getString("name")), event));
+        stream.startAsync();
+    }
+
+
+    // Задержки за последние window по видам событий и ключам
+    public Map<Kind, Map<String, LatencyWindow.Latency>> summary() {
+        long since = System.currentTimeMillis() - window.toMillis();
+        Map<Kind, Map<String, LatencyWindow.Latency>> summary = new TreeMap<>();
+        for (Kind kind : Kind.values()) {
+            Map<String, LatencyWindow.Latency> latencies = new TreeMap<>();
+            windows.getOrDefault(kind, Map.of()).forEach((key, latencyWindow) -> {
+                LatencyWindow.Latency latency = latencyWindow.summary(since);
+                if (latency != null) {
+                    latencies.put(key, latency);
+                }
+            });
+            summary.put(kind, latencies);
+        }
+        return summary;
+    }
+
+
+    @PreDestroy
+    public void close() {
+        stream.close();
+    }
+
+
+    private void add(Kind kind, String key, RecordedEvent event) {
+        windows.computeIfAbsent(kind, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new LatencyWindow(samples))
+                .add(event.getDuration().toNanos(), event.getEndTime().toEpochMilli());
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.aston.homework_spring.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+@Component
+@Slf4j
+@WebEndpoint(id = "jfrrecording")
+@ConditionalOnExpression("${users.jfr.enabled:true} and ${users.jfr.recording.enabled:false}")
+public class JfrRecordingEndpoint {
+
+    // Запись JFR по запросу. Выключена по умолчанию и не входит в management.endpoints.web.exposure.include:
+    // в проекте нет аутентификации, а запись раскрывает детали процесса, поэтому включается явно и только там,
+    // где actuator закрыт от внешней сети.
+    // POST /actuator/jfrrecording?duration=PT30S - запускает запись (не длиннее max-duration) и сразу возвращает 202
+    // с идентификатором: запись останавливает сам JFR по истечении duration, поток запроса ее не ждет.
+    // GET /actuator/jfrrecording - состояние последней записи, GET /actuator/jfrrecording/{id} - файл .jfr
+    // (202, пока запись идет). Файл хранится до следующей записи или остановки приложения.
+    // Одновременно выполняется только одна запись, повторный запуск во время записи получает 429.
+    // События с системными свойствами, переменными окружения и аргументами JVM не пишутся: в них бывают пароли.
+
+    private static final String[] SENSITIVE_EVENTS = {
+            "jdk.InitialSystemProperty", "jdk.InitialEnvironmentVariable", "jdk.InitialSecurityProperty",
+            "jdk.JVMInformation"
+    };
+
+    public record Status(String id, RecordingState state, Instant startedAt, Duration duration) {
+    }
+
+    private record OnDemand(String id, Recording recording, Path file, Instant startedAt, Duration duration) {
+
+        Status status() {
+            return new Status(id, recording.getState(), startedAt, duration);
+        }
+    }
+
+    private final String settings;
+    private final Duration defaultDuration;
+    private final Duration maxDuration;
+    private OnDemand current;
+
+    public JfrRecordingEndpoint(@Value("${users.jfr.recording.settings:default}") String settings,
+                                @Value("${users.jfr.recording.default-duration:PT30S}") Duration defaultDuration,
+                                @Value("${users.jfr.recording.max-duration:PT5M}") Duration maxDuration) {
+        this.settings = settings;
+        this.defaultDuration = defaultDuration;
+        this.maxDuration = maxDuration;
+    }
+
+
+    @WriteOperation
+    public synchronized WebEndpointResponse<Status> start(@Nullable Duration duration)
+            throws IOException, ParseException {
+        Duration length = duration == null ? defaultDuration : duration;
+        if (length.isNegative() || length.isZero() || length.compareTo(maxDuration) > 0) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+        if (current != null && isRunning(current.recording())) {
+            return new WebEndpointResponse<>(current.status(), WebEndpointResponse.STATUS_TOO_MANY_REQUESTS);
+        }
+        discard();
+        Path file = Files.createTempFile("users-", ".jfr");
+        Recording recording = new Recording(Configuration.getConfiguration(settings));
+        for (String event : SENSITIVE_EVENTS) {
+            recording.disable(event);
+        }
+        recording.setName("users-on-demand");
+        recording.setDuration(length);
+        recording.start();
+        current = new OnDemand(UUID.randomUUID().toString(), recording, file, Instant.now(), length);
+        log.info("JFR recording {} started for {}", current.id(), length);
+        return new WebEndpointResponse<>(current.status(), 202);
+    }
+
+
+    @ReadOperation
+    public synchronized WebEndpointResponse<Status> status() {
+        if (current == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        return new WebEndpointResponse<>(current.status(), WebEndpointResponse.STATUS_OK);
+    }
+
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> download(@Selector String id) throws IOException {
+        if (current == null || !current.id().equals(id)) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (isRunning(current.recording())) {
+            return new WebEndpointResponse<>(202);
+        }
+        current.recording().dump(current.file());
+        return new WebEndpointResponse<>(new FileSystemResource(current.file()), WebEndpointResponse.STATUS_OK);
+    }
+
+
+    @PreDestroy
+    public synchronized void discard() {
+        if (current == null) {
+            return;
+        }
+        current.recording().close();
+        try {
+            Files.deleteIfExists(current.file());
+        } catch (IOException e) {
+            log.warn("Failed to delete JFR recording file {}", current.file(), e);
+        }
+        current = null;
+    }
+
+
+    private static boolean isRunning(Recording recording) {
+        return recording.getState() == RecordingState.NEW || recording.getState() == RecordingState.DELAYED
+                || recording.getState() == RecordingState.RUNNING;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.aston.homework_spring.jfr;
+
+import java.util.Arrays;
+
+class LatencyWindow {
+
+    // Длительности последних capacity событий одного вида с моментами их окончания (кольцевой буфер).
+    // Сводка строится только по событиям, завершившимся не раньше заданного момента.
+
+    record Latency(int count, double meanMs, double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+    }
+
+    private final long[] durations;
+    private final long[] endTimes;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        this.durations = new long[capacity];
+        this.endTimes = new long[capacity];
+    }
+
+
+    synchronized void add(long durationNanos, long endTimeMillis) {
+        durations[next] = durationNanos;
+        endTimes[next] = endTimeMillis;
+        next = (next + 1) % durations.length;
+        size = Math.min(size + 1, durations.length);
+    }
+
+
+    // null, если после since событий не было
+    synchronized Latency summary(long sinceMillis) {
+        long[] recent = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (endTimes[i] >= sinceMillis) {
+                recent[count++] = durations[i];
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        Arrays.sort(recent, 0, count);
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += recent[i];
+        }
+        return new Latency(count, millis(sum / count), millis(percentile(recent, count, 0.50)),
+                millis(percentile(recent, count, 0.95)), millis(percentile(recent, count, 0.99)),
+                millis(recent[count - 1]));
+    }
+
+
+    private static long percentile(long[] sorted, int count, double quantile) {
+        return sorted[Math.min(count - 1, (int) Math.ceil(quantile * count) - 1)];
+    }
+
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.aston.homework_spring.jfr;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public class RepositoryQueryEvents implements BeanPostProcessor {
+
+    // Добавляет в прокси каждого репозитория Spring Data перехватчик, который записывает UserQueryEvent.
+    // Перехватчик добавляется до создания репозитория через RepositoryFactoryCustomizer, поэтому охватывает
+    // все методы: производные, @Query и унаследованные от JpaRepository.
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                    (proxyFactory, information) -> proxyFactory.addAdvice(
+                            new Interceptor(information.getRepositoryInterface().getSimpleName()))));
+        }
+        return bean;
+    }
+
+
+    private record Interceptor(String repository) implements MethodInterceptor {
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            UserQueryEvent event = new UserQueryEvent();
+            event.begin();
+            Object result = null;
+            boolean failed = true;
+            try {
+                result = invocation.proceed();
+                failed = false;
+                return result;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    Object[] arguments = invocation.getArguments();
+                    event.repository = repository;
+                    event.method = invocation.getMethod().getName();
+                    event.userId = arguments.length > 0 && arguments[0] instanceof Long id ? id : -1;
+                    event.rows = invocation.getMethod().isAnnotationPresent(Modifying.class)
+                            && result instanceof Number affected ? affected.intValue() : rows(result);
+                    event.failed = failed;
+                    event.commit();
+                }
+            }
+        }
+
+
+        private static int rows(Object result) {
+            return switch (result) {
+                case null -> 0;
+                case Collection<?> collection -> collection.size();
+                case Optional<?> optional -> optional.isPresent() ? 1 : 0;
+                case Boolean exists -> exists ? 1 : 0;
+                default -> 1;
+            };
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.aston.homework_spring.jfr;
+
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+public class TransactionEvents implements TransactionExecutionListener {
+
+    // Границы транзакций в JFR: событие начинается перед началом новой транзакции и записывается после фиксации
+    // или отката. Spring Boot подключает бины TransactionExecutionListener к своему менеджеру транзакций
+    // (JpaTransactionManager). Транзакции шардов (UserShards) создаются отдельными менеджерами и не учитываются.
+    // Приостановленные транзакции (REQUIRES_NEW) хранятся в стеке потока.
+
+    private final ThreadLocal<Deque<UserTransactionEvent>> active = ThreadLocal.withInitial(ArrayDeque::new);
+
+
+    @Override
+    public void beforeBegin(TransactionExecution transaction) {
+        UserTransactionEvent event = new UserTransactionEvent();
+        event.begin();
+        active.get().push(event);
+    }
+
+
+    @Override
+    public void afterBegin(TransactionExecution transaction, @Nullable Throwable beginFailure) {
+        if (beginFailure != null) {
+            finish(transaction, "begin-failed");
+        }
+    }
+
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, @Nullable Throwable commitFailure) {
+        finish(transaction, commitFailure == null ? "commit" : "commit-failed");
+    }
+
+
+    @Override
+    public void afterRollback(TransactionExecution transaction, @Nullable Throwable rollbackFailure) {
+        finish(transaction, rollbackFailure == null ? "rollback" : "rollback-failed");
+    }
+
+
+    private void finish(TransactionExecution transaction, String outcome) {
+        UserTransactionEvent event = active.get().poll();
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.name = transaction.getTransactionName();
+            event.readOnly = transaction.isReadOnly();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+}
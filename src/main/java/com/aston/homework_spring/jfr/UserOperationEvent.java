@@ -0,0 +1,70 @@
+package com.aston.homework_spring.jfr;
+
+import com.aston.homework_spring.model.User;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+@Name(UserOperationEvent.NAME)
+@Label("User Service Operation")
+@Category({"Homework Spring", "Users"})
+@Description("Вызов операции UserService")
+@StackTrace(false)
+public class UserOperationEvent extends Event {
+
+    // Событие JFR на каждый вызов CombiningUserService: операция, идентификатор пользователя (или -1),
+    // количество возвращенных пользователей и признак ошибки. Длительность - время вызова хранилища.
+
+    public static final String NAME = "homework_spring.UserOperation";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("User Id")
+    public long userId;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Failed")
+    public boolean failed;
+
+
+    public static <T> T record(String operation, long userId, Supplier<T> call) {
+        UserOperationEvent event = new UserOperationEvent();
+        event.begin();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.userId = userId;
+                event.rows = rows(result);
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+
+    static int rows(Object result) {
+        return switch (result) {
+            case null -> 0;
+            case Collection<?> collection -> collection.size();
+            case User.Lookup lookup -> lookup.getUsers().size();
+            default -> 1;
+        };
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.aston.homework_spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(UserQueryEvent.NAME)
+@Label("User Repository Query")
+@Category({"Homework Spring", "Repository"})
+@Description("Вызов метода репозитория Spring Data")
+@StackTrace(false)
+public class UserQueryEvent extends Event {
+
+    // Событие JFR на каждый вызов метода репозитория (см. RepositoryQueryEvents): метод, идентификатор
+    // пользователя из первого аргумента (или -1) и количество строк - размер результата, а для @Modifying -
+    // количество измененных строк.
+
+    public static final String NAME = "homework_spring.UserQuery";
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Method")
+    public String method;
+
+    @Label("User Id")
+    public long userId;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Failed")
+    public boolean failed;
+
+}
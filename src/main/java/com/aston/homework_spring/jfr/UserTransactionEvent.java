@@ -0,0 +1,30 @@
+package com.aston.homework_spring.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(UserTransactionEvent.NAME)
+@Label("Transaction")
+@Category({"Homework Spring", "Transactions"})
+@Description("Транзакция Spring от начала до фиксации или отката")
+@StackTrace(false)
+public class UserTransactionEvent extends Event {
+
+    // Событие JFR на каждую новую транзакцию менеджера транзакций Spring Boot (см. TransactionEvents)
+
+    public static final String NAME = "homework_spring.Transaction";
+
+    @Label("Name")
+    public String name;
+
+    @Label("Read Only")
+    public boolean readOnly;
+
+    @Label("Outcome")
+    public String outcome;
+
+}
@@ -0,0 +1,196 @@
+package com.aston.homework_spring.job;
+
+import com.aston.homework_spring.bulkhead.Workload;
+import com.aston.homework_spring.repository.UserRepository;
+import com.aston.homework_spring.sharding.UserShard;
+import com.aston.homework_spring.sharding.UserShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@Slf4j
+@ConditionalOnExpression("${users.purge.enabled:true} and '${users.backend:jpa}' != 'mmap'")
+public class UserPurgeJob {
+
+    // Задача физически удаляет мягко удаленных пользователей небольшими порциями.
+    // Между порциями делается пауза, а количество порций за один запуск ограничено, поэтому задача не создает
+    // длительных блокировок и всплесков нагрузки на WAL. Расписание по умолчанию - ночные часы.
+    // Тем же способом удаляются записи журнала изменений user_changes старше change-log-retention.
+    // С хранилищем sharded мягко удаленные строки лежат на шардах: порции удаляются на каждом шарде по очереди,
+    // max-batches-per-run ограничивает количество порций на один шард. Журнал изменений остается в основной базе.
+
+    private static final String PURGE = "delete from users where id in (" +
+            "select u.id from users u where u.deleted_at is not null and u.deleted_at < ? " +
+            "order by u.deleted_at limit ?)";
+
+    private static final String SOFT_DELETED_COUNT = "select count(*) from users u where u.deleted_at is not null";
+
+    // Хранилище мягко удаленных пользователей: основная база данных или один шард
+    private interface SoftDeletedUsers {
+
+        int purge(LocalDateTime before, int batchSize);
+
+        long count();
+    }
+
+    private final UserRepository userRepository;
+    private final List<SoftDeletedUsers> targets;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration pauseBetweenBatches;
+    private final Duration retention;
+    private final Duration changeLogRetention;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final Counter purgedRows;
+    private final Timer batchTimer;
+
+    public UserPurgeJob(UserRepository userRepository,
+                        ObjectProvider<UserShards> shards,
+                        MeterRegistry meterRegistry,
+                        @Value("${users.purge.batch-size:500}") int batchSize,
+                        @Value("${users.purge.max-batches-per-run:200}") int maxBatchesPerRun,
+                        @Value("${users.purge.pause-between-batches:PT0.2S}") Duration pauseBetweenBatches,
+                        @Value("${users.purge.retention:PT24H}") Duration retention,
+                        @Value("${users.purge.change-log-retention:PT24H}") Duration changeLogRetention) {
+        this.userRepository = userRepository;
+        UserShards userShards = shards.getIfAvailable();
+        this.targets = userShards == null
+                ? List.of(primary(userRepository))
+                : userShards.all().stream().map(UserPurgeJob::shard).toList();
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pauseBetweenBatches = pauseBetweenBatches;
+        this.retention = retention;
+        this.changeLogRetention = changeLogRetention;
+
+        Gauge.builder("users.purge.backlog", backlog, AtomicLong::get)
+                .description("Количество мягко удаленных пользователей, ожидающих физического удаления")
+                .register(meterRegistry);
+        this.purgedRows = Counter.builder("users.purge.rows")
+                .description("Количество физически удаленных строк")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("users.purge.batch")
+                .description("Время удаления одной порции строк")
+                .register(meterRegistry);
+    }
+
+
+    @Scheduled(cron = "${users.purge.cron:0 */10 1-5 * * *}")
+    public void purge() {
+        Workload.BATCH.run(this::purgeBatches);
+    }
+
+
+    private void purgeBatches() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        long total = 0;
+        long remaining = 0;
+
+        for (SoftDeletedUsers target : targets) {
+            // Прерванная пауза восстанавливает флаг прерывания: остальные шарды ждут следующего запуска
+            if (!Thread.currentThread().isInterrupted()) {
+                total += purgeBatches(target, before);
+            }
+            remaining += target.count();
+        }
+
+        backlog.set(remaining);
+        if (total > 0) {
+            log.info("Purged {} soft-deleted users, backlog: {}", total, remaining);
+        }
+        purgeChangeLog();
+    }
+
+
+    private int purgeBatches(SoftDeletedUsers target, LocalDateTime before) {
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int deleted = batchTimer.record(() -> target.purge(before, batchSize));
+            if (deleted == 0) {
+                break;
+            }
+            total += deleted;
+            purgedRows.increment(deleted);
+
+            if (deleted < batchSize || !pause()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+
+    private void purgeChangeLog() {
+        LocalDateTime before = LocalDateTime.now().minus(changeLogRetention);
+        long total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int deleted = userRepository.purgeUserChanges(before, batchSize);
+            total += deleted;
+            if (deleted < batchSize || !pause()) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Purged {} user change log records", total);
+        }
+    }
+
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseBetweenBatches);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    private static SoftDeletedUsers primary(UserRepository userRepository) {
+        return new SoftDeletedUsers() {
+            @Override
+            public int purge(LocalDateTime before, int batchSize) {
+                Integer deleted = userRepository.purgeSoftDeleted(before, batchSize);
+                return deleted == null ? 0 : deleted;
+            }
+
+            @Override
+            public long count() {
+                return userRepository.getSoftDeletedCount();
+            }
+        };
+    }
+
+
+    // Каждая порция - отдельный оператор в режиме autocommit, то есть собственная короткая транзакция
+    private static SoftDeletedUsers shard(UserShard shard) {
+        return new SoftDeletedUsers() {
+            @Override
+            public int purge(LocalDateTime before, int batchSize) {
+                return shard.jdbcTemplate().update(PURGE, before, batchSize);
+            }
+
+            @Override
+            public long count() {
+                Long count = shard.jdbcTemplate().queryForObject(SOFT_DELETED_COUNT, Long.class);
+                return count == null ? 0 : count;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.aston.homework_spring.mapper;
+
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserWriteView;
+import com.aston.homework_spring.timing.RequestTiming;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.util.List;
+
+public abstract class TimedUserMapper implements UserMapper {
+
+    // Декоратор MapStruct (@DecoratedWith): записывает время преобразований в этап MAPPING запроса.
+    // MapStruct создает основной бин UserMapperImpl на основе этого класса и бин-делегат с квалификатором delegate.
+
+    @Autowired
+    @Qualifier("delegate")
+    private UserMapper delegate;
+
+
+    @Override
+    public User.Out toDTO(User user) {
+        return RequestTiming.time(RequestTiming.Phase.MAPPING, () -> delegate.toDTO(user));
+    }
+
+
+    @Override
+    public User.Out toDTO(UserWriteView row) {
+        return RequestTiming.time(RequestTiming.Phase.MAPPING, () -> delegate.toDTO(row));
+    }
+
+
+    @Override
+    public void updateUserFromUserIn(User.In dto, User user) {
+        RequestTiming.time(RequestTiming.Phase.MAPPING, () -> delegate.updateUserFromUserIn(dto, user));
+    }
+
+
+    @Override
+    public void patchUserFromUserPatch(User.Patch dto, User user) {
+        RequestTiming.time(RequestTiming.Phase.MAPPING, () -> delegate.patchUserFromUserPatch(dto, user));
+    }
+
+
+    @Override
+    public List<User.Out> toDTO(List<User> users) {
+        return RequestTiming.time(RequestTiming.Phase.MAPPING, () -> delegate.toDTO(users));
+    }
+
+}
@@ -1,21 +1,36 @@
 package com.aston.homework_spring.mapper;
 
 import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserWriteView;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.DecoratedWith;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
+import org.mapstruct.NullValuePropertyMappingStrategy;
 
 import java.util.List;
 
 @Mapper(componentModel = "spring")
+@DecoratedWith(TimedUserMapper.class)
 public interface UserMapper {
 
     User.Out toDTO(User user);
 
+    User.Out toDTO(UserWriteView row);
+
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "created_at", ignore = true)
+    @Mapping(target = "deleted_at", ignore = true)
     void updateUserFromUserIn(User.In dto, @MappingTarget User user);
 
+    // Переносит в сущность только присутствующие в запросе поля, null-поля пропускаются
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "created_at", ignore = true)
+    @Mapping(target = "deleted_at", ignore = true)
+    void patchUserFromUserPatch(User.Patch dto, @MappingTarget User user);
+
     List<User.Out> toDTO(List<User> users);
 
 }
@@ -1,19 +1,39 @@
 package com.aston.homework_spring.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLRestriction;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @Entity
 @Table(name = "users")
+// Кэш второго уровня (при users.l2-cache.enabled=true), согласованность между экземплярами - UserSecondLevelCache
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@DynamicUpdate
+@SQLDelete(sql = "update users set deleted_at = now() where id = ? and deleted_at is null")
+@SQLRestriction("deleted_at is null")
 @Getter
 @Setter
 @ToString
 public class User {
 
+    // Допустимый возраст: проверяется во входящих DTO и в массовом сдвиге возраста (UserRepository.shiftAges)
+    public static final int MIN_AGE = 18;
+    public static final int MAX_AGE = 65;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -31,6 +51,10 @@ public class User {
     @Column(name = "age", nullable = false)
     private Integer age;
 
+    // Мягкое удаление: строка остается в таблице, пока ее физически не удалит UserPurgeJob
+    @Column(name = "deleted_at")
+    private LocalDateTime deleted_at;
+
 
     @Data
     @Builder
@@ -48,8 +72,32 @@ public class User {
         @NotBlank(message = "Email не может быть пустым или состоять только из пробелов")
         String email;
 
-        @Min(value = 18, message = "Минимальный возраст составляет 18 лет")
-        @Max(value = 65, message = "Максимальный возраст составляет 65 лет")
+        @Min(value = MIN_AGE, message = "Минимальный возраст составляет 18 лет")
+        @Max(value = MAX_AGE, message = "Максимальный возраст составляет 65 лет")
+        Integer age;
+
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Patch {
+
+        // Входящее DTO для частичного обновления (семантика JSON Merge Patch, RFC 7396).
+        // Отсутствующее поле (или null) означает "не изменять": все колонки таблицы обязательные, поэтому
+        // удалять значение через null нельзя. Ограничения совпадают с User.In, но допускают отсутствие поля.
+
+        @Size(min = 3, max = 25, message = "Имя должно состоять от 3 до 25 символов")
+        @Pattern(regexp = ".*\\S.*", message = "Имя не может быть пустым или состоять только из пробелов")
+        String name;
+
+        @Email(message = "Email должен быть валидным адресом электронной почты")
+        @Pattern(regexp = ".*\\S.*", message = "Email не может быть пустым или состоять только из пробелов")
+        String email;
+
+        @Min(value = MIN_AGE, message = "Минимальный возраст составляет 18 лет")
+        @Max(value = MAX_AGE, message = "Максимальный возраст составляет 65 лет")
         Integer age;
 
     }
@@ -69,4 +117,148 @@ public class User {
 
     }
 
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Lookup {
+
+        // Выходящее DTO для пакетного поиска пользователей по списку идентификаторов.
+        // Найденные пользователи идут в порядке запроса, отсутствующие идентификаторы перечислены отдельно.
+        List<Out> users;
+        List<Long> missing;
+
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Statistics {
+
+        // Выходящее DTO со статистикой пользователей: количество по возрастным группам и регистрации по дням
+        Map<String, Long> ageBuckets;
+        Map<LocalDate, Long> signupsPerDay;
+        LocalDateTime reconciled_at;
+
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BulkDelete {
+
+        // Входящее DTO массового удаления: либо список идентификаторов, либо фильтр (диапазон возраста и/или дата
+        // создания). Границы фильтра включаются, created_before - строго раньше указанного момента.
+        // Пустой запрос не допускается, чтобы случайный вызов не удалил всех пользователей.
+
+        @Size(max = 100000, message = "Можно передать не больше 100000 идентификаторов")
+        List<Long> ids;
+
+        Integer minAge;
+
+        Integer maxAge;
+
+        LocalDateTime created_before;
+
+        @JsonIgnore
+        @AssertTrue(message = "Нужно указать либо ids, либо хотя бы одно условие фильтра, но не одновременно")
+        public boolean isCriteriaValid() {
+            boolean byIds = ids != null && !ids.isEmpty();
+            boolean byFilter = minAge != null || maxAge != null || created_before != null;
+            return byIds != byFilter;
+        }
+
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BulkUpdate {
+
+        // Входящее DTO массового изменения: операция и необязательный фильтр с теми же правилами, что в BulkDelete.
+        // Без фильтра операция применяется ко всем пользователям.
+
+        public enum Operation {
+            // Email в нижнем регистре без пробелов по краям
+            NORMALIZE_EMAIL,
+            // Возраст увеличивается (уменьшается) на ageDelta; пользователи, чей возраст вышел бы за пределы
+            // MIN_AGE-MAX_AGE, пропускаются
+            SHIFT_AGE
+        }
+
+        @NotNull(message = "Нужно указать операцию")
+        Operation operation;
+
+        @Min(value = -100, message = "Изменение возраста не может быть меньше -100")
+        @Max(value = 100, message = "Изменение возраста не может быть больше 100")
+        Integer ageDelta;
+
+        Integer minAge;
+
+        Integer maxAge;
+
+        LocalDateTime created_before;
+
+        @JsonIgnore
+        @AssertTrue(message = "Для SHIFT_AGE нужно указать ненулевой ageDelta")
+        public boolean isAgeDeltaValid() {
+            return operation != Operation.SHIFT_AGE || ageDelta != null && ageDelta != 0;
+        }
+
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BulkJob {
+
+        // Выходящее DTO состояния фоновой массовой операции.
+        // total - оценка количества строк при запуске, processed - обработано, affected - изменено (удалено).
+        // rows_per_second и eta_seconds рассчитываются по обработанным строкам с момента запуска.
+        String id;
+        String type;
+        String state;
+        Long total;
+        long processed;
+        long affected;
+        int chunks;
+        Double rows_per_second;
+        Long eta_seconds;
+        LocalDateTime started_at;
+        LocalDateTime finished_at;
+        String error;
+
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Columns {
+
+        // Выходящее DTO для страницы пользователей в колоночном виде: параллельные массивы по каждому полю.
+        // Имена полей передаются один раз на страницу, а не для каждого пользователя.
+        List<Long> id;
+        List<String> name;
+        List<String> email;
+        List<LocalDateTime> created_at;
+        List<Integer> age;
+
+        public static Columns of(List<Out> users) {
+            Columns columns = new Columns(new ArrayList<>(users.size()), new ArrayList<>(users.size()),
+                    new ArrayList<>(users.size()), new ArrayList<>(users.size()), new ArrayList<>(users.size()));
+            for (Out user : users) {
+                columns.id.add(user.getId());
+                columns.name.add(user.getName());
+                columns.email.add(user.getEmail());
+                columns.created_at.add(user.getCreated_at());
+                columns.age.add(user.getAge());
+            }
+            return columns;
+        }
+
+    }
+
 }
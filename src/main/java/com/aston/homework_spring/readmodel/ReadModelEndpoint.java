@@ -0,0 +1,33 @@
+package com.aston.homework_spring.readmodel;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+@Component
+@Endpoint(id = "readmodel")
+@ConditionalOnExpression("${users.read-model.enabled:false} and '${users.backend:jpa}' == 'jpa'")
+public class ReadModelEndpoint {
+
+    // GET /actuator/readmodel - состояние читающей модели: память по колонкам и на миллион пользователей,
+    // отставание от базы данных и время последней синхронизации
+
+    public record Report(boolean ready, double lagSeconds, LocalDateTime lastSync, UserColumns.Footprint footprint) {
+    }
+
+    private final UserReadModel readModel;
+
+    public ReadModelEndpoint(UserReadModel readModel) {
+        this.readModel = readModel;
+    }
+
+
+    @ReadOperation
+    public Report report() {
+        return new Report(readModel.isReady(), readModel.lagSeconds(), readModel.lastSync(), readModel.footprint());
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.aston.homework_spring.readmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+final class SortedIndex {
+
+    // Вторичный индекс читающей модели: пары (ключ, id) в двух параллельных массивах, упорядоченные по ключу,
+    // а при равных ключах - по id. Изменения накапливаются в Changes и применяются одним слиянием за O(n + k),
+    // поэтому пачка из k изменений стоит одного прохода по индексу, а не k сдвигов массивов.
+
+    record Entry(long key, long id) {
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::key).thenComparingLong(Entry::id);
+
+    static final class Changes {
+
+        private final List<Entry> removed = new ArrayList<>();
+        private final List<Entry> added = new ArrayList<>();
+
+        void remove(long key, long id) {
+            removed.add(new Entry(key, id));
+        }
+
+        void add(long key, long id) {
+            added.add(new Entry(key, id));
+        }
+
+        boolean isEmpty() {
+            return removed.isEmpty() && added.isEmpty();
+        }
+
+    }
+
+    private long[] keys = new long[0];
+    private long[] ids = new long[0];
+    private int size;
+
+
+    void update(Changes changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Entry> removed = new ArrayList<>(changes.removed);
+        List<Entry> added = new ArrayList<>(changes.added);
+        removed.sort(ORDER);
+        added.sort(ORDER);
+
+        // Частый случай для индекса по дате создания: новые пользователи добавляются в конец
+        if (removed.isEmpty() && (size == 0 || compare(added.getFirst(), keys[size - 1], ids[size - 1]) > 0)) {
+            if (size + added.size() > keys.length) {
+                int capacity = Math.max(16, (size + added.size()) + ((size + added.size()) >> 1));
+                keys = Arrays.copyOf(keys, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            for (Entry entry : added) {
+                keys[size] = entry.key();
+                ids[size++] = entry.id();
+            }
+            return;
+        }
+
+        int capacity = Math.max(16, size - removed.size() + added.size());
+        long[] newKeys = new long[capacity + (capacity >> 3)];
+        long[] newIds = new long[newKeys.length];
+        int count = 0;
+        int r = 0;
+        int a = 0;
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            long id = ids[i];
+            while (r < removed.size() && compare(removed.get(r), key, id) < 0) {
+                r++;
+            }
+            if (r < removed.size() && compare(removed.get(r), key, id) == 0) {
+                r++;
+                continue;
+            }
+            while (a < added.size() && compare(added.get(a), key, id) < 0) {
+                newKeys[count] = added.get(a).key();
+                newIds[count++] = added.get(a++).id();
+            }
+            newKeys[count] = key;
+            newIds[count++] = id;
+        }
+        while (a < added.size()) {
+            newKeys[count] = added.get(a).key();
+            newIds[count++] = added.get(a++).id();
+        }
+        keys = newKeys;
+        ids = newIds;
+        size = count;
+    }
+
+
+    // Первая позиция с ключом не меньше key
+    int lowerBound(long key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+
+    // Первая позиция с ключом больше key
+    int upperBound(long key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+
+    long id(int position) {
+        return ids[position];
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    long allocatedBytes() {
+        return (long) keys.length * Long.BYTES + (long) ids.length * Long.BYTES;
+    }
+
+
+    private static int compare(Entry entry, long key, long id) {
+        int byKey = Long.compare(entry.key(), key);
+        return byKey != 0 ? byKey : Long.compare(entry.id(), id);
+    }
+
+}
@@ -0,0 +1,492 @@
+package com.aston.homework_spring.readmodel;
+
+import com.aston.homework_spring.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class UserColumns {
+
+    // Все неудаленные пользователи в колоночном виде, без объекта на пользователя:
+    // - id, age и created_at (микросекунды от эпохи) - массивы примитивов, строки упорядочены по id, поэтому
+    //   поиск по id - двоичный поиск, а страница getAll - непрерывный участок массивов;
+    // - name и email - байты UTF-8 подряд в общем массиве text: у строки смещение и две длины. Измененные
+    //   значения дописываются в конец;
+    // - вторичные индексы по возрасту и дате создания (SortedIndex) для фильтров и сортировки.
+    // Изменения применяются пачками (apply) под блокировкой записи и не выделяют массивы заново: удаленная строка
+    // только помечается в deleted (надгробие) и пропускается при чтении, вставка в конец дописывается, а вставка
+    // с меньшим id сдвигает на месте лишь строки с большими id. Надгробия и мертвые байты текста убирает compact
+    // вне блокировки записи, когда их накопилось больше порога.
+    // User.Out создается только для возвращаемых строк.
+
+    public enum Sort {
+        ID, AGE, CREATED_AT
+    }
+
+    // Границы возраста включаются, createdFrom включается, createdTo - нет. null - без ограничения.
+    public record Filter(Integer minAge, Integer maxAge, LocalDateTime createdFrom, LocalDateTime createdTo) {
+
+        public static final Filter NONE = new Filter(null, null, null, null);
+
+    }
+
+    // Память по колонкам (выделенные массивы) и оценка на миллион пользователей
+    public record Footprint(int users, Map<String, Long> columnBytes, long totalBytes, long bytesPerUser,
+                            long bytesPerMillionUsers) {
+    }
+
+    private static final long NO_CREATED = Long.MIN_VALUE;
+    private static final int MAX_TEXT_LENGTH = 0xFFFF;
+    // Пороги уплотнения: надгробий больше четверти строк, мертвых байтов текста больше половины
+    private static final int COMPACT_MIN_TOMBSTONES = 1024;
+    private static final long COMPACT_MIN_DEAD_TEXT = 1024 * 1024;
+
+    private record Compacted(int size, long[] ids, int[] ages, long[] created, int[] textOffsets,
+                             short[] nameLengths, short[] emailLengths, byte[] text, int textSize) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+    private long[] ids = new long[1024];
+    private int[] ages = new int[1024];
+    private long[] created = new long[1024];
+    private int[] textOffsets = new int[1024];
+    private short[] nameLengths = new short[1024];
+    private short[] emailLengths = new short[1024];
+    private byte[] text = new byte[64 * 1024];
+    private int textSize;
+    private long deadTextBytes;
+    private final BitSet deleted = new BitSet();
+    private int tombstones;
+    // Номер изменения: compact подменяет массивы, только если после их копирования ничего не применялось
+    private long version;
+    private final SortedIndex byAge = new SortedIndex();
+    private final SortedIndex byCreated = new SortedIndex();
+
+
+    // Идентификатор должен встречаться в пачке не больше одного раза: либо в upserts, либо в removedIds
+    public void apply(Collection<User.Out> upserts, Collection<Long> removedIds) {
+        lock.writeLock().lock();
+        try {
+            version++;
+            SortedIndex.Changes ageChanges = new SortedIndex.Changes();
+            SortedIndex.Changes createdChanges = new SortedIndex.Changes();
+
+            for (Long id : removedIds) {
+                int slot = liveSlotOf(id);
+                if (slot >= 0) {
+                    deleted.set(slot);
+                    tombstones++;
+                    ageChanges.remove(ages[slot], id);
+                    createdChanges.remove(created[slot], id);
+                    deadTextBytes += textLength(slot);
+                }
+            }
+
+            // Новые пользователи по возрастанию id; при повторе id остается последняя версия
+            TreeMap<Long, User.Out> inserts = new TreeMap<>();
+            for (User.Out user : upserts) {
+                int slot = slotOf(user.getId());
+                if (slot < 0) {
+                    inserts.put(user.getId(), user);
+                    continue;
+                }
+                long id = user.getId();
+                int age = user.getAge();
+                long createdAt = micros(user.getCreated_at());
+                if (deleted.get(slot)) {
+                    // Строка еще не убрана уплотнением: надгробие снимается, текст прежней версии уже мертвый
+                    deleted.clear(slot);
+                    tombstones--;
+                    writeRow(slot, user);
+                    ageChanges.add(age, id);
+                    createdChanges.add(createdAt, id);
+                    continue;
+                }
+                if (ages[slot] != age) {
+                    ageChanges.remove(ages[slot], id);
+                    ageChanges.add(age, id);
+                    ages[slot] = age;
+                }
+                if (created[slot] != createdAt) {
+                    createdChanges.remove(created[slot], id);
+                    createdChanges.add(createdAt, id);
+                    created[slot] = createdAt;
+                }
+                byte[] name = utf8(user.getName());
+                byte[] email = utf8(user.getEmail());
+                if (!textEquals(slot, name, email)) {
+                    deadTextBytes += textLength(slot);
+                    writeText(slot, name, email);
+                }
+            }
+
+            if (!inserts.isEmpty()) {
+                for (User.Out user : inserts.values()) {
+                    ageChanges.add(user.getAge(), user.getId());
+                    createdChanges.add(micros(user.getCreated_at()), user.getId());
+                }
+                insert(new ArrayList<>(inserts.values()));
+            }
+            byAge.update(ageChanges);
+            byCreated.update(createdChanges);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // Уплотнение, если надгробий или мертвых байтов текста больше порога. Живые строки копируются в новые массивы
+    // под блокировкой чтения, поэтому чтение его не ждет; массивы подменяются под блокировкой записи, если за время
+    // копирования не применялось изменений, иначе уплотнение повторит следующий вызов
+    public boolean compact() {
+        Compacted compacted;
+        long copiedVersion;
+        lock.readLock().lock();
+        try {
+            if (!needsCompaction()) {
+                return false;
+            }
+            copiedVersion = version;
+            compacted = copyLive();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (version != copiedVersion) {
+                return false;
+            }
+            version++;
+            size = compacted.size();
+            ids = compacted.ids();
+            ages = compacted.ages();
+            created = compacted.created();
+            textOffsets = compacted.textOffsets();
+            nameLengths = compacted.nameLengths();
+            emailLengths = compacted.emailLengths();
+            text = compacted.text();
+            textSize = compacted.textSize();
+            deadTextBytes = 0;
+            deleted.clear();
+            tombstones = 0;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public User.Out find(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = liveSlotOf(id);
+            return slot >= 0 ? row(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // Найденные пользователи в порядке ids; отсутствующие пропускаются
+    public List<User.Out> findAll(Collection<Long> ids) {
+        lock.readLock().lock();
+        try {
+            List<User.Out> users = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                int slot = liveSlotOf(id);
+                if (slot >= 0) {
+                    users.add(row(slot));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public List<User.Out> page(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            // Позиция строки с номером offset среди живых: каждое надгробие до нее сдвигает ее на одну
+            int slot = Math.min(Math.max(offset, 0), size);
+            for (int tombstone = deleted.nextSetBit(0); tombstone >= 0 && tombstone <= slot && slot < size;
+                 tombstone = deleted.nextSetBit(tombstone + 1)) {
+                slot++;
+            }
+            int count = Math.min(Math.max(limit, 0), size - tombstones);
+            List<User.Out> users = new ArrayList<>(Math.min(count, size - slot));
+            for (; slot < size && users.size() < count; slot++) {
+                if (!deleted.get(slot)) {
+                    users.add(row(slot));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return size - tombstones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // Фильтр по полю сортировки сужается двоичным поиском по индексу, остальные условия проверяются по колонкам
+    public List<User.Out> query(Filter filter, Sort sort, boolean descending, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            int minAge = filter.minAge() != null ? filter.minAge() : Integer.MIN_VALUE;
+            int maxAge = filter.maxAge() != null ? filter.maxAge() : Integer.MAX_VALUE;
+            boolean byCreatedAt = filter.createdFrom() != null || filter.createdTo() != null;
+            long createdFrom = filter.createdFrom() != null ? micros(filter.createdFrom()) : NO_CREATED + 1;
+            long createdTo = filter.createdTo() != null ? micros(filter.createdTo()) : Long.MAX_VALUE;
+
+            SortedIndex index = switch (sort) {
+                case ID -> null;
+                case AGE -> byAge;
+                case CREATED_AT -> byCreated;
+            };
+            int from;
+            int to;
+            if (sort == Sort.AGE) {
+                from = byAge.lowerBound(minAge);
+                to = byAge.upperBound(maxAge);
+            } else if (sort == Sort.CREATED_AT) {
+                from = byCreatedAt ? byCreated.lowerBound(createdFrom) : 0;
+                to = byCreatedAt ? byCreated.lowerBound(createdTo) : byCreated.size();
+            } else {
+                from = 0;
+                to = size;
+            }
+
+            List<User.Out> users = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+            int skipped = 0;
+            for (int i = 0; i < to - from && users.size() < limit; i++) {
+                int position = descending ? to - 1 - i : from + i;
+                int slot = index == null ? position : slotOf(index.id(position));
+                if (deleted.get(slot)) {
+                    continue;
+                }
+                if (ages[slot] < minAge || ages[slot] > maxAge) {
+                    continue;
+                }
+                if (byCreatedAt && (created[slot] < createdFrom || created[slot] >= createdTo)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    users.add(row(slot));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public Footprint footprint() {
+        lock.readLock().lock();
+        try {
+            Map<String, Long> columns = new LinkedHashMap<>();
+            columns.put("id", (long) ids.length * Long.BYTES);
+            columns.put("age", (long) ages.length * Integer.BYTES);
+            columns.put("created_at", (long) created.length * Long.BYTES);
+            columns.put("text_offsets", (long) textOffsets.length * Integer.BYTES);
+            columns.put("text_lengths", (long) (nameLengths.length + emailLengths.length) * Short.BYTES);
+            columns.put("text", (long) text.length);
+            columns.put("tombstones", (long) deleted.size() / Byte.SIZE);
+            columns.put("index_age", byAge.allocatedBytes());
+            columns.put("index_created_at", byCreated.allocatedBytes());
+            long total = columns.values().stream().mapToLong(Long::longValue).sum();
+            int users = size - tombstones;
+            long perUser = users == 0 ? 0 : total / users;
+            return new Footprint(users, columns, total, perUser, perUser * 1_000_000);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // Позиция строки, в том числе удаленной, но еще не убранной уплотнением
+    private int slotOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+
+    private int liveSlotOf(long id) {
+        int slot = slotOf(id);
+        return slot >= 0 && deleted.get(slot) ? -1 : slot;
+    }
+
+
+    private User.Out row(int slot) {
+        int offset = textOffsets[slot];
+        int nameLength = Short.toUnsignedInt(nameLengths[slot]);
+        int emailLength = Short.toUnsignedInt(emailLengths[slot]);
+        return User.Out.builder()
+                .id(ids[slot])
+                .name(new String(text, offset, nameLength, StandardCharsets.UTF_8))
+                .email(new String(text, offset + nameLength, emailLength, StandardCharsets.UTF_8))
+                .age(ages[slot])
+                .created_at(created[slot] == NO_CREATED ? null : LocalDateTime.ofEpochSecond(
+                        Math.floorDiv(created[slot], 1_000_000), (int) Math.floorMod(created[slot], 1_000_000) * 1000,
+                        ZoneOffset.UTC))
+                .build();
+    }
+
+
+    // Вставки пачки по возрастанию id. Проход с конца: строки с id больше вставляемых сдвигаются к концу
+    // на месте, строки до первой вставки не двигаются, поэтому вставка в конец ничего не сдвигает
+    private void insert(List<User.Out> inserts) {
+        ensureCapacity(size + inserts.size());
+        int old = size - 1;
+        int slot = size + inserts.size() - 1;
+        for (int next = inserts.size() - 1; next >= 0; next--) {
+            long id = inserts.get(next).getId();
+            while (old >= 0 && ids[old] > id) {
+                moveRow(old--, slot--);
+            }
+            writeRow(slot--, inserts.get(next));
+        }
+        size += inserts.size();
+    }
+
+
+    private void moveRow(int from, int to) {
+        ids[to] = ids[from];
+        ages[to] = ages[from];
+        created[to] = created[from];
+        textOffsets[to] = textOffsets[from];
+        nameLengths[to] = nameLengths[from];
+        emailLengths[to] = emailLengths[from];
+        deleted.set(to, deleted.get(from));
+    }
+
+
+    private void writeRow(int slot, User.Out user) {
+        deleted.clear(slot);
+        ids[slot] = user.getId();
+        ages[slot] = user.getAge();
+        created[slot] = micros(user.getCreated_at());
+        writeText(slot, utf8(user.getName()), utf8(user.getEmail()));
+    }
+
+
+    private void writeText(int slot, byte[] name, byte[] email) {
+        if (name.length > MAX_TEXT_LENGTH || email.length > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Name or email of user " + ids[slot] + " is too long");
+        }
+        int length = name.length + email.length;
+        if (textSize + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length + (text.length >> 1), textSize + length));
+        }
+        System.arraycopy(name, 0, text, textSize, name.length);
+        System.arraycopy(email, 0, text, textSize + name.length, email.length);
+        textOffsets[slot] = textSize;
+        nameLengths[slot] = (short) name.length;
+        emailLengths[slot] = (short) email.length;
+        textSize += length;
+    }
+
+
+    private boolean textEquals(int slot, byte[] name, byte[] email) {
+        int offset = textOffsets[slot];
+        int nameLength = Short.toUnsignedInt(nameLengths[slot]);
+        int emailLength = Short.toUnsignedInt(emailLengths[slot]);
+        return nameLength == name.length && emailLength == email.length
+                && Arrays.equals(text, offset, offset + nameLength, name, 0, name.length)
+                && Arrays.equals(text, offset + nameLength, offset + nameLength + emailLength, email, 0, email.length);
+    }
+
+
+    private int textLength(int slot) {
+        return Short.toUnsignedInt(nameLengths[slot]) + Short.toUnsignedInt(emailLengths[slot]);
+    }
+
+
+    private boolean needsCompaction() {
+        return tombstones >= COMPACT_MIN_TOMBSTONES && tombstones * 4L > size
+                || deadTextBytes > COMPACT_MIN_DEAD_TEXT && deadTextBytes * 2 > textSize;
+    }
+
+
+    private Compacted copyLive() {
+        int live = size - tombstones;
+        int capacity = Math.max(1024, live + (live >> 1));
+        long[] liveIds = new long[capacity];
+        int[] liveAges = new int[capacity];
+        long[] liveCreated = new long[capacity];
+        int[] liveOffsets = new int[capacity];
+        short[] liveNameLengths = new short[capacity];
+        short[] liveEmailLengths = new short[capacity];
+        long liveText = textSize - deadTextBytes;
+        byte[] compactedText = new byte[(int) Math.max(64 * 1024, liveText + (liveText >> 2))];
+
+        int slot = 0;
+        int position = 0;
+        for (int old = deleted.nextClearBit(0); old < size; old = deleted.nextClearBit(old + 1)) {
+            int length = textLength(old);
+            liveIds[slot] = ids[old];
+            liveAges[slot] = ages[old];
+            liveCreated[slot] = created[old];
+            liveOffsets[slot] = position;
+            liveNameLengths[slot] = nameLengths[old];
+            liveEmailLengths[slot] = emailLengths[old];
+            System.arraycopy(text, textOffsets[old], compactedText, position, length);
+            position += length;
+            slot++;
+        }
+        return new Compacted(live, liveIds, liveAges, liveCreated, liveOffsets, liveNameLengths, liveEmailLengths,
+                compactedText, position);
+    }
+
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        ages = Arrays.copyOf(ages, newCapacity);
+        created = Arrays.copyOf(created, newCapacity);
+        textOffsets = Arrays.copyOf(textOffsets, newCapacity);
+        nameLengths = Arrays.copyOf(nameLengths, newCapacity);
+        emailLengths = Arrays.copyOf(emailLengths, newCapacity);
+    }
+
+
+    private static long micros(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NO_CREATED;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1000;
+    }
+
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,349 @@
+package com.aston.homework_spring.readmodel;
+
+import com.aston.homework_spring.bulkhead.Workload;
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.exception.LookupLimitExceededException;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserRowMapper;
+import com.aston.homework_spring.service.UserChanged;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+@Slf4j
+@ConditionalOnExpression("${users.read-model.enabled:false} and '${users.backend:jpa}' == 'jpa'")
+public class UserReadModel implements ApplicationRunner {
+
+    // Читающая модель (CQRS): вся таблица users в памяти экземпляра в колоночном виде (UserColumns).
+    // CombiningUserService обслуживает из нее find, findAll, getAll и getAllCount, а GET /users/filter - фильтры
+    // и сортировку, без обращения к PostgreSQL.
+    // - При запуске включается триггер журнала tr_users_changes (создается выключенным, чтобы без читающей модели
+    //   запись пользователя не стоила лишней строки в индексированном журнале), затем таблица читается целиком
+    //   в одной транзакции REPEATABLE READ вместе с xmin ее снимка. Пока загрузка не завершена, чтение идет
+    //   в хранилище.
+    // - Затем каждые poll-interval забираются изменения из журнала user_changes (заполняется триггером) окном
+    //   транзакций [прошлый xmin, текущий xmin) и заново читаются строки измененных пользователей. Повторное
+    //   применение безопасно: в модель всегда записывается текущее состояние строки.
+    // - Изменения, о которых сообщает UserChanged (запись через этот экземпляр, массовые операции, уведомления
+    //   о чужих изменениях), применяются сразу (refresh), поэтому экземпляр видит собственные изменения. Остальные
+    //   изменения видны с задержкой, ее верхняя граница - метрика users.read_model.lag.
+    // Строки читаются без блокировок, под applyLock только применение к модели. Каждое чтение получает номер
+    // (stamp) до своего SELECT, опрос - после запроса xmin. Строка пользователя не применяется, если после начала
+    // чтения ее уже применило чтение с большим номером: иначе медленный refresh вернул бы старое состояние поверх
+    // нового. Пропущенное так изменение не теряется: его транзакция завершилась позже номера чтения, поэтому
+    // строку заново прочитает один из следующих опросов.
+
+    private static final String ENABLE_TRIGGER = "alter table users enable trigger tr_users_changes";
+    private static final String XMIN = "select pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+    private static final String SELECT_BY_IDS = "select " + UserRowMapper.COLUMNS + " from users " +
+            "where id = any(?) and deleted_at is null";
+
+    private volatile UserColumns columns = new UserColumns();
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate loadJdbcTemplate;
+    private final TransactionTemplate loadTransaction;
+    private final TransactionTemplate pollTransaction;
+    private final int loadBatchSize;
+    private final int maxLookupIds;
+
+    private volatile boolean ready;
+    private long cursor;
+
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final AtomicLong stamps = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> activeReads = new ConcurrentSkipListSet<>();
+    // Номер последнего применения строк пользователя, пока идут чтения с меньшими номерами
+    private final Map<Long, Long> appliedStamps = new HashMap<>();
+    // Чтения, начатые до загрузки модели, не применяются
+    private long loadStamp;
+    private volatile long lastPollNanos = System.nanoTime();
+    private volatile double pendingLagSeconds;
+    private volatile LocalDateTime lastSync;
+
+    private final Counter appliedChanges;
+    private final Timer pollTimer;
+
+    public UserReadModel(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${users.read-model.load-fetch-size:10000}") int loadBatchSize,
+                         @Value("${users.lookup.max-ids:100}") int maxLookupIds) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Отдельный JdbcTemplate: начальная загрузка читает таблицу курсором порциями
+        this.loadJdbcTemplate = new JdbcTemplate(dataSource);
+        this.loadJdbcTemplate.setFetchSize(loadBatchSize);
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setReadOnly(true);
+        this.loadTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.pollTransaction = new TransactionTemplate(transactionManager);
+        this.pollTransaction.setReadOnly(true);
+        this.pollTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.loadBatchSize = loadBatchSize;
+        this.maxLookupIds = maxLookupIds;
+
+        Gauge.builder("users.read_model.users", this, model -> model.columns.count())
+                .description("Количество пользователей в читающей модели")
+                .register(meterRegistry);
+        Gauge.builder("users.read_model.bytes", this, model -> model.footprint().totalBytes())
+                .description("Память, занятая массивами читающей модели")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        TimeGauge.builder("users.read_model.lag", this, TimeUnit.SECONDS, UserReadModel::lagSeconds)
+                .description("Верхняя граница отставания читающей модели от базы данных")
+                .register(meterRegistry);
+        this.appliedChanges = Counter.builder("users.read_model.changes")
+                .description("Количество изменений пользователей, примененных к читающей модели")
+                .register(meterRegistry);
+        this.pollTimer = Timer.builder("users.read_model.poll")
+                .description("Время получения и применения одной порции изменений")
+                .register(meterRegistry);
+    }
+
+
+    // Повторный вызов строит модель заново и заменяет ее целиком
+    @Override
+    public synchronized void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        Workload.BATCH.run(this::load);
+        log.info("Read model loaded: {} users in {} ms, {}", columns.count(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), columns.footprint());
+    }
+
+
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    public User.Out find(long id) {
+        User.Out user = columns.find(id);
+        if (user == null) {
+            throw new EntityNotFoundException(id);
+        }
+        return user;
+    }
+
+
+    public User.Lookup findAll(Collection<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.size() > maxLookupIds) {
+            throw new LookupLimitExceededException(distinctIds.size(), maxLookupIds);
+        }
+        List<User.Out> users = columns.findAll(distinctIds);
+        Set<Long> found = new HashSet<>(users.size());
+        users.forEach(user -> found.add(user.getId()));
+        return new User.Lookup(users, distinctIds.stream().filter(id -> !found.contains(id)).toList());
+    }
+
+
+    public List<User.Out> getAll(int offset, int limit) {
+        return columns.page(offset, limit);
+    }
+
+
+    public int getAllCount() {
+        return columns.count();
+    }
+
+
+    public List<User.Out> query(UserColumns.Filter filter, UserColumns.Sort sort, boolean descending,
+                                int offset, int limit) {
+        return columns.query(filter, sort, descending, offset, limit);
+    }
+
+
+    public UserColumns.Footprint footprint() {
+        return columns.footprint();
+    }
+
+
+    public LocalDateTime lastSync() {
+        return lastSync;
+    }
+
+
+    public double lagSeconds() {
+        return (System.nanoTime() - lastPollNanos) / 1_000_000_000.0 + pendingLagSeconds;
+    }
+
+
+    // Изменения всех пользователей забирает следующий опрос журнала
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChanged event) {
+        if (!event.all()) {
+            refresh(event.ids());
+        }
+    }
+
+
+    // Изменения пользователей, о которых уже известно. Не ждет опроса и загрузки
+    public void refresh(Collection<Long> ids) {
+        if (!ready || ids.isEmpty()) {
+            return;
+        }
+        long stamp = beginRead();
+        try {
+            apply(stamp, ids, jdbcTemplate.query(SELECT_BY_IDS, UserRowMapper.INSTANCE,
+                    (Object) ids.toArray(Long[]::new)));
+        } finally {
+            endRead(stamp);
+        }
+    }
+
+
+    @Scheduled(initialDelayString = "${users.read-model.poll-interval:PT0.5S}",
+            fixedDelayString = "${users.read-model.poll-interval:PT0.5S}")
+    public synchronized void poll() {
+        if (!ready) {
+            return;
+        }
+        long pollStart = System.nanoTime();
+        pollTimer.record(() -> Workload.BATCH.run(() -> pollTransaction.executeWithoutResult(status -> {
+            long to = jdbcTemplate.queryForObject(XMIN, Long.class);
+            long stamp = beginRead();
+            try {
+                List<Long> changed = jdbcTemplate.queryForList(
+                        "select distinct user_id from user_changes where txid >= ? and txid < ?",
+                        Long.class, cursor, to);
+                if (!changed.isEmpty()) {
+                    apply(stamp, changed, jdbcTemplate.query(SELECT_BY_IDS, UserRowMapper.INSTANCE,
+                            (Object) changed.toArray(Long[]::new)));
+                }
+            } finally {
+                endRead(stamp);
+            }
+            // Зафиксированные изменения, которые ждут завершения более ранних транзакций
+            Double pending = jdbcTemplate.queryForObject("select extract(epoch from clock_timestamp() - " +
+                    "min(changed_at))::float8 from user_changes where txid >= ?", Double.class, to);
+            cursor = to;
+            pendingLagSeconds = pending != null ? Math.max(0, pending) : 0;
+        })));
+        lastPollNanos = pollStart;
+        lastSync = LocalDateTime.now();
+        // Уплотнение на потоке опроса: чтение модели его не ждет, а применение изменений ждет только подмену массивов
+        columns.compact();
+    }
+
+
+    private void load() {
+        // ALTER TABLE ждет завершения транзакций, которые уже пишут в users: после него каждое изменение либо
+        // видно в снимке загрузки, либо попадает в журнал
+        jdbcTemplate.execute(ENABLE_TRIGGER);
+        loadTransaction.executeWithoutResult(status -> {
+            // Первый запрос транзакции фиксирует снимок: изменения транзакций с номером не меньше xmin
+            // забираются из журнала при следующем опросе
+            long xmin = jdbcTemplate.queryForObject(XMIN, Long.class);
+            long stamp = stamps.incrementAndGet();
+            UserColumns loaded = new UserColumns();
+            List<User.Out> batch = new ArrayList<>(loadBatchSize);
+            loadJdbcTemplate.query("select " + UserRowMapper.COLUMNS + " from users where deleted_at is null " +
+                    "order by id", (RowCallbackHandler) rs -> {
+                batch.add(UserRowMapper.INSTANCE.mapRow(rs, 0));
+                if (batch.size() == loadBatchSize) {
+                    loaded.apply(batch, List.of());
+                    batch.clear();
+                }
+            });
+            loaded.apply(batch, List.of());
+            applyLock.lock();
+            try {
+                columns = loaded;
+                loadStamp = stamp;
+                appliedStamps.clear();
+            } finally {
+                applyLock.unlock();
+            }
+            cursor = xmin;
+        });
+        lastPollNanos = System.nanoTime();
+        lastSync = LocalDateTime.now();
+        ready = true;
+    }
+
+
+    private long beginRead() {
+        long stamp = stamps.incrementAndGet();
+        activeReads.add(stamp);
+        return stamp;
+    }
+
+
+    // Номера применений нужны, только пока идут чтения, начатые раньше них
+    private void endRead(long stamp) {
+        activeReads.remove(stamp);
+        applyLock.lock();
+        try {
+            Long oldest = activeReads.isEmpty() ? null : activeReads.first();
+            if (oldest == null) {
+                appliedStamps.clear();
+            } else {
+                appliedStamps.values().removeIf(applied -> applied < oldest);
+            }
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+
+    // Пользователи из changedIds, которых нет среди прочитанных строк, удалены
+    private void apply(long stamp, Collection<Long> changedIds, List<User.Out> rows) {
+        Map<Long, User.Out> read = new HashMap<>(rows.size());
+        rows.forEach(user -> read.put(user.getId(), user));
+        applyLock.lock();
+        try {
+            if (stamp < loadStamp) {
+                return;
+            }
+            List<User.Out> upserts = new ArrayList<>(read.size());
+            List<Long> removed = new ArrayList<>();
+            for (Long id : new LinkedHashSet<>(changedIds)) {
+                if (appliedStamps.getOrDefault(id, 0L) > stamp) {
+                    continue;
+                }
+                appliedStamps.put(id, stamp);
+                User.Out user = read.get(id);
+                if (user != null) {
+                    upserts.add(user);
+                } else {
+                    removed.add(id);
+                }
+            }
+            columns.apply(upserts, removed);
+            appliedChanges.increment(upserts.size() + removed.size());
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.aston.homework_spring.repository;
+
+public interface UserAgeView {
+
+    // Проекция измененного пользователя: идентификатор и новый возраст
+
+    Long getId();
+
+    Integer getAge();
+
+}
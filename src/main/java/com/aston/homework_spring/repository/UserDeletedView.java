@@ -0,0 +1,9 @@
+package com.aston.homework_spring.repository;
+
+public interface UserDeletedView extends UserStatsView {
+
+    // Проекция удаленного пользователя: идентификатор для сброса кэшей и поля статистики
+
+    Long getId();
+
+}
@@ -1,21 +1,210 @@
 package com.aston.homework_spring.repository;
 
 import com.aston.homework_spring.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
 
-    @Query(value = "select u.* from users u offset :OFFSET limit :LIMIT", nativeQuery = true)
+    // Результаты двух запросов ниже хранятся в кэше запросов Hibernate (при включенном кэше второго уровня).
+    // Для нативного запроса таблица указывается явно: по ней Hibernate определяет, что результат устарел после
+    // изменения сущностей User.
+
+    @Query(value = "select u.* from users u where u.deleted_at is null offset :OFFSET limit :LIMIT", nativeQuery = true)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "users")})
     List<User> getAllOffsetLimit(@Param("OFFSET") int offset, @Param("LIMIT") int limit);
 
 
-    @Query(value = "select count(*) from users", nativeQuery = true)
+    @Query(value = "select count(*) from users u where u.deleted_at is null", nativeQuery = true)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "users")})
     Integer getTotalCountOfUsers();
 
 
+    // Пакетный поиск одним запросом: массив идентификаторов передается одним параметром
+    @Query(value = "select u.* from users u where u.id = any(:IDS) and u.deleted_at is null", nativeQuery = true)
+    List<User> findAllByIdArray(@Param("IDS") Long[] ids);
+
+
+    // Мягкое удаление одним UPDATE без предварительного чтения строки.
+    // Возвращает количество помеченных строк: 0 означает, что пользователь не найден или уже удален.
+    @Modifying
+    @Query(value = "update users set deleted_at = now() where id = :ID and deleted_at is null", nativeQuery = true)
+    int softDeleteById(@Param("ID") long id);
+
+
+    // То же мягкое удаление, но с возвратом возраста и даты создания удаленного пользователя для статистики.
+    // Запрос без @Modifying: благодаря RETURNING он выполняется как выборка.
+    @Query(value = "update users set deleted_at = now() where id = :ID and deleted_at is null " +
+            "returning age, created_at", nativeQuery = true)
+    Optional<UserStatsView> softDeleteByIdReturning(@Param("ID") long id);
+
+
+    @Query(value = "select u.age, count(*) from users u where u.deleted_at is null group by u.age", nativeQuery = true)
+    List<Object[]> countActiveByAge();
+
+
+    @Query(value = "select to_char(u.created_at, 'YYYY-MM-DD'), count(*) from users u " +
+            "where u.deleted_at is null and u.created_at is not null group by 1", nativeQuery = true)
+    List<Object[]> countActiveByCreationDay();
+
+
+    @Query(value = "select count(*) from users u where u.deleted_at is not null", nativeQuery = true)
+    long getSoftDeletedCount();
+
+
+    // Физическое удаление одной порции мягко удаленных строк. Каждый вызов выполняется в собственной короткой
+    // транзакции, поэтому блокировки удерживаются только на время удаления BATCH строк.
+    @Modifying
+    @Transactional
+    @Query(value = "delete from users where id in (" +
+            "select u.id from users u where u.deleted_at is not null and u.deleted_at < :BEFORE " +
+            "order by u.deleted_at limit :BATCH)", nativeQuery = true)
+    int purgeSoftDeleted(@Param("BEFORE") LocalDateTime before, @Param("BATCH") int batchSize);
+
+
+    // Удаление одной порции старых записей журнала изменений user_changes (читающая модель забирает их
+    // за секунды, записи хранятся с запасом)
+    @Modifying
+    @Transactional
+    @Query(value = "delete from user_changes where ctid in (" +
+            "select c.ctid from user_changes c where c.changed_at < :BEFORE limit :BATCH)", nativeQuery = true)
+    int purgeUserChanges(@Param("BEFORE") LocalDateTime before, @Param("BATCH") int batchSize);
+
+
+    // Массовое мягкое удаление порциями (BulkDeleteService). Каждый вызов - одна короткая транзакция
+    // на не больше chunk строк; возвращаются идентификаторы и поля статистики удаленных пользователей.
+
+    @Query(value = "update users set deleted_at = now() where id = any(:IDS) and deleted_at is null " +
+            "returning id, age, created_at", nativeQuery = true)
+    List<UserDeletedView> softDeleteByIds(@Param("IDS") Long[] ids);
+
+
+    String BULK_FILTER = "u.deleted_at is null and u.age between :MIN_AGE and :MAX_AGE " +
+            "and (not :BY_CREATED or u.created_at < :CREATED_BEFORE) ";
+
+
+    // Следующая порция по фильтру в порядке id после AFTER_ID (keyset), поэтому каждая порция читает только
+    // свои строки, а не пропускает уже удаленные
+    @Query(value = "with chunk as (select u.id from users u where " + BULK_FILTER +
+            "and u.id > :AFTER_ID order by u.id limit :CHUNK) " +
+            "update users u set deleted_at = now() from chunk where u.id = chunk.id and u.deleted_at is null " +
+            "returning u.id, u.age, u.created_at", nativeQuery = true)
+    List<UserDeletedView> softDeleteChunkByFilter(@Param("MIN_AGE") int minAge, @Param("MAX_AGE") int maxAge,
+                                                  @Param("BY_CREATED") boolean byCreated,
+                                                  @Param("CREATED_BEFORE") LocalDateTime createdBefore,
+                                                  @Param("AFTER_ID") long afterId, @Param("CHUNK") int chunk);
+
+
+    @Query(value = "select count(*) from users u where " + BULK_FILTER, nativeQuery = true)
+    long countByBulkFilter(@Param("MIN_AGE") int minAge, @Param("MAX_AGE") int maxAge,
+                           @Param("BY_CREATED") boolean byCreated,
+                           @Param("CREATED_BEFORE") LocalDateTime createdBefore);
+
+
+    // Массовые изменения по диапазону идентификаторов (BulkUpdateService) с тем же фильтром, что и удаление.
+
+    // Адрес приводится к нижнему регистру без пробелов по краям. Пропускаются адреса, для которых такой адрес уже
+    // есть у другого пользователя или у пользователя с меньшим id с тем же нормализованным адресом:
+    // иначе изменение нарушило бы уникальность email.
+    @Query(value = "update users u set email = lower(trim(u.email)) " +
+            "where u.id between :FROM_ID and :TO_ID and " + BULK_FILTER +
+            "and u.email <> lower(trim(u.email)) " +
+            "and not exists (select 1 from users o where o.deleted_at is null and o.id <> u.id " +
+            "and lower(trim(o.email)) = lower(trim(u.email)) and (o.email = lower(trim(u.email)) or o.id < u.id)) " +
+            "returning u.id, u.age", nativeQuery = true)
+    List<UserAgeView> normalizeEmails(@Param("FROM_ID") long fromId, @Param("TO_ID") long toId,
+                                      @Param("MIN_AGE") int minAge, @Param("MAX_AGE") int maxAge,
+                                      @Param("BY_CREATED") boolean byCreated,
+                                      @Param("CREATED_BEFORE") LocalDateTime createdBefore);
+
+
+    // Пользователи, чей возраст после сдвига вышел бы за пределы допустимого (@Min/@Max в User.In), пропускаются,
+    // как и конфликтующие адреса в normalizeEmails
+    @Query(value = "update users u set age = u.age + :DELTA " +
+            "where u.id between :FROM_ID and :TO_ID and " + BULK_FILTER +
+            "and u.age + :DELTA between " + User.MIN_AGE + " and " + User.MAX_AGE + " " +
+            "returning u.id, u.age", nativeQuery = true)
+    List<UserAgeView> shiftAges(@Param("DELTA") int delta, @Param("FROM_ID") long fromId, @Param("TO_ID") long toId,
+                                @Param("MIN_AGE") int minAge, @Param("MAX_AGE") int maxAge,
+                                @Param("BY_CREATED") boolean byCreated,
+                                @Param("CREATED_BEFORE") LocalDateTime createdBefore);
+
+
+    // Вставки с учетом занятого email (см. DuplicateEmailStrategy). Конфликт по уникальному индексу uk_users_email
+    // разрешается в самом INSERT, поэтому дубликат стоит одного запроса и не вызывает исключения и отката транзакции.
+
+    String INSERT = "insert into users (name, email, age, created_at) values (:NAME, :EMAIL, :AGE, :CREATED_AT) " +
+            "on conflict (email) where deleted_at is null ";
+
+
+    // Пустой результат означает, что email занят
+    @Query(value = INSERT + "do nothing " +
+            "returning id, name, email, age, created_at, true as inserted, cast(null as integer) as previous_age",
+            nativeQuery = true)
+    Optional<UserWriteView> insertIfEmailFree(@Param("NAME") String name, @Param("EMAIL") String email,
+                                              @Param("AGE") int age, @Param("CREATED_AT") LocalDateTime createdAt);
+
+
+    // Вставка либо существующий пользователь с тем же email одним запросом.
+    // Пустой результат возможен только при гонке с транзакцией, которая заняла email после начала запроса.
+    @Query(value = "with ins as (" + INSERT + "do nothing returning id, name, email, age, created_at) " +
+            "select id, name, email, age, created_at, true as inserted, cast(null as integer) as previous_age " +
+            "from ins " +
+            "union all " +
+            "select u.id, u.name, u.email, u.age, u.created_at, false, cast(null as integer) from users u " +
+            "where u.email = :EMAIL and u.deleted_at is null and not exists (select 1 from ins)",
+            nativeQuery = true)
+    Optional<UserWriteView> insertOrSelectByEmail(@Param("NAME") String name, @Param("EMAIL") String email,
+                                                  @Param("AGE") int age, @Param("CREATED_AT") LocalDateTime createdAt);
+
+
+    // Вставка либо обновление имени и возраста пользователя с тем же email.
+    // xmax = 0 у новой версии строки означает вставку; подзапрос видит версию строки до обновления.
+    @Query(value = "insert into users as u (name, email, age, created_at) " +
+            "values (:NAME, :EMAIL, :AGE, :CREATED_AT) " +
+            "on conflict (email) where deleted_at is null do update set name = excluded.name, age = excluded.age " +
+            "returning u.id, u.name, u.email, u.age, u.created_at, (u.xmax = 0) as inserted, " +
+            "(select o.age from users o where o.id = u.id) as previous_age",
+            nativeQuery = true)
+    UserWriteView upsertByEmail(@Param("NAME") String name, @Param("EMAIL") String email,
+                                @Param("AGE") int age, @Param("CREATED_AT") LocalDateTime createdAt);
+
+
+    // Производные запросы учитывают @SQLRestriction: удаленные пользователи не находятся
+    Optional<User> findByEmail(String email);
+
+
+    boolean existsByEmail(String email);
+
+
+    // Поиск по имени: полнотекстовое совпадение (русская морфология) или похожее слово по триграммам (часть слова,
+    // опечатки). Оба условия обслуживаются GIN-индексами ix_users_name_tsv и ix_users_name_trgm.
+    // Сортировка по сумме ранга полнотекстового поиска и сходства слов.
+    @Query(value = "select u.* from users u " +
+            "where u.deleted_at is null " +
+            "and (u.name_tsv @@ websearch_to_tsquery('russian', :QUERY) or lower(:QUERY) <% lower(u.name)) " +
+            "order by ts_rank(u.name_tsv, websearch_to_tsquery('russian', :QUERY)) " +
+            "+ word_similarity(lower(:QUERY), lower(u.name)) desc, u.id " +
+            "offset :OFFSET limit :LIMIT", nativeQuery = true)
+    List<User> searchByName(@Param("QUERY") String query, @Param("OFFSET") int offset, @Param("LIMIT") int limit);
+
+
+    // Порог сходства для оператора <% на время текущей транзакции
+    @Query(value = "select set_config('pg_trgm.word_similarity_threshold', :THRESHOLD, true)", nativeQuery = true)
+    String setWordSimilarityThreshold(@Param("THRESHOLD") String threshold);
+
+
 }
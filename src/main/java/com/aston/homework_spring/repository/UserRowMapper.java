@@ -0,0 +1,32 @@
+package com.aston.homework_spring.repository;
+
+import com.aston.homework_spring.model.User;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+public final class UserRowMapper implements RowMapper<User.Out> {
+
+    // Отображение строки таблицы users в User.Out для запросов через JdbcTemplate (без сущности JPA)
+
+    public static final String COLUMNS = "id, name, email, age, created_at";
+
+    public static final UserRowMapper INSTANCE = new UserRowMapper();
+
+    private UserRowMapper() {
+    }
+
+    @Override
+    public User.Out mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return User.Out.builder()
+                .id(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .email(rs.getString("email"))
+                .age(rs.getInt("age"))
+                .created_at(rs.getObject("created_at", LocalDateTime.class))
+                .build();
+    }
+
+}
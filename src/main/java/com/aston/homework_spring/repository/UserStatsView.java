@@ -0,0 +1,13 @@
+package com.aston.homework_spring.repository;
+
+import java.time.LocalDateTime;
+
+public interface UserStatsView {
+
+    // Проекция с полями, которые участвуют в статистике пользователей
+
+    Integer getAge();
+
+    LocalDateTime getCreated_at();
+
+}
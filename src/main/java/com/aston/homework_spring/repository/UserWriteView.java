@@ -0,0 +1,24 @@
+package com.aston.homework_spring.repository;
+
+import java.time.LocalDateTime;
+
+public interface UserWriteView {
+
+    // Проекция строки, возвращенной вставкой с ON CONFLICT:
+    // inserted - строка вставлена этим запросом, previous_age - возраст до обновления (только для upsert)
+
+    Long getId();
+
+    String getName();
+
+    String getEmail();
+
+    Integer getAge();
+
+    LocalDateTime getCreated_at();
+
+    Boolean getInserted();
+
+    Integer getPrevious_age();
+
+}
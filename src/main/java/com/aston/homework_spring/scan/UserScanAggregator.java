@@ -0,0 +1,17 @@
+package com.aston.homework_spring.scan;
+
+import com.aston.homework_spring.model.User;
+
+public interface UserScanAggregator<A> {
+
+    // Агрегация результатов параллельного сканирования (UserScanner.aggregate).
+    // Для каждого диапазона идентификаторов создается свой частичный результат, который заполняется одним потоком,
+    // поэтому accept не требует синхронизации. Частичные результаты объединяются через combine.
+
+    A create();
+
+    void accept(A partial, User.Out user);
+
+    A combine(A left, A right);
+
+}
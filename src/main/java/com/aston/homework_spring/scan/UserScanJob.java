@@ -0,0 +1,84 @@
+package com.aston.homework_spring.scan;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class UserScanJob<R> {
+
+    // Запущенное сканирование: ход выполнения (диапазоны, строки), результат и отмена
+
+    private final int totalRanges;
+    private final AtomicInteger completedRanges = new AtomicInteger();
+    private final LongAdder scannedRows = new LongAdder();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final CompletableFuture<R> result = new CompletableFuture<>();
+    private final long startedAt = System.nanoTime();
+
+    UserScanJob(int totalRanges) {
+        this.totalRanges = totalRanges;
+    }
+
+
+    public int getTotalRanges() {
+        return totalRanges;
+    }
+
+
+    public int getCompletedRanges() {
+        return completedRanges.get();
+    }
+
+
+    public long getScannedRows() {
+        return scannedRows.sum();
+    }
+
+
+    // Доля завершенных диапазонов от 0 до 1
+    public double getProgress() {
+        return totalRanges == 0 ? 1.0 : (double) completedRanges.get() / totalRanges;
+    }
+
+
+    public CompletableFuture<R> result() {
+        return result;
+    }
+
+
+    // Отмена прерывает сканирование на следующей строке; результат завершается CancellationException
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            result.cancel(false);
+        }
+    }
+
+
+    // Ошибка сканирования: остальные диапазоны прерываются, результат завершается этой ошибкой
+    void fail(Throwable error) {
+        cancelled.set(true);
+        result.completeExceptionally(error);
+    }
+
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+
+    long elapsedNanos() {
+        return System.nanoTime() - startedAt;
+    }
+
+
+    void rowScanned() {
+        scannedRows.increment();
+    }
+
+
+    void rangeCompleted() {
+        completedRanges.incrementAndGet();
+    }
+
+}
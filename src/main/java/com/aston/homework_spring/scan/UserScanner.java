@@ -0,0 +1,267 @@
+package com.aston.homework_spring.scan;
+
+import com.aston.homework_spring.bulkhead.Workload;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserRowMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+public class UserScanner {
+
+    // Параллельное сканирование всей таблицы users для отчетов и пакетных задач.
+    // Пространство идентификаторов [min(id), max(id)] делится на диапазоны по range-size идентификаторов.
+    // Диапазоны обрабатываются пулом из parallelism потоков: каждый поток держит одно соединение, открывает
+    // собственную читающую транзакцию и читает строки курсором порциями по fetch-size, не загружая диапазон в память.
+    // Поэтому parallelism должен быть меньше размера пула соединений, чтобы обычным запросам хватало соединений.
+    //
+    // Результаты передаются одним из двух способов:
+    // - aggregate: частичный результат на каждый диапазон без общей синхронизации, объединение в конце;
+    // - forEach: пачки строк через ограниченную очередь одному потребителю. Когда потребитель не успевает,
+    //   потоки сканирования блокируются на очереди (обратное давление) и перестают читать из базы данных.
+    //
+    // Диапазоны читаются в разных транзакциях, поэтому результат не является согласованным снимком всей таблицы.
+    // Сканируется таблица основной базы данных, поэтому сканер доступен только с хранилищем jpa: при
+    // шардировании (sharded) пользователи лежат на шардах.
+
+    private static final String SELECT = "select " + UserRowMapper.COLUMNS + " from users " +
+            "where id >= ? and id < ? and deleted_at is null";
+
+    // Признак конца данных в очереди forEach
+    private static final List<User.Out> END = List.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final long rangeSize;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final Counter scannedRows;
+    private final Timer rangeTimer;
+
+    public UserScanner(DataSource dataSource,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${users.scan.parallelism:4}") int parallelism,
+                       @Value("${users.scan.range-size:10000}") long rangeSize,
+                       @Value("${users.scan.fetch-size:1000}") int fetchSize,
+                       @Value("${users.scan.queue-capacity:16}") int queueCapacity,
+                       @Value("${users.scan.batch-size:500}") int batchSize) {
+        // Отдельный JdbcTemplate: размер порции курсора задается только для сканирования
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                task -> Thread.ofPlatform().name("user-scan-" + threadNumber.incrementAndGet()).daemon().unstarted(task));
+        this.rangeSize = rangeSize;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.scannedRows = Counter.builder("users.scan.rows")
+                .description("Количество строк, прочитанных параллельным сканированием")
+                .register(meterRegistry);
+        this.rangeTimer = Timer.builder("users.scan.range")
+                .description("Время чтения одного диапазона идентификаторов")
+                .register(meterRegistry);
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+
+    public <A> UserScanJob<A> aggregate(UserScanAggregator<A> aggregator) {
+        List<long[]> ranges = ranges();
+        UserScanJob<A> job = new UserScanJob<>(ranges.size());
+
+        List<CompletableFuture<A>> partials = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            partials.add(CompletableFuture.supplyAsync(() -> {
+                A partial = aggregator.create();
+                scanRange(range, job, user -> aggregator.accept(partial, user));
+                return partial;
+            }, executor));
+        }
+        failFast(job, partials);
+
+        CompletableFuture.allOf(partials.toArray(CompletableFuture[]::new)).whenComplete((ignored, error) -> {
+            if (error != null) {
+                job.fail(unwrap(error));
+                return;
+            }
+            A result = aggregator.create();
+            for (CompletableFuture<A> partial : partials) {
+                result = aggregator.combine(result, partial.join());
+            }
+            finish(job, result);
+        });
+        return job;
+    }
+
+
+    // Потребитель вызывается из одного потока пачками не больше batch-size строк.
+    // Результат сканирования - количество переданных потребителю строк.
+    public UserScanJob<Long> forEach(Consumer<List<User.Out>> consumer) {
+        List<long[]> ranges = ranges();
+        UserScanJob<Long> job = new UserScanJob<>(ranges.size());
+        BlockingQueue<List<User.Out>> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<CompletableFuture<Void>> producers = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            producers.add(CompletableFuture.runAsync(() -> {
+                List<User.Out> batch = new ArrayList<>(batchSize);
+                scanRange(range, job, user -> {
+                    batch.add(user);
+                    if (batch.size() == batchSize) {
+                        put(queue, new ArrayList<>(batch), job);
+                        batch.clear();
+                    }
+                });
+                if (!batch.isEmpty()) {
+                    put(queue, batch, job);
+                }
+            }, executor));
+        }
+        failFast(job, producers);
+        CompletableFuture.allOf(producers.toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, error) -> put(queue, END, job));
+
+        Thread.ofPlatform().name("user-scan-consumer").daemon().start(() -> {
+            long consumed = 0;
+            try {
+                for (List<User.Out> batch = take(queue, job); batch != END; batch = take(queue, job)) {
+                    consumer.accept(batch);
+                    consumed += batch.size();
+                }
+                CompletableFuture<?> failed = producers.stream()
+                        .filter(CompletableFuture::isCompletedExceptionally)
+                        .findFirst()
+                        .orElse(null);
+                if (failed != null) {
+                    failed.join();
+                }
+                finish(job, consumed);
+            } catch (RuntimeException e) {
+                job.fail(unwrap(e));
+            }
+        });
+        return job;
+    }
+
+
+    private void scanRange(long[] range, UserScanJob<?> job, Consumer<User.Out> rowConsumer) {
+        rangeTimer.record(() -> Workload.EXPORT.run(() -> transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.query(SELECT, (RowCallbackHandler) rs -> {
+                    if (job.isCancelled()) {
+                        throw new CancellationException("User scan cancelled");
+                    }
+                    rowConsumer.accept(UserRowMapper.INSTANCE.mapRow(rs, 0));
+                    job.rowScanned();
+                }, range[0], range[1]))));
+        job.rangeCompleted();
+    }
+
+
+    private List<long[]> ranges() {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("select min(id) as lo, max(id) as hi from users");
+        List<long[]> ranges = new ArrayList<>();
+        if (bounds.get("lo") == null) {
+            return ranges;
+        }
+        long lo = ((Number) bounds.get("lo")).longValue();
+        long hi = ((Number) bounds.get("hi")).longValue();
+        for (long from = lo; from <= hi; from += rangeSize) {
+            ranges.add(new long[]{from, Math.min(from + rangeSize, hi + 1)});
+        }
+        return ranges;
+    }
+
+
+    // Ошибка в одном диапазоне останавливает остальные
+    private static void failFast(UserScanJob<?> job, List<? extends CompletableFuture<?>> tasks) {
+        tasks.forEach(task -> task.whenComplete((ignored, error) -> {
+            if (error != null && !job.isCancelled()) {
+                log.error("User scan failed", unwrap(error));
+                job.fail(unwrap(error));
+            }
+        }));
+    }
+
+
+    private <R> void finish(UserScanJob<R> job, R result) {
+        scannedRows.increment(job.getScannedRows());
+        if (job.result().complete(result)) {
+            log.info("User scan finished: {} ranges, {} rows in {} ms", job.getTotalRanges(), job.getScannedRows(),
+                    TimeUnit.NANOSECONDS.toMillis(job.elapsedNanos()));
+        }
+    }
+
+
+    // Ожидание места в очереди с проверкой отмены, чтобы остановленный потребитель не блокировал сканирование
+    private static void put(BlockingQueue<List<User.Out>> queue, List<User.Out> batch, UserScanJob<?> job) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (job.isCancelled()) {
+                    throw new CancellationException("User scan cancelled");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("User scan interrupted");
+        }
+    }
+
+
+    private static List<User.Out> take(BlockingQueue<List<User.Out>> queue, UserScanJob<?> job) {
+        try {
+            List<User.Out> batch;
+            while ((batch = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (job.isCancelled()) {
+                    throw new CancellationException("User scan cancelled");
+                }
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("User scan interrupted");
+        }
+    }
+
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+}
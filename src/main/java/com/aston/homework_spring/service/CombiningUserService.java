@@ -0,0 +1,191 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.cache.UserListCache;
+import com.aston.homework_spring.cache.UserResponseCache;
+import com.aston.homework_spring.hotkeys.UserAccessTracker;
+import com.aston.homework_spring.jfr.UserOperationEvent;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.readmodel.UserReadModel;
+import com.aston.homework_spring.support.SingleFlight;
+import com.aston.homework_spring.timing.RequestTiming;
+import com.aston.homework_spring.warmup.HotUserTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+@Service
+@Primary
+public class CombiningUserService implements UserService {
+
+    // Обертка над хранилищем пользователей (по умолчанию UserServiceImpl), которая объединяет одновременные
+    // запросы до открытия транзакции:
+    // - одинаковые запросы на чтение выполняют одну загрузку (SingleFlight), поэтому сотни одновременных запросов
+    //   одного пользователя занимают одно соединение и выполняют один запрос к базе данных;
+    // - при включенном групповом коммите одновременные create объединяются в одну вставку (GroupCommitUserWriter);
+    //   групповой коммит поддерживает только стратегию REJECT, остальные стратегии выполняются хранилищем.
+    // Чтение обслуживается читающей моделью (UserReadModel), если она загружена, а первые страницы - кэшем
+    // UserListCache. После каждой записи публикуется UserChanged: кэши и читающая модель обновляются по нему,
+    // а не вызовами отсюда.
+    // Обращения учитываются в HotUserTracker и UserAccessTracker, время вызовов хранилища (включая ожидание
+    // объединенного запроса) - в этапе DB запроса (RequestTiming) и в событии JFR UserOperationEvent.
+
+    private record Page(int offset, int limit) {
+    }
+
+    private static final long NO_ID = -1;
+
+    private final UserService userService;
+    private final GroupCommitUserWriter groupCommitWriter;
+    private final HotUserTracker hotUserTracker;
+    private final UserAccessTracker accessTracker;
+    private final UserResponseCache responseCache;
+    private final UserListCache listCache;
+    private final UserReadModel readModel;
+    private final ApplicationEventPublisher events;
+    private final boolean coalescingEnabled;
+    private final SingleFlight<Long, User.Out> findFlight;
+    private final SingleFlight<Page, List<User.Out>> getAllFlight;
+    private final SingleFlight<Boolean, Integer> countFlight;
+
+    public CombiningUserService(@Qualifier(UserService.BACKEND) UserService userService,
+                                ObjectProvider<GroupCommitUserWriter> groupCommitWriter,
+                                ObjectProvider<HotUserTracker> hotUserTracker,
+                                ObjectProvider<UserAccessTracker> accessTracker,
+                                UserResponseCache responseCache,
+                                UserListCache listCache,
+                                ObjectProvider<UserReadModel> readModel,
+                                ApplicationEventPublisher events,
+                                MeterRegistry meterRegistry,
+                                @Value("${users.coalescing.enabled:true}") boolean coalescingEnabled,
+                                @Value("${users.coalescing.wait-timeout:PT2S}") Duration coalescingWaitTimeout) {
+        this.userService = userService;
+        this.groupCommitWriter = groupCommitWriter.getIfAvailable();
+        this.hotUserTracker = hotUserTracker.getIfAvailable();
+        this.accessTracker = accessTracker.getIfAvailable();
+        this.responseCache = responseCache;
+        this.listCache = listCache;
+        this.readModel = readModel.getIfAvailable();
+        this.events = events;
+        responseCache.onHit(this::recordFind);
+        this.coalescingEnabled = coalescingEnabled;
+        this.findFlight = new SingleFlight<>("find", coalescingWaitTimeout, meterRegistry);
+        this.getAllFlight = new SingleFlight<>("getAll", coalescingWaitTimeout, meterRegistry);
+        this.countFlight = new SingleFlight<>("getAllCount", coalescingWaitTimeout, meterRegistry);
+    }
+
+
+    public Creation create(User.In in, DuplicateEmailStrategy onDuplicateEmail) {
+        if (accessTracker != null) {
+            accessTracker.recordEmail(in.getEmail());
+        }
+        if (groupCommitWriter != null && onDuplicateEmail == DuplicateEmailStrategy.REJECT) {
+            User.Out created = db("create", NO_ID, () -> groupCommitWriter.create(in));
+            events.publishEvent(UserChanged.of(created.getId()));
+            return new Creation(created, true);
+        }
+        // Существующий пользователь тоже мог измениться (UPSERT)
+        Creation creation = db("create", NO_ID, () -> userService.create(in, onDuplicateEmail));
+        events.publishEvent(UserChanged.of(creation.user().getId()));
+        return creation;
+    }
+
+
+    public User.Out find(long id) {
+        recordFind(id);
+        if (readModelReady()) {
+            return readModel.find(id);
+        }
+        if (!coalescingEnabled) {
+            return db("find", id, () -> userService.find(id));
+        }
+        return db("find", id, () -> findFlight.execute(id, () -> userService.find(id)));
+    }
+
+
+    public User.Lookup findAll(Collection<Long> ids) {
+        if (readModelReady()) {
+            return readModel.findAll(ids);
+        }
+        return db("findAll", NO_ID, () -> userService.findAll(ids));
+    }
+
+
+    public User.Out update(long id, User.Patch patch) {
+        if (accessTracker != null && patch.getEmail() != null) {
+            accessTracker.recordEmail(patch.getEmail());
+        }
+        User.Out updated = db("update", id, () -> userService.update(id, patch));
+        events.publishEvent(UserChanged.of(id));
+        return updated;
+    }
+
+
+    public void delete(long id) {
+        db("delete", id, () -> {
+            userService.delete(id);
+            return null;
+        });
+        events.publishEvent(UserChanged.of(id));
+    }
+
+
+    public List<User.Out> getAll(int offset, int limit) {
+        if (accessTracker != null) {
+            accessTracker.recordPage(offset, limit);
+        }
+        if (readModelReady()) {
+            return readModel.getAll(offset, limit);
+        }
+        return listCache.getAll(offset, limit, () -> {
+            if (!coalescingEnabled) {
+                return db("getAll", NO_ID, () -> userService.getAll(offset, limit));
+            }
+            return db("getAll", NO_ID,
+                    () -> getAllFlight.execute(new Page(offset, limit), () -> userService.getAll(offset, limit)));
+        });
+    }
+
+
+    public int getAllCount() {
+        if (readModelReady()) {
+            return readModel.getAllCount();
+        }
+        return listCache.getAllCount(() -> {
+            if (!coalescingEnabled) {
+                return db("getAllCount", NO_ID, userService::getAllCount);
+            }
+            return db("getAllCount", NO_ID, () -> countFlight.execute(Boolean.TRUE, userService::getAllCount));
+        });
+    }
+
+
+    // Обращения, обслуженные UserResponseCache, тоже учитываются
+    private void recordFind(long id) {
+        if (hotUserTracker != null) {
+            hotUserTracker.record(id);
+        }
+        if (accessTracker != null) {
+            accessTracker.recordFind(id);
+        }
+    }
+
+
+    private boolean readModelReady() {
+        return readModel != null && readModel.isReady();
+    }
+
+
+    private static <T> T db(String operation, long userId, Supplier<T> call) {
+        return UserOperationEvent.record(operation, userId, () -> RequestTiming.time(RequestTiming.Phase.DB, call));
+    }
+
+}
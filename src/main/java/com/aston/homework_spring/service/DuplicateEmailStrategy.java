@@ -0,0 +1,20 @@
+package com.aston.homework_spring.service;
+
+public enum DuplicateEmailStrategy {
+
+    // Поведение create, когда email уже занят другим (не удаленным) пользователем
+
+    // Отказ: DuplicateEmailException, ответ 409
+    REJECT,
+
+    // Возвращается существующий пользователь без изменений, ответ 200
+    RETURN_EXISTING,
+
+    // Имя и возраст существующего пользователя заменяются переданными, ответ 200
+    UPSERT,
+
+    // Идемпотентное создание с ключом email: повтор того же запроса возвращает созданного ранее пользователя,
+    // а запрос с другими именем или возрастом отклоняется как REJECT
+    IDEMPOTENT
+
+}
@@ -0,0 +1,214 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.exception.DuplicateEmailException;
+import com.aston.homework_spring.exception.WorkloadSaturatedException;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserRowMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Component
+@Slf4j
+@ConditionalOnExpression("${users.group-commit.enabled:false} and '${users.backend:jpa}' == 'jpa'")
+public class GroupCommitUserWriter {
+
+    // Групповой коммит для создания пользователей.
+    // Одновременные запросы create ставятся в очередь, а отдельный поток собирает их в пачку (не более max-batch-size
+    // запросов и не дольше max-delay) и вставляет одним многострочным INSERT в одной транзакции. Вызывающий поток
+    // ждет свой результат синхронно: сгенерированный идентификатор или собственную ошибку дубликата email.
+    // Дубликаты не прерывают всю пачку: строки с занятым email пропускаются через ON CONFLICT DO NOTHING.
+    // Ожидание места в очереди и результата ограничено wait-timeout: если поток пачек не успевает, вызов получает
+    // ответ 503 (WorkloadSaturatedException), а не висит бесконечно. Любая ошибка пачки, в том числе Error,
+    // завершает ее запросы этой ошибкой, а поток продолжает собирать следующие пачки.
+
+    private static final String WORKLOAD = "group-commit";
+
+    private record Pending(User.In in, CompletableFuture<User.Out> result) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserStatisticsService statistics;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long waitTimeoutNanos;
+    private final DistributionSummary batchSizes;
+    private final Timer commitTimer;
+    private Thread flusher;
+
+    public GroupCommitUserWriter(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 UserStatisticsService statistics,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${users.group-commit.max-batch-size:64}") int maxBatchSize,
+                                 @Value("${users.group-commit.max-delay:PT0.005S}") Duration maxDelay,
+                                 @Value("${users.group-commit.queue-capacity:4096}") int queueCapacity,
+                                 @Value("${users.group-commit.wait-timeout:PT5S}") Duration waitTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.statistics = statistics;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.batchSizes = DistributionSummary.builder("users.group_commit.batch_size")
+                .description("Количество пользователей, вставленных одной транзакцией")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("users.group_commit.commit")
+                .description("Время вставки и коммита одной пачки")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+
+    @PostConstruct
+    public void start() {
+        flusher = Thread.ofPlatform().name("group-commit-users").daemon().start(this::run);
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        flusher.interrupt();
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        IllegalStateException shutdown = new IllegalStateException("Group commit writer is shutting down");
+        rest.forEach(pending -> pending.result().completeExceptionally(shutdown));
+    }
+
+
+    public User.Out create(User.In in) {
+        Pending pending = new Pending(in, new CompletableFuture<>());
+        try {
+            if (!queue.offer(pending, waitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new WorkloadSaturatedException(WORKLOAD);
+            }
+            return pending.result().get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } catch (TimeoutException e) {
+            // Запрос, еще не взятый в пачку, убирается из очереди и не будет вставлен. Пачка, которая уже
+            // выполняется, может его зафиксировать: повтор запроса тогда получит ответ о занятом email
+            queue.remove(pending);
+            throw new WorkloadSaturatedException(WORKLOAD);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Group commit failed", e.getCause());
+        }
+    }
+
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                IllegalStateException shutdown = new IllegalStateException("Group commit writer is shutting down");
+                batch.forEach(pending -> pending.result().completeExceptionally(shutdown));
+            } catch (Throwable e) {
+                log.error("Group commit flush failed", e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+
+    private void flush(List<Pending> batch) {
+        // Повторяющийся в одной пачке email получает ошибку сразу, в INSERT попадает только первый запрос
+        Map<String, Pending> byEmail = new HashMap<>();
+        List<Pending> rows = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            if (byEmail.putIfAbsent(pending.in().getEmail(), pending) == null) {
+                rows.add(pending);
+            } else {
+                pending.result().completeExceptionally(duplicate(pending.in().getEmail()));
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("insert into users (name, email, age, created_at) values ");
+        List<Object> args = new ArrayList<>(rows.size() * 4);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < rows.size(); i++) {
+            User.In in = rows.get(i).in();
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            args.add(in.getName());
+            args.add(in.getEmail());
+            args.add(in.getAge());
+            args.add(now);
+        }
+        sql.append(" on conflict (email) where deleted_at is null do nothing returning ").append(UserRowMapper.COLUMNS);
+
+        List<User.Out> inserted;
+        try {
+            inserted = commitTimer.record(() -> transactionTemplate.execute(
+                    status -> jdbcTemplate.query(sql.toString(), UserRowMapper.INSTANCE, args.toArray())));
+        } catch (RuntimeException e) {
+            log.error("Group commit of {} users failed", rows.size(), e);
+            rows.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+        batchSizes.record(rows.size());
+
+        Map<String, User.Out> insertedByEmail = new HashMap<>();
+        for (User.Out out : inserted) {
+            insertedByEmail.put(out.getEmail(), out);
+        }
+        for (Pending pending : rows) {
+            User.Out out = insertedByEmail.get(pending.in().getEmail());
+            if (out != null) {
+                statistics.recordCreated(out.getAge(), out.getCreated_at());
+                pending.result().complete(out);
+            } else {
+                pending.result().completeExceptionally(duplicate(pending.in().getEmail()));
+            }
+        }
+    }
+
+
+    private static DuplicateEmailException duplicate(String email) {
+        return new DuplicateEmailException(email);
+    }
+
+}
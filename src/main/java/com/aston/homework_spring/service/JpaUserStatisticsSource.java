@@ -0,0 +1,46 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.repository.UserRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+public class JpaUserStatisticsSource implements UserStatisticsSource {
+
+    // Оба запроса выполняются в одной транзакции REPEATABLE READ: возрасты и дни регистрации относятся к
+    // одному и тому же снимку таблицы users
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public JpaUserStatisticsSource(UserRepository userRepository, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+
+    public Snapshot load() {
+        return transactionTemplate.execute(status -> {
+            Map<Integer, Long> ages = new HashMap<>();
+            for (Object[] row : userRepository.countActiveByAge()) {
+                ages.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+            }
+            Map<LocalDate, Long> days = new HashMap<>();
+            for (Object[] row : userRepository.countActiveByCreationDay()) {
+                days.put(LocalDate.parse((String) row[0]), ((Number) row[1]).longValue());
+            }
+            return new Snapshot(ages, days);
+        });
+    }
+
+}
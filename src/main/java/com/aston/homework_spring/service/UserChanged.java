@@ -0,0 +1,26 @@
+package com.aston.homework_spring.service;
+
+import java.util.Collection;
+import java.util.List;
+
+// Событие об изменении пользователей, зафиксированном в хранилище. Публикуют его CombiningUserService после
+// записи, массовые операции после каждой порции и слушатель уведомлений PostgreSQL (UserChangeListener) при
+// изменениях с других экземпляров. Кэши и читающая модель подписаны на него через
+// @TransactionalEventListener(fallbackExecution = true): событие, опубликованное внутри транзакции, доставляется
+// после ее фиксации, вне транзакции - сразу.
+// all = true - изменились неизвестные пользователи (уведомления потеряны или не поместились), ids пуст.
+public record UserChanged(Collection<Long> ids, boolean all) {
+
+    public static UserChanged of(long id) {
+        return new UserChanged(List.of(id), false);
+    }
+
+    public static UserChanged of(Collection<Long> ids) {
+        return new UserChanged(List.copyOf(ids), false);
+    }
+
+    public static UserChanged everyone() {
+        return new UserChanged(List.of(), true);
+    }
+
+}
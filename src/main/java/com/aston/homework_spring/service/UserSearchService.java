@@ -0,0 +1,48 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.mapper.UserMapper;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+public class UserSearchService {
+
+    // Поиск пользователей по имени или его части, в том числе с опечатками.
+    // Выполняется в основной базе данных, поэтому доступен только с хранилищем jpa: при шардировании (sharded)
+    // пользователи лежат на шардах, а встроенное хранилище (mmap) работает без PostgreSQL.
+
+    private final UserRepository userRepository;
+    private final UserMapper mapper;
+    private final int maxLimit;
+    private final String similarityThreshold;
+
+    public UserSearchService(UserRepository userRepository,
+                             UserMapper mapper,
+                             @Value("${users.search.max-limit:100}") int maxLimit,
+                             @Value("${users.search.similarity-threshold:0.4}") double similarityThreshold) {
+        this.userRepository = userRepository;
+        this.mapper = mapper;
+        this.maxLimit = maxLimit;
+        this.similarityThreshold = Double.toString(similarityThreshold);
+    }
+
+
+    @Transactional(readOnly = true)
+    public List<User.Out> search(String query, int offset, int limit) {
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        userRepository.setWordSimilarityThreshold(similarityThreshold);
+        List<User> users = userRepository.searchByName(trimmed, Math.max(offset, 0), Math.min(limit, maxLimit));
+        return mapper.toDTO(users);
+    }
+
+}
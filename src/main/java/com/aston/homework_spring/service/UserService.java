@@ -2,15 +2,30 @@ package com.aston.homework_spring.service;
 
 import com.aston.homework_spring.model.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserService {
 
-    User.Out create(User.In in);
+    // Квалификатор реализации, которая хранит пользователей (JPA, шардированная и т.д.).
+    // Контроллеры получают основную реализацию CombiningUserService, которая оборачивает выбранное хранилище.
+    String BACKEND = "userServiceBackend";
+
+    // Результат создания: created = false, если по стратегии возвращен или обновлен уже существующий пользователь
+    record Creation(User.Out user, boolean created) {
+    }
+
+    default User.Out create(User.In in) {
+        return create(in, DuplicateEmailStrategy.REJECT).user();
+    }
+
+    Creation create(User.In in, DuplicateEmailStrategy onDuplicateEmail);
 
     User.Out find(long id);
 
-    User.Out update(long id, User.In in);
+    User.Lookup findAll(Collection<Long> ids);
+
+    User.Out update(long id, User.Patch patch);
 
     void delete(long id);
 
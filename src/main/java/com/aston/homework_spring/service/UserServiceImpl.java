@@ -1,55 +1,135 @@
 package com.aston.homework_spring.service;
 
+import com.aston.homework_spring.exception.DuplicateEmailException;
 import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.exception.LookupLimitExceededException;
 import com.aston.homework_spring.mapper.UserMapper;
 import com.aston.homework_spring.model.User;
 import com.aston.homework_spring.repository.UserRepository;
-import lombok.AllArgsConstructor;
+import com.aston.homework_spring.repository.UserStatsView;
+import com.aston.homework_spring.repository.UserWriteView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
+@Qualifier(UserService.BACKEND)
+@ConditionalOnProperty(name = "users.backend", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final UserMapper mapper;
+    private final UserStatisticsService statistics;
 
+    @Value("${users.lookup.max-ids:100}")
+    private int maxLookupIds;
 
+
+    // Уровень READ_COMMITTED: при REPEATABLE_READ конфликт со строкой, вставленной параллельной транзакцией после
+    // начала нашей, завершается ошибкой сериализации, а не обычной обработкой ON CONFLICT
     @Transactional(
-            isolation = Isolation.REPEATABLE_READ,
+            isolation = Isolation.READ_COMMITTED,
             rollbackFor = {Exception.class}
     )
-    public User.Out create(User.In in) {
-        User user = new User();
-        mapper.updateUserFromUserIn(in, user);
-        User createdUser = userRepository.save(user);
-        return mapper.toDTO(createdUser);
+    public Creation create(User.In in, DuplicateEmailStrategy onDuplicateEmail) {
+        LocalDateTime now = LocalDateTime.now();
+        UserWriteView row = switch (onDuplicateEmail) {
+            case REJECT -> userRepository.insertIfEmailFree(in.getName(), in.getEmail(), in.getAge(), now)
+                    .orElseThrow(() -> new DuplicateEmailException(in.getEmail()));
+            case RETURN_EXISTING, IDEMPOTENT -> insertOrSelect(in, now);
+            case UPSERT -> userRepository.upsertByEmail(in.getName(), in.getEmail(), in.getAge(), now);
+        };
+
+        if (row.getInserted()) {
+            statistics.recordCreated(row.getAge(), row.getCreated_at());
+        } else if (onDuplicateEmail == DuplicateEmailStrategy.IDEMPOTENT
+                && !(row.getName().equals(in.getName()) && row.getAge().equals(in.getAge()))) {
+            // Email занят пользователем с другими данными: это не повтор нашего запроса
+            throw new DuplicateEmailException(in.getEmail());
+        } else if (row.getPrevious_age() != null && !row.getPrevious_age().equals(row.getAge())) {
+            statistics.recordAgeChanged(row.getPrevious_age(), row.getAge());
+        }
+        return new Creation(mapper.toDTO(row), row.getInserted());
     }
 
 
     @Transactional(readOnly = true)
     public User.Out find(long id) {
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("User with id = " + id + " not found"));
+                .orElseThrow(() -> new EntityNotFoundException(id));
         return mapper.toDTO(user);
     }
 
 
+    @Transactional(readOnly = true)
+    public User.Lookup findAll(Collection<Long> ids) {
+        // Повторяющиеся идентификаторы отбрасываются с сохранением порядка запроса
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.size() > maxLookupIds) {
+            throw new LookupLimitExceededException(distinctIds.size(), maxLookupIds);
+        }
+        if (distinctIds.isEmpty()) {
+            return new User.Lookup(List.of(), List.of());
+        }
+
+        Map<Long, User> found = userRepository.findAllByIdArray(distinctIds.toArray(Long[]::new)).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<User> users = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinctIds) {
+            User user = found.get(id);
+            if (user != null) {
+                users.add(user);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new User.Lookup(mapper.toDTO(users), missing);
+    }
+
+
     @Transactional(
             isolation = Isolation.REPEATABLE_READ,
             rollbackFor = {Exception.class}
     )
-    public User.Out update(long id, User.In in) {
+    public User.Out update(long id, User.Patch patch) {
         User user = userRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("User with id = " + id + " not found"));
-
-        mapper.updateUserFromUserIn(in, user);
+                .orElseThrow(() -> new EntityNotFoundException(id));
+
+        // Если запрос ничего не меняет, запись в базу данных не выполняется
+        if (!hasChanges(patch, user)) {
+            return mapper.toDTO(user);
+        }
+
+        // Занятый email проверяется до записи: иначе нарушение uk_users_email обнаружится только при коммите
+        if (patch.getEmail() != null && !patch.getEmail().equals(user.getEmail())
+                && userRepository.existsByEmail(patch.getEmail())) {
+            throw new DuplicateEmailException(patch.getEmail());
+        }
+
+        // Благодаря @DynamicUpdate в UPDATE попадают только измененные колонки
+        Integer oldAge = user.getAge();
+        mapper.patchUserFromUserPatch(patch, user);
         User updatedUser = userRepository.save(user);
-        return mapper.toDTO(user);
+        if (!oldAge.equals(updatedUser.getAge())) {
+            statistics.recordAgeChanged(oldAge, updatedUser.getAge());
+        }
+        return mapper.toDTO(updatedUser);
     }
 
 
@@ -58,9 +138,10 @@ public class UserServiceImpl implements UserService {
             rollbackFor = {Exception.class}
     )
     public void delete(long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("User with id = " + id + " not found"));
-        userRepository.deleteById(user.getId());
+        // Мягкое удаление: строка только помечается, физически ее удаляет UserPurgeJob в непиковое время
+        UserStatsView deleted = userRepository.softDeleteByIdReturning(id)
+                .orElseThrow(() -> new EntityNotFoundException(id));
+        statistics.recordDeleted(deleted.getAge(), deleted.getCreated_at());
     }
 
 
@@ -76,4 +157,19 @@ public class UserServiceImpl implements UserService {
         return userRepository.getTotalCountOfUsers();
     }
 
+
+    private UserWriteView insertOrSelect(User.In in, LocalDateTime now) {
+        return userRepository.insertOrSelectByEmail(in.getName(), in.getEmail(), in.getAge(), now)
+                // Email занят параллельной транзакцией после начала запроса: строка уже зафиксирована и видна
+                .or(() -> userRepository.insertOrSelectByEmail(in.getName(), in.getEmail(), in.getAge(), now))
+                .orElseThrow(() -> new DuplicateEmailException(in.getEmail()));
+    }
+
+
+    private static boolean hasChanges(User.Patch patch, User user) {
+        return (patch.getName() != null && !patch.getName().equals(user.getName()))
+                || (patch.getEmail() != null && !patch.getEmail().equals(user.getEmail()))
+                || (patch.getAge() != null && !patch.getAge().equals(user.getAge()));
+    }
+
 }
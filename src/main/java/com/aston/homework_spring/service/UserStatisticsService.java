@@ -0,0 +1,213 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+@Service
+@Slf4j
+public class UserStatisticsService {
+
+    // Статистика пользователей в памяти: количество по возрасту и количество регистраций по дням.
+    // Счетчики изменяются инкрементально после коммита create, update и delete, поэтому запрос статистики не
+    // зависит от размера таблицы. Изменения, сделанные другими экземплярами приложения или в обход сервиса,
+    // учитываются при периодической сверке, которая пересчитывает счетчики по хранилищу (UserStatisticsSource).
+    // Изменения, закоммиченные пока идет сверка, записываются в журнал и переносятся в новые счетчики перед
+    // их подменой, поэтому сверка их не теряет. Изменение, закоммиченное до снимка сверки, но учтенное после начала
+    // журнала, может быть посчитано дважды: это окно в несколько микросекунд, и следующая сверка его исправляет.
+
+    private static final int MAX_AGE = 150;
+
+    private static final class Aggregates {
+
+        private final AtomicLongArray ages = new AtomicLongArray(MAX_AGE + 1);
+        private final ConcurrentMap<LocalDate, LongAdder> days = new ConcurrentHashMap<>();
+
+        private void addAge(Integer age, long delta) {
+            if (age != null && age >= 0 && age <= MAX_AGE) {
+                ages.addAndGet(age, delta);
+            }
+        }
+
+        private void addDay(LocalDate day, long delta) {
+            if (day != null) {
+                days.computeIfAbsent(day, key -> new LongAdder()).add(delta);
+            }
+        }
+
+        private void addAll(Aggregates other) {
+            for (int age = 0; age <= MAX_AGE; age++) {
+                ages.addAndGet(age, other.ages.get(age));
+            }
+            other.days.forEach((day, count) -> addDay(day, count.sum()));
+        }
+
+    }
+
+    // Источник запрашивается при сверке, а не при создании: встроенное хранилище само является источником и
+    // зависит от этого сервиса
+    private final ObjectProvider<UserStatisticsSource> source;
+    private final int ageBucketWidth;
+    // Изменения берут блокировку чтения (параллельно друг с другом), подмена счетчиков - блокировку записи
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private Aggregates aggregates = new Aggregates();
+    private Aggregates journal;
+    private volatile LocalDateTime reconciledAt;
+
+    public UserStatisticsService(ObjectProvider<UserStatisticsSource> source,
+                                 @Value("${users.statistics.age-bucket-width:10}") int ageBucketWidth) {
+        this.source = source;
+        this.ageBucketWidth = ageBucketWidth;
+    }
+
+
+    public void recordCreated(Integer age, LocalDateTime createdAt) {
+        afterCommit(() -> apply(current -> {
+            current.addAge(age, 1);
+            current.addDay(createdAt != null ? createdAt.toLocalDate() : null, 1);
+        }));
+    }
+
+
+    public void recordDeleted(Integer age, LocalDateTime createdAt) {
+        afterCommit(() -> apply(current -> {
+            current.addAge(age, -1);
+            current.addDay(createdAt != null ? createdAt.toLocalDate() : null, -1);
+        }));
+    }
+
+
+    public void recordAgeChanged(Integer oldAge, Integer newAge) {
+        afterCommit(() -> apply(current -> {
+            current.addAge(oldAge, -1);
+            current.addAge(newAge, 1);
+        }));
+    }
+
+
+    @Scheduled(fixedDelayString = "${users.statistics.reconcile-interval:PT5M}")
+    public void reconcile() {
+        UserStatisticsSource current = source.getIfAvailable();
+        if (current == null) {
+            return;
+        }
+
+        Aggregates changes = new Aggregates();
+        swapLock.writeLock().lock();
+        try {
+            journal = changes;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        Aggregates fresh = new Aggregates();
+        try {
+            UserStatisticsSource.Snapshot snapshot = current.load();
+            snapshot.ages().forEach(fresh::addAge);
+            snapshot.days().forEach(fresh::addDay);
+        } catch (RuntimeException e) {
+            stopJournal();
+            throw e;
+        }
+
+        // Подмена и перенос журнала выполняются под блокировкой записи: ни одно изменение не попадет в старые
+        // счетчики после того, как журнал перенесен в новые
+        swapLock.writeLock().lock();
+        try {
+            fresh.addAll(changes);
+            aggregates = fresh;
+            journal = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        reconciledAt = LocalDateTime.now();
+        log.debug("User statistics reconciled");
+    }
+
+
+    public User.Statistics getStatistics(LocalDate from, LocalDate to) {
+        Aggregates current;
+        swapLock.readLock().lock();
+        try {
+            current = aggregates;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+
+        Map<String, Long> ageBuckets = new LinkedHashMap<>();
+        for (int age = 0; age <= MAX_AGE; age++) {
+            long count = current.ages.get(age);
+            if (count != 0) {
+                int start = age / ageBucketWidth * ageBucketWidth;
+                ageBuckets.merge(start + "-" + (start + ageBucketWidth - 1), count, Long::sum);
+            }
+        }
+
+        Map<LocalDate, Long> signupsPerDay = new TreeMap<>();
+        current.days.forEach((day, count) -> {
+            long value = count.sum();
+            if (value != 0 && (from == null || !day.isBefore(from)) && (to == null || !day.isAfter(to))) {
+                signupsPerDay.put(day, value);
+            }
+        });
+
+        return new User.Statistics(ageBuckets, signupsPerDay, reconciledAt);
+    }
+
+
+    private void apply(Consumer<Aggregates> change) {
+        swapLock.readLock().lock();
+        try {
+            change.accept(aggregates);
+            if (journal != null) {
+                change.accept(journal);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+
+    private void stopJournal() {
+        swapLock.writeLock().lock();
+        try {
+            journal = null;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+
+    // Счетчики изменяются только после успешного коммита, чтобы откаченные транзакции не искажали статистику
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+}
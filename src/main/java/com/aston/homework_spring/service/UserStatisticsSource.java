@@ -0,0 +1,17 @@
+package com.aston.homework_spring.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+public interface UserStatisticsSource {
+
+    // Источник полной сверки для UserStatisticsService. Реализация читает то хранилище, которое выбрано в
+    // users.backend, поэтому статистика совпадает с данными, которые обслуживает UserService.
+
+    // Количество активных пользователей по возрасту и по дню регистрации, посчитанные на одном снимке данных
+    record Snapshot(Map<Integer, Long> ages, Map<LocalDate, Long> days) {
+    }
+
+    Snapshot load();
+
+}
@@ -0,0 +1,47 @@
+package com.aston.homework_spring.sharding;
+
+import com.aston.homework_spring.service.UserStatisticsSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "users.backend", havingValue = "sharded")
+public class ShardedStatisticsSource implements UserStatisticsSource {
+
+    // Сверка статистики по всем шардам: счетчики шардов складываются. Оба распределения шарда читаются одним
+    // запросом, то есть на одном снимке данных этого шарда.
+
+    private static final String COUNTS =
+            "select 'age' as kind, cast(age as text) as value, count(*) as users from users " +
+            "where deleted_at is null group by age " +
+            "union all " +
+            "select 'day', to_char(created_at, 'YYYY-MM-DD'), count(*) from users " +
+            "where deleted_at is null and created_at is not null group by 2";
+
+    private final UserShards shards;
+
+    public ShardedStatisticsSource(UserShards shards) {
+        this.shards = shards;
+    }
+
+
+    public Snapshot load() {
+        Map<Integer, Long> ages = new HashMap<>();
+        Map<LocalDate, Long> days = new HashMap<>();
+        for (UserShard shard : shards.all()) {
+            shard.jdbcTemplate().query(COUNTS, rs -> {
+                if ("age".equals(rs.getString("kind"))) {
+                    ages.merge(Integer.parseInt(rs.getString("value")), rs.getLong("users"), Long::sum);
+                } else {
+                    days.merge(LocalDate.parse(rs.getString("value")), rs.getLong("users"), Long::sum);
+                }
+            });
+        }
+        return new Snapshot(ages, days);
+    }
+
+}
@@ -0,0 +1,418 @@
+package com.aston.homework_spring.sharding;
+
+import com.aston.homework_spring.exception.DuplicateEmailException;
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.exception.LookupLimitExceededException;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserRowMapper;
+import com.aston.homework_spring.service.DuplicateEmailStrategy;
+import com.aston.homework_spring.service.UserService;
+import com.aston.homework_spring.service.UserStatisticsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+@Service
+@Slf4j
+@Qualifier(UserService.BACKEND)
+@ConditionalOnProperty(name = "users.backend", havingValue = "sharded")
+public class ShardedUserService implements UserService {
+
+    // Хранение пользователей на нескольких шардах PostgreSQL.
+    // - Новый пользователь попадает на случайный шард, а его идентификатор содержит номер шарда (id % N),
+    //   поэтому find, update и delete обращаются только к одному шарду.
+    // - Уникальность email обеспечивается глобально реестром user_email_claims на нулевом шарде: адрес сначала
+    //   занимается в реестре как незавершенный (pending), затем изменяется шард, затем запись реестра
+    //   подтверждается. Реестр и шард - разные базы данных, общей транзакции у них нет: если процесс упал между
+    //   шагами, незавершенную запись позже сверяет с шардом sweepEmailClaims и подтверждает или удаляет ее.
+    // - getAll и getAllCount выполняются параллельно на всех шардах (на виртуальных потоках), результаты
+    //   объединяются в порядке возрастания идентификатора.
+    // - Статистика пользователей изменяется после каждой записи, а сверка читает шарды (ShardedStatisticsSource).
+
+    private static final String SELECT = "select " + UserRowMapper.COLUMNS + " from users ";
+
+    private record Updated(User.Out user, int previousAge) {
+    }
+
+    private record Deleted(String email, int age, LocalDateTime createdAt) {
+    }
+
+    private static final RowMapper<Updated> UPDATED = (rs, rowNum) ->
+            new Updated(UserRowMapper.INSTANCE.mapRow(rs, rowNum), rs.getInt("previous_age"));
+
+    private static final RowMapper<Deleted> DELETED = (rs, rowNum) ->
+            new Deleted(rs.getString("email"), rs.getInt("age"), rs.getObject("created_at", LocalDateTime.class));
+
+    private final UserShards shards;
+    private final UserStatisticsService statistics;
+    private final int maxLookupIds;
+    private final long claimGraceMillis;
+
+    public ShardedUserService(UserShards shards,
+                              UserStatisticsService statistics,
+                              @Value("${users.lookup.max-ids:100}") int maxLookupIds,
+                              @Value("${users.sharding.claim-grace:PT1M}") Duration claimGrace) {
+        this.shards = shards;
+        this.statistics = statistics;
+        this.maxLookupIds = maxLookupIds;
+        this.claimGraceMillis = claimGrace.toMillis();
+    }
+
+
+    public Creation create(User.In in, DuplicateEmailStrategy onDuplicateEmail) {
+        UserShard shard = shards.all().get(ThreadLocalRandom.current().nextInt(shards.size()));
+        if (!tryClaimEmail(in.getEmail(), shard)) {
+            return resolveDuplicate(in, onDuplicateEmail);
+        }
+        User.Out created;
+        try {
+            created = shard.transactionTemplate().execute(status -> shard.jdbcTemplate().queryForObject(
+                    "insert into users (name, email, age, created_at) values (?, ?, ?, ?) returning " +
+                            UserRowMapper.COLUMNS,
+                    UserRowMapper.INSTANCE, in.getName(), in.getEmail(), in.getAge(), LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            releaseEmail(in.getEmail());
+            throw e;
+        }
+        confirmEmail(in.getEmail());
+        statistics.recordCreated(created.getAge(), created.getCreated_at());
+        return new Creation(created, true);
+    }
+
+
+    public User.Out find(long id) {
+        UserShard shard = shards.forId(id);
+        return shard.jdbcTemplate().query(SELECT + "where id = ? and deleted_at is null", UserRowMapper.INSTANCE, id)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> notFound(id));
+    }
+
+
+    public User.Lookup findAll(Collection<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.size() > maxLookupIds) {
+            throw new LookupLimitExceededException(distinctIds.size(), maxLookupIds);
+        }
+
+        Map<UserShard, List<Long>> idsByShard = new HashMap<>();
+        for (Long id : distinctIds) {
+            idsByShard.computeIfAbsent(shards.forId(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, User.Out> found = new HashMap<>();
+        scatter(new ArrayList<>(idsByShard.keySet()), shard -> shard.jdbcTemplate().query(
+                SELECT + "where id = any(?) and deleted_at is null", UserRowMapper.INSTANCE,
+                (Object) idsByShard.get(shard).toArray(Long[]::new)))
+                .forEach(users -> users.forEach(user -> found.put(user.getId(), user)));
+
+        List<User.Out> users = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinctIds) {
+            User.Out user = found.get(id);
+            if (user != null) {
+                users.add(user);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new User.Lookup(users, missing);
+    }
+
+
+    public User.Out update(long id, User.Patch patch) {
+        UserShard shard = shards.forId(id);
+        User.Out current = find(id);
+
+        boolean emailChanged = patch.getEmail() != null && !patch.getEmail().equals(current.getEmail());
+        boolean nameChanged = patch.getName() != null && !patch.getName().equals(current.getName());
+        boolean ageChanged = patch.getAge() != null && !patch.getAge().equals(current.getAge());
+        if (!emailChanged && !nameChanged && !ageChanged) {
+            return current;
+        }
+
+        // UPDATE содержит только измененные колонки
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (nameChanged) {
+            assignments.add("name = ?");
+            args.add(patch.getName());
+        }
+        if (emailChanged) {
+            assignments.add("email = ?");
+            args.add(patch.getEmail());
+        }
+        if (ageChanged) {
+            assignments.add("age = ?");
+            args.add(patch.getAge());
+        }
+        args.add(id);
+
+        // Новый адрес занимается, а старый помечается незавершенным до изменения шарда
+        if (emailChanged) {
+            claimEmail(patch.getEmail(), shard);
+            markEmailPending(current.getEmail(), shard);
+        }
+        List<Updated> updated;
+        try {
+            // Строка блокируется в подзапросе, поэтому previous_age - возраст, который заменяет этот UPDATE
+            updated = shard.transactionTemplate().execute(status -> shard.jdbcTemplate().query(
+                    "update users u set " + String.join(", ", assignments) +
+                            " from (select id, age from users where id = ? and deleted_at is null for update) o" +
+                            " where u.id = o.id returning u.id, u.name, u.email, u.age, u.created_at," +
+                            " o.age as previous_age",
+                    UPDATED, args.toArray()));
+        } catch (RuntimeException e) {
+            if (emailChanged) {
+                releaseEmail(patch.getEmail());
+                confirmEmail(current.getEmail());
+            }
+            throw e;
+        }
+        if (updated == null || updated.isEmpty()) {
+            if (emailChanged) {
+                releaseEmail(patch.getEmail());
+                confirmEmail(current.getEmail());
+            }
+            throw notFound(id);
+        }
+        if (emailChanged) {
+            confirmEmail(patch.getEmail());
+            releaseEmail(current.getEmail());
+        }
+        Updated row = updated.getFirst();
+        if (row.previousAge() != row.user().getAge()) {
+            statistics.recordAgeChanged(row.previousAge(), row.user().getAge());
+        }
+        return row.user();
+    }
+
+
+    public void delete(long id) {
+        User.Out current = find(id);
+        UserShard shard = shards.forId(id);
+
+        // Адрес помечается незавершенным до удаления: если процесс упадет после удаления, запись реестра
+        // освободит sweepEmailClaims
+        markEmailPending(current.getEmail(), shard);
+        List<Deleted> deleted;
+        try {
+            deleted = shard.transactionTemplate().execute(status -> shard.jdbcTemplate().query(
+                    "update users set deleted_at = now() where id = ? and deleted_at is null " +
+                            "returning email, age, created_at",
+                    DELETED, id));
+        } catch (RuntimeException e) {
+            confirmEmail(current.getEmail());
+            throw e;
+        }
+        if (deleted == null || deleted.isEmpty()) {
+            throw notFound(id);
+        }
+        Deleted row = deleted.getFirst();
+        releaseEmail(row.email());
+        statistics.recordDeleted(row.age(), row.createdAt());
+    }
+
+
+    public List<User.Out> getAll(int offset, int limit) {
+        List<UserShard> all = shards.all();
+        if (all.size() == 1) {
+            return all.getFirst().jdbcTemplate().query(SELECT + "where deleted_at is null order by id offset ? limit ?",
+                    UserRowMapper.INSTANCE, offset, limit);
+        }
+
+        // Страница ищется в три параллельных обхода шардов, и ни один шард не возвращает offset + limit строк:
+        // 1. каждый шард находит id на своей позиции offset / N, наименьший из них - minId;
+        // 2. сумма строк с id < minId на всех шардах - глобальная позиция minId, она не больше offset;
+        // 3. каждый шард возвращает не более (offset - позиция minId) + limit строк начиная с minId.
+        // При равномерном распределении пользователей по шардам на шаге 3 пропускается меньше N * N строк.
+        long localOffset = offset / all.size();
+        Long minId = scatter(all, shard -> shard.jdbcTemplate().queryForList(
+                "select id from users where deleted_at is null order by id offset ? limit 1", Long.class, localOffset))
+                .stream()
+                .flatMap(List::stream)
+                .min(Long::compare)
+                .orElse(null);
+        if (minId == null) {
+            return List.of();
+        }
+
+        long position = scatter(all, shard -> shard.jdbcTemplate().queryForObject(
+                "select count(*) from users where deleted_at is null and id < ?", Long.class, minId))
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+        int skip = (int) Math.max(0, offset - position);
+        int perShard = skip + limit;
+
+        List<User.Out> merged = new ArrayList<>();
+        scatter(all, shard -> shard.jdbcTemplate().query(
+                SELECT + "where deleted_at is null and id >= ? order by id limit ?", UserRowMapper.INSTANCE,
+                minId, perShard))
+                .forEach(merged::addAll);
+        merged.sort(Comparator.comparing(User.Out::getId));
+        return merged.subList(Math.min(skip, merged.size()), Math.min(perShard, merged.size()));
+    }
+
+
+    public int getAllCount() {
+        return scatter(shards.all(), shard -> shard.jdbcTemplate().queryForObject(
+                "select count(*) from users where deleted_at is null", Integer.class))
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+
+    // Незавершенные записи реестра старше claim-grace сверяются с шардом: если на нем есть активный пользователь
+    // с этим адресом, запись подтверждается, иначе удаляется. claim-grace должен превышать время самой долгой
+    // записи в шард, иначе запись реестра может быть удалена до коммита вставки.
+    @Scheduled(fixedDelayString = "${users.sharding.claim-sweep-interval:PT1M}")
+    public void sweepEmailClaims() {
+        List<Map<String, Object>> stale = shards.directory().jdbcTemplate().queryForList(
+                "select email, shard, claimed_at from user_email_claims " +
+                        "where pending and claimed_at < now() - ? * interval '1 millisecond' " +
+                        "order by claimed_at limit 1000",
+                claimGraceMillis);
+
+        int confirmed = 0;
+        int released = 0;
+        for (Map<String, Object> claim : stale) {
+            String email = (String) claim.get("email");
+            Object claimedAt = claim.get("claimed_at");
+            UserShard shard = shards.all().get(((Number) claim.get("shard")).intValue());
+            Boolean live = shard.jdbcTemplate().queryForObject(
+                    "select exists(select 1 from users where email = ? and deleted_at is null)", Boolean.class, email);
+            // Условие по claimed_at не дает затронуть запись, которую за это время заняли или пометили заново
+            if (Boolean.TRUE.equals(live)) {
+                confirmed += shards.directory().jdbcTemplate().update(
+                        "update user_email_claims set pending = false where email = ? and pending and claimed_at = ?",
+                        email, claimedAt);
+            } else {
+                released += shards.directory().jdbcTemplate().update(
+                        "delete from user_email_claims where email = ? and pending and claimed_at = ?",
+                        email, claimedAt);
+            }
+        }
+        if (confirmed + released > 0) {
+            log.info("Email claims swept: {} confirmed, {} released", confirmed, released);
+        }
+    }
+
+
+    private <T> List<T> scatter(List<UserShard> targets, Function<UserShard, T> query) {
+        if (targets.size() == 1) {
+            return List.of(query.apply(targets.getFirst()));
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>(targets.size());
+            for (UserShard shard : targets) {
+                futures.add(executor.submit(() -> query.apply(shard)));
+            }
+            List<T> results = new ArrayList<>(targets.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+
+    // Занятый email: владелец адреса ищется на всех шардах, дальше действует выбранная стратегия
+    private Creation resolveDuplicate(User.In in, DuplicateEmailStrategy onDuplicateEmail) {
+        if (onDuplicateEmail == DuplicateEmailStrategy.REJECT) {
+            throw new DuplicateEmailException(in.getEmail());
+        }
+        // Пользователь не найден, если адрес занят вставкой, которая еще не завершилась
+        User.Out existing = scatter(shards.all(), shard -> shard.jdbcTemplate().query(
+                SELECT + "where email = ? and deleted_at is null", UserRowMapper.INSTANCE, in.getEmail()))
+                .stream()
+                .flatMap(List::stream)
+                .findFirst()
+                .orElseThrow(() -> new DuplicateEmailException(in.getEmail()));
+
+        return switch (onDuplicateEmail) {
+            case IDEMPOTENT -> {
+                if (!existing.getName().equals(in.getName()) || !existing.getAge().equals(in.getAge())) {
+                    throw new DuplicateEmailException(in.getEmail());
+                }
+                yield new Creation(existing, false);
+            }
+            case UPSERT -> new Creation(update(existing.getId(), User.Patch.builder()
+                    .name(in.getName())
+                    .age(in.getAge())
+                    .build()), false);
+            default -> new Creation(existing, false);
+        };
+    }
+
+
+    private void claimEmail(String email, UserShard shard) {
+        if (!tryClaimEmail(email, shard)) {
+            throw new DuplicateEmailException(email);
+        }
+    }
+
+
+    private boolean tryClaimEmail(String email, UserShard shard) {
+        return shards.directory().jdbcTemplate().update(
+                "insert into user_email_claims (email, shard, pending) values (?, ?, true) on conflict do nothing",
+                email, shard.index()) > 0;
+    }
+
+
+    // Ошибка подтверждения не отменяет уже выполненную запись в шард: запись реестра подтвердит sweepEmailClaims
+    private void confirmEmail(String email) {
+        try {
+            shards.directory().jdbcTemplate().update(
+                    "update user_email_claims set pending = false where email = ?", email);
+        } catch (RuntimeException e) {
+            log.warn("Email claim {} is left pending and will be resolved by the sweep", email, e);
+        }
+    }
+
+
+    private void markEmailPending(String email, UserShard shard) {
+        shards.directory().jdbcTemplate().update(
+                "update user_email_claims set pending = true, shard = ?, claimed_at = now() where email = ?",
+                shard.index(), email);
+    }
+
+
+    private void releaseEmail(String email) {
+        shards.directory().jdbcTemplate().update("delete from user_email_claims where email = ?", email);
+    }
+
+
+    private static EntityNotFoundException notFound(long id) {
+        return new EntityNotFoundException(id);
+    }
+
+}
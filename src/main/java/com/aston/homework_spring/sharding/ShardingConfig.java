@@ -0,0 +1,87 @@
+package com.aston.homework_spring.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "users.backend", havingValue = "sharded")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    // Подключения к шардам создаются отдельно от основного источника данных spring.datasource.
+    // При запуске на каждом шарде выполняются миграции из changelog-shard.yml (без тестовых данных) и
+    // настраивается последовательность идентификаторов так, чтобы id % количество шардов = номер шарда.
+
+    @Bean
+    public UserShards userShards(ShardingProperties properties) throws Exception {
+        if (properties.shards() == null || properties.shards().isEmpty()) {
+            throw new IllegalStateException("users.sharding.shards must contain at least one shard");
+        }
+
+        List<UserShard> shards = new ArrayList<>();
+        for (int i = 0; i < properties.shards().size(); i++) {
+            shards.add(createShard(i, properties.shards().get(i),
+                    properties.poolSize() > 0 ? properties.poolSize() : 10));
+        }
+        for (UserShard shard : shards) {
+            migrate(shard);
+            configureIdSequence(shard, shards.size());
+        }
+        return new UserShards(shards);
+    }
+
+
+    public static UserShard createShard(int index, ShardingProperties.Shard settings, int poolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("users-shard-" + index);
+        dataSource.setJdbcUrl(settings.url());
+        dataSource.setUsername(settings.username());
+        dataSource.setPassword(settings.password());
+        dataSource.setMaximumPoolSize(poolSize);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        return new UserShard(index, dataSource, new JdbcTemplate(dataSource), transactionTemplate);
+    }
+
+
+    public static void migrate(UserShard shard) throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(shard.dataSource());
+        liquibase.setChangeLog("classpath:liquibase/changelog-shard.yml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+    }
+
+
+    // Идентификаторы шарда k имеют вид k, k + N, k + 2N, ...: шард находится по id без обращения к другим шардам
+    public static void configureIdSequence(UserShard shard, int shardCount) {
+        Long increment = shard.jdbcTemplate().queryForObject(
+                "select increment_by from pg_sequences where sequencename = 'users_id_seq'", Long.class);
+        if (increment != null && increment == shardCount) {
+            return;
+        }
+
+        Long maxId = shard.jdbcTemplate().queryForObject("select coalesce(max(id), 0) from users", Long.class);
+        long start = maxId + 1;
+        start += Math.floorMod(shard.index() - start, (long) shardCount);
+        shard.jdbcTemplate().execute("alter sequence users_id_seq increment by " + shardCount +
+                " minvalue 1 restart with " + start);
+        log.info("Shard {}: users_id_seq configured with increment {} starting at {}", shard.index(), shardCount, start);
+    }
+
+}
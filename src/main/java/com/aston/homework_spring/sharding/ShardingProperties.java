@@ -0,0 +1,16 @@
+package com.aston.homework_spring.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "users.sharding")
+public record ShardingProperties(List<Shard> shards, int poolSize) {
+
+    // Настройки шардов: порядок в списке задает номер шарда, который закодирован в идентификаторе пользователя
+    // (id % количество шардов). Поэтому менять порядок или количество шардов для существующих данных нельзя.
+
+    public record Shard(String url, String username, String password) {
+    }
+
+}
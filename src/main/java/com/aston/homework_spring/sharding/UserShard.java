@@ -0,0 +1,10 @@
+package com.aston.homework_spring.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+public record UserShard(int index, DataSource dataSource, JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate) {
+}
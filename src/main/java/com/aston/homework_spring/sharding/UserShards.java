@@ -0,0 +1,33 @@
+package com.aston.homework_spring.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+
+public record UserShards(List<UserShard> all) implements AutoCloseable {
+
+    // Набор шардов и маршрутизация по идентификатору пользователя
+
+    public UserShard forId(long id) {
+        return all.get((int) Math.floorMod(id, (long) all.size()));
+    }
+
+    // Нулевой шард хранит глобальный реестр занятых email
+    public UserShard directory() {
+        return all.getFirst();
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    @Override
+    public void close() {
+        for (UserShard shard : all) {
+            if (shard.dataSource() instanceof HikariDataSource dataSource) {
+                dataSource.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.aston.homework_spring.storage;
+
+import java.util.Arrays;
+
+final class LongLongHashMap {
+
+    // Хеш-таблица с открытой адресацией на примитивных массивах long -> long (без упаковки в Long).
+    // Ключ 0 зарезервирован под пустую ячейку: идентификаторы пользователей начинаются с 1.
+    // Удаление выполняется сдвигом следующих элементов цепочки, поэтому "надгробия" не накапливаются.
+
+    static final long MISSING = -1L;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+
+    long get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == 0) {
+                return MISSING;
+            }
+            if (current == key) {
+                return values[slot];
+            }
+        }
+    }
+
+
+    void put(long key, long value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Key must be positive: " + key);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return;
+            }
+            if (current == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+    }
+
+
+    long remove(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == 0) {
+                return MISSING;
+            }
+            if (current == key) {
+                long value = values[slot];
+                shiftBack(slot);
+                size--;
+                return value;
+            }
+        }
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                keys[hole] = 0;
+                return;
+            }
+            int home = slot(key);
+            // Элемент переносится в "дыру", если его исходная позиция не лежит между дырой и текущей ячейкой
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                keys[hole] = key;
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+    }
+
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.aston.homework_spring.storage;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class MappedBackendEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    // Встроенному хранилищу (users.backend=mmap) PostgreSQL не нужен: автоконфигурации источника данных, JPA,
+    // репозиториев и Liquibase исключаются, чтобы приложение запускалось без базы данных и не держало пул
+    // соединений. Бины, которые работают с основной базой данных, в этом режиме не создаются (условие
+    // '${users.backend:jpa}' != 'mmap').
+
+    private static final List<String> EXCLUDED = List.of(
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration",
+            "org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration",
+            "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+            "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+            "org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration");
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!"mmap".equals(environment.getProperty("users.backend"))) {
+            return;
+        }
+        Set<String> excluded = new LinkedHashSet<>();
+        String configured = environment.getProperty("spring.autoconfigure.exclude");
+        if (configured != null && !configured.isBlank()) {
+            excluded.addAll(List.of(configured.split("\\s*,\\s*")));
+        }
+        excluded.addAll(EXCLUDED);
+        environment.getPropertySources().addFirst(new MapPropertySource("usersMappedBackend",
+                Map.of("spring.autoconfigure.exclude", String.join(",", excluded))));
+    }
+
+}
@@ -0,0 +1,399 @@
+package com.aston.homework_spring.storage;
+
+import com.aston.homework_spring.exception.DuplicateEmailException;
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.exception.LookupLimitExceededException;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.DuplicateEmailStrategy;
+import com.aston.homework_spring.service.UserService;
+import com.aston.homework_spring.service.UserStatisticsService;
+import com.aston.homework_spring.service.UserStatisticsSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Service
+@Slf4j
+@Qualifier(UserService.BACKEND)
+@ConditionalOnProperty(name = "users.backend", havingValue = "mmap")
+public class MappedUserService implements UserService, UserStatisticsSource {
+
+    // Встроенное хранилище пользователей без PostgreSQL: журнал на дозапись в отображенном в память файле
+    // (UserLog) и индексы в памяти, которые восстанавливаются чтением журнала при запуске:
+    // - id -> смещение последней записи пользователя (LongLongHashMap на примитивных массивах);
+    // - email -> id (OffHeapEmailIndex вне кучи);
+    // - идентификаторы в порядке создания для постраничного чтения.
+    // Когда мертвые записи (старые версии и удаленные пользователи) занимают больше половины журнала, он
+    // уплотняется: живые записи переписываются в новый файл, который атомарно заменяет старый.
+    // Следующий идентификатор хранится в заголовке журнала, поэтому после уплотнения и перезапуска идентификаторы
+    // удаленных пользователей не выдаются повторно.
+    // Хранилище также является источником сверки статистики: PostgreSQL в этом режиме не используется.
+
+    private final Path path;
+    private final int initialSize;
+    private final boolean syncWrites;
+    private final int compactionMinDeadBytes;
+    private final int maxLookupIds;
+    private final UserStatisticsService statistics;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongLongHashMap offsets = new LongLongHashMap(1024);
+    private final OffHeapEmailIndex emails;
+    private UserLog userLog;
+    private long[] order = new long[1024];
+    private int orderSize;
+    private long nextId = 1;
+    private long deadBytes;
+
+    public MappedUserService(@Value("${users.mmap.file:data/users.log}") Path path,
+                             @Value("${users.mmap.initial-size:67108864}") int initialSize,
+                             @Value("${users.mmap.sync-writes:false}") boolean syncWrites,
+                             @Value("${users.mmap.compaction-min-dead-bytes:16777216}") int compactionMinDeadBytes,
+                             @Value("${users.lookup.max-ids:100}") int maxLookupIds,
+                             UserStatisticsService statistics) {
+        this.path = path;
+        this.initialSize = initialSize;
+        this.syncWrites = syncWrites;
+        this.compactionMinDeadBytes = compactionMinDeadBytes;
+        this.maxLookupIds = maxLookupIds;
+        this.statistics = statistics;
+        this.emails = new OffHeapEmailIndex(1024, id -> userLog.readEmail((int) offsets.get(id)));
+        recover();
+    }
+
+
+    public Creation create(User.In in, DuplicateEmailStrategy onDuplicateEmail) {
+        lock.writeLock().lock();
+        try {
+            long existingId = emails.get(in.getEmail());
+            if (existingId != LongLongHashMap.MISSING) {
+                return resolveDuplicate(existingId, in, onDuplicateEmail);
+            }
+            User.Out user = User.Out.builder()
+                    .id(nextId++)
+                    .name(in.getName())
+                    .email(in.getEmail())
+                    .age(in.getAge())
+                    .created_at(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                    .build();
+            // Идентификатор резервируется в заголовке до записи пользователя
+            userLog.nextId(nextId);
+            int offset = userLog.appendPut(user);
+            offsets.put(user.getId(), offset);
+            emails.put(user.getEmail(), user.getId());
+            appendOrder(user.getId());
+            statistics.recordCreated(user.getAge(), user.getCreated_at());
+            return new Creation(user, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public User.Out find(long id) {
+        lock.readLock().lock();
+        try {
+            long offset = offsets.get(id);
+            if (offset == LongLongHashMap.MISSING) {
+                throw notFound(id);
+            }
+            return userLog.read((int) offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public User.Lookup findAll(Collection<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.size() > maxLookupIds) {
+            throw new LookupLimitExceededException(distinctIds.size(), maxLookupIds);
+        }
+        lock.readLock().lock();
+        try {
+            List<User.Out> users = new ArrayList<>(distinctIds.size());
+            List<Long> missing = new ArrayList<>();
+            for (Long id : distinctIds) {
+                long offset = offsets.get(id);
+                if (offset == LongLongHashMap.MISSING) {
+                    missing.add(id);
+                } else {
+                    users.add(userLog.read((int) offset));
+                }
+            }
+            return new User.Lookup(users, missing);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public User.Out update(long id, User.Patch patch) {
+        lock.writeLock().lock();
+        try {
+            long offset = offsets.get(id);
+            if (offset == LongLongHashMap.MISSING) {
+                throw notFound(id);
+            }
+            User.Out current = userLog.read((int) offset);
+
+            boolean emailChanged = patch.getEmail() != null && !patch.getEmail().equals(current.getEmail());
+            boolean nameChanged = patch.getName() != null && !patch.getName().equals(current.getName());
+            boolean ageChanged = patch.getAge() != null && !patch.getAge().equals(current.getAge());
+            if (!emailChanged && !nameChanged && !ageChanged) {
+                return current;
+            }
+            if (emailChanged && emails.get(patch.getEmail()) != LongLongHashMap.MISSING) {
+                throw duplicate(patch.getEmail());
+            }
+
+            User.Out updated = User.Out.builder()
+                    .id(id)
+                    .name(nameChanged ? patch.getName() : current.getName())
+                    .email(emailChanged ? patch.getEmail() : current.getEmail())
+                    .age(ageChanged ? patch.getAge() : current.getAge())
+                    .created_at(current.getCreated_at())
+                    .build();
+            // Старый адрес удаляется из индекса до изменения смещения: индекс сверяет адрес по журналу
+            if (emailChanged) {
+                emails.remove(current.getEmail(), id);
+            }
+            int newOffset = userLog.appendPut(updated);
+            deadBytes += userLog.recordSize((int) offset);
+            offsets.put(id, newOffset);
+            if (emailChanged) {
+                emails.put(updated.getEmail(), id);
+            }
+            if (ageChanged) {
+                statistics.recordAgeChanged(current.getAge(), updated.getAge());
+            }
+            compactIfNeeded();
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public void delete(long id) {
+        lock.writeLock().lock();
+        try {
+            long offset = offsets.get(id);
+            if (offset == LongLongHashMap.MISSING) {
+                throw notFound(id);
+            }
+            User.Out deleted = userLog.read((int) offset);
+            emails.remove(deleted.getEmail(), id);
+            int deleteOffset = userLog.appendDelete(id);
+            deadBytes += userLog.recordSize((int) offset) + userLog.recordSize(deleteOffset);
+            offsets.remove(id);
+            statistics.recordDeleted(deleted.getAge(), deleted.getCreated_at());
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    public List<User.Out> getAll(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            List<User.Out> users = new ArrayList<>(Math.min(limit, offsets.size()));
+            int skipped = 0;
+            for (int i = 0; i < orderSize && users.size() < limit; i++) {
+                long recordOffset = offsets.get(order[i]);
+                if (recordOffset == LongLongHashMap.MISSING) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    users.add(userLog.read((int) recordOffset));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public int getAllCount() {
+        lock.readLock().lock();
+        try {
+            return offsets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    public Snapshot load() {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Long> ages = new HashMap<>();
+            Map<LocalDate, Long> days = new HashMap<>();
+            for (int i = 0; i < orderSize; i++) {
+                long offset = offsets.get(order[i]);
+                if (offset != LongLongHashMap.MISSING) {
+                    User.Out user = userLog.read((int) offset);
+                    ages.merge(user.getAge(), 1L, Long::sum);
+                    days.merge(user.getCreated_at().toLocalDate(), 1L, Long::sum);
+                }
+            }
+            return new Snapshot(ages, days);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            userLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private void recover() {
+        Path compacted = compactedPath();
+        try {
+            // Незавершенное уплотнение: исходный журнал не тронут, временный файл удаляется
+            Files.deleteIfExists(compacted);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        userLog = UserLog.open(path, initialSize, syncWrites);
+        nextId = Math.max(nextId, userLog.nextId());
+        boolean clean = userLog.replay(entry -> {
+            long previous = offsets.get(entry.id());
+            if (previous != LongLongHashMap.MISSING) {
+                deadBytes += userLog.recordSize((int) previous);
+            }
+            if (entry.type() == UserLog.PUT) {
+                offsets.put(entry.id(), entry.offset());
+                if (previous == LongLongHashMap.MISSING) {
+                    appendOrder(entry.id());
+                }
+            } else {
+                offsets.remove(entry.id());
+                deadBytes += entry.size();
+            }
+            nextId = Math.max(nextId, entry.id() + 1);
+        });
+
+        // Индекс email строится после чтения журнала, когда известны последние версии записей
+        for (int i = 0; i < orderSize; i++) {
+            long offset = offsets.get(order[i]);
+            if (offset != LongLongHashMap.MISSING) {
+                emails.put(userLog.readEmail((int) offset), order[i]);
+            }
+        }
+        if (!clean) {
+            log.warn("User log {} had a damaged tail, it was truncated at {} bytes", path, userLog.size());
+        }
+        log.info("User log {} recovered: {} users, {} bytes", path, offsets.size(), userLog.size());
+    }
+
+
+    private void compactIfNeeded() {
+        if (deadBytes < compactionMinDeadBytes || deadBytes * 2 < userLog.size()) {
+            return;
+        }
+        Path compacted = compactedPath();
+        UserLog target = UserLog.open(compacted, Math.max(initialSize, userLog.size() - (int) deadBytes), false);
+        target.nextId(nextId);
+        long[] liveOrder = new long[Math.max(1024, offsets.size())];
+        int liveSize = 0;
+        long[] newOffsets = new long[offsets.size()];
+        for (int i = 0; i < orderSize; i++) {
+            long offset = offsets.get(order[i]);
+            if (offset != LongLongHashMap.MISSING) {
+                newOffsets[liveSize] = target.appendPut(userLog.read((int) offset));
+                liveOrder[liveSize++] = order[i];
+            }
+        }
+        target.close();
+        userLog.close();
+        UserLog.replace(compacted, path);
+
+        userLog = UserLog.open(path, initialSize, syncWrites);
+        userLog.replay(entry -> { });
+        offsets.clear();
+        for (int i = 0; i < liveSize; i++) {
+            offsets.put(liveOrder[i], newOffsets[i]);
+        }
+        order = liveOrder;
+        orderSize = liveSize;
+        log.info("User log {} compacted: {} dead bytes removed", path, deadBytes);
+        deadBytes = 0;
+    }
+
+
+    private Creation resolveDuplicate(long existingId, User.In in, DuplicateEmailStrategy onDuplicateEmail) {
+        User.Out existing = userLog.read((int) offsets.get(existingId));
+        return switch (onDuplicateEmail) {
+            case REJECT -> throw duplicate(in.getEmail());
+            case RETURN_EXISTING -> new Creation(existing, false);
+            case IDEMPOTENT -> {
+                if (!existing.getName().equals(in.getName()) || !existing.getAge().equals(in.getAge())) {
+                    throw duplicate(in.getEmail());
+                }
+                yield new Creation(existing, false);
+            }
+            // Блокировка записи повторно входима, поэтому update выполняется в той же критической секции
+            case UPSERT -> new Creation(update(existingId, User.Patch.builder()
+                    .name(in.getName())
+                    .age(in.getAge())
+                    .build()), false);
+        };
+    }
+
+
+    private void appendOrder(long id) {
+        if (orderSize == order.length) {
+            order = Arrays.copyOf(order, order.length * 2);
+        }
+        order[orderSize++] = id;
+    }
+
+
+    private Path compactedPath() {
+        return path.resolveSibling(path.getFileName() + ".compact");
+    }
+
+
+    private static DuplicateEmailException duplicate(String email) {
+        return new DuplicateEmailException(email);
+    }
+
+    private static EntityNotFoundException notFound(long id) {
+        return new EntityNotFoundException(id);
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.aston.homework_spring.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongFunction;
+
+final class OffHeapEmailIndex {
+
+    // Индекс email -> id вне кучи (direct ByteBuffer), чтобы миллионы адресов не нагружали сборщик мусора.
+    // Ячейка занимает 16 байт: 64-битный хеш адреса и идентификатор пользователя. Сами адреса в индексе не
+    // хранятся: при совпадении хеша адрес сверяется с записью журнала через emailOfId, поэтому коллизии хешей
+    // не приводят к ошибкам. Удаленная ячейка помечается идентификатором TOMBSTONE.
+
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+
+    private final LongFunction<String> emailOfId;
+    private ByteBuffer slots;
+    private int capacity;
+    private int used;
+    private int size;
+
+    OffHeapEmailIndex(int expectedSize, LongFunction<String> emailOfId) {
+        this.emailOfId = emailOfId;
+        allocate(Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1);
+    }
+
+
+    long get(String email) {
+        long hash = hash(email);
+        for (int slot = slot(hash); ; slot = (slot + 1) & (capacity - 1)) {
+            long id = idAt(slot);
+            if (id == EMPTY) {
+                return LongLongHashMap.MISSING;
+            }
+            if (id != TOMBSTONE && hashAt(slot) == hash && email.equals(emailOfId.apply(id))) {
+                return id;
+            }
+        }
+    }
+
+
+    // Вызывающий код гарантирует, что адрес еще не занят (проверка через get)
+    void put(String email, long id) {
+        if ((used + 1) * 10 > capacity * 6) {
+            rehash(size * 2 + 1 > capacity / 2 ? capacity * 2 : capacity);
+        }
+        insert(hash(email), id);
+    }
+
+
+    void remove(String email, long id) {
+        long hash = hash(email);
+        for (int slot = slot(hash); ; slot = (slot + 1) & (capacity - 1)) {
+            long current = idAt(slot);
+            if (current == EMPTY) {
+                return;
+            }
+            if (current == id && hashAt(slot) == hash) {
+                slots.putLong(slot * SLOT_SIZE + 8, TOMBSTONE);
+                size--;
+                return;
+            }
+        }
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    void clear() {
+        allocate(capacity);
+    }
+
+
+    private void insert(long hash, long id) {
+        for (int slot = slot(hash); ; slot = (slot + 1) & (capacity - 1)) {
+            long current = idAt(slot);
+            if (current == EMPTY || current == TOMBSTONE) {
+                if (current == EMPTY) {
+                    used++;
+                }
+                slots.putLong(slot * SLOT_SIZE, hash);
+                slots.putLong(slot * SLOT_SIZE + 8, id);
+                size++;
+                return;
+            }
+        }
+    }
+
+
+    // Перестроение таблицы убирает накопившиеся "надгробия"
+    private void rehash(int newCapacity) {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long id = old.getLong(slot * SLOT_SIZE + 8);
+            if (id != EMPTY && id != TOMBSTONE) {
+                insert(old.getLong(slot * SLOT_SIZE), id);
+            }
+        }
+    }
+
+
+    private void allocate(int newCapacity) {
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+        capacity = newCapacity;
+        used = 0;
+        size = 0;
+    }
+
+
+    private long idAt(int slot) {
+        return slots.getLong(slot * SLOT_SIZE + 8);
+    }
+
+    private long hashAt(int slot) {
+        return slots.getLong(slot * SLOT_SIZE);
+    }
+
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+
+    // 64-битный FNV-1a по байтам UTF-8
+    private static long hash(String email) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : email.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,278 @@
+package com.aston.homework_spring.storage;
+
+import com.aston.homework_spring.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+final class UserLog implements AutoCloseable {
+
+    // Журнал пользователей только на дозапись, отображенный в память (memory-mapped file).
+    //
+    // Формат файла: заголовок HEADER_SIZE байт (long MAGIC | long nextId), затем записи подряд:
+    //   int length | int crc32 | byte type | long id | [long createdSec | int createdNano | int age |
+    //                                                    int nameLength | name UTF-8 | int emailLength | email UTF-8]
+    // Поля в квадратных скобках есть только у записи PUT. Запись DELETE содержит только идентификатор.
+    // nextId в заголовке - следующий свободный идентификатор. Он переживает уплотнение, которое удаляет записи
+    // удаленных пользователей, поэтому их идентификаторы не выдаются повторно.
+    //
+    // Длина записывается последней, а неиспользованная часть файла заполнена нулями. При восстановлении журнал
+    // читается до первой записи с нулевой длиной или неверной контрольной суммой: недописанная при сбое запись
+    // отбрасывается вместе с остатком файла.
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final long MAGIC = 0x55534552_4C4F4731L; // "USERLOG1"
+    private static final int NEXT_ID_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    record Entry(int offset, int size, byte type, long id) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean syncWrites;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+
+    private UserLog(Path path, FileChannel channel, MappedByteBuffer buffer, boolean syncWrites) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.syncWrites = syncWrites;
+    }
+
+
+    static UserLog open(Path path, int initialSize, boolean syncWrites) {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), Math.max(initialSize, HEADER_SIZE));
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("User log is larger than 2 GB: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            long magic = buffer.getLong(0);
+            if (magic == 0) {
+                buffer.putLong(0, MAGIC);
+                buffer.force();
+            } else if (magic != MAGIC) {
+                throw new IllegalStateException("Not a user log file: " + path);
+            }
+            UserLog log = new UserLog(path, channel, buffer, syncWrites);
+            log.writePosition = HEADER_SIZE;
+            return log;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    // Чтение журнала при запуске. Возвращает false, если в конце журнала была найдена поврежденная запись.
+    boolean replay(Consumer<Entry> consumer) {
+        int position = HEADER_SIZE;
+        boolean clean = true;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()
+                    || crc(position + RECORD_HEADER_SIZE, length) != buffer.getInt(position + 4)) {
+                clean = false;
+                break;
+            }
+            int payload = position + RECORD_HEADER_SIZE;
+            consumer.accept(new Entry(position, RECORD_HEADER_SIZE + length, buffer.get(payload),
+                    buffer.getLong(payload + 1)));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = position;
+        if (!clean) {
+            // Остаток файла после поврежденной записи обнуляется, чтобы он не был принят за записи позже
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        return clean;
+    }
+
+
+    long nextId() {
+        return buffer.getLong(NEXT_ID_OFFSET);
+    }
+
+
+    void nextId(long nextId) {
+        buffer.putLong(NEXT_ID_OFFSET, nextId);
+        if (syncWrites) {
+            buffer.force(NEXT_ID_OFFSET, 8);
+        }
+    }
+
+
+    int appendPut(User.Out user) {
+        byte[] name = user.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = user.getEmail().getBytes(StandardCharsets.UTF_8);
+        LocalDateTime createdAt = user.getCreated_at();
+
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 8 + 4 + 4 + 4 + name.length + 4 + email.length);
+        payload.put(PUT)
+                .putLong(user.getId())
+                .putLong(createdAt.toEpochSecond(ZoneOffset.UTC))
+                .putInt(createdAt.getNano())
+                .putInt(user.getAge())
+                .putInt(name.length).put(name)
+                .putInt(email.length).put(email);
+        return append(payload.array());
+    }
+
+
+    int appendDelete(long id) {
+        return append(ByteBuffer.allocate(1 + 8).put(DELETE).putLong(id).array());
+    }
+
+
+    User.Out read(int offset) {
+        int position = offset + RECORD_HEADER_SIZE + 1;
+        long id = buffer.getLong(position);
+        long createdSec = buffer.getLong(position + 8);
+        int createdNano = buffer.getInt(position + 16);
+        int age = buffer.getInt(position + 20);
+        int nameLength = buffer.getInt(position + 24);
+        String name = string(position + 28, nameLength);
+        int emailPosition = position + 28 + nameLength;
+        String email = string(emailPosition + 4, buffer.getInt(emailPosition));
+        return User.Out.builder()
+                .id(id)
+                .name(name)
+                .email(email)
+                .age(age)
+                .created_at(LocalDateTime.ofEpochSecond(createdSec, createdNano, ZoneOffset.UTC))
+                .build();
+    }
+
+
+    String readEmail(int offset) {
+        int position = offset + RECORD_HEADER_SIZE + 1 + 8 + 8 + 4 + 4;
+        int emailPosition = position + 4 + buffer.getInt(position);
+        return string(emailPosition + 4, buffer.getInt(emailPosition));
+    }
+
+
+    int recordSize(int offset) {
+        return RECORD_HEADER_SIZE + buffer.getInt(offset);
+    }
+
+
+    int size() {
+        return writePosition;
+    }
+
+
+    Path path() {
+        return path;
+    }
+
+
+    void force() {
+        buffer.force();
+    }
+
+
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    // Атомарная замена журнала уплотненной копией: после сбоя на диске остается либо старый, либо новый файл
+    static void replace(Path compacted, Path target) {
+        try {
+            Files.move(compacted, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private int append(byte[] payload) {
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        ensureCapacity(writePosition + recordSize);
+
+        int offset = writePosition;
+        buffer.put(offset + RECORD_HEADER_SIZE, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        buffer.putInt(offset, payload.length);
+        writePosition += recordSize;
+
+        if (syncWrites) {
+            buffer.force(offset, recordSize);
+        }
+        return offset;
+    }
+
+
+    // Файл увеличивается вдвое и отображается заново, когда очередная запись не помещается
+    private void ensureCapacity(long required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long newSize = buffer.capacity();
+        while (newSize < required) {
+            newSize *= 2;
+        }
+        if (newSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("User log cannot grow beyond 2 GB: " + path);
+        }
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private int crc(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+
+    private String string(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.aston.homework_spring.support;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class CountMinSketch {
+
+    // Приблизительные частоты ключей в памяти фиксированного размера: depth строк по width счетчиков.
+    // Ключ увеличивает по одному счетчику в каждой строке (позиция - свой хеш для каждой строки), оценка частоты -
+    // минимум из этих счетчиков. Оценка не бывает меньше настоящей частоты и завышается только из-за коллизий.
+    // Счетчики атомарные, блокировок нет; halve уменьшает все счетчики вдвое для затухания старой нагрузки.
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final AtomicLongArray cells;
+    private final int depth;
+    private final int width;
+    private final int mask;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + SEEDS.length + ": " + depth);
+        }
+        int size = 16;
+        while (size < width) {
+            size <<= 1;
+        }
+        this.depth = depth;
+        this.width = size;
+        this.mask = size - 1;
+        this.cells = new AtomicLongArray(depth * size);
+    }
+
+
+    // Учитывает одно обращение и возвращает новую оценку частоты ключа
+    public long add(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, cells.incrementAndGet(index(row, key)));
+        }
+        return estimate;
+    }
+
+
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, cells.get(index(row, key)));
+        }
+        return estimate;
+    }
+
+
+    // Одновременные add между чтением и записью счетчика могут потеряться, для затухания это допустимо
+    public void halve() {
+        for (int i = 0; i < cells.length(); i++) {
+            long value = cells.get(i);
+            if (value != 0) {
+                cells.set(i, value >>> 1);
+            }
+        }
+    }
+
+
+    private int index(int row, long key) {
+        return row * width + (int) (mix(key ^ SEEDS[row]) & mask);
+    }
+
+
+    // Финальное перемешивание MurmurHash3
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
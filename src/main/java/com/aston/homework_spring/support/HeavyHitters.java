@@ -0,0 +1,194 @@
+package com.aston.homework_spring.support;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+public class HeavyHitters<K> {
+
+    // Самые частые ключи потока обращений: частоты оцениваются CountMinSketch, а до capacity ключей-кандидатов
+    // хранятся явно в ячейках фиксированного массива, чтобы их можно было перечислить.
+    // record не берет блокировок: увеличение счетчиков скетча, поиск ключа среди кандидатов и сравнение оценки
+    // с порогом. Ключ, превысивший порог, занимает свободную ячейку или вытесняет самого слабого из SAMPLE
+    // случайных кандидатов (как вытеснение LFU в Redis) через compareAndSet ячейки. Оценка кандидата запоминается
+    // в его ячейке при каждом обращении, поэтому выбор вытесняемого не пересчитывает скетч.
+    // Ключи хешируются в 64 бита: 32-битный hashCode давал бы коллизии в строках скетча уже на миллионах ключей.
+
+    public record Entry<K>(K key, long count) {
+    }
+
+    // Сколько случайных кандидатов сравнивается при вытеснении
+    static final int SAMPLE = 8;
+
+    private static final class Candidate<K> {
+
+        final K key;
+        final long hash;
+        volatile long count;
+
+        Candidate(K key, long hash, long count) {
+            this.key = key;
+            this.hash = hash;
+            this.count = count;
+        }
+    }
+
+    private final CountMinSketch sketch;
+    private final ToLongFunction<? super K> hash;
+    private final int capacity;
+    private final AtomicReferenceArray<Candidate<K>> slots;
+    private final AtomicInteger filled = new AtomicInteger();
+    private final ConcurrentHashMap<K, Candidate<K>> candidates = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    private volatile long threshold;
+
+    public HeavyHitters(int capacity, int depth, int width) {
+        this(capacity, depth, width, HeavyHitters::hash64);
+    }
+
+    public HeavyHitters(int capacity, int depth, int width, ToLongFunction<? super K> hash) {
+        this.capacity = capacity;
+        this.hash = hash;
+        this.sketch = new CountMinSketch(depth, width);
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+
+    public void record(K key) {
+        total.increment();
+        long keyHash = hash.applyAsLong(key);
+        long estimate = sketch.add(keyHash);
+        Candidate<K> candidate = candidates.get(key);
+        if (candidate != null) {
+            candidate.count = estimate;
+            return;
+        }
+        if (estimate <= threshold) {
+            return;
+        }
+        admit(new Candidate<>(key, keyHash, estimate));
+    }
+
+
+    // Кандидаты в порядке убывания оценки частоты
+    public List<Entry<K>> top(int limit) {
+        List<Entry<K>> entries = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            Candidate<K> candidate = slots.get(i);
+            if (candidate != null) {
+                long count = sketch.estimate(candidate.hash);
+                if (count > 0) {
+                    entries.add(new Entry<>(candidate.key, count));
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry<K>::count).reversed());
+        return entries.size() > limit ? List.copyOf(entries.subList(0, limit)) : entries;
+    }
+
+
+    // Количество обращений с учетом затухания
+    public long total() {
+        return total.sum();
+    }
+
+
+    // Выполняется по расписанию: полный проход по кандидатам здесь допустим, в отличие от record
+    public synchronized void decay() {
+        sketch.halve();
+        long value = total.sumThenReset();
+        total.add(value / 2);
+        long weakest = Long.MAX_VALUE;
+        for (int i = 0; i < capacity; i++) {
+            Candidate<K> candidate = slots.get(i);
+            if (candidate == null) {
+                weakest = 0;
+                continue;
+            }
+            candidate.count = sketch.estimate(candidate.hash);
+            weakest = Math.min(weakest, candidate.count);
+        }
+        threshold = weakest;
+    }
+
+
+    // 64-битный хеш для ключей из UserAccessTracker; для остальных типов - hashCode
+    public static long hash64(Object key) {
+        if (key instanceof Long value) {
+            return value;
+        }
+        if (key instanceof String value) {
+            // FNV-1a по символам строки, перемешивание выполняет CountMinSketch
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001B3L;
+            }
+            return h;
+        }
+        return key.hashCode();
+    }
+
+
+    private void admit(Candidate<K> candidate) {
+        if (candidates.putIfAbsent(candidate.key, candidate) != null) {
+            return;
+        }
+        // Пока есть свободные ячейки, ключ занимает следующую
+        if (filled.get() < capacity) {
+            int free = filled.getAndIncrement();
+            if (free < capacity) {
+                slots.set(free, candidate);
+                return;
+            }
+        }
+        if (!replaceWeakest(candidate)) {
+            candidates.remove(candidate.key, candidate);
+        }
+    }
+
+
+    private boolean replaceWeakest(Candidate<K> candidate) {
+        int sample = Math.min(SAMPLE, capacity);
+        int start = sample == capacity ? 0 : ThreadLocalRandom.current().nextInt(capacity);
+        int weakestSlot = -1;
+        Candidate<K> weakest = null;
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < sample; i++) {
+            int slot = (start + i) % capacity;
+            Candidate<K> current = slots.get(slot);
+            if (current == null) {
+                continue;
+            }
+            if (weakest == null || current.count < weakest.count) {
+                if (weakest != null) {
+                    next = Math.min(next, weakest.count);
+                }
+                weakest = current;
+                weakestSlot = slot;
+            } else {
+                next = Math.min(next, current.count);
+            }
+        }
+        if (weakest == null || candidate.count <= weakest.count) {
+            if (weakest != null) {
+                threshold = weakest.count;
+            }
+            return false;
+        }
+        // Одновременное вытеснение той же ячейки другим ключом: проигравший повторит попытку при следующем обращении
+        if (!slots.compareAndSet(weakestSlot, weakest, candidate)) {
+            return false;
+        }
+        candidates.remove(weakest.key, weakest);
+        threshold = Math.min(next, candidate.count);
+        return true;
+    }
+
+}
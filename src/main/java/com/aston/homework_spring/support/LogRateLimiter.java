@@ -0,0 +1,53 @@
+package com.aston.homework_spring.support;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class LogRateLimiter {
+
+    // Ограничение частоты записи однотипных сообщений в лог: за интервал пропускается не больше permits
+    // сообщений, остальные только подсчитываются. Количество пропущенных сообщений возвращается вместе
+    // с первым разрешением следующего интервала, чтобы его можно было вывести в лог.
+    // Проверка выполняется без блокировок и почти ничего не стоит, когда лимит уже исчерпан.
+
+    // Значение acquire(), когда сообщение нужно пропустить
+    public static final long DENIED = -1;
+
+    private final int permits;
+    private final long intervalNanos;
+    private final LongSupplier clock;
+
+    private final AtomicLong windowStart;
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogRateLimiter(int permits, Duration interval) {
+        this(permits, interval, System::nanoTime);
+    }
+
+    LogRateLimiter(int permits, Duration interval, LongSupplier clock) {
+        this.permits = permits;
+        this.intervalNanos = interval.toNanos();
+        this.clock = clock;
+        this.windowStart = new AtomicLong(clock.getAsLong());
+    }
+
+
+    // Возвращает DENIED, если сообщение нужно пропустить, иначе - количество сообщений, пропущенных с момента
+    // предыдущего разрешения
+    public long acquire() {
+        long now = clock.getAsLong();
+        long start = windowStart.get();
+        if (now - start >= intervalNanos && windowStart.compareAndSet(start, now)) {
+            used.set(0);
+        }
+        if (used.incrementAndGet() > permits) {
+            suppressed.incrementAndGet();
+            return DENIED;
+        }
+        return suppressed.getAndSet(0);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.aston.homework_spring.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+public class SingleFlight<K, V> {
+
+    // Объединение одновременных запросов с одинаковым ключом: первый вызов выполняет загрузку, а вызовы,
+    // пришедшие пока она выполняется, ждут ее завершения и получают тот же результат или то же исключение.
+    // Результат не кэшируется: после завершения загрузки следующий вызов снова обращается к базе данных.
+    // Ожидание ограничено waitTimeout: если загрузка зависла, первый не дождавшийся вызов занимает ее место
+    // в inFlight и начинает новую, а остальные ждут уже ее. Так один медленный запрос не держит потоки
+    // бесконечно, и при этом истечение ожидания не превращается в одновременную загрузку из каждого потока.
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutNanos;
+    private final Counter coalesced;
+    private final Counter waitTimeouts;
+
+    public SingleFlight(String operation, Duration waitTimeout, MeterRegistry meterRegistry) {
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.coalesced = Counter.builder("users.coalesced")
+                .description("Количество вызовов, получивших результат уже выполняющейся загрузки")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        this.waitTimeouts = Counter.builder("users.coalesced.timeouts")
+                .description("Количество ожиданий чужой загрузки, прерванных по истечении времени")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        while (existing != null) {
+            try {
+                return await(existing);
+            } catch (TimeoutException e) {
+                // Зависшую загрузку заменяет новая. replace удается только одному из не дождавшихся вызовов,
+                // остальные получают его загрузку из putIfAbsent и ждут ее
+                waitTimeouts.increment();
+                existing = inFlight.replace(key, existing, call) ? null : inFlight.putIfAbsent(key, call);
+            }
+        }
+
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+
+    // Количество вызовов, ожидающих загрузку по ключу
+    int waiting(K key) {
+        CompletableFuture<V> call = inFlight.get(key);
+        return call == null ? 0 : call.getNumberOfDependents();
+    }
+
+
+    private V await(CompletableFuture<V> call) throws TimeoutException {
+        try {
+            V value = call.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+            coalesced.increment();
+            return value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in-flight load", e);
+        } catch (ExecutionException e) {
+            // Исключение чужой загрузки - тоже ее общий результат
+            coalesced.increment();
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.aston.homework_spring.support;
+
+import com.aston.homework_spring.bulkhead.Workload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+@Slf4j
+public class StaleWhileRevalidateCache<K, V> {
+
+    // Кэш результатов чтения, которые запрашиваются часто, а меняются редко.
+    // - Запись моложе freshFor возвращается без обращения к базе данных.
+    // - Более старая запись возвращается сразу, а ее обновление запускается в фоне. Для ключа одновременно
+    //   выполняется не больше одного фонового обновления.
+    // - Пока обновления не удаются (база данных недоступна или не успевает ответить), отдается последний удачный
+    //   результат, но только пока его возраст меньше maxStale. Более старая запись загружается синхронно, и ошибка
+    //   загрузки возвращается вызывающему.
+    // - При переполнении (больше maxEntries записей) удаляется самая давно загруженная запись.
+    // - invalidateAll удаляет все записи. Загрузки, начатые до вызова, свой результат в кэш не сохраняют.
+    // Фоновое обновление выполняется в классе нагрузки (Workload) запроса, который его запустил.
+
+    private record Entry<V>(V value, long loadedAt) {
+    }
+
+    private final String name;
+    private final long freshForNanos;
+    private final long maxStaleNanos;
+    private final int maxEntries;
+    private final Executor refreshExecutor;
+    private final LongSupplier clock;
+
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Boolean> refreshing = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Timer refreshed;
+    private final Timer failed;
+
+    public StaleWhileRevalidateCache(String name, Duration freshFor, Duration maxStale, int maxEntries,
+                                     MeterRegistry meterRegistry) {
+        this(name, freshFor, maxStale, maxEntries, meterRegistry,
+                task -> Thread.ofVirtual().name("swr-refresh-" + name).start(task), System::nanoTime);
+    }
+
+    StaleWhileRevalidateCache(String name, Duration freshFor, Duration maxStale, int maxEntries,
+                              MeterRegistry meterRegistry, Executor refreshExecutor, LongSupplier clock) {
+        this.name = name;
+        this.freshForNanos = freshFor.toNanos();
+        this.maxStaleNanos = Math.max(maxStale.toNanos(), freshForNanos);
+        this.maxEntries = maxEntries;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+
+        this.hits = requests("hit", meterRegistry);
+        this.staleHits = requests("stale", meterRegistry);
+        this.misses = requests("miss", meterRegistry);
+        this.refreshed = refreshes("success", meterRegistry);
+        this.failed = refreshes("error", meterRegistry);
+        Gauge.builder("users.list_cache.entries", entries, ConcurrentMap::size)
+                .description("Количество записей в кэше списков")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+
+    public V get(K key, Supplier<V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            long age = clock.getAsLong() - entry.loadedAt();
+            if (age < freshForNanos) {
+                hits.increment();
+                return entry.value();
+            }
+            if (age < maxStaleNanos) {
+                staleHits.increment();
+                refreshAsync(key, loader);
+                return entry.value();
+            }
+        }
+        misses.increment();
+        return load(key, loader);
+    }
+
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+
+    private void refreshAsync(K key, Supplier<V> loader) {
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        Workload workload = Workload.current();
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    if (workload != null) {
+                        workload.call(() -> load(key, loader));
+                    } else {
+                        load(key, loader);
+                    }
+                } catch (RuntimeException e) {
+                    log.debug("Background refresh of {} cache entry {} failed", name, key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+
+    private V load(K key, Supplier<V> loader) {
+        long loadGeneration = generation.get();
+        long start = clock.getAsLong();
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException e) {
+            failed.record(clock.getAsLong() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        refreshed.record(clock.getAsLong() - start, TimeUnit.NANOSECONDS);
+        // Загрузка, начатая до invalidateAll, могла прочитать данные до изменения
+        if (generation.get() == loadGeneration) {
+            Entry<V> entry = new Entry<>(value, start);
+            entries.merge(key, entry,
+                    (previous, loaded) -> loaded.loadedAt() - previous.loadedAt() >= 0 ? loaded : previous);
+            // invalidateAll выполнился между проверкой и сохранением
+            if (generation.get() != loadGeneration) {
+                entries.remove(key, entry);
+            }
+            evict();
+        }
+        return value;
+    }
+
+
+    // Удаляется запись, загруженная раньше остальных: она первой перестанет быть свежей. Проход по всем записям
+    // выполняется только при переполнении, а записей немного (max-entries)
+    private void evict() {
+        while (entries.size() > maxEntries) {
+            Map.Entry<K, Entry<V>> oldest = null;
+            for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+                if (oldest == null || candidate.getValue().loadedAt() - oldest.getValue().loadedAt() < 0) {
+                    oldest = candidate;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            entries.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+
+    private Counter requests(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("users.list_cache.requests")
+                .description("Запросы к кэшу списков: свежая запись, устаревшая запись с фоновым обновлением, промах")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+
+    private Timer refreshes(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("users.list_cache.refresh")
+                .description("Время загрузки записей кэша списков из хранилища")
+                .tag("cache", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+}
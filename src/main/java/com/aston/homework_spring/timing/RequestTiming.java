@@ -0,0 +1,133 @@
+package com.aston.homework_spring.timing;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+public final class RequestTiming {
+
+    // Время этапов обработки одного HTTP-запроса. Структура создается RequestTimingFilter и хранится в ThreadLocal
+    // потока запроса; вне запроса begin возвращает 0, и замер ничего не стоит, кроме чтения ThreadLocal.
+    // Этапы могут быть вложенными (например, MapStruct внутри вызова хранилища): время вложенного этапа
+    // вычитается из внешнего, поэтому каждый этап учитывает только собственное время.
+
+    public enum Phase {
+        VALIDATION("validation"),
+        DB("db"),
+        MAPPING("mapping"),
+        SERIALIZATION("serialization");
+
+        private final String metric;
+
+        Phase(String metric) {
+            this.metric = metric;
+        }
+    }
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+    private static final int MAX_DEPTH = 8;
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long startNanos = System.nanoTime();
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final long[] childNanos = new long[MAX_DEPTH];
+    private int depth;
+
+    private RequestTiming() {
+    }
+
+
+    static RequestTiming start() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+
+    // Начало этапа: возвращает метку, которую нужно передать в end
+    public static long begin() {
+        RequestTiming timing = CURRENT.get();
+        if (timing == null || timing.depth == MAX_DEPTH) {
+            return 0;
+        }
+        timing.childNanos[timing.depth++] = 0;
+        return System.nanoTime();
+    }
+
+
+    public static void end(Phase phase, long begin) {
+        if (begin == 0) {
+            return;
+        }
+        RequestTiming timing = CURRENT.get();
+        if (timing == null || timing.depth == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - begin;
+        timing.depth--;
+        timing.phaseNanos[phase.ordinal()] += elapsed - timing.childNanos[timing.depth];
+        if (timing.depth > 0) {
+            timing.childNanos[timing.depth - 1] += elapsed;
+        }
+    }
+
+
+    public static <T> T time(Phase phase, Supplier<T> action) {
+        long begin = begin();
+        try {
+            return action.get();
+        } finally {
+            end(phase, begin);
+        }
+    }
+
+
+    public static void time(Phase phase, Runnable action) {
+        long begin = begin();
+        try {
+            action.run();
+        } finally {
+            end(phase, begin);
+        }
+    }
+
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+
+    long nanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+
+    // Значение заголовка Server-Timing: "db;dur=1.234, mapping;dur=0.012, ..., total;dur=3.456"
+    String serverTiming(long totalNanos) {
+        StringBuilder header = new StringBuilder(128);
+        for (Phase phase : PHASES) {
+            header.append(phase.metric).append(";dur=").append(millis(nanos(phase))).append(", ");
+        }
+        return header.append("total;dur=").append(millis(totalNanos)).toString();
+    }
+
+
+    // Поля строки лога: "total_ms=3.456 db_ms=1.234 ..."
+    String logFields(long totalNanos) {
+        StringBuilder fields = new StringBuilder(128).append("total_ms=").append(millis(totalNanos));
+        for (Phase phase : PHASES) {
+            fields.append(' ').append(phase.metric).append("_ms=").append(millis(nanos(phase)));
+        }
+        return fields.toString();
+    }
+
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+}
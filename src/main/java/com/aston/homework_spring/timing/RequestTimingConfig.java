@@ -0,0 +1,45 @@
+package com.aston.homework_spring.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "users.timing.enabled", havingValue = "true", matchIfMissing = true)
+public class RequestTimingConfig implements WebMvcConfigurer {
+
+    // Замер этапов, которые выполняются инфраструктурой Spring MVC:
+    // - валидация тел запросов (@Valid User.In, User.Patch) - валидатор MVC оборачивается в TimedValidator;
+    // - сериализация ответов в JSON - конвертер Jackson заменяется на TimedJackson2HttpMessageConverter
+    //   (стандартный конвертер Spring Boot не создается, если такой бин уже есть).
+    // Этапы DB и MAPPING замеряются в CombiningUserService и TimedUserMapper.
+
+    private final Validator validator;
+
+    public RequestTimingConfig(Validator validator) {
+        this.validator = validator;
+    }
+
+
+    @Override
+    public org.springframework.validation.Validator getValidator() {
+        return new TimedValidator(validator instanceof SmartValidator smartValidator
+                ? smartValidator
+                : new SpringValidatorAdapter(validator));
+    }
+
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJackson2HttpMessageConverter(objectMapper);
+    }
+
+}
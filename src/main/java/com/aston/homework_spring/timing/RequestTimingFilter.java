@@ -0,0 +1,105 @@
+package com.aston.homework_spring.timing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+@Component
+@Slf4j
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Profile("!reactive")
+@ConditionalOnProperty(name = "users.timing.enabled", havingValue = "true", matchIfMissing = true)
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    // Фильтр каждого запроса:
+    // - идентификатор запроса берется из заголовка X-Request-Id или создается, кладется в MDC (requestId, выводится
+    //   шаблонами logback.xml) и возвращается в ответе;
+    // - создает RequestTiming, в который этапы обработки записывают свое время;
+    // - добавляет заголовок Server-Timing, если он включен настройкой server-timing или запрошен клиентом заголовком
+    //   X-Server-Timing: true (при allow-opt-in). Заголовок нужно выставить до отправки тела, поэтому в этом случае
+    //   тело ответа буферизуется;
+    // - пишет одну строку лога с временем этапов для запросов дольше slow-threshold.
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+    public static final String SERVER_TIMING_OPT_IN_HEADER = "X-Server-Timing";
+    public static final String REQUEST_ID_MDC_KEY = "requestId";
+
+    private static final Pattern VALID_REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final boolean serverTimingAlways;
+    private final boolean allowOptIn;
+    private final long slowThresholdNanos;
+
+    public RequestTimingFilter(@Value("${users.timing.server-timing:false}") boolean serverTimingAlways,
+                               @Value("${users.timing.allow-opt-in:true}") boolean allowOptIn,
+                               @Value("${users.timing.slow-threshold:PT0.5S}") Duration slowThreshold) {
+        this.serverTimingAlways = serverTimingAlways;
+        this.allowOptIn = allowOptIn;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = requestId(request);
+        MDC.put(REQUEST_ID_MDC_KEY, requestId);
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+
+        ContentCachingResponseWrapper buffered = serverTimingRequested(request)
+                ? new ContentCachingResponseWrapper(response)
+                : null;
+        RequestTiming timing = RequestTiming.start();
+        try {
+            chain.doFilter(request, buffered != null ? buffered : response);
+        } finally {
+            long totalNanos = timing.elapsedNanos();
+            try {
+                if (buffered != null) {
+                    buffered.setHeader(SERVER_TIMING_HEADER, timing.serverTiming(totalNanos));
+                    buffered.copyBodyToResponse();
+                }
+                if (totalNanos >= slowThresholdNanos) {
+                    log.warn("Slow request: method={} uri={} status={} {}", request.getMethod(),
+                            request.getRequestURI(), response.getStatus(), timing.logFields(totalNanos));
+                }
+            } finally {
+                RequestTiming.clear();
+                MDC.remove(REQUEST_ID_MDC_KEY);
+            }
+        }
+    }
+
+
+    private boolean serverTimingRequested(HttpServletRequest request) {
+        return serverTimingAlways || allowOptIn && "true".equalsIgnoreCase(request.getHeader(SERVER_TIMING_OPT_IN_HEADER));
+    }
+
+
+    // Идентификатор клиента используется, только если он короткий и не содержит посторонних символов
+    private static String requestId(HttpServletRequest request) {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId != null && VALID_REQUEST_ID.matcher(requestId).matches()) {
+            return requestId;
+        }
+        return Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.aston.homework_spring.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    // Конвертер JSON, который записывает время сериализации тела ответа в этап SERIALIZATION
+
+    TimedJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        long begin = RequestTiming.begin();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            RequestTiming.end(RequestTiming.Phase.SERIALIZATION, begin);
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.aston.homework_spring.timing;
+
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+
+class TimedValidator implements SmartValidator {
+
+    // Валидатор MVC (@Valid у параметров контроллеров), который записывает свое время в этап VALIDATION
+
+    private final SmartValidator delegate;
+
+    TimedValidator(SmartValidator delegate) {
+        this.delegate = delegate;
+    }
+
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        RequestTiming.time(RequestTiming.Phase.VALIDATION, () -> delegate.validate(target, errors));
+    }
+
+
+    @Override
+    public void validate(Object target, Errors errors, Object... validationHints) {
+        RequestTiming.time(RequestTiming.Phase.VALIDATION, () -> delegate.validate(target, errors, validationHints));
+    }
+
+}
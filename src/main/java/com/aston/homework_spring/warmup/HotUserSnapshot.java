@@ -0,0 +1,87 @@
+package com.aston.homework_spring.warmup;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+@Slf4j
+final class HotUserSnapshot {
+
+    // Снимок самых востребованных пользователей в компактном двоичном файле:
+    //   int MAGIC | int VERSION | long writtenAt (мс) | int count | long id * count
+    // Идентификаторы записаны в порядке убывания востребованности. Файл пишется во временный и атомарно заменяет
+    // предыдущий, а при запуске читается через отображение в память.
+
+    private static final int MAGIC = 0x484F5455; // "HOTU"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+    private HotUserSnapshot() {
+    }
+
+
+    static void write(Path path, long[] ids) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + ids.length * Long.BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(System.currentTimeMillis())
+                .putInt(ids.length);
+        // asLongBuffer - представление, позицию буфера оно не сдвигает
+        buffer.asLongBuffer().put(ids);
+        buffer.rewind();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    // Пустой массив, если снимка нет или он поврежден: прогрев тогда пропускает загрузку пользователей
+    static long[] read(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return new long[0];
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                log.warn("Hot users snapshot {} is truncated", path);
+                return new long[0];
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int count = buffer.getInt(16);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || count < 0 || HEADER_SIZE + (long) count * Long.BYTES > size) {
+                log.warn("Hot users snapshot {} is damaged or has an unknown format", path);
+                return new long[0];
+            }
+            long[] ids = new long[count];
+            buffer.position(HEADER_SIZE).slice().asLongBuffer().get(ids);
+            return ids;
+        } catch (IOException e) {
+            log.warn("Hot users snapshot {} cannot be read", path, e);
+            return new long[0];
+        }
+    }
+
+}
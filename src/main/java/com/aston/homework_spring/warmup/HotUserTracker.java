@@ -0,0 +1,70 @@
+package com.aston.homework_spring.warmup;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+@ConditionalOnProperty(name = "users.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class HotUserTracker {
+
+    // Счетчики обращений к пользователям (GET /users/{id}) для выбора самых востребованных при прогреве.
+    // Количество отслеживаемых идентификаторов ограничено: когда лимит достигнут, новые идентификаторы не учитываются
+    // до следующего затухания. При каждом снимке счетчики уменьшаются вдвое, а обнулившиеся удаляются, поэтому
+    // снимок отражает недавнюю нагрузку, а не накопленную с момента запуска.
+
+    private final ConcurrentHashMap<Long, LongAdder> counts = new ConcurrentHashMap<>();
+    private final int maxTrackedIds;
+
+    public HotUserTracker(@Value("${users.warmup.max-tracked-ids:100000}") int maxTrackedIds) {
+        this.maxTrackedIds = maxTrackedIds;
+    }
+
+
+    public void record(long id) {
+        LongAdder count = counts.get(id);
+        if (count == null) {
+            if (counts.size() >= maxTrackedIds) {
+                return;
+            }
+            count = counts.computeIfAbsent(id, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+
+    // Не больше limit идентификаторов в порядке убывания количества обращений
+    public long[] hottest(int limit) {
+        PriorityQueue<Map.Entry<Long, Long>> top = new PriorityQueue<>(limit + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<Long, LongAdder> entry : counts.entrySet()) {
+            top.offer(Map.entry(entry.getKey(), entry.getValue().sum()));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<Long, Long>> sorted = new ArrayList<>(top);
+        sorted.sort(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()));
+        return sorted.stream().mapToLong(Map.Entry::getKey).toArray();
+    }
+
+
+    public void decay() {
+        counts.forEach((id, count) -> {
+            long value = count.sumThenReset();
+            if (value / 2 == 0) {
+                counts.remove(id, count);
+            } else {
+                count.add(value / 2);
+            }
+        });
+    }
+
+}
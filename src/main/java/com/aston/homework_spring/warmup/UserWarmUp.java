@@ -0,0 +1,225 @@
+package com.aston.homework_spring.warmup;
+
+import com.aston.homework_spring.repository.UserRepository;
+import com.aston.homework_spring.service.UserService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@Slf4j
+@ConditionalOnExpression("${users.warmup.enabled:true} and '${users.backend:jpa}' != 'mmap'")
+public class UserWarmUp implements ApplicationRunner {
+
+    // Прогрев после запуска. ApplicationRunner выполняется до того, как Spring Boot переводит приложение
+    // в состояние ACCEPTING_TRAFFIC, поэтому проба готовности (/actuator/health/readiness) проходит только после
+    // прогрева. Этапы:
+    // 1. Запросы UserRepository выполняются с аргументами, которые не находят строк. Hibernate разбирает и кэширует
+    //    их при первом выполнении, а PgJDBC переводит запрос в серверный prepared statement только после
+    //    prepareThreshold выполнений (по умолчанию 5) и только на том соединении, где они были. Поэтому на каждом
+    //    из users.warmup.connections соединений пула каждый запрос выполняется prepare-threshold раз в одной
+    //    транзакции, а транзакции держатся открытыми одновременно, чтобы пул выдал разные соединения.
+    //    Агрегирующие запросы по всей таблице здесь не выполняются - их при запуске выполняет сверка
+    //    UserStatisticsService. Вставки не выполняются, чтобы не расходовать значения последовательности.
+    // 2. Загружаются самые востребованные пользователи из снимка, записанного работавшим экземпляром, - их строки
+    //    попадают в буферный кэш PostgreSQL. Загрузка ограничена по времени users.warmup.timeout.
+    // Работающий экземпляр периодически и при остановке записывает снимок из HotUserTracker.
+
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final HotUserTracker tracker;
+    private final TransactionTemplate rollbackTransaction;
+    private final int connections;
+    private final int prepareThreshold;
+    private final Path snapshotFile;
+    private final int snapshotSize;
+    private final int batchSize;
+    private final Duration timeout;
+
+    private final AtomicLong durationNanos = new AtomicLong();
+    private final AtomicLong snapshotUsers = new AtomicLong();
+    private final AtomicLong loadedUsers = new AtomicLong();
+
+    public UserWarmUp(UserService userService,
+                      UserRepository userRepository,
+                      HotUserTracker tracker,
+                      PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry,
+                      @Value("${users.warmup.snapshot-file:data/hot-users.bin}") Path snapshotFile,
+                      @Value("${users.warmup.snapshot-size:10000}") int snapshotSize,
+                      @Value("${users.lookup.max-ids:100}") int batchSize,
+                      @Value("${users.warmup.timeout:PT30S}") Duration timeout,
+                      @Value("${users.warmup.connections:${spring.datasource.hikari.maximum-pool-size:10}}")
+                      int connections,
+                      @Value("${users.warmup.prepare-threshold:5}") int prepareThreshold) {
+        this.userService = userService;
+        this.userRepository = userRepository;
+        this.tracker = tracker;
+        this.rollbackTransaction = new TransactionTemplate(transactionManager);
+        this.connections = connections;
+        this.prepareThreshold = prepareThreshold;
+        this.snapshotFile = snapshotFile;
+        this.snapshotSize = snapshotSize;
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+
+        TimeGauge.builder("users.warmup.duration", durationNanos, TimeUnit.NANOSECONDS, AtomicLong::get)
+                .description("Длительность прогрева при запуске")
+                .register(meterRegistry);
+        Gauge.builder("users.warmup.loaded", loadedUsers, AtomicLong::get)
+                .description("Количество пользователей из снимка, загруженных при прогреве")
+                .register(meterRegistry);
+        Gauge.builder("users.warmup.coverage", this, UserWarmUp::coverage)
+                .description("Доля пользователей из снимка, загруженных при прогреве")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        int primed = primeConnections(start + timeout.toNanos());
+
+        long[] ids = HotUserSnapshot.read(snapshotFile);
+        snapshotUsers.set(ids.length);
+        long deadline = start + timeout.toNanos();
+        for (int from = 0; from < ids.length && System.nanoTime() < deadline; from += batchSize) {
+            List<Long> batch = Arrays.stream(ids, from, Math.min(from + batchSize, ids.length)).boxed().toList();
+            try {
+                loadedUsers.addAndGet(userService.findAll(batch).getUsers().size() + 0L);
+            } catch (RuntimeException e) {
+                log.warn("Warm-up batch failed, skipping the rest of the snapshot", e);
+                break;
+            }
+        }
+
+        durationNanos.set(System.nanoTime() - start);
+        log.info("Warm-up finished in {} ms: queries executed {} times on {} of {} connections, " +
+                        "{} of {} snapshot users loaded ({}%)",
+                TimeUnit.NANOSECONDS.toMillis(durationNanos.get()), prepareThreshold, primed, connections,
+                loadedUsers.get(), ids.length, Math.round(coverage() * 100));
+    }
+
+
+    @Scheduled(initialDelayString = "${users.warmup.snapshot-interval:PT1M}",
+            fixedDelayString = "${users.warmup.snapshot-interval:PT1M}")
+    public void writeSnapshot() {
+        long[] ids = tracker.hottest(snapshotSize);
+        tracker.decay();
+        if (ids.length == 0) {
+            return;
+        }
+        try {
+            HotUserSnapshot.write(snapshotFile, ids);
+        } catch (RuntimeException e) {
+            log.warn("Hot users snapshot {} cannot be written", snapshotFile, e);
+        }
+    }
+
+
+    @PreDestroy
+    public void stop() {
+        writeSnapshot();
+    }
+
+
+    // Возвращает количество соединений, на которых все запросы выполнены prepare-threshold раз
+    private int primeConnections(long deadline) {
+        CountDownLatch allHeld = new CountDownLatch(connections);
+        int primed = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(connections,
+                task -> Thread.ofPlatform().name("warmup-connection").daemon().unstarted(task));
+        try {
+            List<Future<Boolean>> results = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                results.add(executor.submit(() -> primeConnection(allHeld, deadline)));
+            }
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    primed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Warm-up of connections failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return primed;
+    }
+
+
+    private boolean primeConnection(CountDownLatch allHeld, long deadline) {
+        try {
+            // Изменяющие запросы не затрагивают строк: транзакция всегда откатывается
+            rollbackTransaction.executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                for (int i = 0; i < prepareThreshold; i++) {
+                    queries().values().forEach(Runnable::run);
+                }
+                // Соединение возвращается в пул только после того, как свои соединения получили остальные потоки
+                allHeld.countDown();
+                try {
+                    allHeld.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            allHeld.countDown();
+            log.warn("Warm-up of a pool connection failed", e);
+            return false;
+        }
+    }
+
+
+    private Map<String, Runnable> queries() {
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("findById", () -> userRepository.findById(-1L));
+        queries.put("findAllByIdArray", () -> userRepository.findAllByIdArray(new Long[]{-1L}));
+        queries.put("getAllOffsetLimit", () -> userRepository.getAllOffsetLimit(0, 1));
+        queries.put("findByEmail", () -> userRepository.findByEmail(""));
+        queries.put("existsByEmail", () -> userRepository.existsByEmail(""));
+        queries.put("searchByName", () -> userRepository.searchByName("warmup", 0, 1));
+        queries.put("softDeleteById", () -> userRepository.softDeleteById(-1L));
+        queries.put("softDeleteByIdReturning", () -> userRepository.softDeleteByIdReturning(-1L));
+        queries.put("purgeSoftDeleted",
+                () -> userRepository.purgeSoftDeleted(LocalDateTime.of(1970, 1, 1, 0, 0), 1));
+        return queries;
+    }
+
+
+    private double coverage() {
+        long total = snapshotUsers.get();
+        return total == 0 ? 0 : (double) loadedUsers.get() / total;
+    }
+
+}
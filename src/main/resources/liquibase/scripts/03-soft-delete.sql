@@ -0,0 +1,12 @@
+-- liquibase formatted sql
+
+-- changeset asemenikhin:1
+ALTER TABLE users ADD COLUMN deleted_at TIMESTAMP;
+
+-- Уникальность email обеспечивается только среди неудаленных пользователей, чтобы адрес мягко удаленного
+-- пользователя можно было использовать повторно до физического удаления строки.
+ALTER TABLE users DROP CONSTRAINT uk_users_email;
+CREATE UNIQUE INDEX uk_users_email ON users (email) WHERE deleted_at IS NULL;
+
+-- Частичный индекс для задачи очистки: содержит только мягко удаленные строки и остается маленьким.
+CREATE INDEX ix_users_deleted_at ON users (deleted_at) WHERE deleted_at IS NOT NULL;
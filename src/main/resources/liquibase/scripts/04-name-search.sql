@@ -0,0 +1,15 @@
+-- liquibase formatted sql
+
+-- changeset asemenikhin:1
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Полнотекстовый поиск по имени с русской конфигурацией (морфология: "Иванову" находит "Иванов").
+-- Колонка вычисляется базой данных при вставке и обновлении имени.
+ALTER TABLE users ADD COLUMN name_tsv TSVECTOR
+    GENERATED ALWAYS AS (to_tsvector('russian'::regconfig, name)) STORED;
+
+-- Индексы содержат только неудаленных пользователей, как и условие поискового запроса.
+CREATE INDEX ix_users_name_tsv ON users USING gin (name_tsv) WHERE deleted_at IS NULL;
+
+-- Триграммный индекс для поиска по части слова и с опечатками (операторы pg_trgm %, <%).
+CREATE INDEX ix_users_name_trgm ON users USING gin (lower(name) gin_trgm_ops) WHERE deleted_at IS NULL;
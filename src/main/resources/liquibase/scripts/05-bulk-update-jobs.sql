@@ -0,0 +1,29 @@
+-- liquibase formatted sql
+
+-- changeset asemenikhin:1
+-- Фоновые массовые изменения пользователей (BulkUpdateService). Строка хранит параметры операции и отметку
+-- последней обработанной порции (last_id). Отметка обновляется в одной транзакции с порцией, поэтому после
+-- перезапуска приложения операция продолжается со следующей порции.
+DROP TABLE IF EXISTS user_bulk_jobs;
+
+CREATE TABLE user_bulk_jobs (
+   id              VARCHAR(36)   PRIMARY KEY,
+   operation       VARCHAR(32)   NOT NULL,
+   age_delta       INT,
+   min_age         INT,
+   max_age         INT,
+   created_before  TIMESTAMP,
+   state           VARCHAR(16)   NOT NULL,
+   first_id        BIGINT        NOT NULL,
+   last_id         BIGINT        NOT NULL,
+   max_id          BIGINT        NOT NULL,
+   processed       BIGINT        NOT NULL DEFAULT 0,
+   affected        BIGINT        NOT NULL DEFAULT 0,
+   chunks          INT           NOT NULL DEFAULT 0,
+   error           TEXT,
+   created_at      TIMESTAMP     NOT NULL,
+   updated_at      TIMESTAMP     NOT NULL
+);
+
+-- Нормализация email ищет адреса, совпадающие без учета регистра: выражение совпадает с условием в запросе
+CREATE INDEX ix_users_email_normalized ON users (lower(trim(email))) WHERE deleted_at IS NULL;
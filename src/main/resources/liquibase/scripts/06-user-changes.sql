@@ -0,0 +1,37 @@
+-- liquibase formatted sql
+
+-- changeset asemenikhin:1
+-- Журнал изменений пользователей для читающей модели в памяти (UserReadModel). Триггер записывает идентификатор
+-- каждой вставленной, измененной или удаленной строки вместе с номером транзакции. Читающая модель забирает
+-- изменения окнами по номеру транзакции [предыдущий xmin, текущий xmin): все транзакции с номером меньше xmin
+-- снимка завершены, поэтому ни одно изменение не пропускается, даже если транзакции фиксируются не по порядку.
+-- Старые записи удаляет UserPurgeJob.
+-- Триггер создается выключенным: без читающей модели журнал не нужен, а каждая запись пользователя стоила бы
+-- лишней вставки в таблицу с двумя индексами. Включает его UserReadModel при загрузке (users.read-model.enabled).
+DROP TABLE IF EXISTS user_changes;
+
+CREATE TABLE user_changes (
+   txid            BIGINT        NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+   user_id         BIGINT        NOT NULL,
+   changed_at      TIMESTAMP     NOT NULL DEFAULT clock_timestamp()
+);
+
+CREATE INDEX ix_user_changes_txid ON user_changes (txid);
+CREATE INDEX ix_user_changes_changed_at ON user_changes (changed_at);
+
+-- Тело функции в одинарных кавычках, а не $$: так скрипт правильно делится на команды и в тестах (@Sql)
+CREATE OR REPLACE FUNCTION record_user_change() RETURNS trigger AS '
+BEGIN
+    IF TG_OP = ''DELETE'' THEN
+        INSERT INTO user_changes (user_id) VALUES (OLD.id);
+    ELSE
+        INSERT INTO user_changes (user_id) VALUES (NEW.id);
+    END IF;
+    RETURN NULL;
+END
+' LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS tr_users_changes ON users;
+CREATE TRIGGER tr_users_changes AFTER INSERT OR UPDATE OR DELETE ON users
+    FOR EACH ROW EXECUTE FUNCTION record_user_change();
+ALTER TABLE users DISABLE TRIGGER tr_users_changes;
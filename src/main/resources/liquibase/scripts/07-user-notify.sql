@@ -0,0 +1,39 @@
+-- liquibase formatted sql
+
+-- changeset asemenikhin:1
+-- Уведомление об изменении пользователей для кэшей других экземпляров приложения (UserChangeListener).
+-- Триггеры уровня оператора отправляют одно уведомление на оператор со списком измененных идентификаторов через
+-- запятую ('*', если список не помещается в 8000 байт полезной нагрузки pg_notify). Уведомление ставится в очередь
+-- транзакции, а PostgreSQL доставляет его слушателям только после фиксации; одинаковые уведомления одной
+-- транзакции объединяются.
+-- Для каждого вида изменения свой триггер: таблица переходов (changed_users) объявляется только для одного события.
+-- Триггеры создаются выключенными: без слушателя уведомления не нужны. Включает их UserChangeListener при
+-- подключении (users.change-listener.enabled или users.l2-cache.enabled).
+CREATE OR REPLACE FUNCTION notify_user_change() RETURNS trigger AS '
+DECLARE
+    ids TEXT;
+BEGIN
+    SELECT string_agg(DISTINCT id::text, '','') INTO ids FROM changed_users;
+    IF ids IS NULL THEN
+        RETURN NULL;
+    END IF;
+    IF length(ids) > 7900 THEN
+        ids := ''*'';
+    END IF;
+    PERFORM pg_notify(''users_changed'', ids);
+    RETURN NULL;
+END
+' LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS tr_users_notify ON users;
+DROP TRIGGER IF EXISTS tr_users_notify_insert ON users;
+DROP TRIGGER IF EXISTS tr_users_notify_update ON users;
+DROP TRIGGER IF EXISTS tr_users_notify_delete ON users;
+CREATE TRIGGER tr_users_notify_insert AFTER INSERT ON users REFERENCING NEW TABLE AS changed_users
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_user_change();
+CREATE TRIGGER tr_users_notify_update AFTER UPDATE ON users REFERENCING NEW TABLE AS changed_users
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_user_change();
+CREATE TRIGGER tr_users_notify_delete AFTER DELETE ON users REFERENCING OLD TABLE AS changed_users
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_user_change();
+ALTER TABLE users DISABLE TRIGGER tr_users_notify_insert, DISABLE TRIGGER tr_users_notify_update,
+    DISABLE TRIGGER tr_users_notify_delete;
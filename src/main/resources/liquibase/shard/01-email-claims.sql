@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+
+-- changeset asemenikhin:1
+-- Глобальный реестр занятых email. Используется только на нулевом шарде, где первичный ключ по email
+-- обеспечивает уникальность адреса среди пользователей всех шардов.
+CREATE TABLE user_email_claims (
+   email       VARCHAR(255)  PRIMARY KEY,
+   claimed_at  TIMESTAMP     NOT NULL DEFAULT now()
+);
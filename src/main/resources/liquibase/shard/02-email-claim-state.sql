@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+
+-- changeset asemenikhin:1
+-- Состояние записи реестра. pending = true, пока изменение на шарде (вставка, смена email, удаление) не
+-- подтверждено; shard - шард, на котором лежит пользователь с этим адресом. Незавершенные записи старше
+-- users.sharding.claim-grace сверяются с шардом и подтверждаются или удаляются.
+ALTER TABLE user_email_claims ADD COLUMN shard INT;
+ALTER TABLE user_email_claims ADD COLUMN pending BOOLEAN NOT NULL DEFAULT false;
+CREATE INDEX ix_user_email_claims_pending ON user_email_claims (claimed_at) WHERE pending;
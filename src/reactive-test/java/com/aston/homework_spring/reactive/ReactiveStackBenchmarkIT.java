@@ -0,0 +1,138 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.HomeworkSpringBootApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Замеры пропускной способности и задержек, а не проверки поведения: исключены из обычного запуска тестов
+// (группа benchmark). Оба стека запускаются рядом на одной базе данных и получают одинаковую нагрузку
+// GET /users/{id} по HTTP от CLIENTS клиентов, каждый из которых шлет запросы без пауз.
+// Запуск: mvn -Preactive test -Dtest=ReactiveStackBenchmarkIT -Dsurefire.excludedGroups= -DskipTests=false
+@Tag("benchmark")
+@Slf4j
+@Testcontainers
+class ReactiveStackBenchmarkIT {
+
+    private static final int[] CLIENTS = {64, 512};
+    private static final long MEASURE_MILLIS = 5000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("testdb")
+            .withUsername("user")
+            .withPassword("password");
+
+
+    @Test
+    @DisplayName("Benchmark: GET /users/{id} throughput and latency of the servlet and reactive stacks")
+    public void benchmarkStacks() throws Exception {
+
+        try (ConfigurableApplicationContext servlet = start(WebApplicationType.SERVLET)) {
+            try (ConfigurableApplicationContext reactive = start(WebApplicationType.REACTIVE, "reactive")) {
+                HttpClient client = HttpClient.newHttpClient();
+                for (int clients : CLIENTS) {
+                    Result mvc = measure(client, port(servlet), clients);
+                    Result webflux = measure(client, port(reactive), clients);
+                    log.info("GET /users/{id} ({} clients): servlet {}/s p50={}ms p99={}ms, " +
+                                    "reactive {}/s p50={}ms p99={}ms",
+                            clients, Math.round(mvc.perSecond()), mvc.percentile(0.5), mvc.percentile(0.99),
+                            Math.round(webflux.perSecond()), webflux.percentile(0.5), webflux.percentile(0.99));
+                    assertTrue(mvc.nanos().length > 0 && webflux.nanos().length > 0);
+                }
+            }
+        }
+    }
+
+
+    private record Result(long[] nanos) {
+
+        double perSecond() {
+            return nanos.length * 1000.0 / MEASURE_MILLIS;
+        }
+
+        double percentile(double quantile) {
+            return nanos[(int) Math.min(nanos.length - 1, Math.round(quantile * (nanos.length - 1)))] / 1_000_000.0;
+        }
+    }
+
+
+    // Отдельный экземпляр приложения на свободном порту. Схему и десять пользователей создает Liquibase
+    // первого экземпляра (02-data-table.sql), второй застает миграции уже выполненными.
+    private static ConfigurableApplicationContext start(WebApplicationType type, String... profiles) {
+        return new SpringApplicationBuilder(HomeworkSpringBootApplication.class)
+                .web(type)
+                .profiles(profiles)
+                .properties("server.port=0",
+                        "spring.datasource.url=" + POSTGRES.getJdbcUrl(),
+                        "spring.datasource.username=" + POSTGRES.getUsername(),
+                        "spring.datasource.password=" + POSTGRES.getPassword(),
+                        "spring.r2dbc.url=r2dbc:postgresql://" + POSTGRES.getHost() + ":" +
+                                POSTGRES.getFirstMappedPort() + "/" + POSTGRES.getDatabaseName(),
+                        "spring.r2dbc.username=" + POSTGRES.getUsername(),
+                        "spring.r2dbc.password=" + POSTGRES.getPassword(),
+                        "users.warmup.enabled=false",
+                        "users.purge.enabled=false")
+                .run();
+    }
+
+
+    private static int port(ConfigurableApplicationContext context) {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+
+    // Каждый клиент - виртуальный поток с синхронными запросами; первая секунда - прогрев, в замер не входит
+    private static Result measure(HttpClient client, int port, int clients) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            long end = warmupEnd + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users/" +
+                        (1 + c % 10))).GET().build();
+                results.add(executor.submit(() -> {
+                    List<Long> nanos = new ArrayList<>();
+                    long start;
+                    while ((start = System.nanoTime()) < end) {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        assertEquals(200, response.statusCode());
+                        if (start >= warmupEnd) {
+                            nanos.add(System.nanoTime() - start);
+                        }
+                    }
+                    return nanos;
+                }));
+            }
+            List<Long> nanos = new ArrayList<>();
+            for (Future<List<Long>> result : results) {
+                nanos.addAll(result.get());
+            }
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return new Result(sorted);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveUserControllerTest {
+
+    @Mock
+    private ReactiveUserService userService;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setUp() {
+        LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        client = WebTestClient.bindToController(new ReactiveUserController(userService))
+                .controllerAdvice(new ReactiveExceptionHandler(10, Duration.ofMinutes(1)))
+                .validator(validator)
+                .build();
+    }
+
+
+    @Test
+    @DisplayName("When user is missing then 404 with the prebuilt error body")
+    void whenFindMissing_thenNotFound() {
+
+        when(userService.find(99L)).thenReturn(Mono.error(new EntityNotFoundException(99L)));
+
+        client.get().uri("/users/{id}", 99L)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.code").isEqualTo("USER_NOT_FOUND");
+    }
+
+
+    @Test
+    @DisplayName("When create with invalid fields then 400 and service is not called")
+    void whenCreateInvalid_thenBadRequest() {
+
+        client.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\": \"Al\", \"email\": \"not-an-email\", \"age\": 10}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.email").exists()
+                .jsonPath("$.age").exists();
+        verify(userService, never()).create(any());
+    }
+
+
+    @Test
+    @DisplayName("When page is requested as NDJSON then users are streamed one per line")
+    void whenGetAllAsNdjson_thenStreamed() {
+
+        when(userService.getAll(0, 2)).thenReturn(Flux.just(
+                User.Out.builder().id(1L).name("testName1").email("test1@gmail.com").age(34).build(),
+                User.Out.builder().id(2L).name("testName2").email("test2@gmail.com").age(34).build()));
+
+        client.get().uri("/users/get-all-by-offset-limit?offset=0&limit=2")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(User.Out.class)
+                .getResponseBody()
+                .map(User.Out::getId)
+                .as(StepVerifier::create)
+                .expectNext(1L, 2L)
+                .verifyComplete();
+    }
+
+}
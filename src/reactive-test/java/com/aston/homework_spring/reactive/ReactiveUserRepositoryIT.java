@@ -0,0 +1,95 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.model.User;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Запросы R2DBC проверяются на настоящем PostgreSQL без контекста Spring: схема и данные те же, что в ContainerIT
+@Testcontainers
+class ReactiveUserRepositoryIT {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("testdb")
+            .withUsername("user")
+            .withPassword("password");
+
+    private ReactiveUserRepository repository;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword());
+        try (Connection connection = dataSource.getConnection()) {
+            for (String script : new String[]{"liquibase/scripts/01-create-table.sql",
+                    "liquibase/scripts/03-soft-delete.sql", "test.sql"}) {
+                ScriptUtils.executeSqlScript(connection,
+                        new EncodedResource(new ClassPathResource(script), StandardCharsets.UTF_8));
+            }
+        }
+        repository = new ReactiveUserRepository(DatabaseClient.create(ConnectionFactories.get(
+                "r2dbc:postgresql://" + POSTGRES.getUsername() + ":" + POSTGRES.getPassword() + "@" +
+                        POSTGRES.getHost() + ":" + POSTGRES.getFirstMappedPort() + "/" + POSTGRES.getDatabaseName())));
+    }
+
+
+    @Test
+    @DisplayName("When page and count are read then soft deleted users are skipped")
+    void whenSoftDeleted_thenSkipped() {
+
+        StepVerifier.create(repository.softDeleteById(2L))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(repository.softDeleteById(2L))
+                .expectNext(0L)
+                .verifyComplete();
+
+        StepVerifier.create(repository.count())
+                .expectNext(9)
+                .verifyComplete();
+        StepVerifier.create(repository.findAll(0, 3).map(User.Out::getId))
+                .expectNext(1L, 3L, 4L)
+                .verifyComplete();
+        StepVerifier.create(repository.findById(2L))
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("When insert and partial update then returned rows reflect the database")
+    void whenInsertAndUpdate_thenRowsReturned() {
+
+        User.Out created = repository.insert(User.In.builder()
+                        .name("Новый")
+                        .email("new@gmail.com")
+                        .age(30)
+                        .build())
+                .block();
+        assertNotNull(created);
+        assertNotNull(created.getCreated_at());
+
+        StepVerifier.create(repository.update(created.getId(), User.Patch.builder().age(31).build()))
+                .assertNext(updated -> {
+                    assertEquals(31, updated.getAge());
+                    assertEquals("new@gmail.com", updated.getEmail());
+                })
+                .verifyComplete();
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveUserServiceTest {
+
+    @Mock
+    private ReactiveUserRepository userRepository;
+
+    @InjectMocks
+    private ReactiveUserService userService;
+
+    private final User.Out out1 = User.Out.builder()
+            .id(1L)
+            .name("testName1")
+            .email("test1@gmail.com")
+            .age(34)
+            .created_at(LocalDateTime.of(2025, 12, 15, 2, 6, 44))
+            .build();
+
+
+    @Test
+    @DisplayName("When find missing user then EntityNotFoundException")
+    void whenFindMissing_thenNotFound() {
+
+        when(userRepository.findById(99L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(userService.find(99L))
+                .expectError(EntityNotFoundException.class)
+                .verify();
+    }
+
+
+    @Test
+    @DisplayName("When patch has no changes then no update is executed")
+    void whenPatchWithoutChanges_thenNoUpdate() {
+
+        when(userRepository.findById(1L)).thenReturn(Mono.just(out1));
+
+        StepVerifier.create(userService.update(1L, User.Patch.builder().age(34).name("testName1").build()))
+                .expectNext(out1)
+                .verifyComplete();
+        verify(userRepository, never()).update(anyLong(), any());
+    }
+
+
+    @Test
+    @DisplayName("When patch changes age then only the update result is returned")
+    void whenPatchChangesAge_thenUpdated() {
+
+        User.Patch patch = User.Patch.builder().age(40).build();
+        User.Out updated = User.Out.builder().id(1L).name("testName1").email("test1@gmail.com").age(40).build();
+        when(userRepository.findById(1L)).thenReturn(Mono.just(out1));
+        when(userRepository.update(1L, patch)).thenReturn(Mono.just(updated));
+
+        StepVerifier.create(userService.update(1L, patch))
+                .expectNext(updated)
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("When delete affects no rows then EntityNotFoundException")
+    void whenDeleteMissing_thenNotFound() {
+
+        when(userRepository.softDeleteById(99L)).thenReturn(Mono.just(0L));
+        when(userRepository.softDeleteById(1L)).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(userService.delete(99L))
+                .expectError(EntityNotFoundException.class)
+                .verify();
+        StepVerifier.create(userService.delete(1L))
+                .verifyComplete();
+    }
+
+}
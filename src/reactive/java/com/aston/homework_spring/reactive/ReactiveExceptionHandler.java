@@ -0,0 +1,76 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.exception.DomainException;
+import com.aston.homework_spring.exception.ErrorCode;
+import com.aston.homework_spring.support.LogRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestControllerAdvice
+@Slf4j
+@Profile("reactive")
+public class ReactiveExceptionHandler {
+
+    // Ответы об ошибках и ограничение записи в лог совпадают с GlobalExceptionHandler
+
+    private final Map<ErrorCode, LogRateLimiter> limiters = new EnumMap<>(ErrorCode.class);
+    private final LogRateLimiter validationLimiter;
+
+    public ReactiveExceptionHandler(@Value("${users.errors.log.permits:10}") int logPermits,
+                                    @Value("${users.errors.log.interval:PT1M}") Duration logInterval) {
+        for (ErrorCode code : ErrorCode.values()) {
+            limiters.put(code, new LogRateLimiter(logPermits, logInterval));
+        }
+        this.validationLimiter = new LogRateLimiter(logPermits, logInterval);
+    }
+
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Map<String, String>> handleValidationExceptions(WebExchangeBindException ex) {
+        Map<String, String> errors = new HashMap<>();
+        ex.getBindingResult().getAllErrors().forEach((error) -> {
+            String fieldName = ((FieldError) error).getField();
+            String errorMessage = error.getDefaultMessage();
+            errors.put(fieldName, errorMessage);
+        });
+        long suppressed = validationLimiter.acquire();
+        if (suppressed != LogRateLimiter.DENIED) {
+            log.warn("Invalid user fields: {} ({} similar messages suppressed)", errors, suppressed);
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
+    }
+
+
+    @ExceptionHandler(DomainException.class)
+    public ResponseEntity<byte[]> handleDomainException(DomainException ex) {
+        ErrorCode code = ex.getCode();
+        long suppressed = limiters.get(code).acquire();
+        if (suppressed != LogRateLimiter.DENIED) {
+            log.warn("{}: {} ({} similar messages suppressed)", code, ex.getMessage(), suppressed);
+        }
+        return ResponseEntity.status(code.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(code.getBody());
+    }
+
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<String> handleException(Exception ex) {
+        log.error("Exception: ", ex);
+        return new ResponseEntity<>("Internal Server Error", HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.model.User;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@AllArgsConstructor
+@Slf4j
+@RequestMapping("/users")
+@Profile("reactive")
+public class ReactiveUserController {
+
+    // Тот же API /users, что и в UserController, на WebFlux.
+    // Список пользователей отдается потоком: при Accept: application/x-ndjson строки передаются клиенту по мере
+    // чтения из базы данных с учетом backpressure, при application/json собираются в массив.
+
+    private final ReactiveUserService userService;
+
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<User.Out> create(@Valid @RequestBody User.In dto) {
+        return userService.create(dto)
+                .doOnNext(out -> log.info("User created successfully: {}", out));
+    }
+
+
+    @GetMapping("/{id}")
+    public Mono<User.Out> find(@PathVariable Long id) {
+        return userService.find(id);
+    }
+
+
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public Mono<User.Out> update(@PathVariable Long id, @Valid @RequestBody User.Patch dto) {
+        return userService.update(id, dto)
+                .doOnNext(out -> log.info("User with id = {} updated successfully: {}", id, dto));
+    }
+
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable Long id) {
+        return userService.delete(id)
+                .doOnSuccess(ignored -> log.info("User with id = {} deleted successfully", id));
+    }
+
+
+    @GetMapping(value = "/get-all-by-offset-limit",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<User.Out> getAll(@RequestParam int offset, @RequestParam int limit) {
+        return userService.getAll(offset, limit);
+    }
+
+
+    @GetMapping("/get-all-count")
+    public Mono<Integer> getAllCount() {
+        return userService.getAllCount();
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.model.User;
+import io.r2dbc.spi.Row;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+@Profile("reactive")
+@AllArgsConstructor
+public class ReactiveUserRepository {
+
+    // Те же запросы, что и в UserRepository, но через неблокирующий драйвер R2DBC.
+    // Строки сразу отображаются в User.Out: сущность JPA здесь не используется.
+
+    private static final String COLUMNS = "id, name, email, age, created_at";
+
+    private final DatabaseClient databaseClient;
+
+
+    public Mono<User.Out> findById(long id) {
+        return databaseClient
+                .sql("select " + COLUMNS + " from users where id = :id and deleted_at is null")
+                .bind("id", id)
+                .map((row, metadata) -> toOut(row))
+                .one();
+    }
+
+
+    public Flux<User.Out> findAll(int offset, int limit) {
+        return databaseClient
+                .sql("select " + COLUMNS + " from users where deleted_at is null offset :offset limit :limit")
+                .bind("offset", offset)
+                .bind("limit", limit)
+                .map((row, metadata) -> toOut(row))
+                .all();
+    }
+
+
+    public Mono<Integer> count() {
+        return databaseClient
+                .sql("select count(*) from users where deleted_at is null")
+                .map((row, metadata) -> row.get(0, Long.class).intValue())
+                .one();
+    }
+
+
+    public Mono<User.Out> insert(User.In in) {
+        return databaseClient
+                .sql("insert into users (name, email, age, created_at) values (:name, :email, :age, :created_at) " +
+                        "returning " + COLUMNS)
+                .bind("name", in.getName())
+                .bind("email", in.getEmail())
+                .bind("age", in.getAge())
+                .bind("created_at", LocalDateTime.now())
+                .map((row, metadata) -> toOut(row))
+                .one();
+    }
+
+
+    // UPDATE строится вручную и содержит только переданные колонки
+    public Mono<User.Out> update(long id, User.Patch patch) {
+        List<String> assignments = new ArrayList<>();
+        if (patch.getName() != null) {
+            assignments.add("name = :name");
+        }
+        if (patch.getEmail() != null) {
+            assignments.add("email = :email");
+        }
+        if (patch.getAge() != null) {
+            assignments.add("age = :age");
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient
+                .sql("update users set " + String.join(", ", assignments) +
+                        " where id = :id and deleted_at is null returning " + COLUMNS)
+                .bind("id", id);
+        if (patch.getName() != null) {
+            spec = spec.bind("name", patch.getName());
+        }
+        if (patch.getEmail() != null) {
+            spec = spec.bind("email", patch.getEmail());
+        }
+        if (patch.getAge() != null) {
+            spec = spec.bind("age", patch.getAge());
+        }
+        return spec.map((row, metadata) -> toOut(row)).one();
+    }
+
+
+    public Mono<Long> softDeleteById(long id) {
+        return databaseClient
+                .sql("update users set deleted_at = now() where id = :id and deleted_at is null")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+
+    private static User.Out toOut(Row row) {
+        return User.Out.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .email(row.get("email", String.class))
+                .age(row.get("age", Integer.class))
+                .created_at(row.get("created_at", LocalDateTime.class))
+                .build();
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.aston.homework_spring.reactive;
+
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.model.User;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+@Service
+@Profile("reactive")
+@AllArgsConstructor
+public class ReactiveUserService {
+
+    // Неблокирующий аналог UserServiceImpl с тем же поведением: мягкое удаление, частичное обновление
+    // без записи при отсутствии изменений и EntityNotFoundException для отсутствующих пользователей.
+
+    private final ReactiveUserRepository userRepository;
+
+
+    public Mono<User.Out> create(User.In in) {
+        return userRepository.insert(in);
+    }
+
+
+    public Mono<User.Out> find(long id) {
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+
+    public Mono<User.Out> update(long id, User.Patch patch) {
+        return find(id).flatMap(current -> hasChanges(patch, current)
+                ? userRepository.update(id, patch).switchIfEmpty(Mono.error(() -> notFound(id)))
+                : Mono.just(current));
+    }
+
+
+    public Mono<Void> delete(long id) {
+        return userRepository.softDeleteById(id)
+                .flatMap(deleted -> deleted == 0 ? Mono.<Void>error(notFound(id)) : Mono.<Void>empty());
+    }
+
+
+    public Flux<User.Out> getAll(int offset, int limit) {
+        return userRepository.findAll(offset, limit);
+    }
+
+
+    public Mono<Integer> getAllCount() {
+        return userRepository.count();
+    }
+
+
+    private static boolean hasChanges(User.Patch patch, User.Out current) {
+        return (patch.getName() != null && !Objects.equals(patch.getName(), current.getName()))
+                || (patch.getEmail() != null && !Objects.equals(patch.getEmail(), current.getEmail()))
+                || (patch.getAge() != null && !Objects.equals(patch.getAge(), current.getAge()));
+    }
+
+    private static EntityNotFoundException notFound(long id) {
+        return new EntityNotFoundException(id);
+    }
+
+}
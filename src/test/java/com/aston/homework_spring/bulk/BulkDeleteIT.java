@@ -0,0 +1,116 @@
+package com.aston.homework_spring.bulk;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = {"users.bulk.delete.chunk-size=2", "users.bulk.delete.pause-between-chunks=PT0S"})
+class BulkDeleteIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When bulk delete by ids then existing users are deleted in chunks")
+    public void whenBulkDeleteByIds_thenDeleted() throws Exception {
+
+        // Идентификатор 99 в базе данных отсутствует
+        JsonNode job = awaitFinished(start("{\"ids\": [1, 2, 3, 99]}"));
+
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(4, job.get("total").asLong());
+        assertEquals(4, job.get("processed").asLong());
+        assertEquals(3, job.get("affected").asLong());
+        assertEquals(2, job.get("chunks").asInt());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 2L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/get-all-count"))
+                .andExpect(MockMvcResultMatchers.content().string("7"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When bulk delete by age filter then matching users are deleted")
+    public void whenBulkDeleteByFilter_thenDeleted() throws Exception {
+
+        // Возраст 40 у пользователей 7 и 8, 42 - у 9 и 10
+        JsonNode job = awaitFinished(start("{\"minAge\": 40}"));
+
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(4, job.get("total").asLong());
+        assertEquals(4, job.get("affected").asLong());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 6L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 10L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When bulk delete without criteria or unknown job then error")
+    public void whenNoCriteria_thenBadRequest() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/users/bulk-delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/users/bulk-delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1], \"maxAge\": 30}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/jobs/{jobId}", "unknown"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.code").value("JOB_NOT_FOUND"));
+    }
+
+
+    private String start(String request) throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders
+                        .post("/users/bulk-delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("id").asText();
+    }
+
+
+    private JsonNode awaitFinished(String jobId) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            String response = mockMvc.perform(MockMvcRequestBuilders.get("/users/jobs/{jobId}", jobId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode job = objectMapper.readTree(response);
+            String state = job.get("state").asText();
+            if (!state.equals("QUEUED") && !state.equals("RUNNING") || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.aston.homework_spring.bulk;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = {"users.bulk.update.chunk-size=3", "users.bulk.update.pause-between-chunks=PT0S"})
+class BulkUpdateIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BulkUpdateService bulkUpdateService;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When bulk shift age with filter then matching users are changed in id-range chunks")
+    public void whenBulkShiftAge_thenChanged() throws Exception {
+
+        // Возраст 34 у пользователей 1 и 2, 36 - у 3 и 4
+        JsonNode job = awaitFinished(start("{\"operation\": \"SHIFT_AGE\", \"ageDelta\": 1, \"maxAge\": 36}"));
+
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(10, job.get("total").asLong());
+        assertEquals(10, job.get("processed").asLong());
+        assertEquals(4, job.get("affected").asLong());
+        assertEquals(4, job.get("chunks").asInt());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 1L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(35));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 4L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(37));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 5L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(38));
+        assertEquals("COMPLETED", jdbcTemplate.queryForObject(
+                "select state from user_bulk_jobs where id = ?", String.class, job.get("id").asText()));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When shifted age would leave the allowed range then those users are skipped")
+    public void whenShiftAgeOutOfRange_thenSkipped() throws Exception {
+
+        // 40 + 25 = 65 допустимо, 42 + 25 = 67 - нет
+        JsonNode job = awaitFinished(start("{\"operation\": \"SHIFT_AGE\", \"ageDelta\": 25, \"minAge\": 40}"));
+
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(2, job.get("affected").asLong());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from users where age not between 18 and 65", Integer.class));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 7L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(65));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 9L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(42));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When bulk normalize email then conflicting addresses are skipped")
+    public void whenBulkNormalizeEmail_thenConflictsSkipped() throws Exception {
+
+        jdbcTemplate.update("update users set email = 'Test1@Gmail.com ' where id = 1");
+        // После нормализации совпал бы с адресом пользователя 3
+        jdbcTemplate.update("update users set email = 'TEST3@gmail.com' where id = 2");
+
+        JsonNode job = awaitFinished(start("{\"operation\": \"NORMALIZE_EMAIL\"}"));
+
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(1, job.get("affected").asLong());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 1L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("test1@gmail.com"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 2L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("TEST3@gmail.com"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When unfinished job is resumed then it continues after the last completed chunk")
+    public void whenResumed_thenContinuesAfterCheckpoint() throws Exception {
+
+        // Операция, прерванная остановкой приложения после порции с идентификаторами 1-3
+        jdbcTemplate.update("insert into user_bulk_jobs (id, operation, age_delta, state, first_id, last_id, max_id, " +
+                "processed, affected, chunks, created_at, updated_at) " +
+                "values ('resumed', 'SHIFT_AGE', 2, 'RUNNING', 1, 3, 10, 3, 3, 1, now(), now())");
+
+        bulkUpdateService.run(null);
+        JsonNode job = awaitFinished("resumed");
+
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(10, job.get("processed").asLong());
+        assertEquals(10, job.get("affected").asLong());
+        assertEquals(4, job.get("chunks").asInt());
+
+        // Порция 1-3 повторно не применяется
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 3L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(36));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 4L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(38));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/jobs"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("resumed"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When bulk shift age without delta then bad request")
+    public void whenShiftAgeWithoutDelta_thenBadRequest() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/users/bulk-update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operation\": \"SHIFT_AGE\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/users/bulk-update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ageDelta\": 1}"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    private String start(String request) throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders
+                        .post("/users/bulk-update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("id").asText();
+    }
+
+
+    private JsonNode awaitFinished(String jobId) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            String response = mockMvc.perform(MockMvcRequestBuilders.get("/users/jobs/{jobId}", jobId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode job = objectMapper.readTree(response);
+            String state = job.get("state").asText();
+            if (!state.equals("QUEUED") && !state.equals("RUNNING") || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.aston.homework_spring.bulkhead;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Класс batch без мест: постраничное чтение отклоняется, интерактивное чтение и запись выполняются
+@TestPropertySource(properties = {
+        "users.bulkhead.workloads.batch.max-concurrent=0",
+        "users.bulkhead.workloads.batch.max-queued=0",
+        "users.bulkhead.workloads.batch.max-wait=PT0S",
+        "users.bulkhead.workloads.batch.max-connections=1",
+        "users.bulkhead.connection-timeout=PT0.1S"})
+class BulkheadIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When batch workload is saturated then only batch requests are rejected")
+    public void whenBatchSaturated_thenInteractiveServed() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/users/get-all-by-offset-limit")
+                        .param("offset", "0")
+                        .param("limit", "5"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.code").value("WORKLOAD_SATURATED"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 1L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/users/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\": 50}"))
+                .andExpect(status().isOk());
+    }
+
+
+    @Test
+    @DisplayName("When batch partition connection is taken then next batch connection times out")
+    public void whenPartitionExhausted_thenConnectionRefused() {
+
+        assertInstanceOf(PartitionedDataSource.class, dataSource);
+        Workload.BATCH.run(() -> {
+            try (Connection held = dataSource.getConnection()) {
+                assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            } catch (SQLException e) {
+                fail(e);
+            }
+            // Соединение возвращено в пул - место в части освободилось
+            try (Connection connection = dataSource.getConnection()) {
+                assertTrue(connection.isValid(1));
+            } catch (SQLException e) {
+                fail(e);
+            }
+        });
+        // Интерактивные потоки часть batch не ограничивает
+        Workload.INTERACTIVE.run(() -> {
+            try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+                assertTrue(first.isValid(1) && second.isValid(1));
+            } catch (SQLException e) {
+                fail(e);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.aston.homework_spring.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+
+
+    @Test
+    @DisplayName("When all places are taken and queue is empty then next acquire is rejected at once")
+    void whenFullWithoutQueue_thenRejected() {
+
+        Bulkhead bulkhead = new Bulkhead(2, 0, Duration.ofSeconds(10));
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertEquals(1.0, bulkhead.saturation());
+
+        long start = System.nanoTime();
+        assertFalse(bulkhead.tryAcquire());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        bulkhead.release();
+        assertEquals(1, bulkhead.active());
+        assertTrue(bulkhead.tryAcquire());
+    }
+
+
+    @Test
+    @DisplayName("When waiting longer than max wait then acquire fails and leaves the queue")
+    void whenWaitExpires_thenRejected() {
+
+        Bulkhead bulkhead = new Bulkhead(1, 1, Duration.ofMillis(50));
+        assertTrue(bulkhead.tryAcquire());
+
+        assertFalse(bulkhead.tryAcquire());
+        assertEquals(0, bulkhead.queued());
+    }
+
+
+    @Test
+    @DisplayName("When a place is released while waiting then queued acquire succeeds and queue is bounded")
+    void whenReleasedWhileWaiting_thenQueuedAcquires() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead(1, 1, Duration.ofSeconds(10));
+        assertTrue(bulkhead.tryAcquire());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            return bulkhead.tryAcquire();
+        });
+        started.await();
+        while (bulkhead.queued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        // Очередь из одного места занята
+        assertFalse(bulkhead.tryAcquire());
+
+        bulkhead.release();
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, bulkhead.active());
+        assertEquals(0, bulkhead.queued());
+    }
+
+
+    @Test
+    @DisplayName("When places and queues of all workloads exceed server threads then bulkheads are rejected")
+    void whenQueuesExceedServerThreads_thenRejected() {
+
+        BulkheadProperties.Limits interactive = new BulkheadProperties.Limits(120, 200, Duration.ofMillis(500), 0);
+        BulkheadProperties.Limits batch = new BulkheadProperties.Limits(10, 20, Duration.ofSeconds(2), 4);
+        BulkheadProperties tooLarge = new BulkheadProperties(
+                Map.of(Workload.INTERACTIVE, interactive, Workload.BATCH, batch), null, 10);
+        assertThrows(IllegalStateException.class, () -> new Bulkheads(tooLarge, 200, new SimpleMeterRegistry()));
+
+        BulkheadProperties fitting = new BulkheadProperties(Map.of(Workload.BATCH, batch), null, 10);
+        assertDoesNotThrow(() -> new Bulkheads(fitting, 200, new SimpleMeterRegistry()));
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Записи кэша остаются свежими весь тест: обновить их может только удаление при записи через приложение
+@TestPropertySource(properties = {"users.list-cache.fresh-for=PT1H", "users.list-cache.max-stale=PT1H"})
+class UserListCacheIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When users are written through the application then cached pages and count are invalidated")
+    public void whenWrittenThroughApplication_thenListCacheInvalidated() throws Exception {
+
+        expectPage("testName1", 1, 2, 3);
+        expectCount("10");
+
+        // Изменение в обход приложения не видно: страница и количество берутся из кэша
+        jdbcTemplate.update("update users set name = 'changedOutside' where id = 1");
+        expectPage("testName1", 1, 2, 3);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/users/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"changedByPatch\"}"))
+                .andExpect(status().isOk());
+        expectPage("changedByPatch", 1, 2, 3);
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/users/{id}", 2L))
+                .andExpect(status().is2xxSuccessful());
+        expectPage("changedByPatch", 1, 3, 4);
+        expectCount("9");
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"testName11\", \"email\": \"test11@gmail.com\", \"age\": 30}"))
+                .andExpect(status().isCreated());
+        expectCount("10");
+    }
+
+
+    private void expectPage(String firstName, Integer... ids) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/get-all-by-offset-limit")
+                        .param("offset", "0")
+                        .param("limit", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", contains(ids)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value(firstName));
+    }
+
+
+    private void expectCount(String count) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/get-all-count"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(count));
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserChanged;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserResponseCacheTest {
+
+    private static final Duration TTL = Duration.ofSeconds(5);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+
+
+    @Test
+    @DisplayName("When user is read twice then second body comes from cache until invalidation")
+    void whenReadTwice_thenCachedUntilInvalidated() {
+
+        UserResponseCache cache = cache(1 << 20, 1024);
+        AtomicInteger loads = new AtomicInteger();
+
+        byte[] first = cache.get(1L, () -> user(1L, "testName" + loads.incrementAndGet())).json();
+        byte[] second = cache.get(1L, () -> user(1L, "testName" + loads.incrementAndGet())).json();
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertTrue(new String(first, StandardCharsets.UTF_8).contains("\"name\":\"testName1\""));
+
+        cache.invalidate(1L);
+        byte[] third = cache.get(1L, () -> user(1L, "testName" + loads.incrementAndGet())).json();
+        assertTrue(new String(third, StandardCharsets.UTF_8).contains("\"name\":\"testName2\""));
+        assertEquals(1.0, meterRegistry.get("users.response_cache.requests").tag("result", "hit").counter().count());
+    }
+
+
+    @Test
+    @DisplayName("When user changes while body is loading then stale body is not cached")
+    void whenInvalidatedDuringLoad_thenNotCached() {
+
+        UserResponseCache cache = cache(1 << 20, 1024);
+        cache.get(1L, () -> {
+            // Изменение пользователя завершилось после чтения старой версии
+            cache.invalidate(1L);
+            return user(1L, "stale");
+        });
+
+        byte[] body = cache.get(1L, () -> user(1L, "fresh")).json();
+        assertTrue(new String(body, StandardCharsets.UTF_8).contains("\"name\":\"fresh\""));
+    }
+
+
+    @Test
+    @DisplayName("When entry is older than ttl then user is loaded again")
+    void whenOlderThanTtl_thenReloaded() {
+
+        UserResponseCache cache = cache(1 << 20, 1024);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, () -> user(1L, "testName" + loads.incrementAndGet()));
+
+        // Изменение на другом экземпляре без уведомления: запись отдается не дольше ttl
+        clock.addAndGet(TTL.toNanos() - 1);
+        assertTrue(json(cache.get(1L, () -> user(1L, "testName" + loads.incrementAndGet()))).contains("testName1"));
+        clock.addAndGet(1);
+        assertTrue(json(cache.get(1L, () -> user(1L, "testName" + loads.incrementAndGet()))).contains("testName2"));
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    @DisplayName("When all users changed then every entry is reloaded")
+    void whenAllChanged_thenReloaded() {
+
+        UserResponseCache cache = cache(1 << 20, 1024);
+        cache.get(1L, () -> user(1L, "old"));
+        cache.get(2L, () -> user(2L, "old"));
+
+        cache.onUserChanged(UserChanged.everyone());
+        assertEquals(0.0, meterRegistry.get("users.response_cache.bytes").gauge().value());
+        assertTrue(json(cache.get(1L, () -> user(1L, "new"))).contains("\"name\":\"new\""));
+        assertTrue(json(cache.get(2L, () -> user(2L, "new"))).contains("\"name\":\"new\""));
+    }
+
+
+    @Test
+    @DisplayName("When total size exceeds the limit then entries are evicted")
+    void whenOverLimit_thenEvicted() {
+
+        UserResponseCache cache = cache(1000, 1024);
+        for (long id = 1; id <= 50; id++) {
+            long userId = id;
+            cache.get(id, () -> user(userId, "testName" + userId));
+        }
+        assertTrue(meterRegistry.get("users.response_cache.bytes").gauge().value() <= 1000);
+    }
+
+
+    @Test
+    @DisplayName("When body is larger than gzip threshold then gzip variant is stored")
+    void whenLargeBody_thenGzipVariant() throws IOException {
+
+        UserResponseCache cache = cache(1 << 20, 128);
+        UserResponseCache.Body body = cache.get(1L, () -> user(1L, "n".repeat(200)));
+
+        assertNotNull(body.gzip());
+        assertTrue(body.gzip().length < body.json().length);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body.gzip()))) {
+            assertArrayEquals(body.json(), gzip.readAllBytes());
+        }
+        assertNull(cache.get(2L, () -> user(2L, "short")).gzip(), "Короткое тело не сжимается");
+    }
+
+
+    @Test
+    @DisplayName("When Accept header prefers JSON or is absent then cached body can be used")
+    void acceptsJson() {
+
+        assertTrue(UserResponseCache.acceptsJson(null));
+        assertTrue(UserResponseCache.acceptsJson("*/*"));
+        assertTrue(UserResponseCache.acceptsJson("application/json"));
+        assertFalse(UserResponseCache.acceptsJson("application/x-jackson-smile"));
+        assertFalse(UserResponseCache.acceptsJson("application/cbor, application/json;q=0.5"));
+    }
+
+
+    private UserResponseCache cache(long maxBytes, int gzipMinSize) {
+        return new UserResponseCache(new ObjectMapper(), meterRegistry, maxBytes, gzipMinSize, TTL, clock::get);
+    }
+
+
+    private static String json(UserResponseCache.Body body) {
+        return new String(body.json(), StandardCharsets.UTF_8);
+    }
+
+
+    private static User.Out user(long id, String name) {
+        return User.Out.builder()
+                .id(id)
+                .name(name)
+                .email("test" + id + "@gmail.com")
+                .age(30)
+                .build();
+    }
+
+}
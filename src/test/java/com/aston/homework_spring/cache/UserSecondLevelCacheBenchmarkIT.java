@@ -0,0 +1,120 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.aston.homework_spring.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Замеры задержек, а не проверки поведения: исключены из обычного запуска тестов (группа benchmark).
+// Запуск: mvn test -Dtest=UserSecondLevelCacheBenchmarkIT -Dsurefire.excludedGroups= -DskipTests=false
+@Tag("benchmark")
+@Slf4j
+@TestPropertySource(properties = {"users.l2-cache.enabled=true", "users.list-cache.fresh-for=PT0S",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class UserSecondLevelCacheBenchmarkIT extends ContainerIT {
+
+    private static final int ROUNDS = 500;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserSecondLevelCache secondLevelCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("Benchmark: entity load latency with cold and warm second-level cache")
+    public void benchmarkEntityLoadLatency() {
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (int i = 0; i < 50; i++) {
+            userService.find(1 + i % 10);
+        }
+
+        long[] cold = new long[ROUNDS];
+        long[] warm = new long[ROUNDS];
+        long missesBefore = statistics.getSecondLevelCacheMissCount();
+        for (int i = 0; i < ROUNDS; i++) {
+            secondLevelCache.evictAll();
+            long start = System.nanoTime();
+            userService.find(1 + i % 10);
+            cold[i] = System.nanoTime() - start;
+        }
+        for (int id = 1; id <= 10; id++) {
+            userService.find(id);
+        }
+        long hitsBefore = statistics.getSecondLevelCacheHitCount();
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            userService.find(1 + i % 10);
+            warm[i] = System.nanoTime() - start;
+        }
+
+        log.info("User load latency, us: cold p50={} p99={}, warm p50={} p99={}",
+                percentile(cold, 0.5), percentile(cold, 0.99), percentile(warm, 0.5), percentile(warm, 0.99));
+        assertTrue(statistics.getSecondLevelCacheMissCount() - missesBefore >= ROUNDS);
+        assertTrue(statistics.getSecondLevelCacheHitCount() - hitsBefore >= ROUNDS);
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("Benchmark: write latency with and without change notification triggers")
+    public void benchmarkWriteLatency() {
+
+        jdbcTemplate.execute("alter table users disable trigger tr_users_notify_insert, " +
+                "disable trigger tr_users_notify_update, disable trigger tr_users_notify_delete");
+        long[] withoutNotify = updateLatencies();
+        jdbcTemplate.execute("alter table users enable trigger tr_users_notify_insert, " +
+                "enable trigger tr_users_notify_update, enable trigger tr_users_notify_delete");
+        long[] withNotify = updateLatencies();
+
+        log.info("User update latency, us: without notify p50={} p99={}, with notify p50={} p99={}",
+                percentile(withoutNotify, 0.5), percentile(withoutNotify, 0.99),
+                percentile(withNotify, 0.5), percentile(withNotify, 0.99));
+        assertEquals(10, jdbcTemplate.queryForObject("select count(*) from users", Integer.class));
+    }
+
+
+    // Каждое изменение - отдельная транзакция, как PATCH /users/{id}
+    private long[] updateLatencies() {
+        for (int i = 0; i < 50; i++) {
+            jdbcTemplate.update("update users set age = age where id = ?", 1 + i % 10);
+        }
+        long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            jdbcTemplate.update("update users set age = age where id = ?", 1 + i % 10);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+
+    private static double percentile(long[] nanos, double quantile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(quantile * (sorted.length - 1)))] / 1000.0;
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.aston.homework_spring.cache;
+
+import com.aston.homework_spring.HomeworkSpringBootApplication;
+import com.aston.homework_spring.controller.ContainerIT;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.DuplicateEmailStrategy;
+import com.aston.homework_spring.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Кэши ответов и списков работают с настройками по умолчанию: изменения с другого экземпляра должны быть видны
+// через HTTP API, а не только через кэш второго уровня
+@TestPropertySource(properties = {"users.l2-cache.enabled=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class UserSecondLevelCacheIT extends ContainerIT {
+
+    // Меньше users.response-cache.ttl по умолчанию: ответ обновился по уведомлению, а не по истечении ttl
+    private static final Duration NOTIFICATION_DEADLINE = Duration.ofSeconds(4);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserChangeListener changeListener;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When user changes on another instance then this instance's API stops serving cached versions")
+    public void whenChangedOnOtherInstance_thenApiServesNewVersion() throws Exception {
+
+        try (ConfigurableApplicationContext other = startOtherInstance()) {
+            UserService otherService = other.getBean(UserService.class);
+            await(() -> other.getBean(UserChangeListener.class).isConnected() && changeListener.isConnected());
+
+            // Ответы, страница и количество попадают в кэши этого экземпляра, пользователь 1 - и в кэш второго уровня
+            assertEquals(34, get("/users/{id}", 1L).get("age").asInt());
+            assertEquals(36, get("/users/{id}", 3L).get("age").asInt());
+            assertEquals(10, get("/users/get-all-count").asInt());
+            assertEquals("testName1", page().get(0).get("name").asText());
+            Statistics statistics = statistics(entityManagerFactory);
+            long hits = statistics.getSecondLevelCacheHitCount();
+            assertEquals(34, userService.find(1L).getAge());
+            assertTrue(statistics.getSecondLevelCacheHitCount() > hits);
+
+            otherService.update(1L, User.Patch.builder().name("changedRemotely").age(55).build());
+            otherService.create(User.In.builder().name("Новый").email("new@gmail.com").age(30).build(),
+                    DuplicateEmailStrategy.REJECT);
+            await(NOTIFICATION_DEADLINE, () -> get("/users/{id}", 1L).get("age").asInt() == 55);
+            await(NOTIFICATION_DEADLINE, () -> get("/users/get-all-count").asInt() == 11);
+            assertEquals("changedRemotely", page().get(0).get("name").asText());
+            assertEquals(55, userService.find(1L).getAge());
+
+            otherService.delete(3L);
+            await(NOTIFICATION_DEADLINE, () -> status(3L) == HttpStatus.NOT_FOUND.value());
+            assertEquals(10, get("/users/get-all-count").asInt());
+
+            // Изменение через HTTP API этого экземпляра видно второму, хотя пользователь был в его кэше
+            assertEquals(37, otherService.find(4L).getAge());
+            Statistics otherStatistics = statistics(other.getBean(EntityManagerFactory.class));
+            long otherHits = otherStatistics.getSecondLevelCacheHitCount();
+            assertEquals(37, otherService.find(4L).getAge());
+            assertTrue(otherStatistics.getSecondLevelCacheHitCount() > otherHits);
+            mockMvc.perform(MockMvcRequestBuilders.patch("/users/{id}", 4L)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"age\": 60}"))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+            await(NOTIFICATION_DEADLINE, () -> otherService.find(4L).getAge() == 60);
+        }
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When a slow load read the row before a remote commit then it cannot cache the old version")
+    public void whenSlowLoadOverlapsRemoteCommit_thenOldVersionNotCached() throws Exception {
+
+        try (ConfigurableApplicationContext other = startOtherInstance()) {
+            UserService otherService = other.getBean(UserService.class);
+            await(() -> other.getBean(UserChangeListener.class).isConnected() && changeListener.isConnected());
+            double invalidations = meterRegistry.get("users.l2_cache.invalidations").counter().count();
+
+            SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+            try (Session slow = sessionFactory.openSession()) {
+                // Снимок REPEATABLE READ фиксируется первым чтением: дальше загрузка видит прежнюю версию строки
+                Transaction transaction = slow.beginTransaction();
+                slow.doWork(connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("set transaction isolation level repeatable read");
+                    }
+                });
+                slow.setCacheMode(CacheMode.IGNORE);
+                assertEquals(34, slow.get(User.class, 1L).getAge());
+
+                // Изменение фиксируется на другом экземпляре, уведомление доходит до этого
+                otherService.update(1L, User.Patch.builder().age(55).build());
+                await(() -> meterRegistry.get("users.l2_cache.invalidations").counter().count() > invalidations);
+
+                // Загрузка завершается после инвалидации и пытается положить в кэш прежнюю версию
+                slow.clear();
+                slow.setCacheMode(CacheMode.NORMAL);
+                assertEquals(34, slow.get(User.class, 1L).getAge());
+                transaction.commit();
+            }
+
+            assertEquals(55, userService.find(1L).getAge());
+            assertEquals(55, userService.find(1L).getAge());
+        }
+    }
+
+
+    // Второй экземпляр приложения с той же базой данных, без веб-сервера и без миграций
+    private ConfigurableApplicationContext startOtherInstance() {
+        return new SpringApplicationBuilder(HomeworkSpringBootApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("DATASOURCE_URL=" + environment.getProperty("DATASOURCE_URL"),
+                        "DATASOURCE_USERNAME=" + environment.getProperty("DATASOURCE_USERNAME"),
+                        "DATASOURCE_PASSWORD=" + environment.getProperty("DATASOURCE_PASSWORD"),
+                        "spring.liquibase.enabled=false",
+                        "spring.sql.init.mode=never",
+                        "users.l2-cache.enabled=true",
+                        "spring.jpa.properties.hibernate.generate_statistics=true")
+                .run();
+    }
+
+
+    private JsonNode get(String uri, Object... variables) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(MockMvcRequestBuilders.get(uri, variables)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+
+    private JsonNode page() throws Exception {
+        return objectMapper.readTree(mockMvc.perform(MockMvcRequestBuilders.get("/users/get-all-by-offset-limit")
+                        .param("offset", "0")
+                        .param("limit", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+
+    private int status(long id) throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", id).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getStatus();
+    }
+
+
+    private static Statistics statistics(EntityManagerFactory entityManagerFactory) {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+
+    private static void await(Condition condition) throws Exception {
+        await(Duration.ofSeconds(10), condition);
+    }
+
+
+    private static void await(Duration timeout, Condition condition) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.met()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within " + timeout);
+            Thread.sleep(20);
+        }
+    }
+
+
+    private interface Condition {
+
+        boolean met() throws Exception;
+    }
+
+}
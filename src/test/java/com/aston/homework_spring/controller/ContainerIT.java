@@ -11,7 +11,10 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 @ActiveProfiles("test")
-@Sql(scripts = {"classpath:liquibase/scripts/01-create-table.sql", "classpath:test.sql"},
+@Sql(scripts = {"classpath:liquibase/scripts/01-create-table.sql", "classpath:liquibase/scripts/03-soft-delete.sql",
+        "classpath:liquibase/scripts/04-name-search.sql", "classpath:liquibase/scripts/05-bulk-update-jobs.sql",
+        "classpath:liquibase/scripts/06-user-changes.sql", "classpath:liquibase/scripts/07-user-notify.sql",
+        "classpath:test.sql"},
         config = @SqlConfig(encoding = "UTF-8"))
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -0,0 +1,769 @@
+package com.aston.homework_spring.controller;
+
+import com.aston.homework_spring.config.LocalDateTimeDeserializer;
+import com.aston.homework_spring.config.LocalDateTimeSerializer;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public interface UserControllerContract {
+
+    // Сценарии HTTP API, общие для всех хранилищ users.backend. Их выполняют UserControllerIT (PostgreSQL)
+    // и MappedUserControllerIT (встроенное хранилище) на одних и тех же десяти пользователях из test.sql.
+
+    String USER_NOT_FOUND =
+            "{\"status\":404,\"code\":\"USER_NOT_FOUND\",\"message\":\"User not found\"}";
+    String EMAIL_ALREADY_EXISTS =
+            "{\"status\":409,\"code\":\"EMAIL_ALREADY_EXISTS\",\"message\":\"User with this email already exists\"}";
+
+    MockMvc mockMvc();
+
+    UserService userService();
+
+
+    default ObjectMapper objectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        //objectMapper.registerModule(new JavaTimeModule());
+        // Используется стандартный модуль. Чтобы он включился в работу, необходимо отключить создание бина
+        // в классе JacksonConfig.
+        objectMapper.registerModule(new SimpleModule().addSerializer(LocalDateTime.class, new LocalDateTimeSerializer()));
+        // Используется кастомный модуль, который форматирует дату и время в заданном формате.
+        // Этот модуль реализуют классы: JacksonConfig, LocalDateTimeSerializer LocalDateTimeDeserializer.
+        objectMapper.registerModule(new SimpleModule().addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer()));
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return objectMapper;
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When get all users then get user id=4, get user id=5, get user id=6")
+    default void whenGetAllUsers_thenSuccess() throws Exception {
+
+        // В базу данных загружено 10 пользователей
+        List<User.Out> expected =
+                new ArrayList<>(List.of(userService().find(4L), userService().find(5L), userService().find(6L)));
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/get-all-by-offset-limit")
+                        .param("offset", "3")
+                        .param("limit", "3")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.content().json(objectMapper().writeValueAsString(expected)));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When get all users in columnar format then return parallel arrays")
+    default void whenGetAllUsersColumnar_thenSuccess() throws Exception {
+
+        // В базу данных загружено 10 пользователей
+        byte[] body = mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/get-all-by-offset-limit")
+                        .param("offset", "3")
+                        .param("limit", "3")
+                        .accept(UserController.COLUMNAR_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(UserController.COLUMNAR_JSON_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Массивы одинаковой длины, значения в порядке id, дата создания в формате LocalDateTimeSerializer
+        JsonNode columns = objectMapper().readTree(body);
+        assertEquals(objectMapper().readTree("""
+                {"id": [4, 5, 6],
+                 "name": ["testName4", "testName5", "testName6"],
+                 "email": ["test4@gmail.com", "test5@gmail.com", "test6@gmail.com"],
+                 "created_at": ["15-12-2025 12:07:44", "15-12-2025 14:06:44", "15-12-2025 14:36:44"],
+                 "age": [36, 38, 38]}
+                """), columns);
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When get user by id in Smile format then binary body decodes to the user")
+    default void whenGetUserSmile_thenSuccess() throws Exception {
+
+        assertBinaryUser("application/x-jackson-smile", new ObjectMapper(new SmileFactory()));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When get user by id in CBOR format then binary body decodes to the user")
+    default void whenGetUserCbor_thenSuccess() throws Exception {
+
+        assertBinaryUser("application/cbor", new ObjectMapper(new CBORFactory()));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When user is patched after get then next get returns updated user")
+    default void whenGetAfterPatch_thenCachedResponseInvalidated() throws Exception {
+
+        // Первый запрос сохраняет готовый ответ в кэше
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/{id}", 5L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(38));
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/5")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\": 39}"))
+                .andExpect(status().isOk());
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/{id}", 5L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(5L))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(39))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created_at").value("15-12-2025 14:06:44"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When get all count users then return 10 users")
+    default void whenGetAllCountUsers_thenSuccess() throws Exception {
+
+        // В базу данных загружено 10 пользователей
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/get-all-count")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.content().json(objectMapper().writeValueAsString(10)));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When get user by id then return user id=5")
+    default void whenGetUser_thenSuccess() throws Exception {
+
+        // На основании пользователя с id = 5, находящегося в базе данных, подготовим ожидаемого User.Out
+        User.Out out = User.Out.builder()
+                .id(5L)
+                .name("testName5")
+                .email("test5@gmail.com")
+                .age(38)
+                .created_at(LocalDateTime.of(2025, 12, 15,
+                        14, 6, 44, 555))
+                .build();
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/{id}", 5L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(out.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value(out.getName()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value(out.getEmail()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(out.getAge()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created_at").exists());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When lookup users by ids then return found users in order and missing ids")
+    default void whenLookupUsers_thenSuccess() throws Exception {
+
+        // Пользователи 5 и 1 есть в базе данных, пользователь 20 отсутствует
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users")
+                        .param("ids", "5,20,1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.users[0].id").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.users[1].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.missing[0]").value(20));
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content("[5, 20, 1]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.users.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.missing[0]").value(20));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When get user by id=20 then return EntityNotFoundException")
+    default void whenGetUser_thenReturnEntityNotFoundException() throws Exception {
+
+        // Пользователь с id = 20 отсутствует в базе данных
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/{id}", 20L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(USER_NOT_FOUND));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When create user then return user with id=11")
+    default void whenCreateUser_thenSuccess() throws Exception {
+
+        // Создаем нового одиннадцатого пользователя, которого будем сохранять в базу данных
+        User.In in = User.In.builder()
+                .name("testName11")
+                .email("test11@gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        // Создаем нового одиннадцатого пользователя, которого будем ожидать на выходе из контроллера
+        User.Out out = User.Out.builder()
+                .id(11L)
+                .name("testName11")
+                .email("test11@gmail.com")
+                .age(30)
+                .build();
+
+        ResultActions resultActions = mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(out.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value(out.getName()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value(out.getEmail()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(out.getAge()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created_at").exists());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When create user with email=test10@gmail.com then return 409")
+    default void whenCreateUserWithDuplicateEmail_thenReturnException() throws Exception {
+
+        // Создаем пользователя с адресом электронной почты, который уже имеется в базе данных
+        User.In in = User.In.builder()
+                .name("testName11")
+                .email("test10@gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(content().string(EMAIL_ALREADY_EXISTS));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When create user with taken email and RETURN_EXISTING then return existing user id=10")
+    default void whenCreateUserWithDuplicateEmailReturnExisting_thenReturnExistingUser() throws Exception {
+
+        User.In in = User.In.builder()
+                .name("testName11")
+                .email("test10@gmail.com")
+                .age(30)
+                .build();
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .param("onDuplicateEmail", "RETURN_EXISTING")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper().writeValueAsString(in)))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(10))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("testName10"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(42));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When create user with taken email and UPSERT then update existing user id=10")
+    default void whenCreateUserWithDuplicateEmailUpsert_thenUpdateExistingUser() throws Exception {
+
+        User.In in = User.In.builder()
+                .name("testName11")
+                .email("test10@gmail.com")
+                .age(30)
+                .build();
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .param("onDuplicateEmail", "UPSERT")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(objectMapper().writeValueAsString(in)))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(10))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("testName11"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(30));
+
+        assertEquals(10, userService().getAllCount());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When repeat idempotent create then return the same user, when payload differs then return 409")
+    default void whenRepeatIdempotentCreate_thenReturnSameUser() throws Exception {
+
+        User.In in = User.In.builder()
+                .name("testName11")
+                .email("test11@gmail.com")
+                .age(30)
+                .build();
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .param("onDuplicateEmail", "IDEMPOTENT")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(11));
+
+        // Повтор того же запроса (например, после таймаута на клиенте)
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .param("onDuplicateEmail", "IDEMPOTENT")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(11));
+
+        in.setAge(31);
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .param("onDuplicateEmail", "IDEMPOTENT")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper().writeValueAsString(in)))
+                .andExpect(status().isConflict());
+    }
+
+
+    @Test
+    @DisplayName("When create user with unknown onDuplicateEmail or page without limit then return 400")
+    default void whenInvalidRequestParameter_thenReturnBadRequest() throws Exception {
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .param("onDuplicateEmail", "FOO")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper().writeValueAsString(new User.In("testName11", "test11@gmail.com", 30))))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.onDuplicateEmail").exists());
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/get-all-by-offset-limit")
+                        .param("offset", "0")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.limit").exists());
+
+        // Пользователь с параметром FOO не создан
+        assertEquals(10, userService().getAllCount());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When create user with invalid email then return Exception")
+    default void whenCreateUserWithInvalidEmail_thenReturnException() throws Exception {
+
+        // Создаем пользователя с невалидным адресом электронной почты
+        User.In in = User.In.builder()
+                .name("testName11")
+                .email("test11gmail.com")
+                .age(20)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isBadRequest())
+                .andExpect(content()
+                        .string("{\"email\":\"Email должен быть валидным адресом электронной почты\"}"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When create user with invalid name then return Exception")
+    default void whenCreateUserWithInvalidName_thenReturnException() throws Exception {
+
+        // Создаем пользователя с именем, состоящим из 26 символов
+        User.In in = User.In.builder()
+                .name("aaaaaaaaaaaaaaannnnnnnnnnn")
+                .email("test11@gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(content().string("{\"name\":\"Имя должно состоять от 3 до 25 символов\"}"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When create user with invalid age then return Exception")
+    default void whenCreateUserWithInvalidAge_thenReturnException() throws Exception {
+
+        // Создаем пользователя с возрастом 17 лет
+        User.In in = User.In.builder()
+                .name("testName11")
+                .email("test11@gmail.com")
+                .age(17)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(content().string("{\"age\":\"Минимальный возраст составляет 18 лет\"}"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When update user with id=10 then success")
+    default void whenUpdateUser_thenSuccess() throws Exception {
+
+        // В базе данных имеется пользователь с id = 10
+        User user = new User();
+        user.setId(10L);
+        user.setName("testName10");
+        user.setEmail("test10@gmail.com");
+        user.setAge(42);
+        user.setCreated_at(LocalDateTime.of(2025, 12, 16, 2, 6, 44, 555));
+
+        // Создаем User.In, которого будем использовать для обновления десятого пользователя
+        User.In in = User.In.builder()
+                .name("testName12")
+                .email("test12@gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        // Создаем User.Out, которого будем ожидать на выходе из контроллера
+        User.Out out = User.Out.builder()
+                .id(10L)
+                .name("testName12")
+                .email("test12@gmail.com")
+                .age(30)
+                .build();
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(out.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value(out.getName()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value(out.getEmail()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(out.getAge()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created_at").exists());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When merge patch user with id=10 age only then other fields unchanged")
+    default void whenMergePatchUserAge_thenOtherFieldsUnchanged() throws Exception {
+
+        // В базе данных имеется пользователь с id = 10. Передаем только новый возраст
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/10")
+                        .contentType("application/merge-patch+json")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content("{\"age\": 31}"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(10L))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("testName10"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("test10@gmail.com"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(31));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When update user with id=20 then return EntityNotFoundException")
+    default void whenUpdateUser_thenReturnEntityNotFoundException() throws Exception {
+
+        // В базе данных отсутствует пользователь с id = 20
+        // Создаем User.In, которого будем использовать для обновления 20 пользователя
+        User.In in = User.In.builder()
+                .name("testName12")
+                .email("test12@gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/20")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isNotFound())
+                .andExpect(content().string(USER_NOT_FOUND));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When update user with email=test6@gmail.com then return 409")
+    default void whenUpdateUserWithDuplicateEmail_thenReturnException() throws Exception {
+
+        // В базе данных имеется пользователь с id = 10
+        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
+        // Присваиваем в поле email значение, которое уже есть в базе данных.
+        User.In in = User.In.builder()
+                .name("testName12")
+                .email("test6@gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(content().string(EMAIL_ALREADY_EXISTS));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When update user with invalid email then return Exception")
+    default void whenUpdateUserWithInvalidEmail_thenReturnException() throws Exception {
+
+        // В базе данных имеется пользователь с id = 10
+        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
+        // Присваиваем в поле email невалидное значение адреса электронной почты.
+        User.In in = User.In.builder()
+                .name("testName12")
+                .email("test12gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(content()
+                        .string("{\"email\":\"Email должен быть валидным адресом электронной почты\"}"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When update user with invalid name then return Exception")
+    default void whenUpdateUserWithInvalidName_thenReturnException() throws Exception {
+
+        // В базе данных имеется пользователь с id = 10
+        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
+        // Присваиваем в поле name невалидное значение, состоящее из 2 символов.
+        User.In in = User.In.builder()
+                .name("tt")
+                .email("test12@gmail.com")
+                .age(30)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(content().string("{\"name\":\"Имя должно состоять от 3 до 25 символов\"}"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When update user with invalid age then return Exception")
+    default void whenUpdateUserWithInvalidAge_thenReturnException() throws Exception {
+
+        // В базе данных имеется пользователь с id = 10
+        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
+        // Присваиваем в поле age невалидное значение: возраст 66 лет.
+        User.In in = User.In.builder()
+                .name("testName12")
+                .email("test12@gmail.com")
+                .age(66)
+                .build();
+
+        // Сериализуем созданного пользователя
+        String json = objectMapper().writeValueAsString(in);
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .patch("/users/10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(content().string("{\"age\":\"Максимальный возраст составляет 65 лет\"}"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When delete user with id=1 then success")
+    default void whenDeleteUser_thenSuccess() throws Exception {
+
+        // В базе данных имеется пользователь с id = 1
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .delete("/users/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNoContent());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When delete user with id=1 then user is hidden from find and count")
+    default void whenDeleteUser_thenUserIsHidden() throws Exception {
+
+        // Пользователь с id = 1 удаляется мягко: строка остается в таблице, но не видна через API
+        mockMvc().perform(MockMvcRequestBuilders.delete("/users/1"))
+                .andExpect(MockMvcResultMatchers.status().isNoContent());
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/{id}", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/get-all-count")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json(objectMapper().writeValueAsString(9)));
+
+        // Повторное удаление того же пользователя возвращает 404
+        mockMvc().perform(MockMvcRequestBuilders.delete("/users/1"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When delete user with id=20 then return EntityNotFoundException")
+    default void whenDeleteUser_thenReturnEntityNotFoundException() throws Exception {
+
+        // В базе данных отсутствует пользователь с id = 20
+
+        mockMvc().perform(MockMvcRequestBuilders
+                        .delete("/users/20")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNotFound())
+                .andExpect(content().string(USER_NOT_FOUND));
+    }
+
+
+    // Бинарный ответ читается парсером того же формата: поля и их значения совпадают с JSON, дата создания
+    // записана строкой в формате LocalDateTimeSerializer
+    private void assertBinaryUser(String mediaType, ObjectMapper binaryMapper) throws Exception {
+        byte[] body = mockMvc().perform(MockMvcRequestBuilders
+                        .get("/users/{id}", 5L)
+                        .accept(mediaType))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(mediaType))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode user = binaryMapper.readTree(body);
+        assertEquals(5L, user.get("id").asLong());
+        assertEquals("testName5", user.get("name").asText());
+        assertEquals("test5@gmail.com", user.get("email").asText());
+        assertEquals(38, user.get("age").asInt());
+        assertTrue(user.get("created_at").isTextual());
+        assertEquals("15-12-2025 14:06:44", user.get("created_at").asText());
+    }
+
+}
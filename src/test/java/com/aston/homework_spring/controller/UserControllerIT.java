@@ -1,490 +1,121 @@
 package com.aston.homework_spring.controller;
 
-import com.aston.homework_spring.config.LocalDateTimeDeserializer;
-import com.aston.homework_spring.config.LocalDateTimeSerializer;
 import com.aston.homework_spring.model.User;
-import com.aston.homework_spring.service.UserServiceImpl;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import org.junit.jupiter.api.BeforeEach;
+import com.aston.homework_spring.service.UserService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
-import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
-import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-class UserControllerIT extends ContainerIT {
+class UserControllerIT extends ContainerIT implements UserControllerContract {
+
+    // Общие сценарии API - в UserControllerContract, здесь - зависящие от PostgreSQL: журнал изменений и поиск
 
     @Autowired
     private MockMvc mockMvc;
 
     @Autowired
-    private UserServiceImpl userServiceImpl;
+    private UserService userService;
 
     @Autowired
-    private ObjectMapper objectMapper;
-
-    private User user;
-    private User.In in;
-    private User.Out out;
-
-    @BeforeEach
-    void setUp() {
-
-        objectMapper = new ObjectMapper();
-        //objectMapper.registerModule(new JavaTimeModule());
-        // Используется стандартный модуль. Чтобы он включился в работу, необходимо отключить создание бина
-        // в классе JacksonConfig.
-        objectMapper.registerModule(new SimpleModule().addSerializer(LocalDateTime.class, new LocalDateTimeSerializer()));
-        // Используется кастомный модуль, который форматирует дату и время в заданном формате.
-        // Этот модуль реализуют классы: JacksonConfig, LocalDateTimeSerializer LocalDateTimeDeserializer.
-        objectMapper.registerModule(new SimpleModule().addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer()));
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When get all users then get user id=4, get user id=5, get user id=6")
-    public void whenGetAllUsers_thenSuccess() throws Exception {
-
-        // В базу данных загружено 10 пользователей
-        List<User.Out> expected =
-                new ArrayList<>(List.of(userServiceImpl.find(4L), userServiceImpl.find(5L), userServiceImpl.find(6L)));
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .get("/users/get-all-by-offset-limit")
-                        .param("offset", "3")
-                        .param("limit", "3")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(expected)));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When get all count users then return 10 users")
-    public void whenGetAllCountUsers_thenSuccess() throws Exception {
-
-        // В базу данных загружено 10 пользователей
-        mockMvc.perform(MockMvcRequestBuilders
-                        .get("/users/get-all-count")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(10)));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When get user by id then return user id=5")
-    public void whenGetUser_thenSuccess() throws Exception {
-
-        // На основании пользователя с id = 5, находящегося в базе данных, подготовим ожидаемого User.Out
-        User.Out out = User.Out.builder()
-                .id(5L)
-                .name("testName5")
-                .email("test5@gmail.com")
-                .age(38)
-                .created_at(LocalDateTime.of(2025, 12, 15,
-                        14, 6, 44, 555))
-                .build();
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .get("/users/{id}", 5L)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk())
-                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(out.getId()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value(out.getName()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value(out.getEmail()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(out.getAge()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.created_at").exists());
-    }
+    private JdbcTemplate jdbcTemplate;
 
 
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When get user by id=20 then return EntityNotFoundException")
-    public void whenGetUser_thenReturnEntityNotFoundException() throws Exception {
-
-        // Пользователь с id = 20 отсутствует в базе данных
-        mockMvc.perform(MockMvcRequestBuilders
-                        .get("/users/{id}", 20L)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON))
-                .andExpect(status().isNotFound())
-                .andExpect(content().string("User with id = 20 not found"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When create user then return user with id=11")
-    public void whenCreateUser_thenSuccess() throws Exception {
-
-        // Создаем нового одиннадцатого пользователя, которого будем сохранять в базу данных
-        User.In in = User.In.builder()
-                .name("testName11")
-                .email("test11@gmail.com")
-                .age(30)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        // Создаем нового одиннадцатого пользователя, которого будем ожидать на выходе из контроллера
-        User.Out out = User.Out.builder()
-                .id(11L)
-                .name("testName11")
-                .email("test11@gmail.com")
-                .age(30)
-                .build();
-
-        ResultActions resultActions = mockMvc.perform(MockMvcRequestBuilders
-                        .post("/users")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isCreated())
-                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(out.getId()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value(out.getName()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value(out.getEmail()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(out.getAge()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.created_at").exists());
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When create user with email=test10@gmail.com then return Exception")
-    public void whenCreateUserWithDuplicateEmail_thenReturnException() throws Exception {
-
-        // Создаем пользователя с адресом электронной почты, который уже имеется в базе данных
-        User.In in = User.In.builder()
-                .name("testName11")
-                .email("test10@gmail.com")
-                .age(30)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .post("/users")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isInternalServerError())
-                .andExpect(content().string("Internal Server Error"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When create user with invalid email then return Exception")
-    public void whenCreateUserWithInvalidEmail_thenReturnException() throws Exception {
-
-        // Создаем пользователя с невалидным адресом электронной почты
-        User.In in = User.In.builder()
-                .name("testName11")
-                .email("test11gmail.com")
-                .age(20)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .post("/users")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(status().isBadRequest())
-                .andExpect(content()
-                        .string("{\"email\":\"Email должен быть валидным адресом электронной почты\"}"));
+    @Override
+    public MockMvc mockMvc() {
+        return mockMvc;
     }
 
 
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When create user with invalid name then return Exception")
-    public void whenCreateUserWithInvalidName_thenReturnException() throws Exception {
-
-        // Создаем пользователя с именем, состоящим из 26 символов
-        User.In in = User.In.builder()
-                .name("aaaaaaaaaaaaaaannnnnnnnnnn")
-                .email("test11@gmail.com")
-                .age(30)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .post("/users")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isBadRequest())
-                .andExpect(content().string("{\"name\":\"Имя должно состоять от 3 до 25 символов\"}"));
+    @Override
+    public UserService userService() {
+        return userService;
     }
 
 
     @Test
     @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When create user with invalid age then return Exception")
-    public void whenCreateUserWithInvalidAge_thenReturnException() throws Exception {
-
-        // Создаем пользователя с возрастом 17 лет
-        User.In in = User.In.builder()
-                .name("testName11")
-                .email("test11@gmail.com")
-                .age(17)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
+    @DisplayName("When read model is disabled then user writes are not journaled")
+    public void whenReadModelDisabled_thenNoChangeLog() throws Exception {
 
         mockMvc.perform(MockMvcRequestBuilders
                         .post("/users")
                         .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isBadRequest())
-                .andExpect(content().string("{\"age\":\"Минимальный возраст составляет 18 лет\"}"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When update user with id=10 then success")
-    public void whenUpdateUser_thenSuccess() throws Exception {
-
-        // В базе данных имеется пользователь с id = 10
-        User user = new User();
-        user.setId(10L);
-        user.setName("testName10");
-        user.setEmail("test10@gmail.com");
-        user.setAge(42);
-        user.setCreated_at(LocalDateTime.of(2025, 12, 16, 2, 6, 44, 555));
-
-        // Создаем User.In, которого будем использовать для обновления десятого пользователя
-        User.In in = User.In.builder()
-                .name("testName12")
-                .email("test12@gmail.com")
-                .age(30)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        // Создаем User.Out, которого будем ожидать на выходе из контроллера
-        User.Out out = User.Out.builder()
-                .id(10L)
-                .name("testName12")
-                .email("test12@gmail.com")
-                .age(30)
-                .build();
+                        .content("{\"name\": \"testName11\", \"email\": \"test11@gmail.com\", \"age\": 30}"))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/users/{id}", 1L))
+                .andExpect(MockMvcResultMatchers.status().is2xxSuccessful());
 
-        mockMvc.perform(MockMvcRequestBuilders
-                        .patch("/users/10")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isOk())
-                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(out.getId()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value(out.getName()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value(out.getEmail()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.age").value(out.getAge()))
-                .andExpect(MockMvcResultMatchers.jsonPath("$.created_at").exists());
+        // Триггер журнала включает только UserReadModel
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from user_changes", Integer.class));
     }
 
 
     @Test
     @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When update user with id=20 then return EntityNotFoundException")
-    public void whenUpdateUser_thenReturnEntityNotFoundException() throws Exception {
+    @DisplayName("When search by word form, part of name or misspelled name then find the user first")
+    public void whenSearchByName_thenReturnRankedUsers() throws Exception {
 
-        // В базе данных отсутствует пользователь с id = 20
-        // Создаем User.In, которого будем использовать для обновления 20 пользователя
-        User.In in = User.In.builder()
-                .name("testName12")
-                .email("test12@gmail.com")
-                .age(30)
-                .build();
+        userService.create(new User.In("Иванов Иван", "ivanov@gmail.com", 30));
+        userService.create(new User.In("Петров Петр", "petrov@gmail.com", 30));
 
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
+        // Другая форма слова (полнотекстовый поиск), часть слова и опечатка (триграммы)
+        for (String query : List.of("Иванову", "Иван", "Ивонов")) {
+            mockMvc.perform(MockMvcRequestBuilders
+                            .get("/users/search")
+                            .param("q", query)
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Иванов Иван"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.name == 'Петров Петр')]").isEmpty());
+        }
 
         mockMvc.perform(MockMvcRequestBuilders
-                        .patch("/users/20")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isNotFound())
-                .andExpect(content().string("User with id = 20 not found"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When update user with email=test6@gmail.com then return Exception")
-    public void whenUpdateUserWithDuplicateEmail_thenReturnException() throws Exception {
-
-        // В базе данных имеется пользователь с id = 10
-        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
-        // Присваиваем в поле email значение, которое уже есть в базе данных.
-        User.In in = User.In.builder()
-                .name("testName12")
-                .email("test6@gmail.com")
-                .age(30)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .patch("/users/10")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isInternalServerError())
-                .andExpect(content().string("Internal Server Error"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When update user with invalid email then return Exception")
-    public void whenUpdateUserWithInvalidEmail_thenReturnException() throws Exception {
-
-        // В базе данных имеется пользователь с id = 10
-        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
-        // Присваиваем в поле email невалидное значение адреса электронной почты.
-        User.In in = User.In.builder()
-                .name("testName12")
-                .email("test12gmail.com")
-                .age(30)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .patch("/users/10")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isBadRequest())
-                .andExpect(content()
-                        .string("{\"email\":\"Email должен быть валидным адресом электронной почты\"}"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When update user with invalid name then return Exception")
-    public void whenUpdateUserWithInvalidName_thenReturnException() throws Exception {
-
-        // В базе данных имеется пользователь с id = 10
-        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
-        // Присваиваем в поле name невалидное значение, состоящее из 2 символов.
-        User.In in = User.In.builder()
-                .name("tt")
-                .email("test12@gmail.com")
-                .age(30)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .patch("/users/10")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isBadRequest())
-                .andExpect(content().string("{\"name\":\"Имя должно состоять от 3 до 25 символов\"}"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When update user with invalid age then return Exception")
-    public void whenUpdateUserWithInvalidAge_thenReturnException() throws Exception {
-
-        // В базе данных имеется пользователь с id = 10
-        // Создаем User.In, которого будем использовать для обновления 10 пользователя.
-        // Присваиваем в поле age невалидное значение: возраст 66 лет.
-        User.In in = User.In.builder()
-                .name("testName12")
-                .email("test12@gmail.com")
-                .age(66)
-                .build();
-
-        // Сериализуем созданного пользователя
-        String json = objectMapper.writeValueAsString(in);
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .patch("/users/10")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .content(json))
-                .andExpect(MockMvcResultMatchers.status().isBadRequest())
-                .andExpect(content().string("{\"age\":\"Максимальный возраст составляет 65 лет\"}"));
-    }
-
-
-    @Test
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When delete user with id=1 then success")
-    public void whenDeleteUser_thenSuccess() throws Exception {
-
-        // В базе данных имеется пользователь с id = 1
-
-        mockMvc.perform(MockMvcRequestBuilders
-                        .delete("/users/1")
-                        .contentType(MediaType.APPLICATION_JSON)
+                        .get("/users/search")
+                        .param("q", "testName")
+                        .param("offset", "2")
+                        .param("limit", "3")
                         .accept(MediaType.APPLICATION_JSON))
-                .andExpect(MockMvcResultMatchers.status().isNoContent());
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(3));
     }
 
 
     @Test
     @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
-    @DisplayName("When delete user with id=20 then return EntityNotFoundException")
-    public void whenDeleteUser_thenReturnEntityNotFoundException() throws Exception {
+    @DisplayName("When search by a word form that trigrams do not match then full-text search alone finds the user")
+    public void whenSearchByWordFormOnly_thenFullTextFinds() throws Exception {
+
+        userService.create(new User.In("Ус Иван", "us@gmail.com", 30));
 
-        // В базе данных отсутствует пользователь с id = 20
+        // "Усами" и "Ус" приводятся к одной основе, но у них мало общих триграмм: совпадение дает только
+        // полнотекстовый поиск. Предпосылка проверяется в базе данных с тем же порогом, что и в поиске.
+        Boolean stemMatches = jdbcTemplate.queryForObject(
+                "select to_tsvector('russian', 'Ус Иван') @@ websearch_to_tsquery('russian', 'Усами')", Boolean.class);
+        Boolean trigramMatches = jdbcTemplate.queryForObject(
+                "select word_similarity(lower('Усами'), lower('Ус Иван')) >= 0.4", Boolean.class);
+        assertTrue(stemMatches);
+        assertFalse(trigramMatches);
 
         mockMvc.perform(MockMvcRequestBuilders
-                        .delete("/users/20")
-                        .contentType(MediaType.APPLICATION_JSON)
+                        .get("/users/search")
+                        .param("q", "Усами")
                         .accept(MediaType.APPLICATION_JSON))
-                .andExpect(MockMvcResultMatchers.status().isNotFound())
-                .andExpect(content().string("User with id = 20 not found"));
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Ус Иван"));
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.aston.homework_spring.hotkeys;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class HotKeysEndpointIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When users are requested then hotkeys endpoint reports most frequent ids and pages")
+    public void whenUsersRequested_thenHotKeysReported() throws Exception {
+
+        // Повторные запросы пользователя 5 обслуживаются кэшем готовых ответов и тоже учитываются
+        for (int i = 0; i < 3; i++) {
+            get("/users/5");
+        }
+        get("/users/6");
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/users/get-all-by-offset-limit")
+                        .param("offset", "0")
+                        .param("limit", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/actuator/hotkeys")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.FIND.total").value(4))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.FIND.keys.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.FIND.keys[0].key").value("5"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.FIND.keys[0].count").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.GET_ALL.keys[0].key").value("offset=0,limit=3"));
+    }
+
+
+    private void get(String uri) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get(uri).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.aston.homework_spring.jfr;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class JfrEndpointIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JfrEventSummary jfrEventSummary;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When users are requested then summary contains operation, query and transaction latencies")
+    public void whenUsersRequested_thenLatencySummary() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 5L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        // События передаются потоку JFR порциями, примерно раз в секунду
+        long deadline = System.currentTimeMillis() + 10_000;
+        Map<JfrEventSummary.Kind, Map<String, LatencyWindow.Latency>> summary = jfrEventSummary.summary();
+        while (!summary.get(JfrEventSummary.Kind.OPERATIONS).containsKey("find")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+            summary = jfrEventSummary.summary();
+        }
+        assertTrue(summary.get(JfrEventSummary.Kind.OPERATIONS).containsKey("find"));
+        assertTrue(summary.get(JfrEventSummary.Kind.QUERIES).containsKey("UserRepository.findById"));
+        assertFalse(summary.get(JfrEventSummary.Kind.TRANSACTIONS).isEmpty());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/jfr"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.OPERATIONS.find.p99Ms").isNumber());
+    }
+
+
+    @Test
+    @DisplayName("When recording endpoint is not enabled explicitly then it is not exposed")
+    public void whenRecordingNotEnabled_thenNotExposed() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/actuator/jfrrecording").param("duration", "PT1S"))
+                .andExpect(status().isNotFound());
+    }
+
+}
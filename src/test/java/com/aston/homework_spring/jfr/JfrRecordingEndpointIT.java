@@ -0,0 +1,67 @@
+package com.aston.homework_spring.jfr;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = {"users.jfr.recording.enabled=true",
+        "management.endpoints.web.exposure.include=health,jfr,jfrrecording"})
+class JfrRecordingEndpointIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When recording is started then request returns at once and file is available after duration")
+    public void whenRecordingStarted_thenAcceptedAndFileLater() throws Exception {
+
+        long start = System.nanoTime();
+        MvcResult started = mockMvc.perform(MockMvcRequestBuilders.post("/actuator/jfrrecording")
+                        .param("duration", "PT2S"))
+                .andExpect(status().isAccepted())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.state").value("RUNNING"))
+                .andReturn();
+        // Поток запроса не ждет окончания записи
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        String id = JsonPath.read(started.getResponse().getContentAsString(), "$.id");
+
+        // Пока запись идет, второй запуск отклоняется, а файл еще не готов
+        mockMvc.perform(MockMvcRequestBuilders.post("/actuator/jfrrecording").param("duration", "PT1S"))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/jfrrecording/{id}", id))
+                .andExpect(status().isAccepted());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/jfrrecording/{id}", id)).andReturn();
+        while (result.getResponse().getStatus() == 202 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+            result = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/jfrrecording/{id}", id)).andReturn();
+        }
+        assertEquals(200, result.getResponse().getStatus());
+        byte[] body = result.getResponse().getContentAsByteArray();
+        // Файл JFR начинается с магического числа "FLR\0"
+        assertArrayEquals(new byte[]{'F', 'L', 'R', 0}, Arrays.copyOf(body, 4));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/jfrrecording"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.state").value("STOPPED"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/actuator/jfrrecording").param("duration", "PT1H"))
+                .andExpect(status().isBadRequest());
+    }
+
+}
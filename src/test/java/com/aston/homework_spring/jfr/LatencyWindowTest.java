@@ -0,0 +1,48 @@
+package com.aston.homework_spring.jfr;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyWindowTest {
+
+
+    @Test
+    @DisplayName("When durations are added then summary contains percentiles of recent events only")
+    void whenAdded_thenPercentilesOfRecentEvents() {
+
+        LatencyWindow window = new LatencyWindow(1000);
+        // Старое событие вне окна
+        window.add(1_000_000_000L, 1_000);
+        for (int i = 1; i <= 100; i++) {
+            window.add(i * 1_000_000L, 10_000);
+        }
+
+        LatencyWindow.Latency latency = window.summary(5_000);
+        assertEquals(100, latency.count());
+        assertEquals(50.5, latency.meanMs());
+        assertEquals(50.0, latency.p50Ms());
+        assertEquals(95.0, latency.p95Ms());
+        assertEquals(99.0, latency.p99Ms());
+        assertEquals(100.0, latency.maxMs());
+        assertNull(window.summary(20_000));
+    }
+
+
+    @Test
+    @DisplayName("When more events than capacity are added then oldest are overwritten")
+    void whenOverCapacity_thenOldestOverwritten() {
+
+        LatencyWindow window = new LatencyWindow(2);
+        window.add(1_000_000L, 1);
+        window.add(2_000_000L, 2);
+        window.add(3_000_000L, 3);
+
+        LatencyWindow.Latency latency = window.summary(0);
+        assertEquals(2, latency.count());
+        assertEquals(2.0, latency.p50Ms());
+        assertEquals(3.0, latency.maxMs());
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.aston.homework_spring.readmodel;
+
+import com.aston.homework_spring.model.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserColumnsTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2025, 12, 15, 10, 0, 0, 123_456_000);
+
+
+    @Test
+    @DisplayName("When users are inserted out of order, updated and removed then rows stay sorted by id")
+    void whenApplyBatches_thenRowsConsistent() {
+
+        UserColumns columns = new UserColumns();
+        columns.apply(List.of(user(1, "Иван", 30), user(2, "Петр", 40), user(5, "Анна", 25)), List.of());
+        // Строка 3 зафиксирована позже строки 5
+        columns.apply(List.of(user(3, "Олег", 35), user(2, "Петр Петров", 41)), List.of(1L));
+
+        assertEquals(3, columns.count());
+        assertNull(columns.find(1));
+        assertEquals(List.of(2L, 3L, 5L), columns.page(0, 10).stream().map(User.Out::getId).toList());
+
+        User.Out updated = columns.find(2);
+        assertEquals("Петр Петров", updated.getName());
+        assertEquals("user2@mail.ru", updated.getEmail());
+        assertEquals(41, updated.getAge());
+        assertEquals(CREATED.plusMinutes(2), updated.getCreated_at());
+    }
+
+
+    @Test
+    @DisplayName("When query sorts and filters by indexed columns then pages follow index order")
+    void whenQuery_thenFilteredAndSorted() {
+
+        UserColumns columns = new UserColumns();
+        List<User.Out> users = new ArrayList<>();
+        for (int id = 1; id <= 10; id++) {
+            users.add(user(id, "User" + id, 20 + id % 4));
+        }
+        columns.apply(users, List.of());
+
+        // Возраст 22 у пользователей 2, 6, 10; 23 - у 3, 7
+        List<User.Out> byAge = columns.query(new UserColumns.Filter(22, 23, null, null),
+                UserColumns.Sort.AGE, false, 1, 3);
+        assertEquals(List.of(6L, 10L, 3L), byAge.stream().map(User.Out::getId).toList());
+
+        List<User.Out> latest = columns.query(new UserColumns.Filter(null, null, CREATED.plusMinutes(4), null),
+                UserColumns.Sort.CREATED_AT, true, 0, 2);
+        assertEquals(List.of(10L, 9L), latest.stream().map(User.Out::getId).toList());
+
+        // Фильтр по возрасту проверяется и при сортировке по дате создания
+        List<User.Out> earliest = columns.query(new UserColumns.Filter(21, 21, null, CREATED.plusMinutes(9)),
+                UserColumns.Sort.CREATED_AT, false, 0, 10);
+        assertEquals(List.of(1L, 5L), earliest.stream().map(User.Out::getId).toList());
+
+        columns.apply(List.of(user(6, "User6", 30)), List.of(10L));
+        assertEquals(List.of(2L), columns.query(new UserColumns.Filter(22, 22, null, null),
+                UserColumns.Sort.AGE, false, 0, 10).stream().map(User.Out::getId).toList());
+    }
+
+
+    @Test
+    @DisplayName("When users are removed then reads skip tombstones until compaction drops them")
+    void whenRemoved_thenTombstonesSkippedAndCompacted() {
+
+        UserColumns columns = new UserColumns();
+        List<User.Out> users = new ArrayList<>();
+        for (int id = 1; id <= 4000; id++) {
+            users.add(user(id * 2, "User" + id, 20 + id % 4));
+        }
+        columns.apply(users, List.of());
+
+        // Удаляются три четверти строк, кроме каждой четвертой; одна удаленная строка возвращается
+        List<Long> removed = new ArrayList<>();
+        for (int id = 1; id <= 4000; id++) {
+            if (id % 4 != 0) {
+                removed.add(id * 2L);
+            }
+        }
+        columns.apply(List.of(), removed);
+        columns.apply(List.of(user(2, "User1", 21), user(3, "Late", 22)), List.of());
+
+        List<Long> expected = List.of(2L, 3L, 8L, 16L, 24L);
+        assertEquals(1002, columns.count());
+        assertNull(columns.find(4));
+        assertEquals("Late", columns.find(3).getName());
+        assertEquals(expected, columns.page(0, 5).stream().map(User.Out::getId).toList());
+        assertEquals(List.of(24L, 32L), columns.page(4, 2).stream().map(User.Out::getId).toList());
+        assertEquals(List.of(8000L), columns.page(1001, 10).stream().map(User.Out::getId).toList());
+        assertEquals(expected, columns.query(UserColumns.Filter.NONE, UserColumns.Sort.ID, false, 0, 5)
+                .stream().map(User.Out::getId).toList());
+        assertEquals(List.of(8000L, 7992L), columns.query(UserColumns.Filter.NONE, UserColumns.Sort.ID, true, 0, 2)
+                .stream().map(User.Out::getId).toList());
+
+        assertTrue(columns.compact());
+        assertFalse(columns.compact());
+        assertEquals(1002, columns.count());
+        assertEquals(expected, columns.page(0, 5).stream().map(User.Out::getId).toList());
+        assertEquals(List.of(24L, 32L), columns.page(4, 2).stream().map(User.Out::getId).toList());
+        assertEquals("user8000@mail.ru", columns.find(8000).getEmail());
+        assertEquals(CREATED.plusMinutes(3), columns.find(3).getCreated_at());
+    }
+
+
+    @Test
+    @DisplayName("When many users are loaded then footprint per user is a small fraction of objects")
+    void whenLoaded_thenFootprintReported() {
+
+        UserColumns columns = new UserColumns();
+        List<User.Out> batch = new ArrayList<>();
+        for (int id = 1; id <= 100_000; id++) {
+            batch.add(user(id, "Пользователь" + id, 18 + id % 40));
+            if (batch.size() == 10_000) {
+                columns.apply(batch, List.of());
+                batch.clear();
+            }
+        }
+
+        UserColumns.Footprint footprint = columns.footprint();
+        assertEquals(100_000, footprint.users());
+        assertEquals(footprint.totalBytes(), footprint.columnBytes().values().stream().mapToLong(Long::longValue).sum());
+        // Примитивные колонки, текст и два индекса с запасом емкости массивов
+        assertTrue(footprint.bytesPerUser() < 256, "bytes per user: " + footprint.bytesPerUser());
+        assertEquals(footprint.bytesPerUser() * 1_000_000, footprint.bytesPerMillionUsers());
+    }
+
+
+    private static User.Out user(long id, String name, int age) {
+        return User.Out.builder()
+                .id(id)
+                .name(name)
+                .email("user" + id + "@mail.ru")
+                .age(age)
+                .created_at(CREATED.plusMinutes(id))
+                .build();
+    }
+
+}
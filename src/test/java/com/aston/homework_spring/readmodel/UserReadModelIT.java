@@ -0,0 +1,114 @@
+package com.aston.homework_spring.readmodel;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Опрос журнала вызывается из тестов, чтобы результат не зависел от расписания
+@TestPropertySource(properties = {"users.read-model.enabled=true", "users.read-model.poll-interval=PT1H"})
+class UserReadModelIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserReadModel readModel;
+
+
+    // Модель строится заново по данным теста, которые загружаются уже после запуска контекста
+    @BeforeEach
+    void load() {
+        readModel.run(null);
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When filter by age sorted descending then page is served from read model")
+    public void whenFilterByAge_thenSortedPage() throws Exception {
+
+        // Возраст 38 у пользователей 5 и 6, 40 - у 7 и 8
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/filter")
+                        .param("minAge", "38")
+                        .param("maxAge", "40")
+                        .param("sort", "AGE")
+                        .param("descending", "true")
+                        .param("limit", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", contains(8, 7, 6)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/filter")
+                        .param("createdFrom", "2025-12-16T00:00:00")
+                        .param("sort", "CREATED_AT")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[-1:].id", contains(10)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/readmodel"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.ready").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.footprint.users").value(10));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When users change outside the application then read model catches up on next poll")
+    public void whenChangedInDatabase_thenAppliedOnPoll() throws Exception {
+
+        jdbcTemplate.update("update users set age = 99 where id = 1");
+        jdbcTemplate.update("update users set deleted_at = now() where id = 2");
+        jdbcTemplate.update("insert into users (name, email, age, created_at) values ('Новый', 'new@gmail.com', 99, now())");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/filter").param("minAge", "99"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(0)));
+
+        readModel.poll();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/filter").param("minAge", "99"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(1));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/get-all-count"))
+                .andExpect(MockMvcResultMatchers.content().string("10"));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When user is updated through the application then change is visible without poll")
+    public void whenUpdatedThroughApplication_thenVisibleImmediately() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/users/{id}", 3L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\": 77}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/filter").param("minAge", "77").param("maxAge", "77"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[*].id", contains(3)));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/users/{id}", 3L))
+                .andExpect(status().is2xxSuccessful());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 3L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.aston.homework_spring.scan;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = {"users.scan.range-size=3", "users.scan.batch-size=2", "users.scan.queue-capacity=1"})
+class UserScannerIT extends ContainerIT {
+
+    // Сумма возрастов и количество пользователей, собранные по диапазонам
+    private static final UserScanAggregator<long[]> AGE_SUM = new UserScanAggregator<>() {
+        public long[] create() {
+            return new long[2];
+        }
+
+        public void accept(long[] partial, User.Out user) {
+            partial[0] += user.getAge();
+            partial[1]++;
+        }
+
+        public long[] combine(long[] left, long[] right) {
+            return new long[]{left[0] + right[0], left[1] + right[1]};
+        }
+    };
+
+    @Autowired
+    private UserScanner userScanner;
+
+    @Autowired
+    private UserService userService;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When aggregate all users then every live user is counted once")
+    void whenAggregate_thenCountEveryLiveUserOnce() throws Exception {
+
+        userService.delete(1L);
+
+        UserScanJob<long[]> job = userScanner.aggregate(AGE_SUM);
+        long[] result = job.result().get(10, TimeUnit.SECONDS);
+
+        // 10 пользователей в 4 диапазонах по 3 идентификатора, первый пользователь (34 года) удален
+        assertEquals(9, result[1]);
+        assertEquals(34 + 36 + 36 + 38 + 38 + 40 + 40 + 42 + 42, result[0]);
+        assertEquals(4, job.getTotalRanges());
+        assertEquals(4, job.getCompletedRanges());
+        assertEquals(1.0, job.getProgress());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When slow consumer reads batches then it receives all users in one thread")
+    void whenForEach_thenConsumerReceivesAllUsers() throws Exception {
+
+        List<Long> ids = new ArrayList<>();
+        List<String> threads = new ArrayList<>();
+        UserScanJob<Long> job = userScanner.forEach(batch -> {
+            assertTrue(batch.size() <= 2);
+            ids.addAll(batch.stream().map(User.Out::getId).toList());
+            threads.add(Thread.currentThread().getName());
+            sleep();
+        });
+
+        assertEquals(10L, job.result().get(10, TimeUnit.SECONDS));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), ids.stream().sorted().toList());
+        assertEquals(1, threads.stream().distinct().count());
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When consumer fails then scan fails with its exception")
+    void whenConsumerFails_thenScanFails() {
+
+        UserScanJob<Long> job = userScanner.forEach(batch -> {
+            throw new IllegalStateException("report storage is unavailable");
+        });
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> job.result().get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertTrue(job.isCancelled());
+    }
+
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
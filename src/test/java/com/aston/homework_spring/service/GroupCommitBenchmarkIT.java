@@ -0,0 +1,112 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.aston.homework_spring.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Замеры пропускной способности и задержек, а не проверки поведения: исключены из обычного запуска тестов
+// (группа benchmark). Запуск: mvn test -Dtest=GroupCommitBenchmarkIT -Dsurefire.excludedGroups= -DskipTests=false
+@Tag("benchmark")
+@Slf4j
+@TestPropertySource(properties = "users.group-commit.enabled=true")
+class GroupCommitBenchmarkIT extends ContainerIT {
+
+    private static final int THREADS = 32;
+    private static final long MEASURE_MILLIS = 3000;
+
+    @Autowired
+    @Qualifier(UserService.BACKEND)
+    private UserService backend;
+
+    @Autowired
+    private GroupCommitUserWriter writer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("Benchmark: create throughput and latency with a transaction per create and with group commit")
+    public void benchmarkCreates() {
+
+        AtomicInteger emails = new AtomicInteger();
+        Result single = measure(in -> backend.create(in, DuplicateEmailStrategy.REJECT), emails);
+        Result grouped = measure(writer::create, emails);
+
+        log.info("User creates ({} threads): transaction per create {}/s p50={}us p99={}us, " +
+                        "group commit {}/s p50={}us p99={}us",
+                THREADS, Math.round(single.perSecond()), single.percentile(0.5), single.percentile(0.99),
+                Math.round(grouped.perSecond()), grouped.percentile(0.5), grouped.percentile(0.99));
+        assertEquals(10 + emails.get(), jdbcTemplate.queryForObject("select count(*) from users", Integer.class));
+    }
+
+
+    private record Result(long[] nanos) {
+
+        double perSecond() {
+            return nanos.length * 1000.0 / MEASURE_MILLIS;
+        }
+
+        double percentile(double quantile) {
+            return nanos[(int) Math.min(nanos.length - 1, Math.round(quantile * (nanos.length - 1)))] / 1000.0;
+        }
+    }
+
+
+    // THREADS потоков создают пользователей без пауз; первая секунда - прогрев, в замер не входит
+    private static Result measure(Consumer<User.In> create, AtomicInteger emails) {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            long end = warmupEnd + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                results.add(executor.submit(() -> {
+                    List<Long> nanos = new ArrayList<>();
+                    long start;
+                    while ((start = System.nanoTime()) < end) {
+                        int sequence = emails.incrementAndGet();
+                        create.accept(new User.In("benchName" + sequence, "bench" + sequence + "@gmail.com", 30));
+                        if (start >= warmupEnd) {
+                            nanos.add(System.nanoTime() - start);
+                        }
+                    }
+                    return nanos;
+                }));
+            }
+            List<Long> nanos = new ArrayList<>();
+            for (Future<List<Long>> result : results) {
+                nanos.addAll(result.get());
+            }
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return new Result(sorted);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.aston.homework_spring.exception.DuplicateEmailException;
+import com.aston.homework_spring.model.User;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Пачка собирается до 4 запросов с ожиданием до секунды: одновременные вызовы гарантированно попадают в одну пачку
+@TestPropertySource(properties = {
+        "users.group-commit.enabled=true",
+        "users.group-commit.max-batch-size=4",
+        "users.group-commit.max-delay=PT1S"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class GroupCommitUserWriterIT extends ContainerIT {
+
+    @Autowired
+    private GroupCommitUserWriter writer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    @DisplayName("When concurrent creates arrive then they are inserted by one batch")
+    public void whenConcurrentCreates_thenOneBatch() throws Exception {
+
+        List<Future<User.Out>> results = submit(
+                new User.In("testName11", "test11@gmail.com", 30),
+                new User.In("testName12", "test12@gmail.com", 31),
+                new User.In("testName13", "test13@gmail.com", 32),
+                new User.In("testName14", "test14@gmail.com", 33));
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            User.Out out = results.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals("test" + (11 + i) + "@gmail.com", out.getEmail());
+            ids.add(out.getId());
+        }
+        assertEquals(4, ids.stream().distinct().count());
+
+        DistributionSummary batchSizes = meterRegistry.get("users.group_commit.batch_size").summary();
+        assertEquals(1, batchSizes.count());
+        assertEquals(4, batchSizes.totalAmount());
+        assertEquals(14, jdbcTemplate.queryForObject("select count(*) from users", Integer.class));
+    }
+
+
+    @Test
+    @DisplayName("When batch repeats email or hits taken email then only those callers get duplicate error")
+    public void whenDuplicateEmailInBatch_thenOnlyDuplicatesFail() throws Exception {
+
+        List<Future<User.Out>> results = submit(
+                new User.In("testName11", "test11@gmail.com", 30),
+                new User.In("testName12", "test11@gmail.com", 31),
+                new User.In("testName13", "test1@gmail.com", 32),
+                new User.In("testName14", "test14@gmail.com", 33));
+
+        // Из двух запросов с одним email в пачке вставляется ровно один, второй получает ошибку
+        int created = 0;
+        int duplicates = 0;
+        for (Future<User.Out> result : results.subList(0, 2)) {
+            try {
+                assertEquals("test11@gmail.com", result.get(5, TimeUnit.SECONDS).getEmail());
+                created++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(DuplicateEmailException.class, e.getCause());
+                duplicates++;
+            }
+        }
+        assertEquals(1, created);
+        assertEquals(1, duplicates);
+
+        // Email, уже занятый в таблице, отклоняется через ON CONFLICT, не прерывая пачку
+        ExecutionException taken = assertThrows(ExecutionException.class, () -> results.get(2).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DuplicateEmailException.class, taken.getCause());
+        assertEquals("test14@gmail.com", results.get(3).get(5, TimeUnit.SECONDS).getEmail());
+
+        DistributionSummary batchSizes = meterRegistry.get("users.group_commit.batch_size").summary();
+        assertEquals(1, batchSizes.count());
+        assertEquals(3, batchSizes.totalAmount());
+        assertEquals(12, jdbcTemplate.queryForObject("select count(*) from users", Integer.class));
+    }
+
+
+    @Test
+    @DisplayName("When batch insert fails then every caller of the batch gets the error")
+    public void whenInsertFails_thenErrorFannedOut() throws Exception {
+
+        // Имя null нарушает NOT NULL: падает весь многострочный INSERT
+        List<Future<User.Out>> results = submit(
+                new User.In("testName11", "test11@gmail.com", 30),
+                new User.In(null, "test12@gmail.com", 31),
+                new User.In("testName13", "test13@gmail.com", 32),
+                new User.In("testName14", "test14@gmail.com", 33));
+
+        for (Future<User.Out> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DataIntegrityViolationException.class, e.getCause());
+        }
+        assertEquals(10, jdbcTemplate.queryForObject("select count(*) from users", Integer.class));
+
+        // Поток пачек продолжает работу после ошибки
+        assertEquals("test15@gmail.com", writer.create(new User.In("testName15", "test15@gmail.com", 30)).getEmail());
+    }
+
+
+    private List<Future<User.Out>> submit(User.In... ins) {
+        List<Future<User.Out>> results = new ArrayList<>(ins.length);
+        for (User.In in : ins) {
+            results.add(executor.submit(() -> writer.create(in)));
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.exception.WorkloadSaturatedException;
+import com.aston.homework_spring.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GroupCommitUserWriterTest {
+
+    // Поток пачек без базы данных: INSERT подменяется заглушкой JdbcTemplate
+
+    private static final User.In IN = new User.In("testName11", "test11@gmail.com", 30);
+
+    private JdbcTemplate jdbcTemplate;
+    private GroupCommitUserWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        writer = new GroupCommitUserWriter(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new UserStatisticsService(new StaticListableBeanFactory().getBeanProvider(UserStatisticsSource.class), 10),
+                new SimpleMeterRegistry(), 4, Duration.ofMillis(1), 16, Duration.ofMillis(200));
+        writer.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        writer.stop();
+    }
+
+
+    @Test
+    @DisplayName("When a batch fails with an Error then its callers fail and the next batch is committed")
+    void whenBatchThrowsError_thenFlusherKeepsRunning() {
+
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenThrow(new AssertionError("driver bug"))
+                .thenReturn(List.of(out()));
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> writer.create(IN));
+        assertInstanceOf(AssertionError.class, failure.getCause());
+
+        assertEquals(11L, writer.create(IN).getId());
+    }
+
+
+    @Test
+    @DisplayName("When a batch hangs then the caller gets WorkloadSaturatedException after the wait timeout")
+    void whenBatchHangs_thenCallerTimesOut() {
+
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(out());
+        });
+
+        long start = System.nanoTime();
+        assertThrows(WorkloadSaturatedException.class, () -> writer.create(IN));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        release.countDown();
+    }
+
+
+    private static User.Out out() {
+        return User.Out.builder()
+                .id(11L)
+                .name(IN.getName())
+                .email(IN.getEmail())
+                .age(IN.getAge())
+                .created_at(LocalDateTime.now())
+                .build();
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import com.aston.homework_spring.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Замеры задержек, а не проверки поведения: исключены из обычного запуска тестов (группа benchmark).
+// Запуск: mvn test -Dtest=UserSearchBenchmarkIT -Dsurefire.excludedGroups= -DskipTests=false
+@Tag("benchmark")
+@Slf4j
+class UserSearchBenchmarkIT extends ContainerIT {
+
+    private static final int ROWS = 1_000_000;
+    private static final int ROUNDS = 50;
+    private static final int LIMIT = 20;
+
+    // Имена вида "Иванов Петр Xxxxxxxx": частые фамилия и имя и редкое слово из md5 номера строки
+    private static final String GENERATE = "insert into users (name, email, age) " +
+            "select (array['Иванов', 'Петров', 'Сидоров', 'Смирнов', 'Кузнецов', " +
+            "'Попов', 'Васильев', 'Соколов', 'Михайлов', 'Новиков'])[1 + i % 10] " +
+            "|| ' ' || (array['Иван', 'Петр', 'Сергей', 'Алексей', 'Дмитрий', " +
+            "'Андрей', 'Михаил', 'Николай', 'Павел', 'Артем'])[1 + i / 10 % 10] " +
+            "|| ' ' || initcap(substr(md5(i::text), 1, 8)), " +
+            "'bench' || i || '@gmail.com', 18 + i % 48 " +
+            "from generate_series(1, ?) i";
+
+    // Без индексов: подстрока в имени, последовательный просмотр таблицы
+    private static final String SUBSTRING = "select name from users where deleted_at is null " +
+            "and lower(name) like '%' || lower(?) || '%' order by id limit ?";
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("Benchmark: ranked name search latency on a million users against a substring scan")
+    public void benchmarkSearchLatency() {
+
+        jdbcTemplate.update(GENERATE, ROWS);
+        jdbcTemplate.execute("analyze users");
+        String name = jdbcTemplate.queryForObject(
+                "select name from users where email = ?", String.class, "bench" + ROWS / 2 + "@gmail.com");
+        String rare = name.substring(name.lastIndexOf(' ') + 1);
+        String typo = rare.substring(0, 3) + rare.charAt(4) + rare.charAt(3) + rare.substring(5);
+
+        // Частая словоформа (сотни тысяч совпадений), редкое слово целиком, с опечаткой и его начало
+        for (String query : List.of("Иванову", rare, typo, rare.substring(0, 5))) {
+            List<User.Out> found = userSearchService.search(query, 0, LIMIT);
+            assertFalse(found.isEmpty(), query);
+            long[] search = latencies(() -> userSearchService.search(query, 0, LIMIT));
+            long[] substring = latencies(() -> jdbcTemplate.queryForList(SUBSTRING, String.class, query, LIMIT));
+            log.info("Search '{}' on {} users, ms: ranked p50={} p99={}, substring scan p50={} p99={}",
+                    query, ROWS, percentile(search, 0.5), percentile(search, 0.99),
+                    percentile(substring, 0.5), percentile(substring, 0.99));
+        }
+        assertEquals(name, userSearchService.search(typo, 0, 1).getFirst().getName());
+    }
+
+
+    private static long[] latencies(Supplier<?> query) {
+        for (int i = 0; i < 5; i++) {
+            query.get();
+        }
+        long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+
+    private static double percentile(long[] nanos, double quantile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(quantile * (sorted.length - 1)))] / 1_000_000.0;
+    }
+
+}
@@ -1,9 +1,13 @@
 package com.aston.homework_spring.service;
 
+import com.aston.homework_spring.exception.DuplicateEmailException;
 import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.exception.LookupLimitExceededException;
 import com.aston.homework_spring.mapper.UserMapper;
 import com.aston.homework_spring.model.User;
 import com.aston.homework_spring.repository.UserRepository;
+import com.aston.homework_spring.repository.UserStatsView;
+import com.aston.homework_spring.repository.UserWriteView;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -12,6 +16,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,6 +26,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.times;
 
@@ -33,6 +40,9 @@ class UserServiceImplTest {
     @Mock
     private UserMapper mapper;
 
+    @Mock
+    private UserStatisticsService statistics;
+
     @InjectMocks
     private UserServiceImpl userServiceImpl;
 
@@ -171,6 +181,36 @@ class UserServiceImplTest {
     }
 
 
+    @Test
+    @DisplayName("When find users by ids then keep request order and report missing ids")
+    void whenFindAllByIds_thenKeepOrderAndReportMissing() {
+
+        ReflectionTestUtils.setField(userServiceImpl, "maxLookupIds", 100);
+
+        // Запрашиваем пользователей 3, 20 и 1, пользователь с идентификатором 20 в базе данных отсутствует.
+        // База данных возвращает строки в произвольном порядке.
+        doReturn(List.of(user1, user3)).when(userRepository).findAllByIdArray(any(Long[].class));
+        doReturn(List.of(out3, out1)).when(mapper).toDTO(List.of(user3, user1));
+
+        User.Lookup actual = userServiceImpl.findAll(List.of(3L, 20L, 1L, 3L));
+
+        assertEquals(List.of(out3, out1), actual.getUsers());
+        assertEquals(List.of(20L), actual.getMissing());
+        verify(userRepository, times(1)).findAllByIdArray(new Long[]{3L, 20L, 1L});
+    }
+
+
+    @Test
+    @DisplayName("When find users by too many ids then return LookupLimitExceededException")
+    void whenFindAllByTooManyIds_thenReturnLookupLimitExceededException() {
+
+        ReflectionTestUtils.setField(userServiceImpl, "maxLookupIds", 2);
+
+        assertThrows(LookupLimitExceededException.class, () -> userServiceImpl.findAll(List.of(1L, 2L, 3L)));
+        verify(userRepository, never()).findAllByIdArray(any(Long[].class));
+    }
+
+
     @Test
     @DisplayName("When create user with id=4 then success")
     void whenCreateUser_thenSuccess() {
@@ -198,9 +238,9 @@ class UserServiceImplTest {
                 .created_at(LocalDateTime.now())
                 .build();
 
-        doNothing().when(mapper).updateUserFromUserIn(any(User.In.class), any(User.class));
-        doReturn(user4).when(userRepository).save(any(User.class));
-        doReturn(out4).when(mapper).toDTO(any(User.class));
+        doReturn(Optional.of(writeView(user4, true, null))).when(userRepository)
+                .insertIfEmailFree(eq("testName4"), eq("test4@gmail.com"), eq(28), any(LocalDateTime.class));
+        doReturn(out4).when(mapper).toDTO(any(UserWriteView.class));
 
         // Вызываем метод из тестируемого класса
         User.Out actual = userServiceImpl.create(in4);
@@ -212,9 +252,90 @@ class UserServiceImplTest {
         assertEquals(out4.getAge(), actual.getAge());
         assertEquals(out4.getCreated_at(), actual.getCreated_at());
 
-        verify(mapper, times(1)).updateUserFromUserIn(any(User.In.class), any(User.class));
-        verify(userRepository, times(1)).save(any(User.class));
-        verify(mapper, times(1)).toDTO(any(User.class));
+        verify(userRepository, times(1))
+                .insertIfEmailFree(anyString(), anyString(), anyInt(), any(LocalDateTime.class));
+        verify(mapper, times(1)).toDTO(any(UserWriteView.class));
+        verify(statistics, times(1)).recordCreated(user4.getAge(), user4.getCreated_at());
+    }
+
+
+    @Test
+    @DisplayName("When create user with email=test1@gmail.com then return DuplicateEmailException")
+    void whenCreateUserWithDuplicateEmail_thenReturnDuplicateEmailException() {
+
+        User.In in = User.In.builder()
+                .name("testName4")
+                .email("test1@gmail.com")
+                .age(28)
+                .build();
+
+        // ON CONFLICT DO NOTHING не вернул строку: email занят
+        doReturn(Optional.empty()).when(userRepository)
+                .insertIfEmailFree(anyString(), anyString(), anyInt(), any(LocalDateTime.class));
+
+        DuplicateEmailException exception = assertThrows(DuplicateEmailException.class,
+                () -> userServiceImpl.create(in, DuplicateEmailStrategy.REJECT));
+
+        assertEquals("User with email = test1@gmail.com already exists", exception.getMessage());
+        verify(statistics, never()).recordCreated(any(), any());
+    }
+
+
+    @Test
+    @DisplayName("When create user idempotently with existing email then return existing user or reject changed one")
+    void whenCreateUserIdempotently_thenReturnExistingOrReject() {
+
+        // Повтор запроса, который уже создал первого пользователя
+        User.In retry = User.In.builder()
+                .name("testName1")
+                .email("test1@gmail.com")
+                .age(30)
+                .build();
+        User.In changed = User.In.builder()
+                .name("testName4")
+                .email("test1@gmail.com")
+                .age(30)
+                .build();
+
+        doReturn(Optional.of(writeView(user1, false, null))).when(userRepository)
+                .insertOrSelectByEmail(anyString(), anyString(), anyInt(), any(LocalDateTime.class));
+        doReturn(out1).when(mapper).toDTO(any(UserWriteView.class));
+
+        UserService.Creation creation = userServiceImpl.create(retry, DuplicateEmailStrategy.IDEMPOTENT);
+
+        assertEquals(out1, creation.user());
+        assertFalse(creation.created());
+        assertThrows(DuplicateEmailException.class,
+                () -> userServiceImpl.create(changed, DuplicateEmailStrategy.IDEMPOTENT));
+        verify(statistics, never()).recordCreated(any(), any());
+    }
+
+
+    @Test
+    @DisplayName("When upsert user with existing email then existing user is updated")
+    void whenUpsertUserWithExistingEmail_thenUpdateExisting() {
+
+        User.In in = User.In.builder()
+                .name("testName1")
+                .email("test1@gmail.com")
+                .age(31)
+                .build();
+
+        User updated = new User();
+        updated.setId(1L);
+        updated.setName("testName1");
+        updated.setEmail("test1@gmail.com");
+        updated.setAge(31);
+        updated.setCreated_at(user1.getCreated_at());
+
+        doReturn(writeView(updated, false, 30)).when(userRepository)
+                .upsertByEmail(anyString(), anyString(), anyInt(), any(LocalDateTime.class));
+
+        UserService.Creation creation = userServiceImpl.create(in, DuplicateEmailStrategy.UPSERT);
+
+        assertFalse(creation.created());
+        verify(statistics, times(1)).recordAgeChanged(30, 31);
+        verify(statistics, never()).recordCreated(any(), any());
     }
 
 
@@ -222,8 +343,8 @@ class UserServiceImplTest {
     @DisplayName("When update user with id=2 then success")
     void whenUpdateUser_thenSuccess() {
 
-        // Создаем User.In, который будет передаваться в контроллер для обновления второго пользователя
-        User.In in5 = User.In.builder()
+        // Создаем User.Patch, который будет передаваться в контроллер для обновления второго пользователя
+        User.Patch in5 = User.Patch.builder()
                 .name("testName5")
                 .email("test5@gmail.com")
                 .age(31)
@@ -247,7 +368,7 @@ class UserServiceImplTest {
                 .build();
 
         doReturn(Optional.of(user2)).when(userRepository).findById(anyLong());
-        doNothing().when(mapper).updateUserFromUserIn(any(User.In.class), any(User.class));
+        doNothing().when(mapper).patchUserFromUserPatch(any(User.Patch.class), any(User.class));
         doReturn(updatedUser).when(userRepository).save(any(User.class));
         doReturn(updatedOut).when(mapper).toDTO(any(User.class));
 
@@ -262,9 +383,31 @@ class UserServiceImplTest {
         Assertions.assertEquals(updatedOut.getCreated_at(), actual.getCreated_at());
 
         verify(userRepository, times(1)).findById(anyLong());
-        verify(mapper, times(1)).updateUserFromUserIn(any(User.In.class), any(User.class));
+        verify(mapper, times(1)).patchUserFromUserPatch(any(User.Patch.class), any(User.class));
         verify(userRepository, times(1)).save(any(User.class));
         verify(mapper, times(1)).toDTO(any(User.class));
+        verify(statistics, times(1)).recordAgeChanged(36, 31);
+    }
+
+
+    @Test
+    @DisplayName("When update user with id=2 without changes then skip write")
+    void whenUpdateUserWithoutChanges_thenSkipWrite() {
+
+        // Передаем только возраст, совпадающий с текущим значением второго пользователя
+        User.Patch patch = User.Patch.builder()
+                .age(36)
+                .build();
+
+        doReturn(Optional.of(user2)).when(userRepository).findById(anyLong());
+        doReturn(out2).when(mapper).toDTO(any(User.class));
+
+        User.Out actual = userServiceImpl.update(2L, patch);
+
+        Assertions.assertEquals(out2, actual);
+
+        verify(mapper, never()).patchUserFromUserPatch(any(User.Patch.class), any(User.class));
+        verify(userRepository, never()).save(any(User.class));
     }
 
 
@@ -274,8 +417,8 @@ class UserServiceImplTest {
 
         // Если в базе данных нет пользователя с идентификатором 20, то будет выброшено исключение
 
-        // Создаем User.In, который будет передаваться в контроллер для обновления отсутствующего пользователя
-        User.In in5 = User.In.builder()
+        // Создаем User.Patch, который будет передаваться в контроллер для обновления отсутствующего пользователя
+        User.Patch in5 = User.Patch.builder()
                 .name("testName5")
                 .email("test5@gmail.com")
                 .age(31)
@@ -301,13 +444,18 @@ class UserServiceImplTest {
 
         // Желаем удалить пользователя с идентификатором 3
         long id = 3L;
-        doReturn(Optional.of(user3)).when(userRepository).findById(anyLong());
-        doNothing().when(userRepository).deleteById(user3.getId());
+        UserStatsView deleted = mock(UserStatsView.class);
+        doReturn(user3.getAge()).when(deleted).getAge();
+        doReturn(user3.getCreated_at()).when(deleted).getCreated_at();
+        doReturn(Optional.of(deleted)).when(userRepository).softDeleteByIdReturning(anyLong());
 
         userServiceImpl.delete(id);
 
-        verify(userRepository, times(1)).findById(id);
-        verify(userRepository, times(1)).deleteById(id);
+        // Удаление мягкое: одна операция UPDATE без чтения и физического удаления строки
+        verify(userRepository, times(1)).softDeleteByIdReturning(id);
+        verify(userRepository, never()).findById(anyLong());
+        verify(userRepository, never()).deleteById(anyLong());
+        verify(statistics, times(1)).recordDeleted(user3.getAge(), user3.getCreated_at());
     }
 
 
@@ -319,7 +467,7 @@ class UserServiceImplTest {
 
         long id = 20;
 
-        when(userRepository.findById(id)).thenReturn(Optional.empty());
+        when(userRepository.softDeleteByIdReturning(id)).thenReturn(Optional.empty());
         // Исключение возвращает тестируемый, а не зависимый класс. Поэтому не мокируем поведение на выброс исключения.
 
         EntityNotFoundException exception =
@@ -327,8 +475,58 @@ class UserServiceImplTest {
 
         Assertions.assertEquals("User with id = " + id + " not found", exception.getMessage());
 
-        verify(userRepository, times(1)).findById(20L);
+        verify(userRepository, times(1)).softDeleteByIdReturning(20L);
+        verify(statistics, never()).recordDeleted(any(), any());
+
+    }
+
+
+    @Test
+    @DisplayName("When update user email to taken one then return DuplicateEmailException without write")
+    void whenUpdateUserWithDuplicateEmail_thenReturnDuplicateEmailException() {
+
+        User.Patch patch = User.Patch.builder()
+                .email("test1@gmail.com")
+                .build();
+
+        doReturn(Optional.of(user2)).when(userRepository).findById(anyLong());
+        doReturn(true).when(userRepository).existsByEmail("test1@gmail.com");
+
+        assertThrows(DuplicateEmailException.class, () -> userServiceImpl.update(2L, patch));
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+
+    private static UserWriteView writeView(User user, boolean inserted, Integer previousAge) {
+        return new UserWriteView() {
+            public Long getId() {
+                return user.getId();
+            }
+
+            public String getName() {
+                return user.getName();
+            }
+
+            public String getEmail() {
+                return user.getEmail();
+            }
+
+            public Integer getAge() {
+                return user.getAge();
+            }
+
+            public LocalDateTime getCreated_at() {
+                return user.getCreated_at();
+            }
+
+            public Boolean getInserted() {
+                return inserted;
+            }
 
+            public Integer getPrevious_age() {
+                return previousAge;
+            }
+        };
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package com.aston.homework_spring.service;
+
+import com.aston.homework_spring.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+class UserStatisticsServiceTest {
+
+    @Mock
+    private UserStatisticsSource source;
+
+    @Mock
+    private ObjectProvider<UserStatisticsSource> sourceProvider;
+
+    private UserStatisticsService statisticsService;
+
+    @BeforeEach
+    public void setUp() {
+        statisticsService = new UserStatisticsService(sourceProvider, 10);
+    }
+
+
+    @Test
+    @DisplayName("When reconcile then counters are rebuilt from the users table")
+    void whenReconcile_thenRebuildFromTable() {
+
+        doReturn(source).when(sourceProvider).getIfAvailable();
+        // В таблице 2 пользователя 34 лет, 1 пользователь 36 лет и 1 пользователь 42 лет
+        doReturn(new UserStatisticsSource.Snapshot(Map.of(34, 2L, 36, 1L, 42, 1L),
+                Map.of(LocalDate.of(2025, 12, 15), 3L, LocalDate.of(2025, 12, 16), 1L)))
+                .when(source).load();
+
+        statisticsService.reconcile();
+        User.Statistics actual = statisticsService.getStatistics(null, null);
+
+        assertEquals(Map.of("30-39", 3L, "40-49", 1L), actual.getAgeBuckets());
+        assertEquals(Map.of(LocalDate.of(2025, 12, 15), 3L, LocalDate.of(2025, 12, 16), 1L),
+                actual.getSignupsPerDay());
+        assertNotNull(actual.getReconciled_at());
+    }
+
+
+    @Test
+    @DisplayName("When create, update and delete users then counters change incrementally")
+    void whenRecordChanges_thenUpdateIncrementally() {
+
+        LocalDateTime createdAt = LocalDateTime.of(2025, 12, 15, 14, 6, 44);
+
+        // Вне транзакции изменения применяются сразу
+        statisticsService.recordCreated(25, createdAt);
+        statisticsService.recordCreated(38, createdAt);
+        statisticsService.recordAgeChanged(25, 41);
+        statisticsService.recordDeleted(38, createdAt);
+
+        User.Statistics actual = statisticsService.getStatistics(LocalDate.of(2025, 12, 15), null);
+
+        assertEquals(Map.of("40-49", 1L), actual.getAgeBuckets());
+        assertEquals(Map.of(LocalDate.of(2025, 12, 15), 1L), actual.getSignupsPerDay());
+    }
+
+
+    @Test
+    @DisplayName("When user is created while reconcile reads the snapshot then the change is not lost")
+    void whenChangeDuringReconcile_thenKeptAfterSwap() {
+
+        doReturn(source).when(sourceProvider).getIfAvailable();
+        LocalDateTime createdAt = LocalDateTime.of(2025, 12, 16, 9, 0, 0);
+
+        // Снимок уже прочитан, а пользователь создается до подмены счетчиков
+        doAnswer(invocation -> {
+            statisticsService.recordCreated(45, createdAt);
+            return new UserStatisticsSource.Snapshot(Map.of(34, 2L), Map.of(LocalDate.of(2025, 12, 15), 2L));
+        }).when(source).load();
+
+        statisticsService.reconcile();
+        User.Statistics actual = statisticsService.getStatistics(null, null);
+
+        assertEquals(Map.of("30-39", 2L, "40-49", 1L), actual.getAgeBuckets());
+        assertEquals(Map.of(LocalDate.of(2025, 12, 15), 2L, LocalDate.of(2025, 12, 16), 1L),
+                actual.getSignupsPerDay());
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.aston.homework_spring.sharding;
+
+import com.aston.homework_spring.exception.DuplicateEmailException;
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.job.UserPurgeJob;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.repository.UserRepository;
+import com.aston.homework_spring.service.UserStatisticsService;
+import com.aston.homework_spring.service.UserStatisticsSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@Testcontainers
+class ShardedUserServiceIT {
+
+    // Два шарда - два отдельных контейнера PostgreSQL
+
+    @Container
+    private static final PostgreSQLContainer<?> SHARD_0 = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("shard0");
+
+    @Container
+    private static final PostgreSQLContainer<?> SHARD_1 = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("shard1");
+
+    private static UserShards shards;
+    private static UserStatisticsService statistics;
+    private static ShardedUserService userService;
+
+    @BeforeAll
+    static void setUpShards() throws Exception {
+        List<UserShard> all = new ArrayList<>();
+        all.add(ShardingConfig.createShard(0, new ShardingProperties.Shard(
+                SHARD_0.getJdbcUrl(), SHARD_0.getUsername(), SHARD_0.getPassword()), 4));
+        all.add(ShardingConfig.createShard(1, new ShardingProperties.Shard(
+                SHARD_1.getJdbcUrl(), SHARD_1.getUsername(), SHARD_1.getPassword()), 4));
+        for (UserShard shard : all) {
+            ShardingConfig.migrate(shard);
+            ShardingConfig.configureIdSequence(shard, all.size());
+        }
+        shards = new UserShards(all);
+        UserStatisticsSource source = new ShardedStatisticsSource(shards);
+        statistics = new UserStatisticsService(
+                new StaticListableBeanFactory(Map.of("source", source)).getBeanProvider(UserStatisticsSource.class), 10);
+        userService = new ShardedUserService(shards, statistics, 100, Duration.ZERO);
+    }
+
+    @AfterAll
+    static void closeShards() {
+        shards.close();
+    }
+
+    @BeforeEach
+    void cleanUp() {
+        for (UserShard shard : shards.all()) {
+            shard.jdbcTemplate().update("delete from users");
+        }
+        shards.directory().jdbcTemplate().update("delete from user_email_claims");
+        statistics.reconcile();
+    }
+
+
+    @Test
+    @DisplayName("When create users then ids encode the shard and find routes to it")
+    void whenCreateUsers_thenFindRoutesByShard() {
+
+        List<User.Out> created = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            created.add(userService.create(new User.In("testName" + i, "test" + i + "@gmail.com", 30 + i)));
+        }
+
+        for (User.Out out : created) {
+            // Пользователь лежит именно на том шарде, номер которого закодирован в идентификаторе
+            Integer count = shards.forId(out.getId()).jdbcTemplate().queryForObject(
+                    "select count(*) from users where id = ?", Integer.class, out.getId());
+            assertEquals(1, count);
+            assertEquals(out.getEmail(), userService.find(out.getId()).getEmail());
+        }
+    }
+
+
+    @Test
+    @DisplayName("When get all across shards then pages are merged in id order")
+    void whenGetAllAcrossShards_thenMergedInIdOrder() {
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            ids.add(userService.create(new User.In("testName" + i, "test" + i + "@gmail.com", 30)).getId());
+        }
+        ids.sort(Long::compare);
+
+        List<User.Out> page = userService.getAll(3, 4);
+
+        assertEquals(ids.subList(3, 7), page.stream().map(User.Out::getId).toList());
+        assertEquals(10, userService.getAllCount());
+
+        // Страница совпадает с выборкой из общего упорядоченного списка при любом смещении
+        for (int offset = 0; offset <= 11; offset++) {
+            assertEquals(ids.subList(Math.min(offset, 10), Math.min(offset + 3, 10)),
+                    userService.getAll(offset, 3).stream().map(User.Out::getId).toList(), "offset " + offset);
+        }
+    }
+
+
+    @Test
+    @DisplayName("When create user with duplicate email then DuplicateEmailException on any shard")
+    void whenCreateDuplicateEmail_thenDuplicateEmailException() {
+
+        userService.create(new User.In("testName1", "test1@gmail.com", 30));
+
+        // Независимо от выбранного шарда второй пользователь с тем же email не создается
+        for (int i = 0; i < 5; i++) {
+            assertThrows(DuplicateEmailException.class,
+                    () -> userService.create(new User.In("testName2", "test1@gmail.com", 31)));
+        }
+        assertEquals(1, userService.getAllCount());
+    }
+
+
+    @Test
+    @DisplayName("When delete user then email can be reused and user is not found")
+    void whenDeleteUser_thenEmailReleased() {
+
+        User.Out out = userService.create(new User.In("testName1", "test1@gmail.com", 30));
+
+        userService.delete(out.getId());
+
+        assertThrows(EntityNotFoundException.class, () -> userService.find(out.getId()));
+        assertNotNull(userService.create(new User.In("testName1", "test1@gmail.com", 30)).getId());
+    }
+
+
+    @Test
+    @DisplayName("When purge job runs then soft-deleted users are removed from every shard")
+    void whenPurgeJobRuns_thenShardsPurged() {
+
+        List<User.Out> created = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            created.add(userService.create(new User.In("testName" + i, "test" + i + "@gmail.com", 30 + i)));
+        }
+        for (User.Out out : created.subList(0, 7)) {
+            userService.delete(out.getId());
+        }
+
+        // Срок хранения отрицательный: удаленные только что строки уже подлежат физическому удалению.
+        // Порция в одну строку - задача проходит по нескольку порций на каждом шарде
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserPurgeJob job = new UserPurgeJob(mock(UserRepository.class),
+                new StaticListableBeanFactory(Map.of("shards", shards)).getBeanProvider(UserShards.class),
+                meterRegistry, 1, 100, Duration.ZERO, Duration.ofMinutes(-1), Duration.ofDays(1));
+        job.purge();
+
+        for (UserShard shard : shards.all()) {
+            assertEquals(0, shard.jdbcTemplate().queryForObject(
+                    "select count(*) from users where deleted_at is not null", Integer.class));
+        }
+        assertEquals(7, meterRegistry.get("users.purge.rows").counter().count());
+        assertEquals(0, meterRegistry.get("users.purge.backlog").gauge().value());
+        assertEquals(3, userService.getAllCount());
+    }
+
+
+    @Test
+    @DisplayName("When update email to a taken one then DuplicateEmailException and user is unchanged")
+    void whenUpdateToTakenEmail_thenDuplicateEmailException() {
+
+        User.Out first = userService.create(new User.In("testName1", "test1@gmail.com", 30));
+        User.Out second = userService.create(new User.In("testName2", "test2@gmail.com", 30));
+
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.update(second.getId(), User.Patch.builder().email(first.getEmail()).build()));
+        assertEquals("test2@gmail.com", userService.find(second.getId()).getEmail());
+
+        User.Out updated = userService.update(second.getId(), User.Patch.builder().email("test3@gmail.com").build());
+        assertEquals("test3@gmail.com", updated.getEmail());
+        // Старый адрес освобожден и может быть использован повторно
+        assertNotNull(userService.create(new User.In("testName4", "test2@gmail.com", 30)).getId());
+    }
+
+
+    @Test
+    @DisplayName("When users change on shards then statistics follow writes and reconcile reads the shards")
+    void whenWritesOnShards_thenStatisticsMatchShards() {
+
+        User.Out first = userService.create(new User.In("testName1", "test1@gmail.com", 34));
+        User.Out second = userService.create(new User.In("testName2", "test2@gmail.com", 36));
+        userService.create(new User.In("testName3", "test3@gmail.com", 42));
+        userService.update(first.getId(), User.Patch.builder().age(45).build());
+        userService.delete(second.getId());
+
+        assertEquals(Map.of("40-49", 2L), statistics.getStatistics(null, null).getAgeBuckets());
+
+        // Пользователь, добавленный в шард в обход сервиса, появляется после сверки
+        shards.all().get(1).jdbcTemplate().update(
+                "insert into users (name, email, age, created_at) values ('testName4', 'test4@gmail.com', 25, now())");
+        statistics.reconcile();
+
+        assertEquals(Map.of("20-29", 1L, "40-49", 2L), statistics.getStatistics(null, null).getAgeBuckets());
+    }
+
+
+    @Test
+    @DisplayName("When email claims are left pending then sweep confirms live ones and releases orphans")
+    void whenPendingClaims_thenSweepResolvesThem() {
+
+        User.Out live = userService.create(new User.In("testName1", "test1@gmail.com", 30));
+        // Имитация падения между шагами: адрес занят, но пользователь на шард так и не попал,
+        // а запись о существующем пользователе осталась незавершенной
+        shards.directory().jdbcTemplate().update(
+                "insert into user_email_claims (email, shard, pending, claimed_at) " +
+                        "values ('test2@gmail.com', 1, true, now() - interval '1 hour')");
+        shards.directory().jdbcTemplate().update(
+                "update user_email_claims set pending = true, claimed_at = now() - interval '1 hour' where email = ?",
+                live.getEmail());
+
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.create(new User.In("testName2", "test2@gmail.com", 30)));
+
+        userService.sweepEmailClaims();
+
+        assertEquals(List.of(live.getEmail()), shards.directory().jdbcTemplate().queryForList(
+                "select email from user_email_claims where not pending", String.class));
+        assertNotNull(userService.create(new User.In("testName2", "test2@gmail.com", 30)).getId());
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.create(new User.In("testName3", "test1@gmail.com", 30)));
+    }
+
+}
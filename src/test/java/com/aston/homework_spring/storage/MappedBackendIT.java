@@ -0,0 +1,60 @@
+package com.aston.homework_spring.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Приложение со встроенным хранилищем запускается без PostgreSQL: адрес базы данных заведомо недоступен
+@SpringBootTest(properties = {
+        "users.backend=mmap",
+        "spring.datasource.url=jdbc:postgresql://localhost:1/unreachable",
+        "users.warmup.enabled=false"})
+@AutoConfigureMockMvc
+class MappedBackendIT {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void overrideProperties(DynamicPropertyRegistry registry) throws Exception {
+        registry.add("users.mmap.file", Files.createTempDirectory("users-mmap").resolve("users.log")::toString);
+    }
+
+
+    @Test
+    @DisplayName("When backend is mmap then no datasource is created and users are served from the log")
+    public void whenMappedBackend_thenNoDataSource() throws Exception {
+
+        assertTrue(context.getBeansOfType(DataSource.class).isEmpty());
+        assertEquals(1, context.getBeansOfType(MappedUserService.class).size());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Ivanov Ivan\", \"email\": \"abc@gmail.com\", \"age\": 30}"))
+                .andExpect(status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(1));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", 1L).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("abc@gmail.com"));
+    }
+
+}
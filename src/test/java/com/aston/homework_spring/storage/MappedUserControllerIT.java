@@ -0,0 +1,80 @@
+package com.aston.homework_spring.storage;
+
+import com.aston.homework_spring.controller.UserControllerContract;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Сценарии UserControllerIT на встроенном хранилище, без PostgreSQL
+@SpringBootTest(properties = {
+        "users.backend=mmap",
+        "spring.datasource.url=jdbc:postgresql://localhost:1/unreachable",
+        "users.warmup.enabled=false"})
+@AutoConfigureMockMvc
+class MappedUserControllerIT implements UserControllerContract {
+
+    private static final Pattern TEST_USER = Pattern.compile("\\('([^']*)', '([^']*)', (\\d+), '([^']*)'\\)");
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    // Вызывается для каждого нового контекста: после @DirtiesContext тест получает свежий журнал
+    @DynamicPropertySource
+    static void overrideProperties(DynamicPropertyRegistry registry) throws IOException {
+        Path file = Files.createTempDirectory("users-mmap").resolve("users.log");
+        seed(file);
+        registry.add("users.mmap.file", file::toString);
+    }
+
+
+    @Override
+    public MockMvc mockMvc() {
+        return mockMvc;
+    }
+
+
+    @Override
+    public UserService userService() {
+        return userService;
+    }
+
+
+    // Те же пользователи, что test.sql загружает в PostgreSQL, с идентификаторами по порядку
+    private static void seed(Path file) throws IOException {
+        String sql = new ClassPathResource("test.sql").getContentAsString(StandardCharsets.UTF_8);
+        try (UserLog userLog = UserLog.open(file, 64 * 1024, false)) {
+            long id = 1;
+            Matcher matcher = TEST_USER.matcher(sql);
+            while (matcher.find()) {
+                userLog.appendPut(User.Out.builder()
+                        .id(id++)
+                        .name(matcher.group(1))
+                        .email(matcher.group(2))
+                        .age(Integer.parseInt(matcher.group(3)))
+                        .created_at(LocalDateTime.parse(matcher.group(4), CREATED_AT))
+                        .build());
+            }
+            userLog.nextId(id);
+        }
+    }
+
+}
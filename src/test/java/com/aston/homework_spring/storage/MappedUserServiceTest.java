@@ -0,0 +1,296 @@
+package com.aston.homework_spring.storage;
+
+import com.aston.homework_spring.exception.DuplicateEmailException;
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import com.aston.homework_spring.exception.LookupLimitExceededException;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.DuplicateEmailStrategy;
+import com.aston.homework_spring.service.UserService;
+import com.aston.homework_spring.service.UserStatisticsService;
+import com.aston.homework_spring.service.UserStatisticsSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedUserServiceTest {
+
+    // Те же сценарии, что и в UserServiceImplTest и UserControllerIT, для встроенного хранилища,
+    // а также восстановление после перезапуска, после сбоя во время записи и уплотнение журнала
+
+    @TempDir
+    private Path directory;
+
+    private Path file;
+    private UserStatisticsService statistics;
+    private MappedUserService userService;
+
+    @BeforeEach
+    public void setUp() {
+        file = directory.resolve("users.log");
+        statistics = new UserStatisticsService(
+                new StaticListableBeanFactory().getBeanProvider(UserStatisticsSource.class), 10);
+        userService = open();
+        for (int i = 1; i <= 10; i++) {
+            userService.create(new User.In("testName" + i, "test" + i + "@gmail.com", 30 + i));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        userService.close();
+    }
+
+
+    @Test
+    @DisplayName("When get all users then get user id=4, get user id=5, get user id=6")
+    void whenGetAllUsers_thenSuccess() {
+
+        List<User.Out> actual = userService.getAll(3, 3);
+
+        assertEquals(List.of(4L, 5L, 6L), actual.stream().map(User.Out::getId).toList());
+        assertEquals(10, userService.getAllCount());
+    }
+
+
+    @Test
+    @DisplayName("When find user by id then get user id=5 email=test5@gmail.com")
+    void whenFindUser_thenSuccess() {
+
+        User.Out actual = userService.find(5L);
+
+        assertEquals("testName5", actual.getName());
+        assertEquals("test5@gmail.com", actual.getEmail());
+        assertEquals(35, actual.getAge());
+        assertNotNull(actual.getCreated_at());
+    }
+
+
+    @Test
+    @DisplayName("When find user by id=20 then return EntityNotFoundException")
+    void whenFindUser_thenReturnNotFoundException() {
+
+        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> userService.find(20L));
+        assertEquals("User with id = 20 not found", exception.getMessage());
+    }
+
+
+    @Test
+    @DisplayName("When create user with duplicate email then return DuplicateEmailException")
+    void whenCreateUserWithDuplicateEmail_thenReturnException() {
+
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.create(new User.In("testName11", "test10@gmail.com", 30)));
+        assertEquals(11L, userService.create(new User.In("testName11", "test11@gmail.com", 30)).getId());
+    }
+
+
+    @Test
+    @DisplayName("When create user with taken email then the chosen strategy applies")
+    void whenCreateUserWithDuplicateEmail_thenApplyStrategy() {
+
+        User.In same = new User.In("testName10", "test10@gmail.com", 40);
+        User.In changed = new User.In("testName11", "test10@gmail.com", 30);
+
+        UserService.Creation existing = userService.create(changed, DuplicateEmailStrategy.RETURN_EXISTING);
+        assertFalse(existing.created());
+        assertEquals("testName10", existing.user().getName());
+
+        assertEquals(10L, userService.create(same, DuplicateEmailStrategy.IDEMPOTENT).user().getId());
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.create(changed, DuplicateEmailStrategy.IDEMPOTENT));
+
+        UserService.Creation upserted = userService.create(changed, DuplicateEmailStrategy.UPSERT);
+        assertFalse(upserted.created());
+        assertEquals(10L, upserted.user().getId());
+        assertEquals("testName11", userService.find(10L).getName());
+        assertEquals(10, userService.getAllCount());
+    }
+
+
+    @Test
+    @DisplayName("When update user then only passed fields change and email uniqueness holds")
+    void whenUpdateUser_thenSuccess() {
+
+        User.Out updated = userService.update(10L, User.Patch.builder().age(31).email("test12@gmail.com").build());
+
+        assertEquals("testName10", updated.getName());
+        assertEquals("test12@gmail.com", updated.getEmail());
+        assertEquals(31, updated.getAge());
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.update(9L, User.Patch.builder().email("test12@gmail.com").build()));
+        // Освобожденный адрес можно использовать повторно
+        assertNotNull(userService.create(new User.In("testName13", "test10@gmail.com", 30)));
+        assertThrows(EntityNotFoundException.class,
+                () -> userService.update(20L, User.Patch.builder().age(30).build()));
+    }
+
+
+    @Test
+    @DisplayName("When delete user then it is hidden and the lookup reports it missing")
+    void whenDeleteUser_thenSuccess() {
+
+        userService.delete(1L);
+
+        assertThrows(EntityNotFoundException.class, () -> userService.find(1L));
+        assertThrows(EntityNotFoundException.class, () -> userService.delete(1L));
+        assertEquals(9, userService.getAllCount());
+        assertEquals(List.of(2L, 3L), userService.getAll(0, 2).stream().map(User.Out::getId).toList());
+
+        User.Lookup lookup = userService.findAll(List.of(5L, 1L, 3L));
+        assertEquals(List.of(5L, 3L), lookup.getUsers().stream().map(User.Out::getId).toList());
+        assertEquals(List.of(1L), lookup.getMissing());
+    }
+
+
+    @Test
+    @DisplayName("When lookup too many ids then return LookupLimitExceededException")
+    void whenLookupTooManyIds_thenReturnException() {
+
+        List<Long> ids = LongStream.rangeClosed(1, 101).boxed().toList();
+        assertThrows(LookupLimitExceededException.class, () -> userService.findAll(ids));
+    }
+
+
+    @Test
+    @DisplayName("When reopen log then users, deletions and next id are recovered")
+    void whenReopen_thenRecover() {
+
+        userService.update(2L, User.Patch.builder().name("Иванов Иван").build());
+        userService.delete(3L);
+        userService.close();
+
+        userService = open();
+
+        assertEquals(9, userService.getAllCount());
+        assertEquals("Иванов Иван", userService.find(2L).getName());
+        assertThrows(EntityNotFoundException.class, () -> userService.find(3L));
+        assertThrows(DuplicateEmailException.class,
+                () -> userService.create(new User.In("testName11", "test2@gmail.com", 30)));
+        assertEquals(11L, userService.create(new User.In("testName11", "test11@gmail.com", 30)).getId());
+    }
+
+
+    @Test
+    @DisplayName("When the last record is torn by a crash then it is dropped on recovery")
+    void whenTornTail_thenDropLastRecord() throws Exception {
+
+        userService.close();
+        // Портим последний байт последней записи (пользователь 10), имитируя недописанную запись
+        long lastRecordEnd = lastRecordEnd();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(lastRecordEnd - 1);
+            int last = raf.read();
+            raf.seek(lastRecordEnd - 1);
+            raf.write(last ^ 0xff);
+        }
+
+        userService = open();
+
+        assertEquals(9, userService.getAllCount());
+        assertThrows(EntityNotFoundException.class, () -> userService.find(10L));
+        // Идентификатор 10 уже был выдан (он сохранен в заголовке журнала) и повторно не используется
+        assertEquals(11L, userService.create(new User.In("testName10", "test10@gmail.com", 30)).getId());
+    }
+
+
+    @Test
+    @DisplayName("When most of the log is dead then it is compacted and still readable")
+    void whenManyUpdates_thenCompact() {
+
+        userService.close();
+        userService = new MappedUserService(file, 4096, false, 1, 100, statistics);
+        long before = fileSize();
+
+        for (int i = 0; i < 200; i++) {
+            userService.update(1L, User.Patch.builder().age(20 + i % 40).build());
+        }
+
+        assertTrue(fileSize() <= Math.max(before, 8192), "log was not compacted");
+        assertEquals(10, userService.getAllCount());
+        assertEquals(20 + 199 % 40, userService.find(1L).getAge());
+        assertEquals("test1@gmail.com", userService.find(1L).getEmail());
+    }
+
+
+    @Test
+    @DisplayName("When the newest user is deleted and the log is compacted then its id is not reused after restart")
+    void whenCompactedAndReopened_thenIdNotReused() {
+
+        userService.close();
+        userService = new MappedUserService(file, 4096, false, 1, 100, statistics);
+        userService.delete(10L);
+        // Уплотнение убирает из журнала все записи пользователя 10
+        for (int i = 0; i < 200; i++) {
+            userService.update(1L, User.Patch.builder().age(20 + i % 40).build());
+        }
+        userService.close();
+
+        userService = open();
+
+        assertThrows(EntityNotFoundException.class, () -> userService.find(10L));
+        assertEquals(11L, userService.create(new User.In("testName11", "test11@gmail.com", 30)).getId());
+    }
+
+
+    @Test
+    @DisplayName("When users change then statistics follow and the log serves as reconcile source")
+    void whenUsersChange_thenStatisticsFollow() {
+
+        userService.update(1L, User.Patch.builder().age(45).build());
+        userService.delete(2L);
+
+        // Пользователи 3..10 в возрасте 33..40, пользователь 1 - 45 лет
+        Map<String, Long> expected = Map.of("30-39", 7L, "40-49", 2L);
+        assertEquals(expected, statistics.getStatistics(null, null).getAgeBuckets());
+
+        UserStatisticsSource.Snapshot snapshot = userService.load();
+        assertEquals(9L, snapshot.ages().values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(1L, snapshot.ages().get(45));
+        assertEquals(Map.of(LocalDate.now(), 9L), snapshot.days());
+    }
+
+
+    private MappedUserService open() {
+        return new MappedUserService(file, 1 << 16, false, 1 << 20, 100, statistics);
+    }
+
+    private long fileSize() {
+        try {
+            return Files.size(file);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long lastRecordEnd() throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long position = 16;
+            long end = position;
+            raf.seek(position);
+            while (position + 8 <= raf.length()) {
+                raf.seek(position);
+                int length = raf.readInt();
+                if (length == 0) {
+                    break;
+                }
+                position += 8 + length;
+                end = position;
+            }
+            return end;
+        }
+    }
+
+}
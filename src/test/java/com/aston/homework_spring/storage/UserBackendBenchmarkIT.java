@@ -0,0 +1,121 @@
+package com.aston.homework_spring.storage;
+
+import com.aston.homework_spring.HomeworkSpringBootApplication;
+import com.aston.homework_spring.controller.ContainerIT;
+import com.aston.homework_spring.model.User;
+import com.aston.homework_spring.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Замеры пропускной способности, а не проверки поведения: исключены из обычного запуска тестов (группа benchmark).
+// Запуск: mvn test -Dtest=UserBackendBenchmarkIT -Dsurefire.excludedGroups= -DskipTests=false
+@Tag("benchmark")
+@Slf4j
+class UserBackendBenchmarkIT extends ContainerIT {
+
+    private static final int THREADS = 8;
+    private static final long MEASURE_MILLIS = 3000;
+
+    @Autowired
+    private UserService userService;
+
+    @TempDir
+    private Path directory;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("Benchmark: find and create throughput of PostgreSQL (jpa) and memory-mapped (mmap) backends")
+    public void benchmarkBackendThroughput() {
+
+        try (ConfigurableApplicationContext mapped = startMappedInstance()) {
+            UserService mappedService = mapped.getBean(UserService.class);
+            for (int i = 1; i <= 10; i++) {
+                mappedService.create(new User.In("testName" + i, "test" + i + "@gmail.com", 30 + i));
+            }
+
+            double jpaFinds = throughput(i -> userService.find(1 + i % 10));
+            double mappedFinds = throughput(i -> mappedService.find(1 + i % 10));
+            AtomicInteger emails = new AtomicInteger();
+            double jpaCreates = throughput(i -> userService.create(newUser(emails.incrementAndGet())));
+            double mappedCreates = throughput(i -> mappedService.create(newUser(emails.incrementAndGet())));
+
+            log.info("Backend throughput, ops/s ({} threads): find jpa={} mmap={}, create jpa={} mmap={}",
+                    THREADS, Math.round(jpaFinds), Math.round(mappedFinds),
+                    Math.round(jpaCreates), Math.round(mappedCreates));
+            assertTrue(jpaFinds > 0 && mappedFinds > 0 && jpaCreates > 0 && mappedCreates > 0);
+        }
+    }
+
+
+    // Встроенное хранилище в отдельном контексте без веб-сервера и без базы данных
+    private ConfigurableApplicationContext startMappedInstance() {
+        return new SpringApplicationBuilder(HomeworkSpringBootApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("users.backend=mmap",
+                        "spring.datasource.url=jdbc:postgresql://localhost:1/unreachable",
+                        "users.warmup.enabled=false",
+                        "users.mmap.file=" + directory.resolve("users.log"))
+                .run();
+    }
+
+
+    // Операций в секунду: THREADS потоков выполняют операцию без пауз, первая секунда - прогрев
+    private static double throughput(IntConsumer operation) {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            long end = warmupEnd + TimeUnit.MILLISECONDS.toNanos(MEASURE_MILLIS);
+            AtomicInteger sequence = new AtomicInteger();
+            List<Future<Long>> counts = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                counts.add(executor.submit(() -> {
+                    long measured = 0;
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        operation.accept(sequence.incrementAndGet());
+                        if (now >= warmupEnd) {
+                            measured++;
+                        }
+                    }
+                    return measured;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> count : counts) {
+                total += count.get();
+            }
+            return total * 1000.0 / MEASURE_MILLIS;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private static User.In newUser(int sequence) {
+        return new User.In("benchName" + sequence, "bench" + sequence + "@gmail.com", 30);
+    }
+
+}
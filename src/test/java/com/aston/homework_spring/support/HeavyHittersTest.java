@@ -0,0 +1,116 @@
+package com.aston.homework_spring.support;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+
+    @Test
+    @DisplayName("When few keys dominate a long tail then top returns them in frequency order")
+    void whenSkewedStream_thenTopKeys() {
+
+        HeavyHitters<Long> hitters = new HeavyHitters<>(3, 4, 1024);
+        for (long key = 1000; key < 6000; key++) {
+            hitters.record(key);
+            if (key % 2 == 0) {
+                hitters.record(1L);
+            }
+            if (key % 5 == 0) {
+                hitters.record(2L);
+            }
+            if (key % 10 == 0) {
+                hitters.record(3L);
+            }
+        }
+
+        List<HeavyHitters.Entry<Long>> top = hitters.top(3);
+        assertEquals(List.of(1L, 2L, 3L), top.stream().map(HeavyHitters.Entry::key).toList());
+        // Оценка не меньше настоящей частоты
+        assertTrue(top.getFirst().count() >= 2500);
+        assertEquals(5000 + 2500 + 1000 + 500, hitters.total());
+    }
+
+
+    @Test
+    @DisplayName("When counters decay then keys that stopped being requested are forgotten")
+    void whenDecay_thenOldKeysForgotten() {
+
+        HeavyHitters<String> hitters = new HeavyHitters<>(2, 4, 1024);
+        hitters.record("old");
+        for (int i = 0; i < 8; i++) {
+            hitters.record("hot");
+        }
+
+        hitters.decay();
+        assertEquals(List.of("hot"), hitters.top(10).stream().map(HeavyHitters.Entry::key).toList());
+        assertEquals(4, hitters.top(10).getFirst().count());
+        assertEquals(4, hitters.total());
+    }
+
+
+    @Test
+    @DisplayName("When keys are recorded from several threads then no increments are lost")
+    void whenConcurrentRecords_thenExactCounts() {
+
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int thread = 0; thread < 4; thread++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        sketch.add(42L);
+                    }
+                });
+            }
+        }
+        assertEquals(40_000, sketch.estimate(42L));
+    }
+
+
+    @Test
+    @DisplayName("When strings share a 32-bit hashCode then the sketch still counts them apart")
+    void whenHashCodesCollide_thenSeparateCounts() {
+
+        // "Aa" и "BB" дают одинаковый String.hashCode
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        HeavyHitters<String> hitters = new HeavyHitters<>(2, 4, 1024);
+        for (int i = 0; i < 10; i++) {
+            hitters.record("Aa");
+        }
+        hitters.record("BB");
+
+        List<HeavyHitters.Entry<String>> top = hitters.top(2);
+        assertEquals(new HeavyHitters.Entry<>("Aa", 10), top.get(0));
+        assertEquals(new HeavyHitters.Entry<>("BB", 1), top.get(1));
+    }
+
+
+    @Test
+    @DisplayName("When new keys are admitted from several threads then each key holds at most one slot")
+    void whenConcurrentAdmits_thenDistinctCandidates() {
+
+        HeavyHitters<Long> hitters = new HeavyHitters<>(16, 4, 4096);
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int thread = 0; thread < 4; thread++) {
+                executor.submit(() -> {
+                    for (long key = 0; key < 20_000; key++) {
+                        hitters.record(key % 64);
+                    }
+                });
+            }
+        }
+
+        List<HeavyHitters.Entry<Long>> top = hitters.top(100);
+        assertEquals(16, top.size());
+        assertEquals(16, new HashSet<>(top.stream().map(HeavyHitters.Entry::key).toList()).size());
+        assertEquals(80_000, hitters.total());
+    }
+
+}
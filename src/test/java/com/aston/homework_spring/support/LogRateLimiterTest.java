@@ -0,0 +1,33 @@
+package com.aston.homework_spring.support;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogRateLimiterTest {
+
+
+    @Test
+    @DisplayName("When permits are used up then messages are suppressed until the next interval")
+    void whenPermitsUsedUp_thenSuppressUntilNextInterval() {
+
+        AtomicLong now = new AtomicLong();
+        LogRateLimiter limiter = new LogRateLimiter(2, Duration.ofSeconds(1), now::get);
+
+        assertEquals(0, limiter.acquire());
+        assertEquals(0, limiter.acquire());
+        assertEquals(LogRateLimiter.DENIED, limiter.acquire());
+        assertEquals(LogRateLimiter.DENIED, limiter.acquire());
+
+        // В новом интервале первое разрешение сообщает о двух пропущенных сообщениях
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals(2, limiter.acquire());
+        assertEquals(0, limiter.acquire());
+        assertEquals(LogRateLimiter.DENIED, limiter.acquire());
+    }
+
+}
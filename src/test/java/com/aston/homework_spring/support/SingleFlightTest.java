@@ -0,0 +1,144 @@
+package com.aston.homework_spring.support;
+
+import com.aston.homework_spring.exception.EntityNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight<Long, String> singleFlight;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>("find", Duration.ofSeconds(5), meterRegistry);
+    }
+
+
+    @Test
+    @DisplayName("When concurrent calls with the same key then load once and share result")
+    void whenConcurrentCalls_thenLoadOnce() throws Exception {
+
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            // Первый вызов блокируется внутри загрузки, пока остальные не встанут в очередь за его результатом
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+                loads.incrementAndGet();
+                loadStarted.countDown();
+                await(release);
+                return "user1";
+            })));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            while (singleFlight.waiting(1L) < callers - 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("user1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(callers - 1, meterRegistry.counter("users.coalesced", "operation", "find").count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    @DisplayName("When load fails then exception is rethrown and next call loads again")
+    void whenLoadFails_thenRethrowAndForget() {
+
+        assertThrows(EntityNotFoundException.class, () -> singleFlight.execute(20L, () -> {
+            throw new EntityNotFoundException(20L);
+        }));
+
+        // Результат не кэшируется: следующий вызов выполняет новую загрузку
+        assertEquals("user20", singleFlight.execute(20L, () -> "user20"));
+    }
+
+
+    @Test
+    @DisplayName("When in-flight load exceeds wait timeout then exactly one waiter starts a new load")
+    void whenLoadHangs_thenOneWaiterReplacesIt() throws Exception {
+
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("find", Duration.ofMillis(100), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<String> slow = executor.submit(() -> singleFlight.execute(1L, () -> {
+                loadStarted.countDown();
+                await(release);
+                return "slow";
+            }));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+            // Оба ожидающих вызова не дожидаются зависшей загрузки. Новая загрузка держится, пока второй
+            // вызов не встанет за ней: он должен получить ее результат, а не начать третью
+            Callable<String> waiter = () -> singleFlight.execute(1L, () -> {
+                loads.incrementAndGet();
+                while (singleFlight.waiting(1L) < 1) {
+                    Thread.onSpinWait();
+                }
+                return "fresh";
+            });
+            Future<String> first = executor.submit(waiter);
+            Future<String> second = executor.submit(waiter);
+
+            assertEquals("fresh", first.get(5, TimeUnit.SECONDS));
+            assertEquals("fresh", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertEquals(2, meterRegistry.counter("users.coalesced.timeouts", "operation", "find").count());
+            assertEquals(1, meterRegistry.counter("users.coalesced", "operation", "find").count());
+
+            // Зависшая загрузка завершается позже и не удаляет из inFlight чужую
+            release.countDown();
+            assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+            assertEquals(0, singleFlight.waiting(1L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
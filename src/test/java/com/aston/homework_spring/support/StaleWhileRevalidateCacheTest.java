@@ -0,0 +1,133 @@
+package com.aston.homework_spring.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaleWhileRevalidateCacheTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong clock;
+    // Фоновые обновления выполняются тестом явно
+    private List<Runnable> refreshes;
+    private StaleWhileRevalidateCache<Integer, String> cache;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new AtomicLong();
+        refreshes = new ArrayList<>();
+        cache = new StaleWhileRevalidateCache<>("getAll", Duration.ofSeconds(1), Duration.ofSeconds(60), 2,
+                meterRegistry, refreshes::add, clock::get);
+    }
+
+
+    @Test
+    @DisplayName("When entry is stale then old value is served and a single background refresh runs")
+    void whenStale_thenServedAndRefreshedOnce() {
+
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("v1", cache.get(1, () -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get(1, () -> "v" + loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+
+        clock.addAndGet(2 * SECOND);
+        assertEquals("v1", cache.get(1, () -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get(1, () -> "v" + loads.incrementAndGet()));
+        assertEquals(1, refreshes.size());
+
+        refreshes.removeFirst().run();
+        assertEquals("v2", cache.get(1, () -> "v" + loads.incrementAndGet()));
+        assertEquals(2, loads.get());
+
+        assertEquals(2, requests("hit"));
+        assertEquals(2, requests("stale"));
+        assertEquals(1, requests("miss"));
+        assertEquals(2, meterRegistry.get("users.list_cache.refresh").tag("outcome", "success").timer().count());
+    }
+
+
+    @Test
+    @DisplayName("When refresh fails then last good value is served until max stale")
+    void whenRefreshFails_thenLastGoodServedUntilMaxStale() {
+
+        cache.get(1, () -> "v1");
+        clock.addAndGet(30 * SECOND);
+
+        assertEquals("v1", cache.get(1, StaleWhileRevalidateCacheTest::unavailable));
+        refreshes.removeFirst().run();
+        // После неудачи можно запустить следующее обновление
+        assertEquals("v1", cache.get(1, StaleWhileRevalidateCacheTest::unavailable));
+        assertEquals(1, refreshes.size());
+        assertEquals(1, meterRegistry.get("users.list_cache.refresh").tag("outcome", "error").timer().count());
+
+        clock.addAndGet(31 * SECOND);
+        assertThrows(IllegalStateException.class, () -> cache.get(1, StaleWhileRevalidateCacheTest::unavailable));
+    }
+
+
+    @Test
+    @DisplayName("When invalidated during load then loaded value is returned but not cached")
+    void whenInvalidatedDuringLoad_thenNotCached() {
+
+        assertEquals("old", cache.get(1, () -> {
+            cache.invalidateAll();
+            return "old";
+        }));
+        assertEquals("new", cache.get(1, () -> "new"));
+        assertEquals("new", cache.get(1, () -> "other"));
+    }
+
+
+    @Test
+    @DisplayName("When more keys than max entries then cache size stays bounded")
+    void whenTooManyKeys_thenBounded() {
+
+        for (int key = 0; key < 10; key++) {
+            int value = key;
+            cache.get(key, () -> "v" + value);
+        }
+        assertEquals(2, meterRegistry.get("users.list_cache.entries").gauge().value());
+    }
+
+
+    @Test
+    @DisplayName("When cache overflows then the entry loaded earliest is evicted")
+    void whenOverflow_thenOldestEvicted() {
+
+        cache.get(1, () -> "v1");
+        clock.addAndGet(100);
+        cache.get(2, () -> "v2");
+        clock.addAndGet(100);
+        cache.get(3, () -> "v3");
+
+        // Записи 2 и 3 остались свежими, запись 1 загружалась бы заново
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("v2", cache.get(2, () -> "v" + loads.incrementAndGet()));
+        assertEquals("v3", cache.get(3, () -> "v" + loads.incrementAndGet()));
+        assertEquals(0, loads.get());
+        assertEquals("reloaded", cache.get(1, () -> "reloaded"));
+    }
+
+
+    private double requests(String result) {
+        return meterRegistry.get("users.list_cache.requests").tag("result", result).counter().count();
+    }
+
+
+    private static String unavailable() {
+        throw new IllegalStateException("database is unavailable");
+    }
+
+}
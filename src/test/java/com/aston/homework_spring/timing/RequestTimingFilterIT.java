@@ -0,0 +1,57 @@
+package com.aston.homework_spring.timing;
+
+import com.aston.homework_spring.controller.ContainerIT;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RequestTimingFilterIT extends ContainerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When Server-Timing is requested then response contains phase durations and request id")
+    public void whenServerTimingRequested_thenHeaderPresent() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/users/get-all-by-offset-limit")
+                        .param("offset", "0")
+                        .param("limit", "3")
+                        .header(RequestTimingFilter.SERVER_TIMING_OPT_IN_HEADER, "true")
+                        .header(RequestTimingFilter.REQUEST_ID_HEADER, "test-request-1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(RequestTimingFilter.REQUEST_ID_HEADER, "test-request-1"))
+                .andExpect(header().string(RequestTimingFilter.SERVER_TIMING_HEADER,
+                        matchesPattern("validation;dur=[0-9.]+, db;dur=[0-9.]+, mapping;dur=[0-9.]+, " +
+                                "serialization;dur=[0-9.]+, total;dur=[0-9.]+")))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(1L));
+    }
+
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @DisplayName("When Server-Timing is not requested then only generated request id is returned")
+    public void whenServerTimingNotRequested_thenNoHeader() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/users/get-all-count")
+                        .header(RequestTimingFilter.REQUEST_ID_HEADER, "not a valid id!"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(RequestTimingFilter.SERVER_TIMING_HEADER))
+                .andExpect(header().string(RequestTimingFilter.REQUEST_ID_HEADER, matchesPattern("[0-9a-f]{1,16}")));
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.aston.homework_spring.timing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTimingTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestTiming.clear();
+    }
+
+
+    @Test
+    @DisplayName("When phases are nested then inner time is excluded from outer phase")
+    void whenNestedPhases_thenExclusiveTime() {
+
+        RequestTiming timing = RequestTiming.start();
+        RequestTiming.time(RequestTiming.Phase.DB, () -> {
+            sleep(5);
+            RequestTiming.time(RequestTiming.Phase.MAPPING, () -> sleep(20));
+        });
+        long total = timing.elapsedNanos();
+
+        long db = timing.nanos(RequestTiming.Phase.DB);
+        long mapping = timing.nanos(RequestTiming.Phase.MAPPING);
+        assertTrue(mapping >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(db >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(db + mapping <= total);
+        assertTrue(timing.serverTiming(total).startsWith("validation;dur=0.000, db;dur="));
+        assertTrue(timing.serverTiming(total).contains(", total;dur="));
+    }
+
+
+    @Test
+    @DisplayName("When no request is being timed then phases are not recorded")
+    void whenNoRequest_thenNoop() {
+
+        assertEquals(0, RequestTiming.begin());
+        assertEquals("value", RequestTiming.time(RequestTiming.Phase.DB, () -> "value"));
+    }
+
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
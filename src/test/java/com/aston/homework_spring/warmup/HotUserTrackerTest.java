@@ -0,0 +1,63 @@
+package com.aston.homework_spring.warmup;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotUserTrackerTest {
+
+    @TempDir
+    private Path directory;
+
+
+    @Test
+    @DisplayName("When users are read with different frequency then hottest returns them by frequency")
+    void whenRecorded_thenHottestByFrequency() {
+
+        HotUserTracker tracker = new HotUserTracker(3);
+        record(tracker, 5L, 10);
+        record(tracker, 7L, 3);
+        record(tracker, 1L, 6);
+        // Лимит отслеживаемых идентификаторов достигнут
+        record(tracker, 9L, 100);
+
+        assertArrayEquals(new long[]{5L, 1L}, tracker.hottest(2));
+
+        // После затухания пользователь с одним обращением забывается и освобождает место
+        HotUserTracker decaying = new HotUserTracker(2);
+        record(decaying, 1L, 1);
+        record(decaying, 2L, 4);
+        decaying.decay();
+        record(decaying, 3L, 5);
+        assertArrayEquals(new long[]{3L, 2L}, decaying.hottest(10));
+    }
+
+
+    @Test
+    @DisplayName("When snapshot is written then it is read back, damaged snapshot is ignored")
+    void whenSnapshotWritten_thenReadBack() throws IOException {
+
+        Path file = directory.resolve("hot-users.bin");
+        assertEquals(0, HotUserSnapshot.read(file).length);
+
+        HotUserSnapshot.write(file, new long[]{42L, 7L, 1_000_000_000_000L});
+        assertArrayEquals(new long[]{42L, 7L, 1_000_000_000_000L}, HotUserSnapshot.read(file));
+
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20});
+        assertEquals(0, HotUserSnapshot.read(file).length);
+    }
+
+
+    private static void record(HotUserTracker tracker, long id, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(id);
+        }
+    }
+
+}